@@ -0,0 +1,99 @@
+package com.genomic.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CompareResults - Compares two JMH result files written with -rf json
+ * For every benchmark and parameter combination in both files it prints the baseline and
+ * candidate scores, the change, and whether the change exceeds the sum of both error margins;
+ * with -prof gc the normalized allocation (bytes per operation) is compared as well
+ * Usage: java -cp benchmarks/target/benchmarks.jar com.genomic.benchmarks.CompareResults baseline.json candidate.json
+ */
+public class CompareResults {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, JSONObject> baseline = load(Path.of(args[0]));
+        Map<String, JSONObject> candidate = load(Path.of(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n", "Benchmark", "Baseline", "Candidate", "Change", "Unit");
+        for (Map.Entry<String, JSONObject> entry : baseline.entrySet()) {
+            JSONObject after = candidate.get(entry.getKey());
+            if (after == null) {
+                System.out.printf("%-70s %14s%n", entry.getKey(), "(not in candidate)");
+                continue;
+            }
+            JSONObject before = entry.getValue();
+            print(entry.getKey(), before.getJSONObject("primaryMetric"), after.getJSONObject("primaryMetric"));
+
+            JSONObject beforeAllocation = allocation(before);
+            JSONObject afterAllocation = allocation(after);
+            if (beforeAllocation != null && afterAllocation != null) {
+                print("  allocation", beforeAllocation, afterAllocation);
+            }
+        }
+        for (String key : candidate.keySet()) {
+            if (!baseline.containsKey(key)) {
+                System.out.printf("%-70s %14s%n", key, "(not in baseline)");
+            }
+        }
+    }
+
+    /**
+     * Reads a result file, keyed by benchmark name and parameters
+     */
+    private static Map<String, JSONObject> load(Path file) throws IOException {
+        Map<String, JSONObject> results = new LinkedHashMap<>();
+        JSONArray runs = new JSONArray(Files.readString(file));
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            String name = run.getString("benchmark").replace("com.genomic.benchmarks.", "");
+            JSONObject params = run.optJSONObject("params");
+            if (params != null) {
+                name += new TreeMap<>(params.toMap()).toString();
+            }
+            if (run.optInt("threads", 1) > 1) {
+                name += " t" + run.getInt("threads");
+            }
+            results.put(name, run);
+        }
+        return results;
+    }
+
+    private static JSONObject allocation(JSONObject run) {
+        JSONObject metrics = run.optJSONObject("secondaryMetrics");
+        if (metrics == null) {
+            return null;
+        }
+        // Older JMH versions prefix profiler metrics with a middle dot
+        JSONObject metric = metrics.optJSONObject(ALLOCATION_METRIC);
+        return metric != null ? metric : metrics.optJSONObject("·" + ALLOCATION_METRIC);
+    }
+
+    private static void print(String name, JSONObject before, JSONObject after) {
+        double baseScore = before.getDouble("score");
+        double newScore = after.getDouble("score");
+        double margin = error(before) + error(after);
+        String change = baseScore == 0 ? "n/a" : String.format("%+.1f%%", (newScore - baseScore) * 100 / baseScore);
+        String significance = Math.abs(newScore - baseScore) > margin ? "" : " (within error)";
+        System.out.printf("%-70s %14.3f %14.3f %9s  %s%s%n", name, baseScore, newScore, change,
+                after.optString("scoreUnit"), significance);
+    }
+
+    private static double error(JSONObject metric) {
+        double error = metric.optDouble("scoreError", 0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
@@ -0,0 +1,371 @@
+package com.genomic.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DatasetGenerator - Writes a synthetic disease catalog and patient dataset for scale testing
+ * The output directory gets:
+ *  - disease_db/catalog.csv and one FASTA per disease, in the layout DiseaseService loads
+ *  - patients/manifest.csv, a BulkUploader manifest, with the FASTA files under patients/fasta
+ *  - patients/truth.csv, every planted disease: documentId, contig, diseaseId, similarity, expectedMatch
+ * Each patient genome is random background split into contigs of contigBases; a carrierRate
+ * fraction of the patients also carry one to maxPlanted contigs that are copies of catalog
+ * sequences with substitutions at exactly round((1 - s) * length / 2) positions, s drawn from
+ * the similarity range. With equal lengths and substitutions only, the similarity score of
+ * SequenceAligner is at least s, so expectedMatch says whether screening at the threshold
+ * must report it. Background contigs are kept under half the disease length by default, so
+ * the length filter of SequenceAligner.passesLengthFilter skips them and truth.csv lists every
+ * expected detection. Longer background contigs are aligned, and as the score forgives the
+ * length difference, one much longer than a disease matches it: truth.csv then no longer
+ * accounts for the report. Everything derives from the seed and the patient number: a rerun writes the
+ * same bytes, and patients are generated in parallel without holding a genome in memory
+ * Usage: java -cp benchmarks/target/benchmarks.jar com.genomic.benchmarks.DatasetGenerator
+ * [--out DIR] [--patients N] [--genome-bases N] [--contig-bases N] [--diseases N]
+ * [--disease-bases N] [--carrier-rate F] [--max-planted N] [--similarity MIN-MAX]
+ * [--threshold F] [--seed N] [--threads N]
+ */
+public class DatasetGenerator {
+    private static final int LINE_WIDTH = SyntheticGenomes.LINE_WIDTH;
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final int BATCH_SIZE = 1024;
+    private static final int FILES_PER_DIRECTORY = 1000;
+    private static final long CATALOG_STREAM = 0x0CA7A106L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final Settings settings;
+    private final List<byte[]> catalog = new ArrayList<>();
+
+    /**
+     * Settings - Size and shape of the generated dataset
+     * @param out output directory
+     * @param patients number of patients
+     * @param genomeBases background bases per patient
+     * @param contigBases bases per background contig, under half of diseaseBases for a complete truth.csv
+     * @param diseases catalog entries
+     * @param diseaseBases bases per catalog sequence
+     * @param carrierRate fraction of patients with planted diseases
+     * @param maxPlanted most planted diseases per carrier
+     * @param minSimilarity lowest planted similarity
+     * @param maxSimilarity highest planted similarity
+     * @param threshold screening threshold that expectedMatch is computed against
+     * @param seed seed of the whole dataset
+     * @param threads patients generated at once
+     */
+    public record Settings(Path out, int patients, long genomeBases, int contigBases, int diseases,
+                           int diseaseBases, double carrierRate, int maxPlanted, double minSimilarity,
+                           double maxSimilarity, double threshold, long seed, int threads) {
+    }
+
+    /**
+     * Creates a generator
+     * @param settings size and shape of the dataset
+     */
+    public DatasetGenerator(Settings settings) {
+        if (settings.contigBases() < 1 || settings.diseases() < 1 || settings.diseaseBases() < 1
+                || settings.minSimilarity() > settings.maxSimilarity() || settings.maxPlanted() < 1) {
+            throw new IllegalArgumentException("Invalid dataset settings: " + settings);
+        }
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        String[] similarity = options.getOrDefault("--similarity", "0.7-1.0").split("-");
+        int diseaseBases = Integer.parseInt(options.getOrDefault("--disease-bases", "300"));
+        Settings settings = new Settings(
+                Paths.get(options.getOrDefault("--out", "dataset")),
+                Integer.parseInt(options.getOrDefault("--patients", "1000")),
+                Long.parseLong(options.getOrDefault("--genome-bases", "100000")),
+                Integer.parseInt(options.getOrDefault("--contig-bases", String.valueOf(maxUnscreenedContig(diseaseBases)))),
+                Integer.parseInt(options.getOrDefault("--diseases", "10")),
+                diseaseBases,
+                Double.parseDouble(options.getOrDefault("--carrier-rate", "0.3")),
+                Integer.parseInt(options.getOrDefault("--max-planted", "2")),
+                Double.parseDouble(similarity[0]),
+                Double.parseDouble(similarity[similarity.length - 1]),
+                Double.parseDouble(options.getOrDefault("--threshold", "0.8")),
+                Long.parseLong(options.getOrDefault("--seed", String.valueOf(SyntheticGenomes.SEED))),
+                Integer.parseInt(options.getOrDefault("--threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        new DatasetGenerator(settings).generate();
+    }
+
+    /**
+     * Longest background contig the screening length filter still skips against diseaseBases
+     * long sequences, at least one base
+     */
+    static int maxUnscreenedContig(int diseaseBases) {
+        return Math.max(1, (diseaseBases - 1) / 2);
+    }
+
+    /**
+     * Writes the catalog, then the patients in batches of BATCH_SIZE
+     * @throws IOException if an output file cannot be written
+     * @throws InterruptedException if interrupted while waiting for a batch
+     */
+    public void generate() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        if (settings.contigBases() > maxUnscreenedContig(settings.diseaseBases())) {
+            System.out.printf("Background contigs of %d bases are screened and may match any disease, truth.csv "
+                    + "only lists every detection for contigs of at most %d bases%n", settings.contigBases(),
+                    maxUnscreenedContig(settings.diseaseBases()));
+        }
+        writeCatalog(settings.out().resolve("disease_db"));
+
+        Path patientDirectory = settings.out().resolve("patients");
+        Path fastaDirectory = patientDirectory.resolve("fasta");
+        Files.createDirectories(fastaDirectory);
+        long bytes = 0;
+        long planted = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, settings.threads()));
+        try (BufferedWriter manifest = Files.newBufferedWriter(patientDirectory.resolve("manifest.csv"));
+             BufferedWriter truth = Files.newBufferedWriter(patientDirectory.resolve("truth.csv"))) {
+            manifest.write("fullName,documentId,age,sex,email,fastaFile,clinicalNotes\n");
+            truth.write("documentId,contig,diseaseId,similarity,expectedMatch\n");
+
+            for (int first = 0; first < settings.patients(); first += BATCH_SIZE) {
+                List<Future<Patient>> batch = new ArrayList<>();
+                for (int number = first + 1; number <= Math.min(settings.patients(), first + BATCH_SIZE); number++) {
+                    int patientNumber = number;
+                    batch.add(executor.submit(() -> writePatient(fastaDirectory, patientNumber)));
+                }
+                for (Future<Patient> future : batch) {
+                    Patient patient = join(future);
+                    manifest.write(patient.manifestRow());
+                    truth.write(patient.truthRows());
+                    bytes += patient.fastaBytes();
+                    planted += patient.plantedCount();
+                }
+                int done = Math.min(settings.patients(), first + BATCH_SIZE);
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("%d/%d patients, %.1f MB, %.1f MB/s%n", done, settings.patients(),
+                        bytes / 1e6, bytes / 1e6 / seconds);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.printf("Wrote %d diseases and %d patients (%d planted diseases, %.1f MB of FASTA) to %s in %.1f s%n",
+                settings.diseases(), settings.patients(), planted, bytes / 1e6, settings.out().toAbsolutePath(),
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    /**
+     * Writes the catalog and keeps its sequences for planting
+     */
+    private void writeCatalog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SplittableRandom random = new SplittableRandom(settings.seed() ^ CATALOG_STREAM);
+        try (BufferedWriter catalogFile = Files.newBufferedWriter(directory.resolve("catalog.csv"))) {
+            catalogFile.write("disease_id,name,severity,filename,description\n");
+            for (int i = 1; i <= settings.diseases(); i++) {
+                byte[] sequence = new byte[settings.diseaseBases()];
+                for (int j = 0; j < sequence.length; j++) {
+                    sequence[j] = BASES[random.nextInt(BASES.length)];
+                }
+                catalog.add(sequence);
+
+                String filename = String.format("disease_%05d.fasta", i);
+                try (OutputStream fasta = new BufferedOutputStream(Files.newOutputStream(directory.resolve(filename)))) {
+                    writeRecord(fasta, diseaseId(i) + "_reference", sequence);
+                }
+                catalogFile.write(String.format("%s,Synthetic Disease %d,%d,%s,Synthetic reference sequence\n",
+                        diseaseId(i), i, 1 + random.nextInt(10), filename));
+            }
+        }
+    }
+
+    /**
+     * Writes one patient's FASTA, background contigs with the planted ones at random positions
+     */
+    private Patient writePatient(Path fastaDirectory, int number) throws IOException {
+        SplittableRandom random = new SplittableRandom(settings.seed() ^ (number * GOLDEN_GAMMA));
+        String documentId = String.format("SYN%08d", number);
+        String fastaFile = String.format("%04d/%s.fasta", number / FILES_PER_DIRECTORY, documentId);
+
+        List<Planted> plantedDiseases = new ArrayList<>();
+        if (random.nextDouble() < settings.carrierRate()) {
+            int count = 1 + random.nextInt(Math.min(settings.maxPlanted(), catalog.size()));
+            List<Integer> candidates = new ArrayList<>();
+            for (int i = 0; i < catalog.size(); i++) {
+                candidates.add(i);
+            }
+            for (int i = 0; i < count; i++) {
+                int disease = candidates.remove(random.nextInt(candidates.size()));
+                double similarity = settings.minSimilarity()
+                        + random.nextDouble() * (settings.maxSimilarity() - settings.minSimilarity());
+                plantedDiseases.add(plant(disease, similarity, "variant_" + (i + 1), random));
+            }
+        }
+
+        // Each planted contig goes before a random background contig, or after the last one
+        int backgroundContigs = (int) ((settings.genomeBases() + settings.contigBases() - 1) / settings.contigBases());
+        int[] slots = new int[plantedDiseases.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = random.nextInt(backgroundContigs + 1);
+        }
+
+        Path file = fastaDirectory.resolve(fastaFile);
+        Files.createDirectories(file.getParent());
+        CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(file));
+        try (OutputStream fasta = new BufferedOutputStream(counter, 64 * 1024)) {
+            long remaining = settings.genomeBases();
+            for (int contig = 0; contig <= backgroundContigs; contig++) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (slots[i] == contig) {
+                        writeRecord(fasta, plantedDiseases.get(i).contig(), plantedDiseases.get(i).sequence());
+                    }
+                }
+                if (contig < backgroundContigs) {
+                    long length = Math.min(remaining, settings.contigBases());
+                    writeRandomRecord(fasta, "chr" + (contig + 1), length, random);
+                    remaining -= length;
+                }
+            }
+        }
+
+        String manifestRow = String.format("Synthetic Patient %d,%s,%d,%s,patient%d@example.com,%s,Synthetic patient\n",
+                number, documentId, 1 + random.nextInt(99), random.nextBoolean() ? "M" : "F", number, fastaFile);
+        StringBuilder truthRows = new StringBuilder();
+        for (Planted planted : plantedDiseases) {
+            truthRows.append(String.format(Locale.ROOT, "%s,%s,%s,%.4f,%b\n", documentId, planted.contig(),
+                    diseaseId(planted.disease() + 1), planted.similarity(), planted.similarity() >= settings.threshold()));
+        }
+        return new Patient(manifestRow, truthRows.toString(), counter.count, plantedDiseases.size());
+    }
+
+    /**
+     * Copy of a catalog sequence with substitutions at distinct positions
+     * The similarity recorded is the one the substitution count guarantees, 1 - 2 * substitutions / length
+     */
+    private Planted plant(int disease, double similarity, String contig, SplittableRandom random) {
+        byte[] sequence = catalog.get(disease).clone();
+        int substitutions = (int) Math.round((1 - similarity) * sequence.length / 2);
+        int[] positions = new int[sequence.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        // Partial Fisher-Yates shuffle: the first substitutions entries are distinct random positions
+        for (int i = 0; i < substitutions; i++) {
+            int j = i + random.nextInt(positions.length - i);
+            int position = positions[j];
+            positions[j] = positions[i];
+            positions[i] = position;
+            int base = indexOf(sequence[position]);
+            sequence[position] = BASES[(base + 1 + random.nextInt(3)) % BASES.length];
+        }
+        return new Planted(disease, 1 - 2.0 * substitutions / sequence.length, contig, sequence);
+    }
+
+    private static void writeRecord(OutputStream out, String identifier, byte[] sequence) throws IOException {
+        out.write(('>' + identifier + '\n').getBytes(StandardCharsets.US_ASCII));
+        for (int start = 0; start < sequence.length; start += LINE_WIDTH) {
+            out.write(sequence, start, Math.min(LINE_WIDTH, sequence.length - start));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Streams a random record a line at a time, 32 bases from each random long
+     */
+    private static void writeRandomRecord(OutputStream out, String identifier, long length, SplittableRandom random)
+            throws IOException {
+        out.write(('>' + identifier + '\n').getBytes(StandardCharsets.US_ASCII));
+        byte[] line = new byte[LINE_WIDTH + 1];
+        long bits = 0;
+        int available = 0;
+        for (long written = 0; written < length; ) {
+            int lineLength = (int) Math.min(LINE_WIDTH, length - written);
+            for (int i = 0; i < lineLength; i++) {
+                if (available == 0) {
+                    bits = random.nextLong();
+                    available = 32;
+                }
+                line[i] = BASES[(int) (bits & 3)];
+                bits >>>= 2;
+                available--;
+            }
+            line[lineLength] = '\n';
+            out.write(line, 0, lineLength + 1);
+            written += lineLength;
+        }
+    }
+
+    private static int indexOf(byte base) {
+        for (int i = 0; i < BASES.length; i++) {
+            if (BASES[i] == base) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static String diseaseId(int number) {
+        return String.format("SD%05d", number);
+    }
+
+    private static Patient join(Future<Patient> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Could not generate a patient", e.getCause());
+        }
+    }
+
+    private record Planted(int disease, double similarity, String contig, byte[] sequence) {
+    }
+
+    private record Patient(String manifestRow, String truthRows, long fastaBytes, int plantedCount) {
+    }
+
+    /**
+     * CountingOutputStream - Counts the bytes written through it
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
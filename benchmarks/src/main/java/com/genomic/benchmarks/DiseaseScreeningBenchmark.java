@@ -0,0 +1,52 @@
+package com.genomic.benchmarks;
+
+import com.genomic.common.util.SequenceAligner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DiseaseScreeningBenchmark - Measures screening one patient sequence against a disease catalog
+ * Follows DiseaseService.checkForMatches without its file reads and console output: each
+ * entry passes the length pre-filter and is aligned once, its score deciding the match.
+ * Time grows linearly with catalogSize
+ * One catalog entry is a variant of the patient, so every run has a match
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiseaseScreeningBenchmark {
+    private static final double SIMILARITY_THRESHOLD = 0.8;
+
+    @Param({"1", "10", "50"})
+    public int catalogSize;
+
+    @Param({"1000"})
+    public int sequenceLength;
+
+    private String patient;
+    private List<String> catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        patient = SyntheticGenomes.bases(1, sequenceLength);
+        catalog = SyntheticGenomes.catalog(catalogSize, sequenceLength);
+        catalog.set(catalogSize / 2, SyntheticGenomes.mutate(patient, 0.02, 2));
+    }
+
+    @Benchmark
+    public int screen() {
+        int matches = 0;
+        for (String disease : catalog) {
+            if (SequenceAligner.passesLengthFilter(patient, disease)
+                    && SequenceAligner.calculateSimilarity(patient, disease) >= SIMILARITY_THRESHOLD) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,88 @@
+package com.genomic.benchmarks;
+
+import com.genomic.common.ProtocolException;
+import com.genomic.common.util.FastaScanner;
+import com.genomic.common.util.FastaValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastaValidationBenchmark - Measures FASTA validation and hashing against the FASTA size
+ * validateFasta and calculateChecksum work on the whole text as a String, scan and scanAndPack
+ * run the single-pass FastaScanner used for uploads over the same bytes, in 64 KB buffers
+ * Run with -prof gc to compare the bytes allocated per validated byte
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FastaValidationBenchmark {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int fastaBases;
+
+    private String fasta;
+    private byte[] fastaBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fasta = SyntheticGenomes.fasta("bench_sequence", SyntheticGenomes.bases(1, fastaBases));
+        fastaBytes = fasta.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void validateFasta() throws ProtocolException {
+        FastaValidator.validateFasta(fasta);
+    }
+
+    @Benchmark
+    public String calculateChecksum() throws ProtocolException {
+        return FastaValidator.calculateChecksum(fasta);
+    }
+
+    @Benchmark
+    public FastaScanner.Result scan() throws ProtocolException, IOException {
+        return scan(new FastaScanner());
+    }
+
+    @Benchmark
+    public FastaScanner.Result scanAndPack(Blackhole blackhole) throws ProtocolException, IOException {
+        return scan(new FastaScanner(new BlackholeOutputStream(blackhole)));
+    }
+
+    private FastaScanner.Result scan(FastaScanner scanner) throws ProtocolException, IOException {
+        for (int offset = 0; offset < fastaBytes.length; offset += BUFFER_SIZE) {
+            scanner.update(fastaBytes, offset, Math.min(BUFFER_SIZE, fastaBytes.length - offset));
+        }
+        return scanner.finish();
+    }
+
+    /**
+     * BlackholeOutputStream - Discards the packed container without letting the JIT elide it
+     */
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            blackhole.consume(buffer);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.genomic.benchmarks;
+
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.PayloadSchema;
+import com.genomic.common.ProtocolException;
+import com.genomic.common.model.Patient;
+import com.genomic.server.service.DiseaseService;
+import com.genomic.server.service.PatientService;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * PatientServiceBenchmark - Measures PatientService read scaling with immutable snapshots
+ * Run with increasing thread counts to see read throughput scale, e.g. -t 1 then -t 8
+ * The readWrite group keeps a writer updating patients while readers run lock-free
+ * getPatientResponse serves the cached encoded frame, encodePatientResponse encodes it every time
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientServiceBenchmark {
+
+    @Param({"1000"})
+    public int patientCount;
+
+    private Path dataDirectory;
+    private PatientService patientService;
+
+    /**
+     * Writes a synthetic patients.csv and imports it into a fresh PatientService
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ProtocolException {
+        dataDirectory = Files.createTempDirectory("patient-bench");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(dataDirectory.resolve("patients.csv")))) {
+            writer.println("patientId,fullName,documentId,age,sex,email,registrationDate,clinicalNotes,checksumFasta,fileSizeBytes,active,fastaFilename");
+            for (int i = 1; i <= patientCount; i++) {
+                String patientId = patientId(i);
+                writer.println(String.join(",", patientId, "Bench Patient " + i, "BENCH" + i,
+                        String.valueOf(20 + i % 60), i % 2 == 0 ? "M" : "F", "bench" + i + "@example.com",
+                        String.valueOf(System.currentTimeMillis()), "Benchmark patient",
+                        "0".repeat(64), "160", "true", patientId + ".fasta"));
+            }
+        }
+        patientService = new PatientService(new DiseaseService(), dataDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        patientService.close();
+        try (Stream<Path> paths = Files.walk(dataDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public JSONObject getPatient() throws ProtocolException {
+        return patientService.getPatient(randomPatientId());
+    }
+
+    @Benchmark
+    public byte[] getPatientResponse() throws ProtocolException {
+        return patientService.getPatientResponse(randomPatientId(), PayloadEncoding.JSON);
+    }
+
+    @Benchmark
+    public byte[] encodePatientResponse() throws ProtocolException, IOException {
+        Patient patient = patientService.getPatientRecord(randomPatientId());
+        return PayloadEncoding.JSON.encodeSuccess(PayloadSchema.PATIENT, patient);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public JSONObject readWhileUpdating() throws ProtocolException {
+        return patientService.getPatient(randomPatientId());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void updateMetadata(Blackhole blackhole) throws ProtocolException {
+        JSONObject metadata = new JSONObject();
+        metadata.put("clinicalNotes", "Updated " + System.nanoTime());
+        patientService.updatePatient(randomPatientId(), metadata, null);
+        blackhole.consume(metadata);
+    }
+
+    private String randomPatientId() {
+        return patientId(ThreadLocalRandom.current().nextInt(1, patientCount + 1));
+    }
+
+    private static String patientId(int number) {
+        return "PAT" + String.format("%06d", number);
+    }
+}
@@ -0,0 +1,66 @@
+package com.genomic.benchmarks;
+
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.PayloadSchema;
+import com.genomic.common.ProtocolResponse;
+import com.genomic.common.model.Patient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProtocolCodecBenchmark - Measures response encoding and decoding against the payload size
+ * A GET_PATIENT response is encoded from the Patient and decoded back to the JSON data the
+ * client sees, in the JSON and binary payload encodings; the clinical notes set the payload size
+ * Run with -prof gc to compare the allocation of the two encodings
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtocolCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public PayloadEncoding encoding;
+
+    @Param({"64", "4096", "32768"})
+    public int notesLength;
+
+    private Patient patient;
+    private byte[] frame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        patient = Patient.builder()
+                .patientId("PAT000001")
+                .fullName("Bench Patient")
+                .documentId("BENCH1")
+                .age(42)
+                .sex("F")
+                .email("bench@example.com")
+                .registrationDate(Instant.ofEpochMilli(1_700_000_000_000L))
+                .clinicalNotes(SyntheticGenomes.bases(1, notesLength))
+                .checksumFasta("0".repeat(64))
+                .fileSizeBytes(160)
+                .active(true)
+                .fastaFilename("00/00/" + "0".repeat(64) + ".fpk")
+                .build();
+        frame = encoding.encodeSuccess(PayloadSchema.PATIENT, patient);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encoding.encodeSuccess(PayloadSchema.PATIENT, patient);
+    }
+
+    @Benchmark
+    public ProtocolResponse decode() throws IOException {
+        return encoding.readResponse(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+}
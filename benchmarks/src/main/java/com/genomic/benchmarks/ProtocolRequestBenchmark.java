@@ -0,0 +1,61 @@
+package com.genomic.benchmarks;
+
+import com.genomic.common.ProtocolException;
+import com.genomic.common.ProtocolRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProtocolRequestBenchmark - Measures request frame parsing against the inline FASTA size
+ * parse stays flat across payload sizes because the FASTA body is only located, not copied;
+ * parseAndReadFasta adds the single copy made when the service asks for the body
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtocolRequestBenchmark {
+
+    @Param({"1000", "16000", "60000"})
+    public int fastaBases;
+
+    private String createFrame;
+    private String updateFrame;
+
+    /**
+     * Builds CREATE_PATIENT and UPDATE_PATIENT frames with an inline FASTA of fastaBases bases
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder fasta = new StringBuilder(">bench_sequence\n");
+        String bases = "ACGT";
+        for (int i = 0; i < fastaBases; i++) {
+            fasta.append(bases.charAt(i & 3));
+            if (i % 70 == 69) {
+                fasta.append('\n');
+            }
+        }
+        String metadata = "{\"fullName\":\"Bench Patient\",\"documentId\":\"BENCH1\",\"age\":42,\"sex\":\"F\","
+                + "\"email\":\"bench@example.com\",\"clinicalNotes\":\"Benchmark patient\"}";
+        createFrame = "CREATE_PATIENT|" + metadata + "|" + fasta;
+        updateFrame = "UPDATE_PATIENT|PAT000001|" + metadata + "|" + fasta;
+    }
+
+    @Benchmark
+    public ProtocolRequest parseCreate() throws ProtocolException {
+        return new ProtocolRequest(createFrame);
+    }
+
+    @Benchmark
+    public ProtocolRequest parseUpdate() throws ProtocolException {
+        return new ProtocolRequest(updateFrame);
+    }
+
+    @Benchmark
+    public String parseAndReadFasta() throws ProtocolException {
+        return new ProtocolRequest(createFrame).getFastaContent();
+    }
+}
@@ -0,0 +1,78 @@
+package com.genomic.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticGenomes - Reproducible synthetic sequences for the benchmarks
+ * Everything is derived from a fixed seed, so two runs of a benchmark, on any machine,
+ * measure the same inputs and their results can be compared
+ */
+final class SyntheticGenomes {
+    static final long SEED = 0x5EEDL;
+    static final int LINE_WIDTH = 70;
+
+    private static final String BASES = "ACGT";
+
+    private SyntheticGenomes() {
+    }
+
+    /**
+     * Uniformly random bases
+     * @param seed seed of this sequence, combined with SEED
+     * @param length number of bases
+     */
+    static String bases(long seed, int length) {
+        Random random = new Random(SEED ^ seed);
+        char[] sequence = new char[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = BASES.charAt(random.nextInt(BASES.length()));
+        }
+        return new String(sequence);
+    }
+
+    /**
+     * Copy of a sequence with a fraction of its bases substituted, like a variant of it
+     * @param sequence the original bases
+     * @param rate probability of substituting each base
+     * @param seed seed of the substitutions, combined with SEED
+     */
+    static String mutate(String sequence, double rate, long seed) {
+        Random random = new Random(SEED ^ seed);
+        char[] mutated = sequence.toCharArray();
+        for (int i = 0; i < mutated.length; i++) {
+            if (random.nextDouble() < rate) {
+                mutated[i] = BASES.charAt((BASES.indexOf(mutated[i]) + 1 + random.nextInt(3)) % BASES.length());
+            }
+        }
+        return new String(mutated);
+    }
+
+    /**
+     * Single-record FASTA text wrapped at LINE_WIDTH
+     * @param identifier header identifier
+     * @param sequence the bases
+     */
+    static String fasta(String identifier, String sequence) {
+        StringBuilder fasta = new StringBuilder(sequence.length() + sequence.length() / LINE_WIDTH + 64);
+        fasta.append('>').append(identifier).append('\n');
+        for (int start = 0; start < sequence.length(); start += LINE_WIDTH) {
+            fasta.append(sequence, start, Math.min(sequence.length(), start + LINE_WIDTH)).append('\n');
+        }
+        return fasta.toString();
+    }
+
+    /**
+     * Disease reference sequences, one per catalog entry
+     * @param size number of entries
+     * @param length bases per entry
+     */
+    static List<String> catalog(int size, int length) {
+        List<String> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            catalog.add(bases(1_000 + i, length));
+        }
+        return catalog;
+    }
+}
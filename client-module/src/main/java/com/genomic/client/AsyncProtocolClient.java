@@ -0,0 +1,188 @@
+package com.genomic.client;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+import com.genomic.common.ProtocolResponse;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AsyncProtocolClient - Non-blocking client API returning CompletableFuture responses
+ * Every request runs on its own virtual thread over a pooled keep-alive session, so thousands
+ * of requests can be outstanding from one process without a platform thread each. At most
+ * maxInFlight requests are on the wire at once, the rest wait for a slot without blocking the
+ * caller. A request that times out or whose future is cancelled has its thread interrupted,
+ * which aborts the socket I/O; its connection is discarded rather than returned to the pool
+ */
+public class AsyncProtocolClient implements Closeable {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ConnectionPool pool;
+    private final boolean ownsPool;
+    private final ProtocolClient protocolClient;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Duration defaultTimeout;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates a client with its own pool of maxInFlight JSON sessions
+     * @param serverAddress IP address or hostname of the genomic server
+     * @param serverPort port number of the genomic server
+     * @param maxInFlight maximum number of requests sent at once
+     */
+    public AsyncProtocolClient(String serverAddress, int serverPort, int maxInFlight) {
+        this(new ConnectionPool(serverAddress, serverPort, maxInFlight), true, new ProtocolClient(),
+                maxInFlight, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a client over an existing pool, which is left open by close
+     * @param pool pool of sessions to the server, ideally with at least maxInFlight connections
+     * @param protocolClient formats the requests
+     * @param maxInFlight maximum number of requests sent at once
+     * @param defaultTimeout timeout of requests that do not set their own
+     */
+    public AsyncProtocolClient(ConnectionPool pool, ProtocolClient protocolClient, int maxInFlight,
+                               Duration defaultTimeout) {
+        this(pool, false, protocolClient, maxInFlight, defaultTimeout);
+    }
+
+    private AsyncProtocolClient(ConnectionPool pool, boolean ownsPool, ProtocolClient protocolClient,
+                                int maxInFlight, Duration defaultTimeout) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.protocolClient = protocolClient;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public CompletableFuture<ProtocolResponse> createPatient(JSONObject metadata, String fastaContent) {
+        return submit((client, tcpClient) -> client.sendCreatePatient(tcpClient, metadata, fastaContent),
+                defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> createPatient(JSONObject metadata, Path fastaFile) {
+        return submit((client, tcpClient) -> client.sendCreatePatient(tcpClient, metadata, fastaFile),
+                defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> getPatient(String patientId) {
+        return submit((client, tcpClient) -> client.sendGetPatient(tcpClient, patientId), defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> updatePatient(String patientId, JSONObject metadata,
+                                                             String fastaContent) {
+        return submit((client, tcpClient) -> client.sendUpdatePatient(tcpClient, patientId, metadata, fastaContent),
+                defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> updatePatient(String patientId, JSONObject metadata, Path fastaFile) {
+        return submit((client, tcpClient) -> client.sendUpdatePatient(tcpClient, patientId, metadata, fastaFile),
+                defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> deletePatient(String patientId) {
+        return submit((client, tcpClient) -> client.sendDeletePatient(tcpClient, patientId), defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> getPatientCount() {
+        return send(ProtocolConstants.CMD_GET_PATIENT_COUNT, defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> ping() {
+        return send(ProtocolConstants.CMD_PING, defaultTimeout);
+    }
+
+    public CompletableFuture<ProtocolResponse> getServerStats() {
+        return send(ProtocolConstants.CMD_GET_SERVER_STATS, defaultTimeout);
+    }
+
+    /**
+     * Sends a request that fits in one frame and has no payload
+     * @param request the complete request frame
+     * @param timeout time allowed from submission, including the wait for an in-flight slot
+     * @return future completed with the response
+     */
+    public CompletableFuture<ProtocolResponse> send(String request, Duration timeout) {
+        return submit((client, tcpClient) -> client.sendRequest(tcpClient, request), timeout);
+    }
+
+    /**
+     * Runs a blocking ProtocolClient call on a virtual thread
+     * The future fails with a TimeoutException after timeout, with an IOException if the exchange
+     * fails, and with a ProtocolException if the response cannot be parsed; an ERROR response from
+     * the server completes it normally
+     * @param call the exchange, given the protocol client and a TCP client over the pool
+     * @param timeout time allowed from submission, including the wait for an in-flight slot
+     * @return future completed with the response, cancelling it aborts the exchange
+     */
+    public CompletableFuture<ProtocolResponse> submit(Call call, Duration timeout) {
+        CompletableFuture<ProtocolResponse> response = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                response.completeExceptionally(new CancellationException("Request cancelled before it was sent"));
+                return;
+            }
+            try {
+                if (!response.isDone()) {
+                    response.complete(ProtocolResponse.parse(call.call(protocolClient, pool.newClient())));
+                }
+            } catch (IOException | ProtocolException | RuntimeException e) {
+                response.completeExceptionally(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+        response.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((result, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause instanceof TimeoutException || cause instanceof CancellationException) {
+                        task.cancel(true);
+                    }
+                });
+        return response;
+    }
+
+    /**
+     * Number of requests currently on the wire
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Stops accepting requests and waits for the pending ones, then closes an owned pool
+     */
+    @Override
+    public void close() {
+        executor.close();
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Call - One blocking exchange of the ProtocolClient API
+     */
+    @FunctionalInterface
+    public interface Call {
+        String call(ProtocolClient protocolClient, TCPClient tcpClient) throws IOException;
+    }
+}
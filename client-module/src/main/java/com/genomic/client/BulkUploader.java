@@ -0,0 +1,339 @@
+package com.genomic.client;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolResponse;
+import com.genomic.common.util.CsvParser;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BulkUploader - Headless parallel upload of a patient manifest
+ * The manifest is a CSV file with a header row naming the columns fullName, documentId, age,
+ * sex, email, fastaFile and optionally clinicalNotes; fastaFile is resolved against the FASTA
+ * directory. Uploads run through AsyncProtocolClient with a fixed number in flight and stream
+ * each FASTA from disk. Network failures and SERVER_ERROR responses are retried with
+ * exponential backoff and jitter, other errors are final. Every finished row is appended to a
+ * checkpoint file, so a rerun of the same manifest skips what is already uploaded. A progress
+ * line with throughput and latency percentiles is printed every few seconds
+ */
+public class BulkUploader {
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long REPORT_INTERVAL_MS = 5_000;
+    private static final Duration UPLOAD_TIMEOUT = Duration.ofMinutes(10);
+    private static final List<String> REQUIRED_COLUMNS =
+            List.of("fullName", "documentId", "age", "sex", "email", "fastaFile");
+
+    private final String serverAddress;
+    private final int serverPort;
+    private final int parallelism;
+    private final int maxAttempts;
+
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final List<Long> latenciesMillis = new ArrayList<>();
+    private BufferedWriter checkpoint;
+    private long startNanos;
+
+    /**
+     * Creates an uploader
+     * @param serverAddress IP address or hostname of the genomic server
+     * @param serverPort port number of the genomic server
+     * @param parallelism number of uploads in flight at once
+     * @param maxAttempts attempts per patient before it counts as failed
+     */
+    public BulkUploader(String serverAddress, int serverPort, int parallelism, int maxAttempts) {
+        this.serverAddress = serverAddress;
+        this.serverPort = serverPort;
+        this.parallelism = parallelism;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Command-line entry point
+     * Usage: BulkUploader manifest.csv fasta-dir [--host H] [--port P] [--parallelism N]
+     * [--attempts N] [--checkpoint FILE]; exits with status 1 if any patient failed
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: BulkUploader <manifest.csv> <fasta-dir> [--host H] [--port P]"
+                    + " [--parallelism N] [--attempts N] [--checkpoint FILE]");
+            System.exit(2);
+        }
+        Path manifest = Paths.get(args[0]);
+        Path fastaDirectory = Paths.get(args[1]);
+        Map<String, String> options = new HashMap<>();
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        Path checkpointFile = Paths.get(options.getOrDefault("--checkpoint", manifest + ".checkpoint"));
+
+        BulkUploader uploader = new BulkUploader(
+                options.getOrDefault("--host", "localhost"),
+                Integer.parseInt(options.getOrDefault("--port", "2020")),
+                Integer.parseInt(options.getOrDefault("--parallelism", String.valueOf(DEFAULT_PARALLELISM))),
+                Integer.parseInt(options.getOrDefault("--attempts", String.valueOf(DEFAULT_MAX_ATTEMPTS))));
+        try {
+            boolean complete = uploader.upload(manifest, fastaDirectory, checkpointFile);
+            System.exit(complete ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Bulk upload failed: " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Bulk upload interrupted");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Uploads every manifest row not yet recorded in the checkpoint
+     * @param manifest the manifest CSV
+     * @param fastaDirectory directory the fastaFile column is relative to
+     * @param checkpointFile file recording finished rows, created if missing
+     * @return true if no row failed
+     * @throws IOException if the manifest or checkpoint cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for uploads
+     */
+    public boolean upload(Path manifest, Path fastaDirectory, Path checkpointFile)
+            throws IOException, InterruptedException {
+        Set<String> finished = readCheckpoint(checkpointFile);
+        List<Row> rows = readManifest(manifest, fastaDirectory);
+        List<Row> pending = rows.stream().filter(row -> !finished.contains(row.documentId())).toList();
+        System.out.println("Bulk upload: " + rows.size() + " patients in manifest, " + (rows.size() - pending.size())
+                + " already in checkpoint, " + pending.size() + " to upload with parallelism " + parallelism);
+
+        // Enough queued uploads to keep every slot busy, without a future per manifest row
+        int window = parallelism * 4;
+        Semaphore queued = new Semaphore(window);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        startNanos = System.nanoTime();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(checkpointFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             ConnectionPool pool = new ConnectionPool(serverAddress, serverPort, parallelism);
+             AsyncProtocolClient client = new AsyncProtocolClient(pool, new ProtocolClient(), parallelism, UPLOAD_TIMEOUT)) {
+            checkpoint = writer;
+            reporter.scheduleAtFixedRate(() -> System.out.println(progress(pending.size())),
+                    REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+            for (Row row : pending) {
+                queued.acquire();
+                upload(client, row, 1).whenComplete((ignored, failure) -> queued.release());
+            }
+            queued.acquire(window);
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        System.out.println(progress(pending.size()));
+        System.out.println("Bulk upload finished: " + uploaded.get() + " uploaded, " + duplicates.get()
+                + " already on the server, " + failed.get() + " failed");
+        return failed.get() == 0;
+    }
+
+    /**
+     * Uploads one row, scheduling a retry after a backoff delay if the failure is transient
+     */
+    private CompletableFuture<Void> upload(AsyncProtocolClient client, Row row, int attempt) {
+        // Set when the upload leaves its in-flight queue, so latency is the exchange alone
+        AtomicLong sent = new AtomicLong();
+        return client.submit((protocolClient, tcpClient) -> {
+            sent.set(System.nanoTime());
+            return protocolClient.sendCreatePatient(tcpClient, row.metadata(), row.fastaFile());
+        }, UPLOAD_TIMEOUT).handle((response, failure) -> {
+            String error = failure != null ? failure.toString()
+                    : response.isSuccess() ? null : response.errorCode() + ": " + response.errorMessage();
+            if (error == null) {
+                recordLatency(sent.get());
+                bytesUploaded.addAndGet(row.fastaFile().toFile().length());
+                uploaded.incrementAndGet();
+                recordFinished(row, response.data().optString("patientId"));
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (failure == null && ProtocolConstants.ERR_DUPLICATE_DOCUMENT.equals(response.errorCode())) {
+                // Uploaded before, e.g. by an attempt whose response was lost
+                duplicates.incrementAndGet();
+                recordFinished(row, "");
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (!isRetryable(response, failure) || attempt >= maxAttempts) {
+                failed.incrementAndGet();
+                System.err.println("Failed to upload " + row.documentId() + " (manifest line " + row.line()
+                        + ", attempt " + attempt + "): " + error);
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            retries.incrementAndGet();
+            // A busy server says how long it needs, waiting less would only be shed again
+            long delay = Math.max(backoffMillis(attempt), failure == null ? response.retryAfterMillis() : 0);
+            System.err.println("Retrying " + row.documentId() + " in " + delay + " ms after: " + error);
+            return CompletableFuture.runAsync(() -> { },
+                            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> upload(client, row, attempt + 1));
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * Network failures, timeouts, server-side errors and a busy server are transient, rejected input is not
+     */
+    private static boolean isRetryable(ProtocolResponse response, Throwable failure) {
+        return failure != null || ProtocolConstants.ERR_SERVER_ERROR.equals(response.errorCode())
+                || ProtocolConstants.ERR_SERVER_BUSY.equals(response.errorCode());
+    }
+
+    /**
+     * Exponential backoff with jitter, so failed uploads do not retry in lockstep
+     */
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private void recordLatency(long startNanos) {
+        synchronized (latenciesMillis) {
+            latenciesMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    private synchronized void recordFinished(Row row, String patientId) {
+        try {
+            checkpoint.write(CsvParser.escape(row.documentId()) + "," + patientId);
+            checkpoint.newLine();
+            checkpoint.flush();
+        } catch (IOException e) {
+            System.err.println("Could not write checkpoint for " + row.documentId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One progress line: counts, throughput since the start and latency percentiles
+     */
+    private String progress(int total) {
+        long[] latencies;
+        synchronized (latenciesMillis) {
+            latencies = latenciesMillis.stream().mapToLong(Long::longValue).toArray();
+        }
+        Arrays.sort(latencies);
+        double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        long done = uploaded.get() + duplicates.get();
+        return String.format("[bulk] %d/%d done, %d failed, %d retries | %.1f patients/s, %.2f MB/s"
+                        + " | latency p50 %d ms, p95 %d ms, p99 %d ms",
+                done, total, failed.get(), retries.get(), uploaded.get() / seconds,
+                bytesUploaded.get() / seconds / (1024 * 1024),
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    /**
+     * Reads the document IDs already uploaded by earlier runs
+     */
+    private static Set<String> readCheckpoint(Path checkpointFile) throws IOException {
+        Set<String> finished = new HashSet<>();
+        if (Files.exists(checkpointFile)) {
+            for (String line : Files.readAllLines(checkpointFile)) {
+                if (!line.isBlank()) {
+                    finished.add(CsvParser.parseLine(line).get(0));
+                }
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * Reads and checks the manifest, failing on the first malformed row before anything is sent
+     */
+    private static List<Row> readManifest(Path manifest, Path fastaDirectory) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Manifest is empty: " + manifest);
+            }
+            List<String> columns = CsvParser.parseLine(header).stream().map(String::trim).toList();
+            for (String column : REQUIRED_COLUMNS) {
+                if (!columns.contains(column)) {
+                    throw new IOException("Manifest has no " + column + " column");
+                }
+            }
+
+            Set<String> documentIds = new HashSet<>();
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> values = CsvParser.parseLine(line);
+                if (values.size() != columns.size()) {
+                    throw new IOException("Manifest line " + lineNumber + " has " + values.size()
+                            + " fields, expected " + columns.size());
+                }
+                Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    fields.put(columns.get(i), values.get(i).trim());
+                }
+
+                JSONObject metadata = new JSONObject();
+                metadata.put("fullName", fields.get("fullName"));
+                metadata.put("documentId", fields.get("documentId"));
+                metadata.put("sex", fields.get("sex"));
+                metadata.put("email", fields.get("email"));
+                metadata.put("clinicalNotes", fields.getOrDefault("clinicalNotes", ""));
+                try {
+                    metadata.put("age", Integer.parseInt(fields.get("age")));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Manifest line " + lineNumber + " has an invalid age: " + fields.get("age"));
+                }
+                Path fastaFile = fastaDirectory.resolve(fields.get("fastaFile"));
+                if (!Files.isRegularFile(fastaFile)) {
+                    throw new IOException("Manifest line " + lineNumber + ": FASTA file not found: " + fastaFile);
+                }
+                if (!documentIds.add(fields.get("documentId"))) {
+                    throw new IOException("Manifest line " + lineNumber + " repeats document ID " + fields.get("documentId"));
+                }
+                rows.add(new Row(lineNumber, fields.get("documentId"), metadata, fastaFile));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Row - One patient of the manifest
+     */
+    private record Row(int line, String documentId, JSONObject metadata, Path fastaFile) {
+    }
+}
@@ -0,0 +1,276 @@
+package com.genomic.client;
+
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolResponse;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool - Thread-safe pool of keep-alive sessions to one genomic server
+ * Each connection is opened once, with a TLS handshake resumed through the shared SSLContext,
+ * and negotiates a session with HELLO|encoding|keep-alive; it then serves request after request.
+ * Idle connections are reused most recent first, checked with a PING once they have been idle
+ * for a while, and closed after IDLE_TIMEOUT_MS, before the server drops them itself.
+ * Servers without sessions answer HELLO without keepAlive, or not at all: the pool then falls
+ * back to one connection per request, which is closed when released
+ */
+public class ConnectionPool implements Closeable {
+    private static final long IDLE_TIMEOUT_MS = 30_000;
+    private static final long VALIDATE_AFTER_MS = 2_000;
+    private static final int PING_TIMEOUT_MS = 5_000;
+    private static final long ACQUIRE_TIMEOUT_MS = 30_000;
+
+    @Getter
+    private final String serverAddress;
+    @Getter
+    private final int serverPort;
+    private final PayloadEncoding encoding;
+    private final Semaphore permits;
+    private final Deque<Connection> idle = new ArrayDeque<>(); // most recently used first
+    private volatile Boolean sessionsSupported; // null until the first HELLO is answered
+    private volatile boolean closed;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * Creates a pool of JSON sessions
+     * @param serverAddress IP address or hostname of the genomic server
+     * @param serverPort port number of the genomic server
+     * @param maxConnections maximum number of connections open at once
+     */
+    public ConnectionPool(String serverAddress, int serverPort, int maxConnections) {
+        this(serverAddress, serverPort, PayloadEncoding.JSON, maxConnections);
+    }
+
+    /**
+     * Creates a pool whose sessions negotiate a response encoding
+     * @param serverAddress IP address or hostname of the genomic server
+     * @param serverPort port number of the genomic server
+     * @param encoding payload encoding asked for by every session
+     * @param maxConnections maximum number of connections open at once
+     */
+    public ConnectionPool(String serverAddress, int serverPort, PayloadEncoding encoding, int maxConnections) {
+        this.serverAddress = serverAddress;
+        this.serverPort = serverPort;
+        this.encoding = encoding;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Creates a client that runs its requests on this pool
+     * Clients are cheap, create one per thread
+     */
+    public TCPClient newClient() {
+        return new TCPClient(this);
+    }
+
+    /**
+     * Borrows a connection, reusing a healthy idle session or opening a new one
+     * @return the connection, to be given back with release or discard
+     * @throws IOException if the pool is exhausted for ACQUIRE_TIMEOUT_MS or the connection fails
+     */
+    Connection acquire() throws IOException {
+        if (closed) {
+            throw new IOException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No connection available to " + serverAddress + ":" + serverPort
+                        + " within " + ACQUIRE_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            Connection connection;
+            while ((connection = pollIdle()) != null) {
+                if (isHealthy(connection)) {
+                    reused.incrementAndGet();
+                    return connection;
+                }
+                connection.close();
+                discarded.incrementAndGet();
+            }
+            return open();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back after a complete exchange
+     * Sessions are kept for reuse, single-request connections are closed
+     */
+    void release(Connection connection) {
+        if (connection.isPersistent() && !closed) {
+            connection.lastUsed = System.nanoTime();
+            synchronized (idle) {
+                idle.addFirst(connection);
+                evictIdle();
+            }
+        } else {
+            connection.close();
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a connection whose stream may be out of sync, e.g. after an I/O error
+     */
+    void discard(Connection connection) {
+        connection.close();
+        discarded.incrementAndGet();
+        permits.release();
+    }
+
+    /**
+     * Closes every idle connection, borrowed ones are closed when given back
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (idle) {
+            idle.forEach(Connection::close);
+            idle.clear();
+        }
+    }
+
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection, closing those idle for too long
+     */
+    private Connection pollIdle() {
+        synchronized (idle) {
+            evictIdle();
+            return idle.pollFirst();
+        }
+    }
+
+    // Caller holds the idle lock; the oldest connections are at the tail
+    private void evictIdle() {
+        long now = System.nanoTime();
+        while (!idle.isEmpty() && now - idle.peekLast().lastUsed > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS)) {
+            idle.pollLast().close();
+            discarded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Pings a connection that has been idle long enough for the server or network to drop it
+     */
+    private boolean isHealthy(Connection connection) {
+        if (System.nanoTime() - connection.lastUsed < TimeUnit.MILLISECONDS.toNanos(VALIDATE_AFTER_MS)) {
+            return true;
+        }
+        try {
+            connection.socket.setSoTimeout(PING_TIMEOUT_MS);
+            connection.output.writeUTF(ProtocolConstants.CMD_PING);
+            connection.output.flush();
+            boolean healthy = connection.encoding.readResponse(connection.input).isSuccess();
+            connection.socket.setSoTimeout(0);
+            return healthy;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a connection and negotiates a keep-alive session, unless the server is known not to support it
+     */
+    private Connection open() throws IOException {
+        if (Boolean.FALSE.equals(sessionsSupported)) {
+            return connect(false);
+        }
+        Connection connection = connect(true);
+        try {
+            connection.output.writeUTF(ProtocolConstants.CMD_HELLO + ProtocolConstants.DELIMITER
+                    + encoding.getWireName() + ProtocolConstants.DELIMITER + ProtocolConstants.KEEP_ALIVE);
+            connection.output.flush();
+            ProtocolResponse hello = PayloadEncoding.JSON.readResponse(connection.input);
+            if (!hello.isSuccess()) {
+                // The server does not know HELLO and has closed the connection
+                connection.close();
+                sessionsSupported = false;
+                return connect(false);
+            }
+            connection.encoding = PayloadEncoding.fromWireName(hello.data().optString("encoding"));
+            connection.persistent = hello.data().optBoolean("keepAlive");
+            sessionsSupported = connection.persistent;
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection connect(boolean negotiated) throws IOException {
+        Socket socket = TCPClient.openSocket(TCPClient.getSharedSSLContext(), serverAddress, serverPort);
+        opened.incrementAndGet();
+        return new Connection(socket, negotiated);
+    }
+
+    /**
+     * Connection - One pooled socket with its streams and negotiated session state
+     */
+    static final class Connection {
+        private final Socket socket;
+        @Getter
+        private final DataInputStream input;
+        @Getter
+        private final DataOutputStream output;
+        @Getter
+        private final boolean negotiated; // HELLO already answered, requests send none of their own
+        @Getter
+        private PayloadEncoding encoding = PayloadEncoding.JSON;
+        @Getter
+        private boolean persistent;
+        private long lastUsed = System.nanoTime();
+
+        private Connection(Socket socket, boolean negotiated) throws IOException {
+            this.socket = socket;
+            this.input = new DataInputStream(socket.getInputStream());
+            this.output = new DataOutputStream(socket.getOutputStream());
+            this.negotiated = negotiated;
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.out.println("Error closing pooled connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,14 +4,17 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 /**
  * EnhancedClient - Interactive command-line client for the Genomic Server
  * Provides a user-friendly interface for managing patient genomic data
- * Supports all CRUD operations and batch processing
+ * Supports all CRUD operations and bulk uploads through BulkUploader
  */
 public class EnhancedClient {
+    private final ConnectionPool connectionPool; // Keep-alive sessions reused across requests
     private final TCPClient tcpClient; // TCP client for server communication
     private final ProtocolClient protocolClient; // Protocol handler for message formatting
     private final Scanner scanner; // Scanner for user input
@@ -21,7 +24,8 @@ public class EnhancedClient {
      * Constructor - Initializes the client components
      */
     public EnhancedClient() {
-        this.tcpClient = new TCPClient(address, 2020);
+        this.connectionPool = new ConnectionPool(address, 2020, 1);
+        this.tcpClient = connectionPool.newClient();
         this.protocolClient = new ProtocolClient();
         this.scanner = new Scanner(System.in);
     }
@@ -52,10 +56,14 @@ public class EnhancedClient {
                     deletePatientInteractive();
                     break;
                 case "5":
-                    batchOperationsInteractive();
+                    bulkUploadInteractive();
                     break;
                 case "6":
+                    downloadFastaInteractive();
+                    break;
+                case "7":
                     System.out.println("Exiting...");
+                    connectionPool.close();
                     scanner.close();
                     return;
                 default:
@@ -73,8 +81,9 @@ public class EnhancedClient {
         System.out.println("2. Get Patient Information");
         System.out.println("3. Update Patient");
         System.out.println("4. Delete Patient");
-        System.out.println("5. Batch Operations");
-        System.out.println("6. Exit");
+        System.out.println("5. Bulk Upload from Manifest");
+        System.out.println("6. Download Patient FASTA");
+        System.out.println("7. Exit");
         System.out.print("Choose an option: ");
     }
 
@@ -87,11 +96,18 @@ public class EnhancedClient {
             System.out.println("\n=== Create New Patient ===");
 
             JSONObject metadata = readPatientMetadata();
-            System.out.println("Enter FASTA sequence (type '>END' on a new line to finish):");
-            String fastaContent = readMultilineInput();
-
-            System.out.println("Sending request to server...");
-            String response = protocolClient.sendCreatePatient(tcpClient, metadata, fastaContent);
+            Path fastaFile = readFastaFilePath();
+            String response;
+            if (fastaFile != null) {
+                System.out.println("Streaming " + fastaFile + " to server...");
+                response = protocolClient.sendCreatePatient(tcpClient, metadata, fastaFile);
+            } else {
+                System.out.println("Enter FASTA sequence (type '>END' on a new line to finish):");
+                String fastaContent = readMultilineInput();
+
+                System.out.println("Sending request to server...");
+                response = protocolClient.sendCreatePatient(tcpClient, metadata, fastaContent);
+            }
             displayResponse(response);
 
         } catch (Exception e) {
@@ -125,6 +141,34 @@ public class EnhancedClient {
         }
     }
 
+    /**
+     * Interactive method to download the stored FASTA of a patient into a local file
+     */
+    private void downloadFastaInteractive() {
+        try {
+            System.out.println("\n=== Download Patient FASTA ===");
+            System.out.print("Enter Patient ID: ");
+            String patientId = scanner.nextLine().trim();
+
+            if (patientId.isEmpty()) {
+                System.out.println("Patient ID cannot be empty.");
+                return;
+            }
+
+            System.out.print("Save to file [" + patientId + ".fasta]: ");
+            String fileName = scanner.nextLine().trim();
+            Path target = Path.of(fileName.isEmpty() ? patientId + ".fasta" : fileName);
+
+            String response = protocolClient.sendGetPatientFasta(tcpClient, patientId, target);
+            displayFormattedResponse(response);
+
+        } catch (IOException e) {
+            System.out.println("Error downloading FASTA: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Unexpected error: " + e.getMessage());
+        }
+    }
+
     /**
      * Interactive method to update an existing patient
      * Shows current data and allows partial updates
@@ -159,14 +203,20 @@ public class EnhancedClient {
             System.out.println("Update FASTA sequence? (y/N): ");
             String updateFasta = scanner.nextLine().trim().toLowerCase();
             String fastaContent = null;
+            Path fastaFile = null;
 
             if (updateFasta.equals("y") || updateFasta.equals("yes")) {
-                System.out.println("Enter new FASTA sequence (type '>END' on a new line to finish):");
-                fastaContent = readMultilineInput();
+                fastaFile = readFastaFilePath();
+                if (fastaFile == null) {
+                    System.out.println("Enter new FASTA sequence (type '>END' on a new line to finish):");
+                    fastaContent = readMultilineInput();
+                }
             }
 
             System.out.println("Sending update request...");
-            String response = protocolClient.sendUpdatePatient(tcpClient, patientId, newMetadata, fastaContent);
+            String response = fastaFile != null
+                    ? protocolClient.sendUpdatePatient(tcpClient, patientId, newMetadata, fastaFile)
+                    : protocolClient.sendUpdatePatient(tcpClient, patientId, newMetadata, fastaContent);
             displayResponse(response);
 
         } catch (IOException e) {
@@ -212,153 +262,34 @@ public class EnhancedClient {
     }
 
     /**
-     * Sub-menu for batch operations
+     * Uploads a manifest of patients with BulkUploader
+     * Collects the manifest, FASTA directory and parallelism from the user
      */
-    private void batchOperationsInteractive() {
-        System.out.println("\n=== Batch Operations ===");
-        System.out.println("1. Create Multiple Test Patients");
-        System.out.println("2. Back to Main Menu");
-        System.out.print("Choose an option: ");
-
-        String choice = scanner.nextLine().trim();
-
-        switch (choice) {
-            case "1":
-                createMultipleTestPatients();
-                break;
-            case "2":
-                return;
-            default:
-                System.out.println("Invalid choice.");
-        }
-    }
-
-    /**
-     * Creates multiple test patients for load testing or demonstration
-     */
-    private void createMultipleTestPatients() {
+    private void bulkUploadInteractive() {
         try {
-            System.out.print("How many test patients to create? ");
-            int count = Integer.parseInt(scanner.nextLine().trim());
-
-            if (count <= 0 || count > 100) {
-                System.out.println("Please enter a number between 1 and 100.");
-                return;
-            }
-
-            // Get the current highest patient number from existing test patients
-            System.out.println(protocolClient.sendGetAllPatients(tcpClient));
-            int baseNumber = protocolClient.sendGetAllPatients(tcpClient) + 1;
-
-            System.out.println("Creating " + count + " test patients starting from number " + baseNumber + "...");
-
-            int successfulCreations = 0;
-            int failedCreations = 0;
-
-            for (int i = 0; i < count; i++) {
-                int patientNumber = baseNumber + i;
-
-                JSONObject metadata = getJsonObject(patientNumber);
-
-                String fastaContent = ">test_patient_" + patientNumber + "\n" +
-                        "ACGTACGTGGCCTTAAACCGGTAGCTAGCTAGGCTAGCTAGCTAGCTA\n" +
-                        "GCTAGCTAGCGATCGATCGTAAACGTACGTGGCCTTAAACCGGTAGC\n" +
-                        "TAGCTAGGCTAGCTAGCTAGCTAGCTAGCTAGCGATCGATCGTAA";
-
-                try {
-                    String response = protocolClient.sendCreatePatient(tcpClient, metadata, fastaContent);
-
-                    if (response.startsWith("SUCCESS")) {
-                        System.out.println("Created patient " + patientNumber + " (" + (i + 1) + "/" + count + ")");
-                        successfulCreations++;
-                    } else {
-                        System.out.println("Failed to create patient " + patientNumber + ": " + response);
-                        failedCreations++;
-                    }
-
-                    // Small delay to avoid overwhelming the server
-                    Thread.sleep(100);
-
-                } catch (IOException e) {
-                    System.out.println("Network error creating patient " + patientNumber + ": " + e.getMessage());
-                    failedCreations++;
-                }
-            }
-
-            System.out.println("Batch creation completed. Success: " + successfulCreations + ", Failed: " + failedCreations);
+            System.out.println("\n=== Bulk Upload ===");
+            System.out.print("Manifest CSV (fullName,documentId,age,sex,email,fastaFile[,clinicalNotes]): ");
+            Path manifest = Path.of(scanner.nextLine().trim());
+            System.out.print("FASTA directory: ");
+            Path fastaDirectory = Path.of(scanner.nextLine().trim());
+            System.out.print("Parallel uploads [" + BulkUploader.DEFAULT_PARALLELISM + "]: ");
+            String parallelismInput = scanner.nextLine().trim();
+            int parallelism = parallelismInput.isEmpty()
+                    ? BulkUploader.DEFAULT_PARALLELISM : Integer.parseInt(parallelismInput);
+
+            BulkUploader uploader = new BulkUploader(address, 2020, parallelism, BulkUploader.DEFAULT_MAX_ATTEMPTS);
+            boolean complete = uploader.upload(manifest, fastaDirectory, Path.of(manifest + ".checkpoint"));
+            System.out.println(complete ? "All patients uploaded."
+                    : "Some patients failed, run the upload again to retry them.");
 
         } catch (NumberFormatException e) {
-            System.out.println("Please enter a valid number." + e.getMessage());
+            System.out.println("Please enter a valid number.");
+        } catch (IOException e) {
+            System.out.println("Error during bulk upload: " + e.getMessage());
         } catch (InterruptedException e) {
-            System.out.println("Batch operation interrupted.");
+            System.out.println("Bulk upload interrupted.");
             Thread.currentThread().interrupt();
-        } catch (Exception e) {
-            System.out.println("Unexpected error: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Reads patient metadata from user input
-     * @return JSONObject containing patient metadata
-     */
-    private static JSONObject getJsonObject(int patientNumber) {
-        JSONObject metadata = new JSONObject();
-        metadata.put("fullName", "Test Patient " + patientNumber);
-        metadata.put("documentId", "TEST" + String.format("%04d", patientNumber));
-        metadata.put("age", 25 + (patientNumber % 45));
-        metadata.put("sex", patientNumber % 2 == 0 ? "M" : "F");
-        metadata.put("email", "test.patient" + patientNumber + "@example.com");
-        metadata.put("clinicalNotes", "Automated test patient #" + patientNumber);
-        return metadata;
-    }
-
-    /**
-     * Finds the highest test patient number in the existing database
-     * by attempting to retrieve patients and checking their document IDs
-     */
-    private int findHighestTestPatientNumber() {
-        int highestNumber = 0;
-        int consecutiveMissing = 0;
-        int maxConsecutiveMissing = 2; // Stop after 5 consecutive missing patients
-
-        for (int i = 1; i <= 1000; i++) {
-            String patientId = "PAT" + String.format("%06d", i);
-
-            try {
-                String response = protocolClient.sendGetPatient(tcpClient, patientId);
-
-                if (response.startsWith("SUCCESS")) {
-                    // Patient exists and is active
-                    highestNumber = i;
-                    consecutiveMissing = 0; // Reset counter
-                    System.out.println("Found active patient: " + patientId);
-                } else if (response.startsWith("ERROR")) {
-                    // Patient not found or inactive
-                    consecutiveMissing++;
-                    System.out.println("Patient not found: " + patientId + " (" + consecutiveMissing + " consecutive missing)");
-
-                    // If we've found enough consecutive missing patients, stop searching
-                    if (consecutiveMissing >= maxConsecutiveMissing && highestNumber > 0) {
-                        System.out.println("Stopping search after " + maxConsecutiveMissing + " consecutive missing patients");
-                        break;
-                    }
-                }
-
-            } catch (IOException e) {
-                System.out.println("Network error checking patient " + patientId + ": " + e.getMessage());
-                break;
-            }
-
-            // Small delay to avoid overwhelming server
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                break;
-            }
         }
-
-        return highestNumber;
     }
 
     /**
@@ -423,6 +354,25 @@ public class EnhancedClient {
         return metadata;
     }
 
+    /**
+     * Asks for a FASTA file to stream, re-prompting until the file exists
+     * @return the file path, or null to type the sequence instead
+     */
+    private Path readFastaFilePath() {
+        while (true) {
+            System.out.print("FASTA file path (leave empty to type the sequence): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            Path path = Path.of(input);
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+            System.out.println("File not found: " + input);
+        }
+    }
+
     /**
      * Reads multi-line FASTA input until >END marker
      * @return concatenated FASTA content as String
@@ -0,0 +1,399 @@
+package com.genomic.client;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolResponse;
+import com.genomic.common.util.LatencyHistogram;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator - Open-loop load test of a genomic server
+ * Requests are scheduled at a fixed arrival rate, with a mix of CREATE, GET, UPDATE and DELETE
+ * drawn from a seeded random sequence. A request is dispatched at its scheduled time whether or
+ * not earlier requests have answered, and its latency is measured from that scheduled time: a
+ * stalled server therefore shows up as the queueing delay every later request suffers, instead of
+ * silently lowering the request rate (coordinated omission)
+ * Latencies go into one LatencyHistogram per command; the report gives percentiles, error rates
+ * by error code and the throughput reached, and can be written as JSON
+ */
+public class LoadGenerator {
+    private static final long HISTOGRAM_MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String[] COMMANDS = {
+            ProtocolConstants.CMD_CREATE_PATIENT, ProtocolConstants.CMD_GET_PATIENT,
+            ProtocolConstants.CMD_UPDATE_PATIENT, ProtocolConstants.CMD_DELETE_PATIENT};
+
+    private final String serverAddress;
+    private final int serverPort;
+    private final Workload workload;
+
+    private final Map<String, CommandStats> stats = new LinkedHashMap<>();
+    private final List<String> livePatients = new ArrayList<>(); // guarded by itself
+    private final AtomicLong createdCount = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+    private long maxDispatchLagNanos;
+
+    /**
+     * Workload - What the load test sends, and how fast
+     * @param ratePerSecond requests scheduled per second, across all commands
+     * @param duration length of the measured phase
+     * @param warmup time before it, whose requests are sent but not recorded
+     * @param mix relative weight of each command (CREATE_PATIENT, GET_PATIENT, UPDATE_PATIENT, DELETE_PATIENT)
+     * @param connections pooled sessions, and requests on the wire at once
+     * @param seedPatients patients created before the test for GET, UPDATE and DELETE to use
+     * @param fastaBases bases of the FASTA sent with each created patient
+     * @param seed seed of the command sequence, so runs are repeatable
+     */
+    public record Workload(double ratePerSecond, Duration duration, Duration warmup, Map<String, Integer> mix,
+                           int connections, int seedPatients, int fastaBases, long seed) {
+
+        /**
+         * Parses a mix such as get=70,create=10,update=15,delete=5
+         */
+        public static Map<String, Integer> parseMix(String mix) {
+            Map<String, Integer> weights = new LinkedHashMap<>();
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.split("=");
+                String name = parts[0].trim().toUpperCase();
+                String command = name.endsWith("_PATIENT") ? name : name + "_PATIENT";
+                if (!List.of(COMMANDS).contains(command) || parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid mix entry: " + entry);
+                }
+                weights.put(command, Integer.parseInt(parts[1].trim()));
+            }
+            return weights;
+        }
+    }
+
+    /**
+     * Creates a load generator
+     * @param serverAddress IP address or hostname of the genomic server
+     * @param serverPort port number of the genomic server
+     * @param workload the requests to send
+     */
+    public LoadGenerator(String serverAddress, int serverPort, Workload workload) {
+        this.serverAddress = serverAddress;
+        this.serverPort = serverPort;
+        this.workload = workload;
+        for (String command : COMMANDS) {
+            stats.put(command, new CommandStats());
+        }
+    }
+
+    /**
+     * Command-line entry point
+     * Usage: LoadGenerator [--host H] [--port P] [--rate N] [--duration S] [--warmup S]
+     * [--mix get=70,create=10,update=15,delete=5] [--connections N] [--seed-patients N]
+     * [--fasta-bases N] [--seed N] [--report FILE]
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        Workload workload = new Workload(
+                Double.parseDouble(options.getOrDefault("--rate", "50")),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("--duration", "30"))),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("--warmup", "5"))),
+                Workload.parseMix(options.getOrDefault("--mix", "get=70,create=10,update=15,delete=5")),
+                Integer.parseInt(options.getOrDefault("--connections", "8")),
+                Integer.parseInt(options.getOrDefault("--seed-patients", "20")),
+                Integer.parseInt(options.getOrDefault("--fasta-bases", "1000")),
+                Long.parseLong(options.getOrDefault("--seed", "42")));
+        LoadGenerator generator = new LoadGenerator(options.getOrDefault("--host", "localhost"),
+                Integer.parseInt(options.getOrDefault("--port", "2020")), workload);
+        try {
+            JSONObject report = generator.run();
+            System.out.println(generator.format(report));
+            if (options.containsKey("--report")) {
+                Files.writeString(Paths.get(options.get("--report")), report.toString(2));
+                System.out.println("Report written to " + options.get("--report"));
+            }
+        } catch (IOException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Load test interrupted");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Seeds the patients, runs the warmup and measured phases and waits for the last responses
+     * @return the report, see format
+     * @throws IOException if no seed patient could be created
+     * @throws InterruptedException if interrupted while dispatching
+     */
+    public JSONObject run() throws IOException, InterruptedException {
+        try (ConnectionPool pool = new ConnectionPool(serverAddress, serverPort, workload.connections());
+             AsyncProtocolClient client = new AsyncProtocolClient(pool, new ProtocolClient(),
+                     workload.connections(), REQUEST_TIMEOUT)) {
+            seed(client);
+            System.out.printf("Load test: %.1f requests/s for %d s after %d s of warmup, mix %s, %d connections%n",
+                    workload.ratePerSecond(), workload.duration().toSeconds(), workload.warmup().toSeconds(),
+                    workload.mix(), workload.connections());
+            dispatch(client);
+        }
+        return report();
+    }
+
+    /**
+     * Creates the patients that the first GET, UPDATE and DELETE requests address
+     */
+    private void seed(AsyncProtocolClient client) throws IOException {
+        List<CompletableFuture<ProtocolResponse>> creates = new ArrayList<>();
+        for (int i = 0; i < workload.seedPatients(); i++) {
+            creates.add(client.send(createFrame(), REQUEST_TIMEOUT));
+        }
+        for (CompletableFuture<ProtocolResponse> create : creates) {
+            ProtocolResponse response = create.exceptionally(failure -> null).join();
+            if (response != null && response.isSuccess()) {
+                addLivePatient(response.data().getString("patientId"));
+            }
+        }
+        if (livePatients.isEmpty() && workload.seedPatients() > 0) {
+            throw new IOException("Could not create any seed patient on " + serverAddress + ":" + serverPort);
+        }
+    }
+
+    /**
+     * Sends every request at its scheduled time, start + i / rate
+     */
+    private void dispatch(AsyncProtocolClient client) throws InterruptedException {
+        Random random = new Random(workload.seed());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / workload.ratePerSecond());
+        long start = System.nanoTime();
+        long measureFrom = start + workload.warmup().toNanos();
+        long end = measureFrom + workload.duration().toNanos();
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * intervalNanos;
+            if (scheduled >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            maxDispatchLagNanos = Math.max(maxDispatchLagNanos, System.nanoTime() - scheduled);
+
+            String command = pickCommand(random);
+            String frame = frame(command, random);
+            boolean measured = scheduled >= measureFrom;
+            client.send(frame, REQUEST_TIMEOUT).whenComplete((response, failure) -> {
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+                complete(command, response, failure, measured ? latencyMicros : -1);
+            });
+        }
+    }
+
+    private String pickCommand(Random random) {
+        int total = workload.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int pick = random.nextInt(Math.max(total, 1));
+        for (Map.Entry<String, Integer> entry : workload.mix().entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return ProtocolConstants.CMD_GET_PATIENT;
+    }
+
+    /**
+     * Request frame of a command; DELETE takes its patient out of the live set right away,
+     * so no two requests delete the same patient
+     */
+    private String frame(String command, Random random) {
+        switch (command) {
+            case ProtocolConstants.CMD_CREATE_PATIENT:
+                return createFrame();
+            case ProtocolConstants.CMD_UPDATE_PATIENT: {
+                JSONObject metadata = new JSONObject();
+                metadata.put("clinicalNotes", "Load test update " + random.nextInt());
+                return "UPDATE_PATIENT|" + livePatient(random, false) + "|" + metadata;
+            }
+            case ProtocolConstants.CMD_DELETE_PATIENT:
+                return "DELETE_PATIENT|" + livePatient(random, true);
+            default:
+                return "GET_PATIENT|" + livePatient(random, false);
+        }
+    }
+
+    private String createFrame() {
+        long number = createdCount.incrementAndGet();
+        JSONObject metadata = new JSONObject();
+        metadata.put("fullName", "Load Test " + number);
+        metadata.put("documentId", "LOAD-" + runId + "-" + number);
+        metadata.put("age", 20 + (int) (number % 60));
+        metadata.put("sex", number % 2 == 0 ? "M" : "F");
+        metadata.put("email", "load" + number + "@example.com");
+        metadata.put("clinicalNotes", "Load test patient");
+
+        Random bases = new Random(workload.seed() + number);
+        StringBuilder fasta = new StringBuilder(">load_" + number + "\n");
+        for (int i = 0; i < workload.fastaBases(); i++) {
+            fasta.append("ACGT".charAt(bases.nextInt(4)));
+            if (i % 70 == 69) {
+                fasta.append('\n');
+            }
+        }
+        return "CREATE_PATIENT|" + metadata + "|" + fasta;
+    }
+
+    /**
+     * Picks a live patient, or an ID that does not exist once every patient is deleted
+     */
+    private String livePatient(Random random, boolean remove) {
+        synchronized (livePatients) {
+            if (livePatients.isEmpty()) {
+                return "PAT999999";
+            }
+            int index = random.nextInt(livePatients.size());
+            String patientId = livePatients.get(index);
+            if (remove) {
+                livePatients.set(index, livePatients.get(livePatients.size() - 1));
+                livePatients.remove(livePatients.size() - 1);
+            }
+            return patientId;
+        }
+    }
+
+    private void addLivePatient(String patientId) {
+        synchronized (livePatients) {
+            livePatients.add(patientId);
+        }
+    }
+
+    /**
+     * Records the outcome of a request; latencyMicros is -1 during warmup
+     */
+    private void complete(String command, ProtocolResponse response, Throwable failure, long latencyMicros) {
+        if (response != null && response.isSuccess() && ProtocolConstants.CMD_CREATE_PATIENT.equals(command)) {
+            addLivePatient(response.data().getString("patientId"));
+        }
+        if (latencyMicros < 0) {
+            return;
+        }
+        CommandStats commandStats = stats.get(command);
+        commandStats.latencies.record(latencyMicros);
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            commandStats.errors.computeIfAbsent(cause.getClass().getSimpleName(), key -> new LongAdder()).increment();
+        } else if (!response.isSuccess()) {
+            commandStats.errors.computeIfAbsent(response.errorCode(), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Report of the measured phase, latencies in milliseconds
+     */
+    private JSONObject report() {
+        double seconds = workload.duration().toMillis() / 1000.0;
+        JSONObject report = new JSONObject();
+        report.put("targetRate", workload.ratePerSecond());
+        report.put("durationSeconds", seconds);
+        report.put("connections", workload.connections());
+        report.put("maxDispatchLagMs", TimeUnit.NANOSECONDS.toMicros(maxDispatchLagNanos) / 1000.0);
+
+        LatencyHistogram all = new LatencyHistogram(HISTOGRAM_MAX_MICROS);
+        long allErrors = 0;
+        JSONObject commands = new JSONObject();
+        for (Map.Entry<String, CommandStats> entry : stats.entrySet()) {
+            CommandStats commandStats = entry.getValue();
+            if (commandStats.latencies.getCount() == 0) {
+                continue;
+            }
+            all.add(commandStats.latencies);
+            JSONObject errors = new JSONObject();
+            long errorCount = 0;
+            for (Map.Entry<String, LongAdder> error : commandStats.errors.entrySet()) {
+                errors.put(error.getKey(), error.getValue().sum());
+                errorCount += error.getValue().sum();
+            }
+            allErrors += errorCount;
+            JSONObject command = summary(commandStats.latencies, errorCount, seconds);
+            command.put("errors", errors);
+            commands.put(entry.getKey(), command);
+        }
+        report.put("commands", commands);
+        report.put("total", summary(all, allErrors, seconds));
+        return report;
+    }
+
+    private static JSONObject summary(LatencyHistogram latencies, long errorCount, double seconds) {
+        JSONObject summary = new JSONObject();
+        summary.put("requests", latencies.getCount());
+        summary.put("throughput", latencies.getCount() / seconds);
+        summary.put("errorCount", errorCount);
+        summary.put("errorRate", latencies.getCount() == 0 ? 0 : (double) errorCount / latencies.getCount());
+        summary.put("meanMs", latencies.getMean() / 1000);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            summary.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile)
+                    : String.valueOf(percentile)) + "Ms", latencies.getValueAtPercentile(percentile) / 1000.0);
+        }
+        summary.put("maxMs", latencies.getMax() / 1000.0);
+        return summary;
+    }
+
+    /**
+     * Formats a report as a table, one row per command
+     */
+    public String format(JSONObject report) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%n%-18s %8s %9s %8s %9s %9s %9s %9s %9s%n", "Command", "Requests", "Req/s",
+                "Errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        JSONObject commands = report.getJSONObject("commands");
+        for (String command : COMMANDS) {
+            if (commands.has(command)) {
+                text.append(row(command, commands.getJSONObject(command)));
+            }
+        }
+        text.append(row("TOTAL", report.getJSONObject("total")));
+        for (String command : COMMANDS) {
+            if (commands.has(command) && !commands.getJSONObject(command).getJSONObject("errors").isEmpty()) {
+                text.append(String.format("%s errors: %s%n", command, commands.getJSONObject(command).get("errors")));
+            }
+        }
+        text.append(String.format("Target rate %.1f/s, max dispatch lag %.1f ms%s%n", report.getDouble("targetRate"),
+                report.getDouble("maxDispatchLagMs"), report.getDouble("maxDispatchLagMs") > 100
+                        ? " (the generator fell behind its schedule, latencies include that delay)" : ""));
+        return text.toString();
+    }
+
+    private static String row(String name, JSONObject summary) {
+        return String.format("%-18s %8d %9.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                summary.getLong("requests"), summary.getDouble("throughput"), summary.getDouble("errorRate") * 100,
+                summary.getDouble("p50Ms"), summary.getDouble("p90Ms"), summary.getDouble("p99Ms"),
+                summary.getDouble("p99.9Ms"), summary.getDouble("maxMs"));
+    }
+
+    /**
+     * CommandStats - Latencies and error counts of one command
+     */
+    private static final class CommandStats {
+        private final LatencyHistogram latencies = new LatencyHistogram(HISTOGRAM_MAX_MICROS);
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.logging.Level;
@@ -74,7 +75,7 @@ public class Main {
         while (true) {
             System.out.println("\n=== Client Menu ===");
             System.out.println("1. Send single message");
-            System.out.println("2. Test multiple simultaneous connections");
+            System.out.println("2. Run load test");
             System.out.println("3. Exit");
             System.out.print("Choose an option: ");
 
@@ -97,12 +98,24 @@ public class Main {
                         break;
 
                     case 2:
-                        System.out.print("Number of simultaneous connections: ");
-                        int numConnections = Integer.parseInt(scanner.nextLine().trim());
-                        System.out.print("Base name for clients: ");
-                        String baseName = scanner.nextLine();
-
-                        client.testMultipleConnections(numConnections, baseName);
+                        System.out.print("Requests per second: ");
+                        double rate = Double.parseDouble(scanner.nextLine().trim());
+                        System.out.print("Duration in seconds: ");
+                        long seconds = Long.parseLong(scanner.nextLine().trim());
+
+                        LoadGenerator.Workload workload = new LoadGenerator.Workload(rate,
+                                Duration.ofSeconds(seconds), Duration.ofSeconds(2),
+                                LoadGenerator.Workload.parseMix("get=70,create=10,update=15,delete=5"),
+                                8, 20, 1000, 42);
+                        LoadGenerator generator = new LoadGenerator("169.254.7.149", 2020, workload);
+                        try {
+                            System.out.println(generator.format(generator.run()));
+                        } catch (IOException e) {
+                            System.out.println("Error: " + e.getMessage());
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            System.out.println("Load test interrupted");
+                        }
                         break;
 
                     case 3:
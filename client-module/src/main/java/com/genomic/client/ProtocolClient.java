@@ -1,18 +1,64 @@
 package com.genomic.client;
 
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+import com.genomic.common.ProtocolResponse;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Arrays;
 
 /**
  * ProtocolClient - Handles the communication protocol between client and genomic server
  * Provides methods for all CRUD operations using a custom text-based protocol
  * Formats requests and parses responses according to the genomic protocol specification
+ * Responses can be requested in the binary payload encoding, negotiated with a HELLO frame
+ * sent ahead of each request; the methods still return the response in text form
+ * With a pooled TCPClient (see ConnectionPool) requests reuse keep-alive sessions, which
+ * negotiate the encoding of their pool once when they are opened
+ * FASTA bodies too large for one frame are offered by checksum first: if the server already
+ * stores that content the patient is linked to it and the body is never sent
+ * Large FASTA files are sent as resumable uploads, so a dropped connection costs only the
+ * bytes the server has not committed yet
  */
 public class ProtocolClient {
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // Files above this size go through a resumable upload, sent in chunks of UPLOAD_CHUNK_SIZE
+    private static final long RESUMABLE_UPLOAD_THRESHOLD = 16L * 1024 * 1024;
+    private static final long UPLOAD_CHUNK_SIZE = 4L * 1024 * 1024;
+    private static final int MAX_UPLOAD_RESUMES = 3;
+    private static final long RESUME_DELAY_MS = 1_000;
+
+    private final PayloadEncoding encoding;
+
+    /**
+     * Creates a client that receives JSON responses
+     */
+    public ProtocolClient() {
+        this(PayloadEncoding.JSON);
+    }
+
+    /**
+     * Creates a client that asks the server for the given response encoding
+     * @param encoding preferred payload encoding, JSON if the server does not support it
+     */
+    public ProtocolClient(PayloadEncoding encoding) {
+        this.encoding = encoding;
+    }
 
     /**
      * Sends a CREATE_PATIENT request to the server
@@ -25,26 +71,235 @@ public class ProtocolClient {
      * @throws IOException if network communication fails
      */
     public String sendCreatePatient(TCPClient tcpClient, JSONObject metadata, String fastaContent) throws IOException {
-        tcpClient.connect();
+        // Too large for one frame: stream the same bytes instead
+        if (frameLength("CREATE_PATIENT|" + metadata + "|") + frameLength(fastaContent) > ProtocolConstants.MAX_FRAME_BYTES) {
+            byte[] fastaBytes = fastaContent.getBytes(StandardCharsets.UTF_8);
+            String linked = createIfStored(tcpClient, metadata, HexFormat.of().formatHex(sha256().digest(fastaBytes)));
+            if (linked != null) {
+                return linked;
+            }
+            return sendStreamed(tcpClient, "CREATE_PATIENT_STREAM|" + metadata + "|" + fastaBytes.length,
+                    new ByteArrayInputStream(fastaBytes), fastaBytes.length);
+        }
 
-        DataOutputStream dos = tcpClient.getDataOutputStream();
-        DataInputStream dis = tcpClient.getDataInputStream();
+        return exchange(tcpClient, false, (dos, dis) -> {
+            // Format: CREATE_PATIENT|{metadata_json}|{fasta_content}
+            String request = "CREATE_PATIENT|" +
+                    metadata.toString() + "|" +
+                    fastaContent;
 
-        // Format: CREATE_PATIENT|{metadata_json}|{fasta_content}
-        String request = "CREATE_PATIENT|" +
-                metadata.toString() + "|" +
-                fastaContent;
+            System.out.println("Sending CREATE request length: " + request.length());
+            writeRequest(tcpClient, dos, request);
 
-        System.out.println("Sending CREATE request length: " + request.length());
-        dos.writeUTF(request);
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received CREATE response: " + response);
+            return response;
+        });
+    }
 
-        String response = dis.readUTF();
-        System.out.println("Received CREATE response: " + response);
+    /**
+     * Sends a CREATE_PATIENT_STREAM request, streaming the FASTA file from disk
+     * The file is never loaded into memory, so genomes of any size can be sent
+     * It is hashed locally first and offered by checksum, so content the server already
+     * stores is not uploaded again; files above RESUMABLE_UPLOAD_THRESHOLD are sent as a
+     * resumable upload
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param metadata JSON object containing patient demographic and clinical information
+     * @param fastaFile FASTA file to upload
+     * @return server response as a raw string
+     * @throws IOException if the file cannot be read or network communication fails
+     */
+    public String sendCreatePatient(TCPClient tcpClient, JSONObject metadata, Path fastaFile) throws IOException {
+        String checksum = checksum(fastaFile);
+        String linked = createIfStored(tcpClient, metadata, checksum);
+        if (linked != null) {
+            return linked;
+        }
+        long length = Files.size(fastaFile);
+        if (length > RESUMABLE_UPLOAD_THRESHOLD) {
+            String uploaded = sendResumableUpload(tcpClient, metadata, fastaFile, checksum);
+            if (!isUnknownCommand(uploaded)) {
+                return uploaded;
+            }
+        }
+        try (InputStream body = Files.newInputStream(fastaFile)) {
+            return sendStreamed(tcpClient, "CREATE_PATIENT_STREAM|" + metadata + "|" + length, body, length);
+        }
+    }
 
-        tcpClient.closeConnection();
+    /**
+     * Uploads a FASTA file in chunks through an upload session, then creates the patient
+     * The session is opened with the size and checksum of the file; the server answers the
+     * offset to start from, which is past the bytes of an earlier attempt with the same metadata
+     * and file. When a chunk fails on the network the upload is resumed from the offset the
+     * server reports, up to MAX_UPLOAD_RESUMES times. A failed finalization is not retried here:
+     * the patient may exist, and a new call would see DUPLICATE_DOCUMENT
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param metadata JSON object containing patient demographic and clinical information
+     * @param fastaFile FASTA file to upload
+     * @param checksum SHA-256 of the file, see checksum(Path)
+     * @return server response to the finalization, or the error that stopped the upload
+     * @throws IOException if the file cannot be read or network communication keeps failing
+     */
+    public String sendResumableUpload(TCPClient tcpClient, JSONObject metadata, Path fastaFile, String checksum)
+            throws IOException {
+        long length = Files.size(fastaFile);
+        String response = sendRequest(tcpClient, "UPLOAD_OPEN|" + metadata + "|" + length + "|" + checksum);
+        System.out.println("Received UPLOAD_OPEN response: " + response);
+        ProtocolResponse status = parse(response);
+        if (!status.isSuccess()) {
+            return response;
+        }
+        String uploadId = status.data().getString("uploadId");
+        long offset = status.data().getLong("offset");
+
+        int resumes = 0;
+        while (offset < length) {
+            try {
+                if (resumes > 0) {
+                    response = sendRequest(tcpClient, "UPLOAD_STATUS|" + uploadId);
+                    status = parse(response);
+                    if (!status.isSuccess()) {
+                        return response;
+                    }
+                    offset = status.data().getLong("offset");
+                    System.out.println("Resuming upload " + uploadId + " at " + offset + " of " + length + " bytes");
+                }
+                while (offset < length) {
+                    response = sendUploadChunk(tcpClient, uploadId, fastaFile, offset, Math.min(UPLOAD_CHUNK_SIZE, length - offset));
+                    status = parse(response);
+                    if (!status.isSuccess()) {
+                        return response;
+                    }
+                    offset = status.data().getLong("offset");
+                }
+            } catch (IOException e) {
+                if (++resumes > MAX_UPLOAD_RESUMES) {
+                    throw e;
+                }
+                System.out.println("Upload " + uploadId + " interrupted: " + e.getMessage());
+                try {
+                    Thread.sleep(RESUME_DELAY_MS * resumes);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while resuming upload " + uploadId, interrupted);
+                }
+            }
+        }
+
+        response = sendRequest(tcpClient, "UPLOAD_FINALIZE|" + uploadId);
+        System.out.println("Received UPLOAD_FINALIZE response: " + response);
         return response;
     }
 
+    /**
+     * Sends one UPLOAD_CHUNK request with a range of the file as its payload
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param uploadId upload session returned by UPLOAD_OPEN
+     * @param fastaFile FASTA file being uploaded
+     * @param offset position of the first byte of the chunk
+     * @param length number of bytes in the chunk
+     * @return server response with the committed offset
+     * @throws IOException if the file cannot be read or network communication fails
+     */
+    public String sendUploadChunk(TCPClient tcpClient, String uploadId, Path fastaFile, long offset, long length)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(fastaFile)) {
+            InputStream body = Channels.newInputStream(channel.position(offset));
+            return sendStreamed(tcpClient, "UPLOAD_CHUNK|" + uploadId + "|" + offset + "|" + length, body, length);
+        }
+    }
+
+    /**
+     * Sends a CREATE_PATIENT_BY_CHECKSUM request to the server
+     * Creates a patient linked to FASTA content the server already stores, without sending it
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param metadata JSON object containing patient demographic and clinical information
+     * @param checksum SHA-256 of the FASTA content, as hex
+     * @return server response, a SEQUENCE_NOT_FOUND error if the content has to be uploaded
+     * @throws IOException if network communication fails
+     */
+    public String sendCreatePatientByChecksum(TCPClient tcpClient, JSONObject metadata, String checksum)
+            throws IOException {
+        String request = "CREATE_PATIENT_BY_CHECKSUM|" + metadata + "|" + checksum;
+        return exchange(tcpClient, false, (dos, dis) -> {
+            System.out.println("Sending CREATE BY CHECKSUM request: " + checksum);
+            writeRequest(tcpClient, dos, request);
+
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received CREATE BY CHECKSUM response: " + response);
+            return response;
+        });
+    }
+
+    /**
+     * Sends a HAS_SEQUENCE request to the server
+     * Asks whether FASTA content with the given checksum is stored
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param checksum SHA-256 of the FASTA content, as hex
+     * @return server response with present and, if stored, fileSizeBytes
+     * @throws IOException if network communication fails
+     */
+    public String sendHasSequence(TCPClient tcpClient, String checksum) throws IOException {
+        return sendRequest(tcpClient, "HAS_SEQUENCE|" + checksum);
+    }
+
+    /**
+     * SHA-256 of a file as the server computes it over the uploaded bytes, as lowercase hex
+     *
+     * @param fastaFile file to hash
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    public static String checksum(Path fastaFile) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(fastaFile)) {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Offers FASTA content by checksum ahead of an upload
+     * Servers that predate CREATE_PATIENT_BY_CHECKSUM reject it as INVALID_FORMAT; since bad
+     * metadata is rejected the same way, both lead to the regular upload, which reports it
+     * @return the create response, or null if the content has to be uploaded
+     */
+    private String createIfStored(TCPClient tcpClient, JSONObject metadata, String checksum) throws IOException {
+        String response = sendCreatePatientByChecksum(tcpClient, metadata, checksum);
+        if (isUnknownCommand(response)
+                || ProtocolConstants.ERR_SEQUENCE_NOT_FOUND.equals(parse(response).errorCode())) {
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * Whether a response may come from a server that does not know the command
+     * Such servers answer INVALID_FORMAT, like they do for bad input; the caller then falls back
+     * to an older command, which reports bad input again
+     */
+    private static boolean isUnknownCommand(String response) throws IOException {
+        return ProtocolConstants.ERR_INVALID_FORMAT.equals(parse(response).errorCode());
+    }
+
+    private static ProtocolResponse parse(String response) throws IOException {
+        try {
+            return ProtocolResponse.parse(response);
+        } catch (ProtocolException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Sends a GET_PATIENT request to the server
      * Retrieves patient information by patient ID
@@ -55,35 +310,27 @@ public class ProtocolClient {
      * @throws IOException if network communication fails
      */
     public String sendGetPatient(TCPClient tcpClient, String patientId) throws IOException {
-        tcpClient.connect();
+        return exchange(tcpClient, false, (dos, dis) -> {
+            String request = "GET_PATIENT|" + patientId;
 
-        DataOutputStream dos = tcpClient.getDataOutputStream();
-        DataInputStream dis = tcpClient.getDataInputStream();
+            System.out.println("Sending GET request: " + request);
+            writeRequest(tcpClient, dos, request);
 
-        String request = "GET_PATIENT|" + patientId;
-
-        System.out.println("Sending GET request: " + request);
-        dos.writeUTF(request);
-
-        String response = dis.readUTF();
-        System.out.println("Received GET response: " + response);
-
-        tcpClient.closeConnection();
-        return response;
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received GET response: " + response);
+            return response;
+        });
     }
 
     public int sendGetAllPatients(TCPClient tcpClient) throws IOException {
-        tcpClient.connect();
-
-        DataOutputStream dos = tcpClient.getDataOutputStream();
-        DataInputStream dis = tcpClient.getDataInputStream();
+        String response = exchange(tcpClient, false, (dos, dis) -> {
+            String request = "GET_PATIENT_COUNT";
 
-        String request = "GET_PATIENT_COUNT";
+            System.out.println("Sending GET ALL request: " + request);
+            writeRequest(tcpClient, dos, request);
 
-        System.out.println("Sending GET ALL request: " + request);
-        dos.writeUTF(request);
-
-        String response = dis.readUTF();
+            return readResponse(tcpClient, dis);
+        });
         System.out.println("Received GET ALl response: " + response);
 
         String[] parts = response.split(":");
@@ -91,8 +338,6 @@ public class ProtocolClient {
         String cleanNumber = numberStr.replaceAll("[^0-9]", "");
         System.out.println(cleanNumber);
 
-        tcpClient.closeConnection();
-
         return Integer.parseInt(cleanNumber);
     }
 
@@ -110,11 +355,6 @@ public class ProtocolClient {
      */
     public String sendUpdatePatient(TCPClient tcpClient, String patientId,
                                     JSONObject metadata, String fastaContent) throws IOException {
-        tcpClient.connect();
-
-        DataOutputStream dos = tcpClient.getDataOutputStream();
-        DataInputStream dis = tcpClient.getDataInputStream();
-
         // Build request with simple pipe delimiter
         StringBuilder requestBuilder = new StringBuilder();
         requestBuilder.append("UPDATE_PATIENT|")
@@ -123,18 +363,133 @@ public class ProtocolClient {
 
         // Add FASTA only if provided
         if (fastaContent != null && !fastaContent.trim().isEmpty()) {
+            // Too large for one frame: stream the same bytes instead
+            if (frameLength(requestBuilder.toString()) + 1 + frameLength(fastaContent) > ProtocolConstants.MAX_FRAME_BYTES) {
+                byte[] fastaBytes = fastaContent.getBytes(StandardCharsets.UTF_8);
+                return sendStreamed(tcpClient, "UPDATE_PATIENT_STREAM|" + patientId + "|" + metadata + "|" + fastaBytes.length,
+                        new ByteArrayInputStream(fastaBytes), fastaBytes.length);
+            }
             requestBuilder.append("|").append(fastaContent);
         }
 
         String request = requestBuilder.toString();
-        System.out.println("Sending UPDATE request length: " + request.length());
-        dos.writeUTF(request);
+        return exchange(tcpClient, false, (dos, dis) -> {
+            System.out.println("Sending UPDATE request length: " + request.length());
+            writeRequest(tcpClient, dos, request);
+
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received UPDATE response: " + response);
+            return response;
+        });
+    }
 
-        String response = dis.readUTF();
-        System.out.println("Received UPDATE response: " + response);
+    /**
+     * Sends an UPDATE_PATIENT_STREAM request, streaming the new FASTA file from disk
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param patientId unique identifier of the patient to update
+     * @param metadata JSON object containing updated patient information
+     * @param fastaFile new FASTA file to upload
+     * @return server response indicating update status
+     * @throws IOException if the file cannot be read or network communication fails
+     */
+    public String sendUpdatePatient(TCPClient tcpClient, String patientId,
+                                    JSONObject metadata, Path fastaFile) throws IOException {
+        long length = Files.size(fastaFile);
+        try (InputStream body = Files.newInputStream(fastaFile)) {
+            return sendStreamed(tcpClient, "UPDATE_PATIENT_STREAM|" + patientId + "|" + metadata + "|" + length,
+                    body, length);
+        }
+    }
 
-        tcpClient.closeConnection();
-        return response;
+    /**
+     * Downloads the stored FASTA file of a patient
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param patientId unique identifier of the patient
+     * @param target file to write the FASTA to
+     * @return the server header response, or the error response if the download was refused
+     * @throws IOException if network communication fails or the checksum does not match
+     */
+    public String sendGetPatientFasta(TCPClient tcpClient, String patientId, Path target) throws IOException {
+        return sendGetPatientFasta(tcpClient, patientId, 0, -1, target);
+    }
+
+    /**
+     * Downloads a byte range of the stored FASTA file of a patient
+     * The bytes are written to the target as they arrive and verified against the SHA-256 sent
+     * by the server after them; a full download is also checked against the patient checksum
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param patientId unique identifier of the patient
+     * @param offset first byte of the range
+     * @param length number of bytes, or -1 for the rest of the file
+     * @param target file to write the bytes to
+     * @return the server header response, or the error response if the download was refused
+     * @throws IOException if network communication fails or the checksum does not match
+     */
+    public String sendGetPatientFasta(TCPClient tcpClient, String patientId, long offset, long length,
+                                      Path target) throws IOException {
+        String request = "GET_PATIENT_FASTA|" + patientId + "|" + offset + (length >= 0 ? "|" + length : "");
+        return exchange(tcpClient, true, (dos, dis) -> {
+            System.out.println("Sending GET FASTA request: " + request);
+            writeRequest(tcpClient, dos, request);
+            return receiveFasta(tcpClient, dis, patientId, target);
+        });
+    }
+
+    /**
+     * Reads a GET_PATIENT_FASTA answer into the target file and verifies its checksums
+     * @return the header response, or the error response if the download was refused
+     */
+    private String receiveFasta(TCPClient tcpClient, DataInputStream dis, String patientId, Path target)
+            throws IOException {
+        try {
+            PayloadEncoding accepted = readHello(tcpClient, dis);
+            String response = readResponse(dis, accepted);
+            ProtocolResponse header = ProtocolResponse.parse(response);
+            if (!header.isSuccess()) {
+                System.out.println("Received GET FASTA response: " + response);
+                return response;
+            }
+
+            long remaining = header.data().getLong("length");
+            MessageDigest digest = sha256();
+            try (OutputStream out = Files.newOutputStream(target)) {
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                while (remaining > 0) {
+                    int read = dis.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("FASTA download ended " + remaining + " bytes early");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+
+            String checksum = HexFormat.of().formatHex(digest.digest());
+            ProtocolResponse trailer = ProtocolResponse.parse(readResponse(dis, accepted));
+            if (!checksum.equals(trailer.data().optString("rangeChecksum"))) {
+                throw new IOException("FASTA download checksum mismatch");
+            }
+            if (header.data().getLong("length") == header.data().getLong("totalLength")
+                    && !checksum.equals(header.data().optString("checksumFasta"))) {
+                throw new IOException("FASTA download does not match the patient checksum");
+            }
+            System.out.println("Received FASTA of " + patientId + " into " + target + " (checksum verified)");
+            return response;
+        } catch (ProtocolException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     /**
@@ -147,20 +502,151 @@ public class ProtocolClient {
      * @throws IOException if network communication fails
      */
     public String sendDeletePatient(TCPClient tcpClient, String patientId) throws IOException {
-        tcpClient.connect();
+        return exchange(tcpClient, false, (dos, dis) -> {
+            String request = "DELETE_PATIENT|" + patientId;
 
-        DataOutputStream dos = tcpClient.getDataOutputStream();
-        DataInputStream dis = tcpClient.getDataInputStream();
+            System.out.println("Sending DELETE request: " + request);
+            writeRequest(tcpClient, dos, request);
 
-        String request = "DELETE_PATIENT|" + patientId;
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received DELETE response: " + response);
+            return response;
+        });
+    }
 
-        System.out.println("Sending DELETE request: " + request);
-        dos.writeUTF(request);
+    /**
+     * Sends a request that fits in one frame and has no payload, e.g. GET_PATIENT_COUNT or PING
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param request the complete request frame
+     * @return server response as a raw string
+     * @throws IOException if network communication fails
+     */
+    public String sendRequest(TCPClient tcpClient, String request) throws IOException {
+        return exchange(tcpClient, false, (dos, dis) -> {
+            writeRequest(tcpClient, dos, request);
+            return readResponse(tcpClient, dis);
+        });
+    }
 
-        String response = dis.readUTF();
-        System.out.println("Received DELETE response: " + response);
+    /**
+     * Sends a streamed command: the header frame, then exactly length raw bytes of FASTA
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param header command frame ending with the body length
+     * @param body source of the FASTA bytes
+     * @param length number of bytes to send from the body
+     * @return server response as a raw string
+     * @throws IOException if the body ends early or network communication fails
+     */
+    private String sendStreamed(TCPClient tcpClient, String header, InputStream body, long length) throws IOException {
+        return exchange(tcpClient, true, (dos, dis) -> {
+            System.out.println("Sending streamed request: " + header.substring(0, header.indexOf('|')) + ", " + length + " bytes");
+            writeRequest(tcpClient, dos, header);
+
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("FASTA source ended " + remaining + " bytes early");
+                }
+                dos.write(buffer, 0, read);
+                remaining -= read;
+            }
+            dos.flush();
+
+            String response = readResponse(tcpClient, dis);
+            System.out.println("Received streamed response: " + response);
+            return response;
+        });
+    }
 
-        tcpClient.closeConnection();
+    /**
+     * Runs one request/response exchange on a connection of the TCP client
+     * A failed exchange aborts the connection, so a pooled session is never reused mid-response;
+     * a request with a FASTA payload that fails is aborted too, since the server ends the session
+     *
+     * @param tcpClient TCP client instance for server communication
+     * @param carriesPayload whether raw FASTA bytes follow the request or the response
+     * @param exchange writes the request and reads the response
+     * @return server response as a raw string
+     * @throws IOException if network communication fails
+     */
+    private String exchange(TCPClient tcpClient, boolean carriesPayload, Exchange exchange) throws IOException {
+        tcpClient.connect();
+        String response;
+        try {
+            response = exchange.run(tcpClient.getDataOutputStream(), tcpClient.getDataInputStream());
+        } catch (IOException | RuntimeException e) {
+            tcpClient.abortConnection();
+            throw e;
+        }
+        if (carriesPayload && response.startsWith(ProtocolConstants.RESP_ERROR)) {
+            tcpClient.abortConnection();
+        } else {
+            tcpClient.closeConnection();
+        }
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes a request frame, preceded by a HELLO frame when a non-default encoding is wanted
+     * Both frames go out back to back, the HELLO answer is read with the response
+     * A pooled session negotiated its encoding when it was opened and gets no HELLO
+     */
+    private void writeRequest(TCPClient tcpClient, DataOutputStream dos, String request) throws IOException {
+        if (encoding != PayloadEncoding.JSON && !tcpClient.isSession()) {
+            dos.writeUTF(ProtocolConstants.CMD_HELLO + ProtocolConstants.DELIMITER + encoding.getWireName());
+        }
+        dos.writeUTF(request);
+    }
+
+    /**
+     * Reads the response in the encoding the server accepted
+     * @return the response as a STATUS|{json} string
+     */
+    private String readResponse(TCPClient tcpClient, DataInputStream dis) throws IOException {
+        return readResponse(dis, readHello(tcpClient, dis));
+    }
+
+    private String readResponse(DataInputStream dis, PayloadEncoding accepted) throws IOException {
+        return accepted == PayloadEncoding.JSON ? dis.readUTF() : accepted.readResponse(dis).toProtocolString();
+    }
+
+    /**
+     * Reads the answer to the HELLO frame sent by writeRequest, if any
+     * @return the encoding of the responses that follow
+     */
+    private PayloadEncoding readHello(TCPClient tcpClient, DataInputStream dis) throws IOException {
+        if (tcpClient.isSession()) {
+            return tcpClient.getSessionEncoding();
+        }
+        if (encoding == PayloadEncoding.JSON) {
+            return PayloadEncoding.JSON;
+        }
+        ProtocolResponse hello = PayloadEncoding.JSON.readResponse(dis);
+        return hello.isSuccess()
+                ? PayloadEncoding.fromWireName(hello.data().optString("encoding")) : PayloadEncoding.JSON;
+    }
+
+    /**
+     * Encoded length of a string in a writeUTF frame (modified UTF-8)
+     */
+    private static int frameLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    /**
+     * Exchange - Writes one request and reads its response on an open connection
+     */
+    @FunctionalInterface
+    private interface Exchange {
+        String run(DataOutputStream dos, DataInputStream dis) throws IOException;
+    }
+}
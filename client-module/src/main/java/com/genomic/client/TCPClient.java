@@ -1,5 +1,6 @@
 package com.genomic.client;
 
+import com.genomic.common.PayloadEncoding;
 import lombok.Getter;
 
 import javax.net.ssl.SSLSocket;
@@ -10,9 +11,6 @@ import java.io.*;
 import java.net.Socket;
 import java.security.KeyStore;
 import java.util.Properties;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,8 +18,13 @@ import java.util.logging.Logger;
  * TCPClient - Handles secure SSL/TLS communication with the genomic server
  * Manages connection establishment, SSL handshake, and network operations
  * Supports both single messages and concurrent connection testing
+ * All instances share one SSLContext, loaded once, so reconnects to a server can resume the
+ * TLS session. With a ConnectionPool, connect borrows a session from the pool and
+ * closeConnection hands it back instead of closing it
  */
 public class TCPClient {
+    private static SSLContext sharedSslContext;
+
     @Getter
     private DataInputStream dataInputStream;
     @Getter
@@ -30,16 +33,43 @@ public class TCPClient {
     private final int serverPort;
     private Socket clientSocket;
     private final SSLContext sslContext;
+    private final ConnectionPool pool;
+    private ConnectionPool.Connection pooledConnection;
 
     /**
      * Constructor - Initializes TCP client with server connection details
+     * Every request opens and closes its own connection
      * @param serverAddress IP address or hostname of the genomic server
      * @param serverPort port number of the genomic server
      */
     public TCPClient(String serverAddress, int serverPort) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
-        this.sslContext = createSSLContext();
+        this.sslContext = getSharedSSLContext();
+        this.pool = null;
+    }
+
+    /**
+     * Creates a client whose requests run on connections borrowed from a pool
+     * Instances are not thread-safe, give each thread its own client over the shared pool
+     * @param pool the connection pool, see ConnectionPool.newClient
+     */
+    TCPClient(ConnectionPool pool) {
+        this.serverAddress = pool.getServerAddress();
+        this.serverPort = pool.getServerPort();
+        this.sslContext = getSharedSSLContext();
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the SSL context shared by all clients, creating it on first use
+     * @return the shared context, or null if initialization fails
+     */
+    static synchronized SSLContext getSharedSSLContext() {
+        if (sharedSslContext == null) {
+            sharedSslContext = createSSLContext();
+        }
+        return sharedSslContext;
     }
 
     /**
@@ -48,7 +78,7 @@ public class TCPClient {
      *
      * @return Configured SSLContext instance, or null if initialization fails
      */
-    private SSLContext createSSLContext() {
+    private static SSLContext createSSLContext() {
         try {
             Properties p = new Properties();
             try (InputStream input = TCPClient.class.getClassLoader().getResourceAsStream("configuration.properties")) {
@@ -89,9 +119,33 @@ public class TCPClient {
     /**
      * Establishes secure SSL connection to the server
      * Performs SSL handshake and initializes data streams
+     * A pooled client borrows an open session from its pool instead
      * @throws IOException if connection fails or SSL handshake is unsuccessful
      */
     public void connect() throws IOException {
+        if (pool != null) {
+            pooledConnection = pool.acquire();
+            this.dataInputStream = pooledConnection.getInput();
+            this.dataOutputStream = pooledConnection.getOutput();
+            return;
+        }
+
+        SSLSocket sslSocket = openSocket(sslContext, serverAddress, serverPort);
+
+        DataInputStream dataInputStream = new DataInputStream(sslSocket.getInputStream());
+        DataOutputStream dataOutputStream = new DataOutputStream(sslSocket.getOutputStream());
+
+        // Store in instance variables
+        this.clientSocket = sslSocket;
+        this.dataInputStream = dataInputStream;
+        this.dataOutputStream = dataOutputStream;
+    }
+
+    /**
+     * Opens an SSL socket to the server and completes the handshake
+     * @throws IOException if connection fails or SSL handshake is unsuccessful
+     */
+    static SSLSocket openSocket(SSLContext sslContext, String serverAddress, int serverPort) throws IOException {
         if (sslContext == null) {
             throw new IOException("SSL context not initialized");
         }
@@ -103,16 +157,25 @@ public class TCPClient {
         sslSocket.setEnabledCipherSuites(sslSocket.getSupportedCipherSuites());
         sslSocket.startHandshake();
 
-        System.out.println("Connected to server: " + this.serverAddress + ":" + this.serverPort);
+        System.out.println("Connected to server: " + serverAddress + ":" + serverPort);
         System.out.println("SSL handshake completed successfully");
+        return sslSocket;
+    }
 
-        DataInputStream dataInputStream = new DataInputStream(sslSocket.getInputStream());
-        DataOutputStream dataOutputStream = new DataOutputStream(sslSocket.getOutputStream());
+    /**
+     * Whether the current connection is a pooled session that already negotiated its encoding
+     * Requests on it must not send their own HELLO frame
+     */
+    public boolean isSession() {
+        return pooledConnection != null && pooledConnection.isNegotiated();
+    }
 
-        // Store in instance variables
-        this.clientSocket = sslSocket;
-        this.dataInputStream = dataInputStream;
-        this.dataOutputStream = dataOutputStream;
+    /**
+     * Encoding negotiated by the current pooled session
+     * @return the encoding, or null if the connection is not a negotiated session
+     */
+    public PayloadEncoding getSessionEncoding() {
+        return isSession() ? pooledConnection.getEncoding() : null;
     }
 
     /**
@@ -133,50 +196,17 @@ public class TCPClient {
         return response;
     }
 
-    /**
-     * Tests multiple simultaneous connections to the server
-     * Useful for load testing and concurrency verification
-     * @param numConnections number of concurrent connections to test
-     * @param baseName base name for test client identification
-     */
-    public void testMultipleConnections(int numConnections, String baseName) {
-        ExecutorService executor = Executors.newFixedThreadPool(numConnections);
-        CountDownLatch latch = new CountDownLatch(numConnections);
-
-        System.out.println("Testing " + numConnections + " simultaneous connections...");
-
-        for (int i = 0; i < numConnections; i++) {
-            final int clientId = i + 1;
-            executor.execute(() -> {
-                try {
-                    // Create a new client instance for each connection
-                    TCPClient client = new TCPClient(serverAddress, serverPort);
-                    String response = client.sendMessage(baseName + clientId, "Test" + clientId);
-                    System.out.println("Client " + clientId + " received: " + response);
-                } catch (IOException e) {
-                    System.out.println("Client " + clientId + " error: " + e.getMessage());
-                } finally {
-                    latch.countDown();
-                }
-            });
-        }
-
-        try {
-            latch.await(); // Wait for all threads to complete
-            System.out.println("All " + numConnections + " connections completed successfully!");
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.out.println("Test interrupted");
-        } finally {
-            executor.shutdown();
-        }
-    }
-
     /**
      * Safely closes all network connections and streams
      * Ensures proper resource cleanup to prevent memory leaks
+     * A pooled session is handed back to the pool for the next request instead
      */
     public void closeConnection() {
+        if (pooledConnection != null) {
+            pool.release(pooledConnection);
+            pooledConnection = null;
+            return;
+        }
         try {
             if (this.dataInputStream != null) this.dataInputStream.close();
             if (this.dataOutputStream != null) this.dataOutputStream.close();
@@ -185,4 +215,17 @@ public class TCPClient {
             System.out.println("Error closing connection: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Closes the connection after a failed exchange, a pooled session is discarded
+     * rather than reused since the stream may be left in the middle of a response
+     */
+    public void abortConnection() {
+        if (pooledConnection != null) {
+            pool.discard(pooledConnection);
+            pooledConnection = null;
+            return;
+        }
+        closeConnection();
+    }
+}
@@ -0,0 +1,150 @@
+package com.genomic.common;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * PayloadEncoding - Wire encoding of responses, negotiated per connection with HELLO
+ * JSON is the default text frame (STATUS|{json}). BINARY frames are a 4-byte length followed by
+ * a status byte and either a schema ID with the schema's field values, or the error code and
+ * message, so no JSONObject has to be built or serialized for a typed payload. An error frame may
+ * end with a retry-after hint in milliseconds, which readers that predate it skip
+ */
+public enum PayloadEncoding {
+    JSON("json"),
+    BINARY("binary");
+
+    private static final int STATUS_SUCCESS = 0;
+    private static final int STATUS_ERROR = 1;
+
+    private final String wireName;
+
+    PayloadEncoding(String wireName) {
+        this.wireName = wireName;
+    }
+
+    /**
+     * Name used in HELLO frames
+     */
+    public String getWireName() {
+        return wireName;
+    }
+
+    /**
+     * Resolves the encoding asked for in a HELLO frame
+     * @param wireName requested encoding name
+     * @return the encoding, or JSON if the name is not supported
+     */
+    public static PayloadEncoding fromWireName(String wireName) {
+        for (PayloadEncoding encoding : values()) {
+            if (encoding.wireName.equalsIgnoreCase(wireName)) {
+                return encoding;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Writes a response frame
+     * @param response the response
+     * @param out connection output
+     * @throws IOException if writing fails
+     */
+    public void writeResponse(ProtocolResponse response, DataOutputStream out) throws IOException {
+        if (this == JSON) {
+            out.writeUTF(response.toProtocolString());
+            return;
+        }
+        if (!response.isSuccess()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream frame = new DataOutputStream(buffer);
+            frame.writeByte(STATUS_ERROR);
+            PayloadSchema.writeString(frame, response.errorCode());
+            PayloadSchema.writeString(frame, response.errorMessage());
+            if (response.retryAfterMillis() > 0) {
+                frame.writeLong(response.retryAfterMillis());
+            }
+            writeFrame(buffer, out);
+            return;
+        }
+        JSONObject data = response.data() != null ? response.data() : new JSONObject();
+        writeSuccess(PayloadSchema.match(data), data, out);
+    }
+
+    /**
+     * Writes a success frame straight from a typed object, without building the JSON in binary mode
+     * @param schema layout of the payload
+     * @param value source object
+     * @param out connection output
+     * @throws IOException if writing fails
+     */
+    public <T> void writeSuccess(PayloadSchema<T> schema, T value, DataOutputStream out) throws IOException {
+        out.write(encodeSuccess(schema, value));
+        out.flush();
+    }
+
+    /**
+     * Encodes a complete success frame, ready to be written to a connection as is
+     * @param schema layout of the payload
+     * @param value source object
+     * @return the frame bytes, including the length prefix
+     * @throws IOException if the payload cannot be encoded, e.g. a JSON frame over 64 KB
+     */
+    public <T> byte[] encodeSuccess(PayloadSchema<T> schema, T value) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(buffer);
+        if (this == JSON) {
+            frame.writeUTF(ProtocolResponse.success(schema.toJson(value)).toProtocolString());
+            return buffer.toByteArray();
+        }
+        frame.writeInt(0); // length placeholder
+        frame.writeByte(STATUS_SUCCESS);
+        frame.writeByte(schema.getId());
+        schema.write(value, frame);
+        byte[] bytes = buffer.toByteArray();
+        ByteBuffer.wrap(bytes).putInt(0, bytes.length - Integer.BYTES);
+        return bytes;
+    }
+
+    /**
+     * Reads a response frame
+     * @param in connection input
+     * @return the decoded response, with the same data the JSON encoding would carry
+     * @throws IOException if reading fails or the frame is malformed
+     */
+    public ProtocolResponse readResponse(DataInputStream in) throws IOException {
+        if (this == JSON) {
+            try {
+                return ProtocolResponse.parse(in.readUTF());
+            } catch (ProtocolException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        int length = in.readInt();
+        if (length < 1) {
+            throw new IOException("Invalid binary frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (frame.readByte() == STATUS_ERROR) {
+            String errorCode = PayloadSchema.readString(frame);
+            String errorMessage = PayloadSchema.readString(frame);
+            long retryAfterMillis = frame.available() >= Long.BYTES ? frame.readLong() : 0;
+            return ProtocolResponse.error(errorCode, errorMessage, retryAfterMillis);
+        }
+        return ProtocolResponse.success(PayloadSchema.forId(frame.readUnsignedByte()).read(frame));
+    }
+
+    private static void writeFrame(ByteArrayOutputStream buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        out.flush();
+    }
+}
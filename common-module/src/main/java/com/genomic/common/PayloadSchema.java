@@ -0,0 +1,187 @@
+package com.genomic.common;
+
+import com.genomic.common.model.Patient;
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * PayloadSchema - Field layout of a response payload in the binary encoding
+ * A schema lists typed fields in a fixed order, so the binary form carries only a schema ID
+ * and the values, no field names. Encoders read the values straight from the source object
+ * (a Patient, or a JSONObject for the small message payloads); decoders always produce the
+ * same JSONObject the JSON encoding would have carried, so callers see no difference
+ * @param <T> type of the object the payload is encoded from
+ */
+public final class PayloadSchema<T> {
+    private static final Map<Integer, PayloadSchema<?>> BY_ID = new HashMap<>();
+
+    /**
+     * Any payload without a dedicated schema, carried as JSON text
+     */
+    public static final PayloadSchema<JSONObject> JSON = new PayloadSchema<>(0,
+            List.of(new Field<>("json", Type.STRING, JSONObject::toString)));
+
+    public static final PayloadSchema<JSONObject> MESSAGE = new PayloadSchema<>(1,
+            List.of(jsonField("message", Type.STRING)));
+
+    public static final PayloadSchema<JSONObject> CREATED = new PayloadSchema<>(2,
+            List.of(jsonField("patientId", Type.STRING), jsonField("message", Type.STRING)));
+
+    public static final PayloadSchema<Patient> PATIENT = new PayloadSchema<>(3, List.of(
+            new Field<>("patientId", Type.STRING, Patient::getPatientId),
+            new Field<>("fullName", Type.STRING, Patient::getFullName),
+            new Field<>("documentId", Type.STRING, Patient::getDocumentId),
+            new Field<>("age", Type.INT, Patient::getAge),
+            new Field<>("sex", Type.STRING, Patient::getSex),
+            new Field<>("email", Type.STRING, Patient::getEmail),
+            new Field<>("registrationDate", Type.LONG, Patient::getRegistrationDate),
+            new Field<>("clinicalNotes", Type.STRING, Patient::getClinicalNotes),
+            new Field<>("checksumFasta", Type.STRING, Patient::getChecksumFasta),
+            new Field<>("fileSizeBytes", Type.LONG, Patient::getFileSizeBytes),
+            new Field<>("active", Type.BOOLEAN, Patient::isActive),
+            new Field<>("fastaFilename", Type.STRING, Patient::getFastaFilename)));
+
+    private final int id;
+    private final List<Field<T>> fields;
+
+    private PayloadSchema(int id, List<Field<T>> fields) {
+        this.id = id;
+        this.fields = fields;
+        BY_ID.put(id, this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Looks up a schema by the ID found in a binary payload
+     * @throws IOException if no schema has that ID
+     */
+    public static PayloadSchema<?> forId(int id) throws IOException {
+        PayloadSchema<?> schema = BY_ID.get(id);
+        if (schema == null) {
+            throw new IOException("Unknown payload schema: " + id);
+        }
+        return schema;
+    }
+
+    /**
+     * Picks the schema whose fields are exactly the keys of a JSON payload
+     * @return the matching schema, or JSON if none matches
+     */
+    public static PayloadSchema<JSONObject> match(JSONObject data) {
+        for (PayloadSchema<JSONObject> schema : List.of(MESSAGE, CREATED)) {
+            if (schema.fields.size() == data.length()
+                    && schema.fields.stream().allMatch(field -> data.has(field.name()))) {
+                return schema;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Writes the field values of an object in schema order
+     * @param value source object
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void write(T value, DataOutput out) throws IOException {
+        for (Field<T> field : fields) {
+            Object fieldValue = field.accessor().apply(value);
+            switch (field.type()) {
+                case STRING -> writeString(out, fieldValue == null || fieldValue == JSONObject.NULL ? null : fieldValue.toString());
+                case INT -> out.writeInt(fieldValue instanceof Number number ? number.intValue() : 0);
+                case LONG -> out.writeLong(fieldValue instanceof Instant instant ? instant.toEpochMilli()
+                        : fieldValue instanceof Number number ? number.longValue() : 0);
+                case BOOLEAN -> out.writeBoolean(Boolean.TRUE.equals(fieldValue));
+            }
+        }
+    }
+
+    /**
+     * Reads field values written by write
+     * @param in source positioned after the schema ID
+     * @return the payload as the JSON encoding would carry it
+     * @throws IOException if reading fails
+     */
+    public JSONObject read(DataInput in) throws IOException {
+        if (this == JSON) {
+            return new JSONObject(readString(in));
+        }
+        JSONObject json = new JSONObject();
+        for (Field<T> field : fields) {
+            switch (field.type()) {
+                case STRING -> json.put(field.name(), readString(in));
+                case INT -> json.put(field.name(), in.readInt());
+                case LONG -> json.put(field.name(), in.readLong());
+                case BOOLEAN -> json.put(field.name(), in.readBoolean());
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Builds the JSON form of an object, as sent by the JSON encoding
+     */
+    public JSONObject toJson(T value) {
+        if (this == JSON) {
+            return (JSONObject) value;
+        }
+        JSONObject json = new JSONObject();
+        for (Field<T> field : fields) {
+            Object fieldValue = field.accessor().apply(value);
+            json.put(field.name(), fieldValue instanceof Instant instant ? instant.toEpochMilli() : fieldValue);
+        }
+        return json;
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length (-1 for null) and bytes
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Field<JSONObject> jsonField(String name, Type type) {
+        return new Field<>(name, type, json -> json.opt(name));
+    }
+
+    /**
+     * Type - Wire types of schema fields
+     */
+    public enum Type {
+        STRING, INT, LONG, BOOLEAN
+    }
+
+    /**
+     * Field - One named, typed value of a schema and how to read it from the source object
+     */
+    public record Field<T>(String name, Type type, Function<T, Object> accessor) {
+    }
+}
@@ -7,6 +7,8 @@ package com.genomic.common;
  */
 public class ProtocolConstants {
     public static final String DELIMITER = "|";
+    // writeUTF frames carry at most 65535 encoded bytes, larger FASTA bodies are streamed
+    public static final int MAX_FRAME_BYTES = 65535;
 
     // Commands
     public static final String CMD_CREATE_PATIENT = "CREATE_PATIENT";
@@ -14,6 +16,31 @@ public class ProtocolConstants {
     public static final String CMD_UPDATE_PATIENT = "UPDATE_PATIENT";
     public static final String CMD_DELETE_PATIENT = "DELETE_PATIENT";
     public static final String CMD_GET_PATIENT_COUNT = "GET_PATIENT_COUNT";
+    // GET_PATIENT_FASTA|<id>[|<offset>[|<length>]]: header response, raw FASTA bytes, trailer response
+    public static final String CMD_GET_PATIENT_FASTA = "GET_PATIENT_FASTA";
+    // Streamed variants: the frame ends with |<byteLength> and the raw FASTA bytes follow it
+    public static final String CMD_CREATE_PATIENT_STREAM = "CREATE_PATIENT_STREAM";
+    public static final String CMD_UPDATE_PATIENT_STREAM = "UPDATE_PATIENT_STREAM";
+    // HAS_SEQUENCE|<sha256>: whether FASTA content with this checksum is stored, and its size
+    public static final String CMD_HAS_SEQUENCE = "HAS_SEQUENCE";
+    // CREATE_PATIENT_BY_CHECKSUM|{metadata}|<sha256>: creates a patient linked to stored content,
+    // SEQUENCE_NOT_FOUND if there is none and the FASTA has to be uploaded
+    public static final String CMD_CREATE_PATIENT_BY_CHECKSUM = "CREATE_PATIENT_BY_CHECKSUM";
+    // Resumable upload: UPLOAD_OPEN|{metadata}|<byteLength>|<sha256> answers an uploadId and the
+    // committed offset, UPLOAD_CHUNK|<uploadId>|<offset>|<byteLength> is followed by raw bytes,
+    // UPLOAD_STATUS|<uploadId> reports the committed offset, UPLOAD_FINALIZE|<uploadId> creates the patient
+    public static final String CMD_UPLOAD_OPEN = "UPLOAD_OPEN";
+    public static final String CMD_UPLOAD_CHUNK = "UPLOAD_CHUNK";
+    public static final String CMD_UPLOAD_STATUS = "UPLOAD_STATUS";
+    public static final String CMD_UPLOAD_FINALIZE = "UPLOAD_FINALIZE";
+    // Optional first frame of a connection: HELLO|<encoding>[|keep-alive], answered in JSON with the
+    // encoding in use and whether the connection stays open for further requests
+    public static final String CMD_HELLO = "HELLO";
+    public static final String KEEP_ALIVE = "keep-alive";
+    // Liveness check, answered with a message, used by pooled clients before reusing an idle connection
+    public static final String CMD_PING = "PING";
+    // Live server statistics: requests, errors and latency per command, connections, executor, caches
+    public static final String CMD_GET_SERVER_STATS = "GET_SERVER_STATS";
 
     // Responses
     public static final String RESP_SUCCESS = "SUCCESS";
@@ -24,5 +51,10 @@ public class ProtocolConstants {
     public static final String ERR_PATIENT_NOT_FOUND = "PATIENT_NOT_FOUND";
     public static final String ERR_DUPLICATE_DOCUMENT = "DUPLICATE_DOCUMENT";
     public static final String ERR_INVALID_FASTA = "INVALID_FASTA";
+    public static final String ERR_SEQUENCE_NOT_FOUND = "SEQUENCE_NOT_FOUND";
+    public static final String ERR_UPLOAD_NOT_FOUND = "UPLOAD_NOT_FOUND";
+    public static final String ERR_CHECKSUM_MISMATCH = "CHECKSUM_MISMATCH";
     public static final String ERR_SERVER_ERROR = "SERVER_ERROR";
+    // The server is at capacity for this kind of request; retry after the hinted delay
+    public static final String ERR_SERVER_BUSY = "SERVER_BUSY";
 }
@@ -1,22 +1,47 @@
 package com.genomic.common;
 
+import com.genomic.common.util.Logger;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.json.JSONObject;
 
-import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * ProtocolRequest - Parses and validates genomic protocol request messages
  * Handles the parsing of raw protocol messages into structured request objects
  * Supports all CRUD operations with proper validation and error handling
+ * Parsing walks the frame by offsets: the command, patient ID and metadata are sliced out,
+ * while the FASTA body is only located and copied out on first access, so the parse cost
+ * does not depend on the size of the genome
  */
 @Getter
 public class ProtocolRequest {
+    private static final String END_MARKER = "END";
+    private static final int CHECKSUM_HEX_LENGTH = 64;
+
     // Getters
     private String command;
     private String patientId;
     private JSONObject metadata;
+    @Getter(AccessLevel.NONE)
     private String fastaContent;
+    private long fastaLength = -1; // byte length of a streamed FASTA body or chunk, or of the FASTA an upload opens; -1 if none
+    private String checksum; // SHA-256 of FASTA content, lowercase hex
+    private String uploadId; // resumable upload addressed by UPLOAD_CHUNK, _STATUS and _FINALIZE
+    private long uploadOffset; // position of the first byte of an UPLOAD_CHUNK
+    private String encoding; // payload encoding asked for by HELLO
+    private boolean keepAlive; // HELLO asked for a persistent session
+    private long rangeOffset; // first byte of a GET_PATIENT_FASTA range
+    private long rangeLength = -1; // bytes of a GET_PATIENT_FASTA range, -1 for the rest of the file
+
+    // FASTA body inside the raw frame, sliced lazily by getFastaContent()
+    @Getter(AccessLevel.NONE)
+    private String rawRequest;
+    @Getter(AccessLevel.NONE)
+    private int fastaStart = -1;
+    @Getter(AccessLevel.NONE)
+    private int fastaEnd;
 
     /**
      * Constructs a ProtocolRequest by parsing a raw protocol message
@@ -27,6 +52,17 @@ public class ProtocolRequest {
         parseRequest(rawRequest);
     }
 
+    /**
+     * FASTA content sent inline in the frame
+     * @return the FASTA text, or null if the request carries none
+     */
+    public String getFastaContent() {
+        if (fastaContent == null && fastaStart >= 0) {
+            fastaContent = rawRequest.substring(fastaStart, fastaEnd);
+        }
+        return fastaContent;
+    }
+
     /**
      * Parses the raw request string into structured components
      * Validates command format, required parameters, and data integrity
@@ -35,87 +71,298 @@ public class ProtocolRequest {
      */
     private void parseRequest(String rawRequest) throws ProtocolException {
         try {
-            System.out.println("Parsing raw request: " + rawRequest);
-
-            // Remove any trailing END markers or whitespace
-            String cleanRequest = rawRequest.replace("\nEND\n", "").replace("END", "").trim();
-            System.out.println("Cleaned request: " + cleanRequest);
-
-            String[] parts = cleanRequest.split("\\" + ProtocolConstants.DELIMITER, 3);
+            this.rawRequest = rawRequest;
 
-            if (parts.length < 1) {
+            // Bounds of the request without surrounding whitespace or a trailing END marker line
+            int start = skipWhitespace(rawRequest, 0);
+            int end = trimEnd(rawRequest, start, rawRequest.length());
+            int marker = end - END_MARKER.length();
+            if (marker > start && rawRequest.startsWith(END_MARKER, marker) && rawRequest.charAt(marker - 1) == '\n') {
+                end = trimEnd(rawRequest, start, marker);
+            }
+            if (start == end) {
                 throw new ProtocolException("Empty request", ProtocolConstants.ERR_INVALID_FORMAT);
             }
 
-            this.command = parts[0].trim();
-            System.out.println("Command: " + command);
+            int commandEnd = fieldEnd(rawRequest, start, end);
+            this.command = rawRequest.substring(start, commandEnd).trim();
+            int position = Math.min(commandEnd + 1, end);
 
             switch (command) {
-                case ProtocolConstants.CMD_CREATE_PATIENT:
-                    if (parts.length < 3) {
+                case ProtocolConstants.CMD_CREATE_PATIENT: {
+                    int metadataEnd = parseMetadata(rawRequest, position, end,
+                            "CREATE_PATIENT requires metadata and FASTA");
+                    if (metadataEnd >= end) {
                         throw new ProtocolException("CREATE_PATIENT requires metadata and FASTA",
                                 ProtocolConstants.ERR_INVALID_FORMAT);
                     }
-                    this.metadata = new JSONObject(parts[1]);
-                    this.fastaContent = parts[2];
-                    System.out.println("Metadata: " + metadata);
-                    System.out.println("FASTA content length: " + fastaContent.length());
+                    sliceFasta(metadataEnd + 1, end);
                     break;
+                }
 
-                case ProtocolConstants.CMD_GET_PATIENT:
-                    if (parts.length < 2) {
-                        throw new ProtocolException("GET_PATIENT requires patient ID",
-                                ProtocolConstants.ERR_INVALID_FORMAT);
+                case ProtocolConstants.CMD_CREATE_PATIENT_STREAM: {
+                    int metadataEnd = parseMetadata(rawRequest, position, end,
+                            "CREATE_PATIENT_STREAM requires metadata and FASTA length");
+                    this.fastaLength = parseLength(rawRequest, metadataEnd, end,
+                            "CREATE_PATIENT_STREAM requires metadata and FASTA length");
+                    break;
+                }
+
+                case ProtocolConstants.CMD_UPDATE_PATIENT_STREAM: {
+                    String message = "UPDATE_PATIENT_STREAM requires patient ID, metadata and FASTA length";
+                    int idEnd = parsePatientId(rawRequest, position, end, message);
+                    int metadataEnd = parseMetadata(rawRequest, idEnd + 1, end, message);
+                    this.fastaLength = parseLength(rawRequest, metadataEnd, end, message);
+                    break;
+                }
+
+                case ProtocolConstants.CMD_CREATE_PATIENT_BY_CHECKSUM: {
+                    String message = "CREATE_PATIENT_BY_CHECKSUM requires metadata and checksum";
+                    int metadataEnd = parseMetadata(rawRequest, position, end, message);
+                    if (metadataEnd >= end) {
+                        throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
                     }
-                    this.patientId = parts[1].trim();
-                    System.out.println("Patient ID: " + patientId);
+                    parseChecksum(rawRequest, metadataEnd + 1, end);
                     break;
+                }
 
-                case ProtocolConstants.CMD_UPDATE_PATIENT:
-                    if (parts.length < 3) {
-                        System.out.println("UPDATE_PATIENT ERROR - Expected at least 3 parts, got " + parts.length);
-                        for (int i = 0; i < parts.length; i++) {
-                            System.out.println("  Part " + i + ": '" + parts[i] + "'");
-                        }
-                        throw new ProtocolException("UPDATE_PATIENT requires patient ID and metadata",
-                                ProtocolConstants.ERR_INVALID_FORMAT);
+                case ProtocolConstants.CMD_UPLOAD_OPEN: {
+                    String message = "UPLOAD_OPEN requires metadata, FASTA length and checksum";
+                    int metadataEnd = parseMetadata(rawRequest, position, end, message);
+                    if (metadataEnd >= end) {
+                        throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
                     }
+                    int lengthEnd = fieldEnd(rawRequest, metadataEnd + 1, end);
+                    this.fastaLength = parseLength(rawRequest, metadataEnd, lengthEnd, message);
+                    if (lengthEnd >= end) {
+                        throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
+                    }
+                    parseChecksum(rawRequest, lengthEnd + 1, end);
+                    break;
+                }
+
+                case ProtocolConstants.CMD_UPLOAD_CHUNK: {
+                    String message = "UPLOAD_CHUNK requires upload ID, offset and length";
+                    int idEnd = parseUploadId(rawRequest, position, end, message);
+                    int offsetEnd = fieldEnd(rawRequest, idEnd + 1, end);
+                    this.uploadOffset = parseLength(rawRequest, idEnd, offsetEnd, message);
+                    this.fastaLength = parseLength(rawRequest, offsetEnd, end, message);
+                    break;
+                }
+
+                case ProtocolConstants.CMD_UPLOAD_STATUS:
+                case ProtocolConstants.CMD_UPLOAD_FINALIZE:
+                    parseUploadId(rawRequest, position, end, command + " requires upload ID");
+                    break;
+
+                case ProtocolConstants.CMD_HAS_SEQUENCE:
+                    parseChecksum(rawRequest, position, end);
+                    break;
 
-                    this.patientId = parts[1].trim();
-                    this.metadata = new JSONObject(parts[2]);
+                case ProtocolConstants.CMD_GET_PATIENT:
+                    parsePatientId(rawRequest, position, end, "GET_PATIENT requires patient ID");
+                    break;
 
-                    // FASTA is optional - if provided, it will be in part 3
-                    this.fastaContent = parts.length > 3 ? parts[3] : null;
+                case ProtocolConstants.CMD_UPDATE_PATIENT: {
+                    String message = "UPDATE_PATIENT requires patient ID and metadata";
+                    int idEnd = parsePatientId(rawRequest, position, end, message);
+                    int metadataEnd = parseMetadata(rawRequest, idEnd + 1, end, message);
 
-                    System.out.println("UPDATE - Patient ID: " + patientId);
-                    System.out.println("UPDATE - Metadata: " + metadata.toString());
-                    System.out.println("UPDATE - FASTA provided: " + (fastaContent != null));
-                    if (fastaContent != null) {
-                        System.out.println("UPDATE - FASTA length: " + fastaContent.length());
+                    // FASTA is optional - if provided, it follows the metadata
+                    if (metadataEnd < end) {
+                        sliceFasta(metadataEnd + 1, end);
                     }
                     break;
+                }
 
                 case ProtocolConstants.CMD_DELETE_PATIENT:
-                    if (parts.length < 2) {
-                        throw new ProtocolException("DELETE_PATIENT requires patient ID",
+                    parsePatientId(rawRequest, position, end, "DELETE_PATIENT requires patient ID");
+                    break;
+
+                case ProtocolConstants.CMD_GET_PATIENT_FASTA: {
+                    int idEnd = parsePatientId(rawRequest, position, end, "GET_PATIENT_FASTA requires patient ID");
+                    // Optional byte range: offset, then length
+                    if (idEnd < end) {
+                        int offsetEnd = fieldEnd(rawRequest, idEnd + 1, end);
+                        this.rangeOffset = Long.parseLong(rawRequest.substring(idEnd + 1, offsetEnd).trim());
+                        if (offsetEnd < end) {
+                            this.rangeLength = Long.parseLong(rawRequest.substring(offsetEnd + 1, end).trim());
+                        }
+                    }
+                    if (rangeOffset < 0 || rangeLength < -1) {
+                        throw new ProtocolException("GET_PATIENT_FASTA range must not be negative",
                                 ProtocolConstants.ERR_INVALID_FORMAT);
                     }
-                    this.patientId = parts[1].trim();
                     break;
+                }
 
                 case ProtocolConstants.CMD_GET_PATIENT_COUNT:
-                    this.patientId = parts[0].trim();
+                    this.patientId = command;
                     break;
 
+                case ProtocolConstants.CMD_PING:
+                case ProtocolConstants.CMD_GET_SERVER_STATS:
+                    break;
+
+                case ProtocolConstants.CMD_HELLO: {
+                    int encodingEnd = fieldEnd(rawRequest, position, end);
+                    this.encoding = rawRequest.substring(position, encodingEnd).trim();
+                    this.keepAlive = encodingEnd < end
+                            && ProtocolConstants.KEEP_ALIVE.equals(rawRequest.substring(encodingEnd + 1, end).trim());
+                    break;
+                }
+
                 default:
                     throw new ProtocolException("Unknown command: " + command,
                             ProtocolConstants.ERR_INVALID_FORMAT);
             }
 
         } catch (Exception e) {
-            System.err.println("Parse error: " + e.getMessage());
+            Logger.debug("Parse error: " + e.getMessage());
             throw new ProtocolException("Failed to parse request: " + e.getMessage(),
                     ProtocolConstants.ERR_INVALID_FORMAT);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether a FASTA body of getFastaLength() bytes follows this request on the connection
+     */
+    public boolean hasFastaStream() {
+        return fastaLength >= 0 && !ProtocolConstants.CMD_UPLOAD_OPEN.equals(command);
+    }
+
+    /**
+     * Reads the patient ID field
+     * @return offset of the delimiter after the field, or end
+     */
+    private int parsePatientId(String raw, int start, int end, String message) throws ProtocolException {
+        int idEnd = fieldEnd(raw, start, end);
+        this.patientId = raw.substring(start, idEnd).trim();
+        if (patientId.isEmpty()) {
+            throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        return idEnd;
+    }
+
+    /**
+     * Reads the upload ID field
+     * @return offset of the delimiter after the field, or end
+     */
+    private int parseUploadId(String raw, int start, int end, String message) throws ProtocolException {
+        int idEnd = fieldEnd(raw, start, end);
+        this.uploadId = raw.substring(Math.min(start, idEnd), idEnd).trim();
+        if (uploadId.isEmpty()) {
+            throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        return idEnd;
+    }
+
+    /**
+     * Reads the JSON metadata object, which may itself contain delimiters inside strings
+     * @return offset of the delimiter after the object, or end
+     */
+    private int parseMetadata(String raw, int start, int end, String message) throws ProtocolException {
+        int objectStart = skipWhitespace(raw, Math.min(start, end));
+        if (objectStart >= end || raw.charAt(objectStart) != '{') {
+            throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        int objectEnd = jsonObjectEnd(raw, objectStart, end);
+        this.metadata = new JSONObject(raw.substring(objectStart, objectEnd));
+
+        int next = skipWhitespace(raw, objectEnd);
+        if (next < end && raw.charAt(next) != ProtocolConstants.DELIMITER.charAt(0)) {
+            throw new ProtocolException("Unexpected data after metadata", ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        return Math.min(next, end);
+    }
+
+    /**
+     * Reads the non-negative number between a delimiter and end, e.g. the trailing byte length
+     * of a streamed command
+     */
+    private static long parseLength(String raw, int delimiter, int end, String message) throws ProtocolException {
+        if (delimiter >= end) {
+            throw new ProtocolException(message, ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        long length = Long.parseLong(raw.substring(delimiter + 1, end).trim());
+        if (length < 0) {
+            throw new ProtocolException("Lengths and offsets must not be negative", ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        return length;
+    }
+
+    /**
+     * Reads a SHA-256 checksum field, accepting either hex case but only ASCII digits and letters
+     */
+    private void parseChecksum(String raw, int start, int end) throws ProtocolException {
+        String value = raw.substring(Math.min(start, end), end).trim().toLowerCase(Locale.ROOT);
+        if (value.length() != CHECKSUM_HEX_LENGTH || !value.chars().allMatch(ProtocolRequest::isHexDigit)) {
+            throw new ProtocolException(command + " requires a SHA-256 checksum as 64 hex digits",
+                    ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        this.checksum = value;
+    }
+
+    private void sliceFasta(int start, int end) {
+        this.fastaStart = start;
+        this.fastaEnd = end;
+    }
+
+    /**
+     * Offset just past the closing brace of the JSON object starting at start
+     */
+    private static int jsonObjectEnd(String raw, int start, int end) throws ProtocolException {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return i + 1;
+            }
+        }
+        throw new ProtocolException("Unterminated metadata object", ProtocolConstants.ERR_INVALID_FORMAT);
+    }
+
+    private static boolean isHexDigit(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    /**
+     * Offset of the next delimiter between start and end, or end if the field runs to it
+     */
+    private static int fieldEnd(String raw, int start, int end) {
+        char delimiter = ProtocolConstants.DELIMITER.charAt(0);
+        for (int i = start; i < end; i++) {
+            if (raw.charAt(i) == delimiter) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(String raw, int start) {
+        int i = start;
+        while (i < raw.length() && raw.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String raw, int start, int end) {
+        int i = end;
+        while (i > start && raw.charAt(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+}
@@ -10,8 +10,10 @@ import org.json.JSONObject;
  * @param data JSON data payload for successful responses
  * @param errorCode machine-readable error code for error responses
  * @param errorMessage human-readable error description for error responses
+ * @param retryAfterMillis how long the client should wait before retrying an error response, 0 for no hint
  */
-public record ProtocolResponse(String status, JSONObject data, String errorCode, String errorMessage) {
+public record ProtocolResponse(String status, JSONObject data, String errorCode, String errorMessage,
+                               long retryAfterMillis) {
 
     /**
      * Creates a successful response with data payload
@@ -19,7 +21,7 @@ public record ProtocolResponse(String status, JSONObject data, String errorCode,
      * @return ProtocolResponse with SUCCESS status and provided data
      */
     public static ProtocolResponse success(JSONObject data) {
-        return new ProtocolResponse(ProtocolConstants.RESP_SUCCESS, data, null, null);
+        return new ProtocolResponse(ProtocolConstants.RESP_SUCCESS, data, null, null, 0);
     }
 
     /**
@@ -40,14 +42,25 @@ public record ProtocolResponse(String status, JSONObject data, String errorCode,
      * @return ProtocolResponse with error information from the exception
      */
     public static ProtocolResponse error(String errorCode, String errorMessage) {
-        return new ProtocolResponse(ProtocolConstants.RESP_ERROR, null, errorCode, errorMessage);
+        return error(errorCode, errorMessage, 0);
+    }
+
+    /**
+     * Creates an error response with a retry-after hint
+     * @param errorCode is the code for the error
+     * @param errorMessage human-readable error description
+     * @param retryAfterMillis how long the client should wait before retrying, 0 for no hint
+     * @return ProtocolResponse with error information
+     */
+    public static ProtocolResponse error(String errorCode, String errorMessage, long retryAfterMillis) {
+        return new ProtocolResponse(ProtocolConstants.RESP_ERROR, null, errorCode, errorMessage, retryAfterMillis);
     }
 
     /**
      * Converts the response to protocol string format for transmission
      * Format: STATUS|{json_data}
      * For success: SUCCESS|{data_json}
-     * For error: ERROR|{"code":"ERROR_CODE","message":"Error description"}
+     * For error: ERROR|{"code":"ERROR_CODE","message":"Error description"[,"retryAfterMs":1000]}
      * @return formatted protocol string ready for transmission
      */
     public String toProtocolString() {
@@ -62,12 +75,43 @@ public record ProtocolResponse(String status, JSONObject data, String errorCode,
             JSONObject errorObj = new JSONObject();
             errorObj.put("code", errorCode);
             errorObj.put("message", errorMessage);
+            if (retryAfterMillis > 0) {
+                errorObj.put("retryAfterMs", retryAfterMillis);
+            }
             sb.append(errorObj);
         }
 
         return sb.toString();
     }
 
+    /**
+     * Parses a response frame in the format produced by toProtocolString
+     * @param frame the response text
+     * @return the parsed response
+     * @throws ProtocolException if the frame is not STATUS|{json}
+     */
+    public static ProtocolResponse parse(String frame) throws ProtocolException {
+        int delimiter = frame.indexOf(ProtocolConstants.DELIMITER);
+        if (delimiter < 0) {
+            throw new ProtocolException("Malformed response: missing delimiter", ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        String status = frame.substring(0, delimiter);
+        JSONObject body;
+        try {
+            body = new JSONObject(frame.substring(delimiter + 1));
+        } catch (RuntimeException e) {
+            throw new ProtocolException("Malformed response: " + e.getMessage(), ProtocolConstants.ERR_INVALID_FORMAT);
+        }
+        if (ProtocolConstants.RESP_SUCCESS.equals(status)) {
+            return success(body);
+        }
+        if (ProtocolConstants.RESP_ERROR.equals(status)) {
+            return error(body.optString("code", null), body.optString("message", null),
+                    body.optLong("retryAfterMs", 0));
+        }
+        throw new ProtocolException("Malformed response: unknown status " + status, ProtocolConstants.ERR_INVALID_FORMAT);
+    }
+
     /**
      * Checks if the response represents a successful operation
      *
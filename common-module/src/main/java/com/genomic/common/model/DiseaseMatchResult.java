@@ -12,6 +12,7 @@ import lombok.Getter;
 public class DiseaseMatchResult {
     private final Disease disease;
     private final double similarity;
+    private final String contig;
     private final String description;
 
     /**
@@ -22,9 +23,20 @@ public class DiseaseMatchResult {
      * @throws IllegalArgumentException if disease is null or similarity is out of range
      */
     public DiseaseMatchResult(Disease disease, double similarity) {
+        this(disease, similarity, null);
+    }
+
+    /**
+     * Constructs a match found in one record of a multi-record FASTA file
+     * @param disease the disease that was matched
+     * @param similarity the similarity score (0.0 to 1.0)
+     * @param contig identifier of the matching record, or null if not known
+     */
+    public DiseaseMatchResult(Disease disease, double similarity, String contig) {
         this.disease = disease;
         this.similarity = similarity;
-        this.description = generateDescription(disease, similarity);
+        this.contig = contig;
+        this.description = generateDescription(disease, similarity, contig);
     }
 
     /**
@@ -32,11 +44,13 @@ public class DiseaseMatchResult {
      * Includes similarity percentage and disease severity information
      * @param disease the matched disease
      * @param similarity the similarity score
+     * @param contig identifier of the matching record, or null
      * @return formatted description string
      */
-    private String generateDescription(Disease disease, double similarity) {
-        return String.format("Genomic similarity (%.2f%%) detected with %s (Severity: %d/10)",
+    private String generateDescription(Disease disease, double similarity, String contig) {
+        String description = String.format("Genomic similarity (%.2f%%) detected with %s (Severity: %d/10)",
                 similarity * 100, disease.getName(), disease.getSeverity());
+        return contig == null ? description : description + " in contig " + contig;
     }
 
     /**
@@ -45,7 +59,7 @@ public class DiseaseMatchResult {
      */
     @Override
     public String toString() {
-        return String.format("DiseaseMatchResult{diseaseId=%s, similarity=%.2f, description=%s}",
-                disease.getDiseaseId(), similarity, description);
+        return String.format("DiseaseMatchResult{diseaseId=%s, similarity=%.2f, contig=%s, description=%s}",
+                disease.getDiseaseId(), similarity, contig, description);
     }
 }
\ No newline at end of file
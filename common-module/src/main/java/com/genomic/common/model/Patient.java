@@ -1,64 +1,36 @@
 package com.genomic.common.model;
 
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Setter;
 
-import java.util.Date;
+import java.time.Instant;
 
 /**
  * Patient - Represents a patient entity in the genomic system
  * Contains demographic information, clinical data, and genomic file metadata
- * Used for storing and managing patient records with associated genomic data
+ * Instances are immutable snapshots: changes are made with toBuilder() and the
+ * new snapshot replaces the old one, so readers never observe a half-updated record
+ * Two snapshots are equal when all their fields are, whichever copy of the record they are
  */
-@Setter @Getter
+@Getter
+@EqualsAndHashCode
+@Builder(toBuilder = true)
 public class Patient {
-    // Getters and Setters
-    private String patientId;
-    private String fullName;
-    private String documentId;
-    private int age;
-    private String sex; // "M" or "F"
-    private String email;
-    private Date registrationDate;
-    private String clinicalNotes;
-    private String checksumFasta;
-    private long fileSizeBytes;
-    private boolean active;
-    private String fastaFilename; // Store FASTA filename for retrieval
-
-    /**
-     * Default constructor - Creates a new patient with default values
-     * Sets registration date to current time and active status to true
-     */
-    public Patient() {
-        this.registrationDate = new Date();
-        this.active = true;
-    }
-
-    /**
-     * Parameterized constructor - Creates a fully initialized Patient instance
-     * @param fullName full legal name of the patient
-     * @param documentId unique identification document number
-     * @param age age in years (must be positive)
-     * @param sex biological sex ("M" or "F")
-     * @param email contact email address
-     * @param clinicalNotes clinical observations and notes
-     * @param checksumFasta SHA-256 checksum of genomic data
-     * @param fileSizeBytes size of genomic file in bytes
-     */
-    public Patient(String fullName, String documentId, int age, String sex,
-                   String email, String clinicalNotes, String checksumFasta,
-                   long fileSizeBytes) {
-        this();
-        this.fullName = fullName;
-        this.documentId = documentId;
-        this.age = age;
-        this.sex = sex;
-        this.email = email;
-        this.clinicalNotes = clinicalNotes;
-        this.checksumFasta = checksumFasta;
-        this.fileSizeBytes = fileSizeBytes;
-    }
+    private final String patientId;
+    private final String fullName;
+    private final String documentId;
+    private final int age;
+    private final String sex; // "M" or "F"
+    private final String email;
+    @Builder.Default
+    private final Instant registrationDate = Instant.now();
+    private final String clinicalNotes;
+    private final String checksumFasta;
+    private final long fileSizeBytes;
+    @Builder.Default
+    private final boolean active = true;
+    private final String fastaFilename; // Store FASTA filename for retrieval
 
     /**
      * Returns a string representation of the patient for debugging and logging
@@ -77,4 +49,4 @@ public class Patient {
                 ", active=" + active +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.genomic.common.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * AlignmentEvent - Flight Recorder event for one SequenceAligner alignment
+ * Only alignments slower than the threshold are recorded, override it with
+ * genomic.Alignment#threshold in the recording settings
+ */
+@Name("genomic.Alignment")
+@Label("Sequence Alignment")
+@Category({"Genomic", "Screening"})
+@Description("Filling of one alignment matrix")
+@Threshold("20 ms")
+class AlignmentEvent extends jdk.jfr.Event {
+
+    @Label("Kernel")
+    @Description("Alignment algorithm used")
+    String kernel;
+
+    @Label("Patient Length")
+    @Description("Bases of the first (patient) sequence")
+    int patientLength;
+
+    @Label("Reference Length")
+    @Description("Bases of the second (reference) sequence")
+    int referenceLength;
+
+    @Label("Cells")
+    @Description("Matrix cells filled")
+    long cells;
+
+    @Label("Similarity")
+    double similarity;
+
+    @Label("Matrix Size")
+    @DataAmount
+    long matrixBytes;
+}
@@ -0,0 +1,59 @@
+package com.genomic.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvParser - Minimal CSV support for the registry, report, manifest and checkpoint files
+ * Fields may be double-quoted to hold commas, with embedded quotes doubled
+ */
+public class CsvParser {
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with embedded commas and quotes
+     * @param line the line, without its line terminator
+     * @return the unquoted field values
+     */
+    public static List<String> parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        values.add(field.toString());
+        return values;
+    }
+
+    /**
+     * Escapes CSV special characters in a string
+     * @param value the string to escape
+     * @return CSV-safe string
+     */
+    public static String escape(String value) {
+        if (value == null) return "";
+        // Escape quotes and wrap in quotes if contains comma
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
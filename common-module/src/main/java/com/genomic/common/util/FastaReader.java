@@ -0,0 +1,226 @@
+package com.genomic.common.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FastaReader - Streaming reader for multi-record FASTA files
+ * Records are parsed lazily, one per iteration step, so only the current record is held in
+ * memory whatever the number of contigs in the file. Each record carries the byte offsets of
+ * its header and its sequence in the source, e.g. to seek back into a mapped file later.
+ * The reader is lenient: whitespace inside sequence lines is dropped and other bytes are kept
+ * as they are, validation is left to FastaScanner
+ */
+public class FastaReader implements Iterable<FastaReader.Record>, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private final InputStream in;
+    private final FileChannel channel;
+    private ByteBuffer window;
+    private long windowStart;
+
+    private boolean atHeader; // the '>' of the next record has been consumed
+    private long headerOffset;
+    private byte[] sequence = new byte[1024];
+    private boolean iterated;
+
+    private FastaReader(InputStream in, FileChannel channel) {
+        this.in = in;
+        this.channel = channel;
+        this.window = in != null ? ByteBuffer.allocate(BUFFER_SIZE).limit(0) : ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Reads records from a stream, buffered internally
+     * @param in FASTA text, closed together with the reader
+     * @return reader positioned before the first record
+     */
+    public static FastaReader open(InputStream in) {
+        return new FastaReader(in, null);
+    }
+
+    /**
+     * Reads records from a memory-mapped file, mapping it in windows so any size is supported
+     * @param file FASTA file
+     * @return reader positioned before the first record
+     * @throws IOException if the file cannot be opened
+     */
+    public static FastaReader open(Path file) throws IOException {
+        return new FastaReader(null, FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /**
+     * Parses the next record
+     * @return the record, or null at the end of the input
+     * @throws IOException if the input cannot be read or data appears before the first header
+     */
+    public Record next() throws IOException {
+        if (!atHeader) {
+            int b = read();
+            while (b >= 0 && b <= ' ') {
+                b = read();
+            }
+            if (b < 0) {
+                return null;
+            }
+            if (b != '>') {
+                throw new IOException("FASTA data before the first header at byte " + (position() - 1));
+            }
+            headerOffset = position() - 1;
+        }
+        long offset = headerOffset;
+        String header = readHeader();
+        long sequenceOffset = position();
+        atHeader = false;
+
+        int length = 0;
+        long end;
+        while (true) {
+            long lineStart = position();
+            int b = read();
+            while (b >= 0 && b != '\n' && b <= ' ') {
+                b = read();
+            }
+            if (b == '>') {
+                atHeader = true;
+                headerOffset = position() - 1;
+                end = lineStart;
+                break;
+            }
+            while (b >= 0 && b != '\n') {
+                if (b > ' ') {
+                    if (length == sequence.length) {
+                        sequence = Arrays.copyOf(sequence, growTo(length));
+                    }
+                    sequence[length++] = (byte) b;
+                }
+                b = read();
+            }
+            if (b < 0) {
+                end = position();
+                break;
+            }
+        }
+
+        int split = 0;
+        while (split < header.length() && !Character.isWhitespace(header.charAt(split))) {
+            split++;
+        }
+        return new Record(header.substring(0, split), header.substring(split).trim(), offset, sequenceOffset,
+                end - offset, new String(sequence, 0, length, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Single-use iterator over the remaining records
+     * @throws UncheckedIOException from hasNext or next if the input cannot be read
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("FastaReader can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<>() {
+            private Record pending;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) {
+                    try {
+                        pending = FastaReader.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return pending != null;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Record record = pending;
+                pending = null;
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    private String readHeader() throws IOException {
+        StringBuilder header = new StringBuilder();
+        int b = read();
+        while (b >= 0 && b != '\n') {
+            header.append((char) b);
+            b = read();
+        }
+        return header.toString().trim();
+    }
+
+    private int read() throws IOException {
+        if (!window.hasRemaining() && !refill()) {
+            return -1;
+        }
+        return window.get() & 0xff;
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private boolean refill() throws IOException {
+        windowStart += window.limit();
+        if (in != null) {
+            int read = in.read(window.array(), 0, window.capacity());
+            window.position(0).limit(Math.max(read, 0));
+            return read > 0;
+        }
+        long remaining = channel.size() - windowStart;
+        if (remaining <= 0) {
+            window = ByteBuffer.allocate(0);
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(remaining, MAP_WINDOW));
+        return true;
+    }
+
+    private static int growTo(int length) {
+        if (length >= Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("FASTA record too large to materialize");
+        }
+        return (int) Math.min((long) length * 2, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Record - One FASTA record (contig)
+     * @param identifier first word of the header, without the '>'
+     * @param description rest of the header, empty if there is none
+     * @param offset byte offset of the '>' in the source
+     * @param sequenceOffset byte offset of the line after the header
+     * @param length bytes from the '>' up to the next record or the end of the source
+     * @param sequence the bases, without line breaks or whitespace
+     */
+    public record Record(String identifier, String description, long offset, long sequenceOffset,
+                         long length, String sequence) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.genomic.common.util;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * FastaScanner - Single-pass, byte-level FASTA pipeline
+ * Validates the format, computes the SHA-256 checksum, counts bytes and bases and optionally
+ * emits the PackedFasta container, all in one pass over chunks of any size
+ * Accepts what FastaValidator always accepted (header line starting with '>', sequence lines
+ * of ACGTN with surrounding whitespace, trailing empty lines), plus further records: a line
+ * starting with '>' after the sequence opens the next record, which needs an identifier and
+ * at least one sequence line of its own. Reports the line and column of the first violation
+ */
+public class FastaScanner {
+    private static final int STATE_LEADING = 0; // whitespace before the line content
+    private static final int STATE_CONTENT = 1;
+    private static final int STATE_TRAILING = 2; // whitespace after the line content
+
+    private final MessageDigest digest;
+    private final PackedFasta.Encoder encoder;
+    private boolean packable = true;
+
+    private long sizeBytes;
+    private long baseCount;
+    private boolean sawNonWhitespace;
+
+    private long line = 1;
+    private long column;
+    private int state = STATE_LEADING;
+    private long lineBytes;
+    private long lastNonEmptyLine; // last line holding at least one byte, 0 if none yet
+    private long trailingColumn;
+    private byte trailingByte;
+
+    private boolean headerChecked;
+    private boolean headerStarted;
+    private boolean headerHasIdentifier;
+    private ProtocolException headerError; // blank header: raised at the first non-blank byte, if any
+
+    private boolean recordHeaderLine; // the current line is the header of a further record
+    private long recordStart = 1; // line of the header of the current record
+    private long recordSequenceLines;
+    private long recordCount = 1;
+
+    /**
+     * Creates a scanner that validates and checksums only
+     */
+    public FastaScanner() {
+        this.digest = sha256();
+        this.encoder = null;
+    }
+
+    /**
+     * Creates a scanner that also writes the PackedFasta container of the content
+     * @param packedOutput destination of the container, not closed by the scanner
+     * @throws IOException if the container preamble cannot be written
+     */
+    public FastaScanner(OutputStream packedOutput) throws IOException {
+        this.digest = sha256();
+        this.encoder = new PackedFasta.Encoder(packedOutput);
+    }
+
+    /**
+     * Scans a complete FASTA file held in memory
+     * @param content the FASTA bytes
+     * @param packedOutput destination of the container, or null to skip packing
+     * @return checksum, size and base count of the content
+     * @throws ProtocolException if the content is not valid FASTA
+     * @throws IOException if the container cannot be written
+     */
+    public static Result scan(byte[] content, OutputStream packedOutput) throws ProtocolException, IOException {
+        FastaScanner scanner = packedOutput == null ? new FastaScanner() : new FastaScanner(packedOutput);
+        scanner.update(content, 0, content.length);
+        return scanner.finish();
+    }
+
+    /**
+     * Consumes the next chunk of the file
+     * @param buffer bytes of the file
+     * @param offset start of the chunk
+     * @param length chunk length
+     * @throws ProtocolException at the first format violation
+     * @throws IOException if the container cannot be written
+     */
+    public void update(byte[] buffer, int offset, int length) throws ProtocolException, IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '\n') {
+                endLine();
+                continue;
+            }
+            column++;
+            if (lineBytes++ == 0) {
+                startLine();
+            }
+            if (b < 0 || b > ' ') {
+                if (headerError != null) {
+                    throw headerError;
+                }
+                sawNonWhitespace = true;
+            }
+            if (line == 1) {
+                acceptHeader(b);
+            } else {
+                acceptSequence(b);
+            }
+        }
+        digest.update(buffer, offset, length);
+        if (encoder != null && packable) {
+            try {
+                encoder.update(buffer, offset, length);
+            } catch (PackedFasta.UnpackableException e) {
+                packable = false; // only invalid content gets here, finish() reports why
+            }
+        }
+        sizeBytes += length;
+    }
+
+    /**
+     * Completes the scan, applying the checks that need the whole file
+     * @return checksum, size and base count of the content
+     * @throws ProtocolException if the content is not valid FASTA
+     * @throws IOException if the container cannot be written
+     */
+    public Result finish() throws ProtocolException, IOException {
+        if (!sawNonWhitespace) {
+            throw invalid("FASTA content is empty");
+        }
+        if (lastNonEmptyLine < 2) {
+            throw invalid("FASTA must have at least 2 lines");
+        }
+        if (lineBytes > 0 && line > 1) {
+            endSequenceLine();
+        }
+        if (recordStart > 1 && recordSequenceLines == 0) {
+            throw invalid("FASTA record at line " + recordStart + " has no sequence");
+        }
+        if (encoder != null) {
+            if (!packable) {
+                throw new IllegalStateException("Valid FASTA could not be packed");
+            }
+            encoder.finish();
+        }
+        return new Result(HexFormat.of().formatHex(digest.digest()), sizeBytes, baseCount, recordCount);
+    }
+
+    private void startLine() throws ProtocolException {
+        if (line > 1 && !headerChecked) {
+            checkHeader();
+        }
+        // An empty line is only tolerated at the very end of the file
+        if (headerError == null && lastNonEmptyLine < line - 1) {
+            throw invalid("FASTA sequence line " + (lastNonEmptyLine + 1) + " is empty");
+        }
+        lastNonEmptyLine = line;
+    }
+
+    private void endLine() throws ProtocolException {
+        if (lineBytes > 0 && line > 1) {
+            endSequenceLine();
+        }
+        line++;
+        column = 0;
+        lineBytes = 0;
+        state = STATE_LEADING;
+    }
+
+    private void checkHeader() throws ProtocolException {
+        headerChecked = true;
+        ProtocolException error = null;
+        if (!headerStarted) {
+            error = invalid("FASTA header must start with '>'");
+        } else if (!headerHasIdentifier) {
+            error = invalid("FASTA header must have an identifier after '>'");
+        }
+        if (error != null) {
+            if (sawNonWhitespace) {
+                throw error;
+            }
+            headerError = error; // a blank file reports emptiness instead
+        }
+    }
+
+    private void acceptHeader(byte b) throws ProtocolException {
+        boolean whitespace = b >= 0 && b <= ' ';
+        if (state == STATE_LEADING) {
+            if (whitespace) {
+                return;
+            }
+            state = STATE_CONTENT;
+            headerStarted = b == '>';
+        } else if (!whitespace) {
+            headerHasIdentifier = true;
+        }
+    }
+
+    private void acceptSequence(byte b) throws ProtocolException {
+        if (recordHeaderLine) {
+            headerHasIdentifier |= b < 0 || b > ' ';
+            return;
+        }
+        if (b == '>' && state == STATE_LEADING) {
+            startRecord();
+            return;
+        }
+        if (b >= 0 && b <= ' ') {
+            if (state == STATE_CONTENT) {
+                state = STATE_TRAILING;
+                trailingColumn = column;
+                trailingByte = b;
+            }
+            return;
+        }
+        if (b != 'A' && b != 'C' && b != 'G' && b != 'T' && b != 'N') {
+            throw invalid("FASTA sequence contains invalid character " + describe(b)
+                    + " at line " + line + ", column " + column);
+        }
+        if (state == STATE_TRAILING) {
+            throw invalid("FASTA sequence contains invalid character " + describe(trailingByte)
+                    + " at line " + line + ", column " + trailingColumn);
+        }
+        state = STATE_CONTENT;
+        baseCount++;
+    }
+
+    private void endSequenceLine() throws ProtocolException {
+        if (recordHeaderLine) {
+            recordHeaderLine = false;
+            if (!headerHasIdentifier) {
+                throw invalid("FASTA header at line " + line + " must have an identifier after '>'");
+            }
+            return;
+        }
+        if (state == STATE_LEADING && headerError == null) {
+            throw invalid("FASTA sequence line " + line + " is empty");
+        }
+        recordSequenceLines++;
+    }
+
+    private void startRecord() throws ProtocolException {
+        if (recordSequenceLines == 0) {
+            throw invalid("FASTA record at line " + recordStart + " has no sequence");
+        }
+        recordHeaderLine = true;
+        headerHasIdentifier = false;
+        recordStart = line;
+        recordSequenceLines = 0;
+        recordCount++;
+    }
+
+    private static String describe(byte b) {
+        return b > ' ' && b < 127 ? "'" + (char) b + "'" : String.format("0x%02X", b & 0xff);
+    }
+
+    private static ProtocolException invalid(String message) {
+        return new ProtocolException(message, ProtocolConstants.ERR_INVALID_FASTA);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Result - Outcome of a successful scan
+     * @param checksum SHA-256 of the content, lowercase hex
+     * @param sizeBytes content length in bytes
+     * @param baseCount number of nucleotides in the sequence lines
+     * @param recordCount number of records (contigs) in the file
+     */
+    public record Result(String checksum, long sizeBytes, long baseCount, long recordCount) {
+    }
+}
@@ -3,6 +3,8 @@ package com.genomic.common.util;
 import com.genomic.common.ProtocolException;
 import com.genomic.common.ProtocolConstants;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -16,36 +18,19 @@ public class FastaValidator {
     /**
      * Validates FASTA format compliance and sequence integrity
      * Checks for proper header format, valid nucleotide characters, and basic structure
+     * The checks run in FastaScanner, which also reports line and column of the first error
      * @param fastaContent the genomic sequence data in FASTA format
      * @throws ProtocolException if the FASTA content violates format requirements
      */
     public static void validateFasta(String fastaContent) throws ProtocolException {
-        if (fastaContent == null || fastaContent.trim().isEmpty()) {
+        if (fastaContent == null) {
             throw new ProtocolException("FASTA content is empty", ProtocolConstants.ERR_INVALID_FASTA);
         }
 
-        String[] lines = fastaContent.split("\n");
-        if (lines.length < 2) {
-            throw new ProtocolException("FASTA must have at least 2 lines", ProtocolConstants.ERR_INVALID_FASTA);
-        }
-
-        // Validate header line
-        String header = lines[0].trim();
-        if (!header.startsWith(">")) {
-            throw new ProtocolException("FASTA header must start with '>'", ProtocolConstants.ERR_INVALID_FASTA);
-        }
-
-        if (header.length() == 1) {
-            throw new ProtocolException("FASTA header must have an identifier after '>'", ProtocolConstants.ERR_INVALID_FASTA);
-        }
-
-        // Validate sequence lines
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (!line.matches("^[ACGTN]+$")) {
-                throw new ProtocolException("FASTA sequence contains invalid characters: " + line,
-                        ProtocolConstants.ERR_INVALID_FASTA);
-            }
+        try {
+            FastaScanner.scan(fastaContent.getBytes(StandardCharsets.UTF_8), null);
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to validate FASTA: " + e.getMessage(), ProtocolConstants.ERR_SERVER_ERROR);
         }
     }
 
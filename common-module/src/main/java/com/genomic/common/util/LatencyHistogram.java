@@ -0,0 +1,128 @@
+package com.genomic.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - Lock-free log-linear histogram of latencies, in the style of HdrHistogram
+ * Values below 2^(SUB_BUCKET_BITS+1) get a bucket each; above that every power of two is split
+ * into 2^SUB_BUCKET_BITS linear buckets, so a percentile is reported within 1/128 (0.8%) of the
+ * recorded value whatever its magnitude. Memory is fixed (a few thousand counters) and record
+ * is a couple of atomic increments, so any number of threads can record concurrently
+ * The unit is the caller's choice; values above the highest trackable value are clamped to it
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+    private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Creates an empty histogram
+     * @param highestTrackableValue largest value kept exactly, e.g. one hour in the chosen unit
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("highestTrackableValue must be positive");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Records one value, negative values count as 0
+     * @param value the latency
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), highestTrackableValue);
+        counts.incrementAndGet(bucketIndex(clamped));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(clamped);
+        maxValue.accumulateAndGet(clamped, Math::max);
+        minValue.accumulateAndGet(clamped, Math::min);
+    }
+
+    /**
+     * Adds every value recorded in another histogram with the same highest trackable value
+     */
+    public void add(LatencyHistogram other) {
+        if (other.counts.length() != counts.length()) {
+            throw new IllegalArgumentException("Histograms have different ranges");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalSum.addAndGet(other.totalSum.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+        minValue.accumulateAndGet(other.minValue.get(), Math::min);
+    }
+
+    /**
+     * Value below which the given percentage of the recorded values fall
+     * Reported as the highest value of its bucket, so it never understates the latency
+     * @param percentile percentage between 0 and 100
+     * @return the value, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(highestValueInBucket(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public long getMin() {
+        long min = minValue.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalSum.get() / count;
+    }
+
+    /**
+     * Bucket of a value: linear below 2 * SUB_BUCKET_COUNT, then SUB_BUCKET_COUNT buckets per power of two
+     */
+    private static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,334 @@
+package com.genomic.common.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logger - Leveled logging with an asynchronous appender
+ * Callers only put the message in a bounded lock-free ring buffer; one background thread formats
+ * it and writes it to the console (WARNING and ERROR to stderr) and to the log file, so request
+ * threads never wait on console I/O or on each other. When the buffer is full DEBUG and INFO
+ * messages are dropped and counted rather than blocking the caller, while WARNING and ERROR
+ * messages wait for room
+ * Messages are redacted before they are written: runs of bases are replaced by their length and
+ * anything longer than the maximum message length is truncated, so a genome never reaches the log
+ * Lines look like [2025-09-07 00:15:48] [INFO] [Thread-main] message
+ */
+public final class Logger {
+    public static final int BUFFER_SIZE = 8192; // a power of two
+    public static final int MAX_MESSAGE_LENGTH = 1024;
+    public static final int MIN_REDACTED_BASES = 32;
+
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int WRITE_BATCH = 256;
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DROP_REPORT_INTERVAL_MS = 1000;
+
+    // Producers claim a slot by advancing tail, then publish the entry into it; the writer takes
+    // entries in order at head and clears their slots. A claimed slot stays null until published
+    private static final AtomicReferenceArray<Entry> BUFFER = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final Thread WRITER = new Thread(Logger::drain, "log-writer");
+    private static volatile long head;
+    private static volatile boolean writerParked;
+    private static volatile LogLevel minimumLevel = LogLevel.INFO;
+    private static volatile BufferedWriter logFile;
+
+    static {
+        WRITER.setDaemon(true);
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toMillis(1))));
+    }
+
+    /**
+     * LogLevel - Severity of a message, in increasing order
+     */
+    public enum LogLevel {
+        DEBUG, INFO, WARNING, ERROR
+    }
+
+    private Logger() {
+    }
+
+    /**
+     * Sets the least severe level that is logged, INFO by default
+     */
+    public static void setMinimumLogLevel(LogLevel level) {
+        minimumLevel = level;
+    }
+
+    public static LogLevel getMinimumLogLevel() {
+        return minimumLevel;
+    }
+
+    /**
+     * Whether messages of a level are logged; guard messages that are costly to build with it
+     */
+    public static boolean isEnabled(LogLevel level) {
+        return level.compareTo(minimumLevel) >= 0;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    /**
+     * Also appends every line to a file, replacing the previous one
+     * @param file the log file, created with its directories if missing, or null for console only
+     * @throws IOException if the file cannot be opened
+     */
+    public static synchronized void setLogFile(Path file) throws IOException {
+        BufferedWriter previous = logFile;
+        if (file == null) {
+            logFile = null;
+        } else {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            logFile = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        if (previous != null) {
+            flush(TimeUnit.SECONDS.toMillis(1));
+            previous.close();
+        }
+    }
+
+    public static void debug(String message) {
+        log(LogLevel.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        log(LogLevel.INFO, message, null);
+    }
+
+    public static void warning(String message) {
+        log(LogLevel.WARNING, message, null);
+    }
+
+    public static void error(String message) {
+        log(LogLevel.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(LogLevel.ERROR, message, error);
+    }
+
+    /**
+     * Queues a message for the writer thread; when the buffer is full a DEBUG or INFO message is
+     * dropped, a WARNING or ERROR message waits for room
+     * @param level severity of the message
+     * @param message the message, redacted before it is written
+     * @param error exception whose description follows the message, or null
+     */
+    public static void log(LogLevel level, String message, Throwable error) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), level, Thread.currentThread().getName(), message, error);
+        boolean mustWrite = level.compareTo(LogLevel.WARNING) >= 0 && Thread.currentThread() != WRITER;
+        long slot;
+        while ((slot = claim()) < 0) {
+            if (!mustWrite) {
+                DROPPED.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        BUFFER.set((int) (slot & (BUFFER_SIZE - 1)), entry);
+        if (writerParked) {
+            LockSupport.unpark(WRITER);
+        }
+    }
+
+    private static long claim() {
+        while (true) {
+            long tail = TAIL.get();
+            if (tail - head >= BUFFER_SIZE) {
+                return -1;
+            }
+            if (TAIL.compareAndSet(tail, tail + 1)) {
+                return tail;
+            }
+        }
+    }
+
+    /**
+     * Waits until every message queued so far is written
+     * @param timeoutMillis longest time to wait
+     * @return true if the buffer was drained in time
+     */
+    public static boolean flush(long timeoutMillis) {
+        long target = TAIL.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (head < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Number of messages dropped because the buffer was full
+     */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    /**
+     * Shortens a text for a log message
+     * @param text the text, may be null
+     * @param maxLength number of characters kept
+     * @return the text, or its first characters followed by the number left out
+     */
+    public static String abbreviate(String text, int maxLength) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+        return text.substring(0, maxLength) + "... (" + (text.length() - maxLength) + " more chars)";
+    }
+
+    /**
+     * Replaces every run of at least MIN_REDACTED_BASES nucleotide characters by its length, and
+     * truncates the result to MAX_MESSAGE_LENGTH
+     * @param message the message
+     * @return the message safe to write
+     */
+    public static String redact(String message) {
+        if (message == null) {
+            return "null";
+        }
+        StringBuilder redacted = null;
+        int copied = 0;
+        int runStart = -1;
+        for (int i = 0; i <= message.length(); i++) {
+            if (i < message.length() && isBase(message.charAt(i))) {
+                if (runStart < 0) {
+                    runStart = i;
+                }
+                continue;
+            }
+            if (runStart >= 0 && i - runStart >= MIN_REDACTED_BASES) {
+                if (redacted == null) {
+                    redacted = new StringBuilder(Math.min(message.length(), MAX_MESSAGE_LENGTH + 64));
+                }
+                redacted.append(message, copied, runStart).append('[').append(i - runStart).append(" bases]");
+                copied = i;
+            }
+            runStart = -1;
+        }
+        String result = redacted == null ? message : redacted.append(message, copied, message.length()).toString();
+        return abbreviate(result, MAX_MESSAGE_LENGTH);
+    }
+
+    private static boolean isBase(char c) {
+        switch (c) {
+            case 'A': case 'C': case 'G': case 'T': case 'N':
+            case 'a': case 'c': case 'g': case 't': case 'n':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void drain() {
+        List<Entry> batch = new ArrayList<>(WRITE_BATCH);
+        StringBuilder line = new StringBuilder(256);
+        long next = 0;
+        long reportedDrops = 0;
+        long lastDropReport = 0;
+        while (true) {
+            // Take the published entries in order, up to a batch
+            while (batch.size() < WRITE_BATCH) {
+                int index = (int) (next & (BUFFER_SIZE - 1));
+                Entry entry = BUFFER.get(index);
+                if (entry == null) {
+                    break;
+                }
+                BUFFER.set(index, null);
+                batch.add(entry);
+                next++;
+            }
+            if (batch.isEmpty()) {
+                writerParked = true;
+                if (BUFFER.get((int) (next & (BUFFER_SIZE - 1))) == null) {
+                    LockSupport.parkNanos(WAIT_NANOS * 100);
+                }
+                writerParked = false;
+                continue;
+            }
+            BufferedWriter file = logFile;
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+
+            long drops = DROPPED.get();
+            long now = System.currentTimeMillis();
+            if (drops > reportedDrops && now - lastDropReport >= DROP_REPORT_INTERVAL_MS) {
+                write(new Entry(now, LogLevel.WARNING, Thread.currentThread().getName(),
+                        (drops - reportedDrops) + " log messages dropped, the log buffer was full", null),
+                        line, out, err, file);
+                reportedDrops = drops;
+                lastDropReport = now;
+            }
+            for (Entry entry : batch) {
+                write(entry, line, out, err, file);
+            }
+            out.flush();
+            err.flush();
+            if (file != null) {
+                try {
+                    file.flush();
+                } catch (IOException e) {
+                    err.println("Error writing log file: " + e.getMessage());
+                }
+            }
+            head = next;
+            batch.clear();
+        }
+    }
+
+    private static void write(Entry entry, StringBuilder line, PrintStream out, PrintStream err, BufferedWriter file) {
+        line.setLength(0);
+        line.append('[');
+        TIMESTAMP.formatTo(Instant.ofEpochMilli(entry.timeMillis), line);
+        line.append("] [").append(entry.level).append("] [Thread-").append(entry.thread).append("] ")
+                .append(redact(entry.message));
+        if (entry.error != null) {
+            line.append(": ").append(redact(entry.error.toString()));
+        }
+        String text = line.toString();
+        (entry.level.compareTo(LogLevel.WARNING) >= 0 ? err : out).println(text);
+        if (file != null) {
+            try {
+                file.write(text);
+                file.newLine();
+            } catch (IOException e) {
+                err.println("Error writing log file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Entry - One queued message
+     */
+    private record Entry(long timeMillis, LogLevel level, String thread, String message, Throwable error) {
+    }
+}
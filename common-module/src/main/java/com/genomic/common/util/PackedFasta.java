@@ -0,0 +1,935 @@
+package com.genomic.common.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * PackedFasta - Compact binary container for FASTA files
+ * Bases are packed at 2 bits each (A=00 C=01 G=10 T=11) in fixed-size blocks, N bases are kept
+ * as runs, and line widths are run-length encoded. Header lines, whitespace around bases and
+ * odd line endings are kept as sparse per-line patches, so the original text is rebuilt byte
+ * for byte. A block index with CRC32 checksums allows decoding any region of the sequence
+ * while reading only the blocks that cover it.
+ * Content that cannot be represented exactly (lowercase or IUPAC bases, text in sequence
+ * lines) is stored verbatim in raw mode, still with block checksums.
+ * <p>
+ * Layout: magic(4) version(1) mode(1) reserved(2) | data blocks | metadata |
+ * metadataOffset(8) metadataLength(4) magic(4)
+ */
+public class PackedFasta {
+    public static final String EXTENSION = ".fpk";
+    public static final int BLOCK_BASES = 64 * 1024;
+
+    private static final int MAGIC = 0x4746504B; // "GFPK"
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte MODE_PACKED = 0;
+    private static final byte MODE_RAW = 1;
+    private static final int PREAMBLE_SIZE = 8;
+    private static final int TRAILER_SIZE = 16;
+    private static final int RAW_BLOCK_BYTES = 64 * 1024;
+
+    // Line terminators: the file default, or a per-line override stored in a patch
+    private static final byte EOL_DEFAULT = 0;
+    private static final byte EOL_LF = 1;
+    private static final byte EOL_CRLF = 2;
+
+    private static final byte[] BASE_CODES = new byte[128];
+    private static final byte[] CODE_BASES = {'A', 'C', 'G', 'T'};
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) -1);
+        BASE_CODES['A'] = 0;
+        BASE_CODES['C'] = 1;
+        BASE_CODES['G'] = 2;
+        BASE_CODES['T'] = 3;
+        BASE_CODES['N'] = 0; // placeholder bits, restored from the N runs
+    }
+
+    /**
+     * Encodes FASTA text into a container
+     * @param fasta original FASTA bytes
+     * @return container bytes
+     */
+    public static byte[] encode(byte[] fasta) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(fasta.length / 4 + 256);
+        try {
+            try {
+                Encoder encoder = new Encoder(out);
+                encoder.update(fasta, 0, fasta.length);
+                encoder.finish();
+            } catch (UnpackableException e) {
+                out.reset();
+                writeRaw(new ByteArrayInputStream(fasta), out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen on in-memory streams
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a FASTA file into a container file, streaming in bounded memory
+     * @param source original FASTA file
+     * @param target container file to write
+     * @throws IOException if either file cannot be accessed
+     */
+    public static void encode(Path source, Path target) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target));
+             InputStream in = Files.newInputStream(source)) {
+            Encoder encoder = new Encoder(out);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                encoder.update(buffer, 0, read);
+            }
+            encoder.finish();
+            return;
+        } catch (UnpackableException e) {
+            // fall through to raw mode below
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target));
+             InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
+            writeRaw(in, out);
+        }
+    }
+
+    /**
+     * Rebuilds the original FASTA text from a container
+     * @param container container bytes
+     * @return the original FASTA bytes
+     * @throws IOException if the container is malformed or a block checksum fails
+     */
+    public static byte[] decode(byte[] container) throws IOException {
+        try (Reader reader = open(container)) {
+            return reader.readFasta();
+        }
+    }
+
+    /**
+     * Opens a container file for random access
+     * @param file container file
+     * @return reader, every read is positional
+     * @throws IOException if the file is not a container
+     */
+    public static Reader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new Reader(new FileSource(channel));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an in-memory container for random access
+     * @param container container bytes
+     * @return reader over the bytes
+     * @throws IOException if the bytes are not a container
+     */
+    public static Reader open(byte[] container) throws IOException {
+        return new Reader(new ByteArraySource(container));
+    }
+
+    /**
+     * Checks the magic number of a file
+     * @param file the file to check
+     * @return true if the file is a PackedFasta container
+     */
+    public static boolean isPacked(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            return magic.position() == 4 && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    private static void writeRaw(InputStream in, OutputStream out) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        DataOutputStream data = new DataOutputStream(counting);
+        writePreamble(data, MODE_RAW);
+
+        List<long[]> blocks = new ArrayList<>();
+        byte[] buffer = new byte[RAW_BLOCK_BYTES];
+        long originalLength = 0;
+        int read;
+        while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+            blocks.add(new long[]{counting.count, read, crc(buffer, read)});
+            data.write(buffer, 0, read);
+            originalLength += read;
+        }
+
+        long metadataOffset = counting.count;
+        data.writeLong(originalLength);
+        writeBlockIndex(data, blocks);
+        writeTrailer(data, metadataOffset, (int) (counting.count - metadataOffset));
+        data.flush();
+    }
+
+    private static void writePreamble(DataOutputStream data, byte mode) throws IOException {
+        data.writeInt(MAGIC);
+        data.writeByte(FORMAT_VERSION);
+        data.writeByte(mode);
+        data.writeShort(0);
+    }
+
+    private static void writeBlockIndex(DataOutputStream data, List<long[]> blocks) throws IOException {
+        data.writeInt(blocks.size());
+        for (long[] block : blocks) {
+            data.writeLong(block[0]); // offset
+            data.writeInt((int) block[1]); // length in bytes
+            data.writeInt((int) block[2]); // crc32
+        }
+    }
+
+    private static void writeTrailer(DataOutputStream data, long metadataOffset, int metadataLength) throws IOException {
+        data.writeLong(metadataOffset);
+        data.writeInt(metadataLength);
+        data.writeInt(MAGIC);
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    /**
+     * Encoder - Streaming packer fed with FASTA bytes in arbitrary chunks
+     * Each line is split into prefix (whitespace, or the whole line for headers), bases and
+     * suffix (trailing whitespace); only lines with a prefix, suffix or unusual terminator
+     * produce a patch, so plain FASTA costs a handful of metadata bytes
+     */
+    static final class Encoder {
+        private static final int MODE_PREFIX = 0;
+        private static final int MODE_HEADER = 1;
+        private static final int MODE_BASES = 2;
+        private static final int MODE_SUFFIX = 3;
+
+        private final CountingOutputStream counting;
+        private final DataOutputStream data;
+
+        private long originalLength;
+        private byte eol = EOL_DEFAULT; // decided by the first terminated line
+        private boolean pendingCr;
+        private long lineIndex;
+        private int lineMode = MODE_PREFIX;
+        private long lineBases;
+        private final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream suffix = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream patches = new ByteArrayOutputStream();
+        private final DataOutputStream patchData = new DataOutputStream(patches);
+        private int patchCount;
+
+        private long baseCount;
+        private final List<long[]> lineRuns = new ArrayList<>(); // {bases, count}
+        private final List<long[]> nRuns = new ArrayList<>(); // {start, length}
+
+        private final byte[] block = new byte[BLOCK_BASES / 4];
+        private int blockBases;
+        private final List<long[]> blocks = new ArrayList<>();
+
+        /**
+         * Starts a container on the given stream
+         * @param out destination, written sequentially and never closed by the encoder
+         */
+        Encoder(OutputStream out) throws IOException {
+            this.counting = new CountingOutputStream(out);
+            this.data = new DataOutputStream(counting);
+            writePreamble(data, MODE_PACKED);
+        }
+
+        /**
+         * Feeds the next chunk of FASTA text
+         * @throws UnpackableException if the text cannot be represented in packed mode
+         */
+        void update(byte[] buffer, int offset, int length) throws IOException {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    endLine();
+                    continue;
+                }
+                if (pendingCr) {
+                    pendingCr = false;
+                    accept((byte) '\r');
+                }
+                if (b == '\r') {
+                    pendingCr = true; // decided by the next byte: part of CRLF or plain whitespace
+                } else {
+                    accept(b);
+                }
+            }
+            originalLength += length;
+        }
+
+        /**
+         * Writes the metadata and trailer, completing the container
+         */
+        void finish() throws IOException {
+            if (pendingCr) {
+                pendingCr = false;
+                accept((byte) '\r');
+            }
+            boolean partialLine = lineMode != MODE_PREFIX || prefix.size() > 0;
+            boolean finalEol = !partialLine && lineIndex > 0;
+            if (partialLine) {
+                addLine(EOL_DEFAULT);
+            }
+            flushBlock();
+
+            long metadataOffset = counting.count;
+            data.writeLong(originalLength);
+            data.writeLong(baseCount);
+            data.writeByte(eol);
+            data.writeBoolean(finalEol);
+            writeRuns(lineRuns);
+            data.writeInt(patchCount);
+            patches.writeTo(data);
+            writeRuns(nRuns);
+            data.writeInt(BLOCK_BASES);
+            writeBlockIndex(data, blocks);
+            writeTrailer(data, metadataOffset, (int) (counting.count - metadataOffset));
+            data.flush();
+        }
+
+        private void accept(byte b) throws IOException {
+            switch (lineMode) {
+                case MODE_PREFIX -> {
+                    if (b == '>') {
+                        lineMode = MODE_HEADER;
+                        prefix.write(b);
+                    } else if (isWhitespace(b)) {
+                        prefix.write(b);
+                    } else {
+                        lineMode = MODE_BASES;
+                        appendBase(b);
+                    }
+                }
+                case MODE_HEADER -> prefix.write(b);
+                case MODE_BASES -> {
+                    if (isWhitespace(b)) {
+                        lineMode = MODE_SUFFIX;
+                        suffix.write(b);
+                    } else {
+                        appendBase(b);
+                    }
+                }
+                default -> {
+                    if (!isWhitespace(b)) {
+                        throw new UnpackableException();
+                    }
+                    suffix.write(b);
+                }
+            }
+        }
+
+        private void endLine() throws IOException {
+            boolean carriageReturn = pendingCr;
+            pendingCr = false;
+            if (eol == EOL_DEFAULT) {
+                eol = carriageReturn ? EOL_CRLF : EOL_LF;
+            }
+
+            byte terminator = EOL_DEFAULT;
+            if (eol == EOL_CRLF && !carriageReturn) {
+                terminator = EOL_LF;
+            } else if (eol == EOL_LF && carriageReturn) {
+                terminator = EOL_CRLF;
+            }
+            addLine(terminator);
+        }
+
+        private void addLine(byte terminator) throws IOException {
+            long[] last = lineRuns.isEmpty() ? null : lineRuns.getLast();
+            if (last != null && last[0] == lineBases) {
+                last[1]++;
+            } else {
+                lineRuns.add(new long[]{lineBases, 1});
+            }
+
+            if (prefix.size() > 0 || suffix.size() > 0 || terminator != EOL_DEFAULT) {
+                patchData.writeLong(lineIndex);
+                patchData.writeInt(prefix.size());
+                prefix.writeTo(patchData);
+                patchData.writeInt(suffix.size());
+                suffix.writeTo(patchData);
+                patchData.writeByte(terminator);
+                patchCount++;
+            }
+
+            lineIndex++;
+            lineMode = MODE_PREFIX;
+            lineBases = 0;
+            prefix.reset();
+            suffix.reset();
+        }
+
+        private void appendBase(byte base) throws IOException {
+            if (base < 0 || BASE_CODES[base] < 0) {
+                throw new UnpackableException();
+            }
+            if (base == 'N') {
+                long[] last = nRuns.isEmpty() ? null : nRuns.getLast();
+                if (last != null && last[0] + last[1] == baseCount) {
+                    last[1]++;
+                } else {
+                    nRuns.add(new long[]{baseCount, 1});
+                }
+            }
+            block[blockBases >> 2] |= (byte) (BASE_CODES[base] << ((3 - (blockBases & 3)) * 2));
+            blockBases++;
+            baseCount++;
+            lineBases++;
+            if (blockBases == BLOCK_BASES) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockBases == 0) {
+                return;
+            }
+            int length = (blockBases + 3) / 4;
+            blocks.add(new long[]{counting.count, length, crc(block, length)});
+            data.write(block, 0, length);
+            Arrays.fill(block, (byte) 0);
+            blockBases = 0;
+        }
+
+        private void writeRuns(List<long[]> runs) throws IOException {
+            data.writeInt(runs.size());
+            for (long[] run : runs) {
+                data.writeLong(run[0]);
+                data.writeLong(run[1]);
+            }
+        }
+    }
+
+    /**
+     * Reader - Random access to a container: full FASTA reconstruction or any base range
+     * Keeps the last decoded block, so one reader must not be shared between threads
+     */
+    public static final class Reader implements Closeable {
+        private final Source source;
+        private final byte mode;
+        private final long originalLength;
+        private final long[] blockOffsets;
+        private final int[] blockLengths;
+        private final int[] blockCrcs;
+
+        // Packed mode layout
+        private long baseCount;
+        private byte eol;
+        private boolean finalEol;
+        private long[][] lineRuns;
+        private Patch[] patches;
+        private long[][] nRuns;
+        private int blockBases;
+
+        private int cachedBlockIndex = -1;
+        private ByteBuffer cachedBlock;
+
+        // Built on first use; a raw container is parsed once for both
+        private List<Contig> contigs;
+        private String rawSequence;
+
+        private Reader(Source source) throws IOException {
+            this.source = source;
+            long size = source.size();
+            if (size < PREAMBLE_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a packed FASTA container");
+            }
+            ByteBuffer preamble = source.read(0, PREAMBLE_SIZE);
+            ByteBuffer trailer = source.read(size - TRAILER_SIZE, TRAILER_SIZE);
+            if (preamble.getInt(0) != MAGIC || trailer.getInt(12) != MAGIC) {
+                throw new IOException("Not a packed FASTA container");
+            }
+            if (preamble.get(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported packed FASTA version: " + preamble.get(4));
+            }
+            this.mode = preamble.get(5);
+
+            ByteBuffer metadataBuffer = source.read(trailer.getLong(0), trailer.getInt(8));
+            byte[] metadataBytes = new byte[metadataBuffer.remaining()];
+            metadataBuffer.get(metadataBytes);
+            DataInputStream metadata = new DataInputStream(new ByteArrayInputStream(metadataBytes));
+            this.originalLength = metadata.readLong();
+            if (mode == MODE_PACKED) {
+                baseCount = metadata.readLong();
+                eol = metadata.readByte();
+                finalEol = metadata.readBoolean();
+                lineRuns = readRuns(metadata);
+                patches = new Patch[metadata.readInt()];
+                for (int i = 0; i < patches.length; i++) {
+                    patches[i] = new Patch(metadata.readLong(), metadata.readNBytes(metadata.readInt()),
+                            metadata.readNBytes(metadata.readInt()), metadata.readByte());
+                }
+                nRuns = readRuns(metadata);
+                blockBases = metadata.readInt();
+            }
+            int blockCount = metadata.readInt();
+            blockOffsets = new long[blockCount];
+            blockLengths = new int[blockCount];
+            blockCrcs = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = metadata.readLong();
+                blockLengths[i] = metadata.readInt();
+                blockCrcs[i] = metadata.readInt();
+            }
+        }
+
+        /**
+         * Length of the original FASTA text in bytes
+         */
+        public long getOriginalLength() {
+            return originalLength;
+        }
+
+        /**
+         * True when the sequence is stored 2-bit packed, false for raw fallback containers
+         */
+        public boolean isPacked() {
+            return mode == MODE_PACKED;
+        }
+
+        /**
+         * Number of bases in the sequence
+         */
+        public long getBaseCount() throws IOException {
+            return isPacked() ? baseCount : rawSequence().length();
+        }
+
+        /**
+         * Identifier of the first header line, without the leading '>'
+         */
+        public String getIdentifier() throws IOException {
+            if (isPacked()) {
+                for (Patch patch : patches) {
+                    String line = new String(patch.prefix, StandardCharsets.UTF_8).trim();
+                    if (line.startsWith(">")) {
+                        return line.substring(1).trim();
+                    }
+                }
+                return "unknown";
+            }
+            return FastaValidator.extractIdentifier(new String(readFasta(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Base ranges of the records (contigs) in the file, in file order
+         * Packed containers find them from the header patches without decoding any block, raw
+         * containers are parsed once per reader
+         * @return one entry per header line
+         * @throws IOException if a raw container cannot be read
+         */
+        public List<Contig> getContigs() throws IOException {
+            if (contigs == null) {
+                if (isPacked()) {
+                    contigs = List.copyOf(packedContigs());
+                } else {
+                    parseRaw();
+                }
+            }
+            return contigs;
+        }
+
+        private List<Contig> packedContigs() {
+            List<Contig> contigs = new ArrayList<>();
+            long line = 0;
+            long position = 0;
+            int run = 0;
+            long usedInRun = 0;
+            String identifier = null;
+            long start = 0;
+            for (Patch patch : patches) {
+                String text = new String(patch.prefix, StandardCharsets.UTF_8).trim();
+                if (!text.startsWith(">")) {
+                    continue;
+                }
+                // Advance over the lines before the header, summing their bases
+                while (line < patch.line) {
+                    long count = Math.min(lineRuns[run][1] - usedInRun, patch.line - line);
+                    position += count * lineRuns[run][0];
+                    line += count;
+                    usedInRun += count;
+                    if (usedInRun == lineRuns[run][1]) {
+                        run++;
+                        usedInRun = 0;
+                    }
+                }
+                if (identifier != null) {
+                    contigs.add(new Contig(identifier, start, position));
+                }
+                identifier = text.substring(1).trim().split("\\s+", 2)[0];
+                start = position;
+            }
+            if (identifier != null) {
+                contigs.add(new Contig(identifier, start, baseCount));
+            }
+            return contigs;
+        }
+
+        /**
+         * Rebuilds the exact original FASTA bytes
+         * @return original FASTA text
+         * @throws IOException if a block checksum fails
+         */
+        public byte[] readFasta() throws IOException {
+            if (originalLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("FASTA too large to materialize: " + originalLength + " bytes");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) originalLength);
+            writeFasta(out);
+            return out.toByteArray();
+        }
+
+        /**
+         * Streams the exact original FASTA bytes, decoding one line at a time
+         * @param out destination stream
+         * @throws IOException if a block checksum fails or the stream cannot be written
+         */
+        public void writeFasta(OutputStream out) throws IOException {
+            writeFasta(out, 0, originalLength);
+        }
+
+        /**
+         * Streams a byte range of the original FASTA text in bounded memory
+         * Lines before the range are never decoded: runs of lines without a patch all have the
+         * same length and are skipped arithmetically, so reaching the offset costs one step per
+         * line run and patch rather than per line. Long lines are decoded in slices, so the cost
+         * follows the range and not the file
+         * @param out destination stream
+         * @param offset first byte of the original text to write
+         * @param length number of bytes to write
+         * @throws IOException if a block checksum fails or the stream cannot be written
+         */
+        public void writeFasta(OutputStream out, long offset, long length) throws IOException {
+            if (offset < 0 || length < 0 || offset + length > originalLength) {
+                throw new IndexOutOfBoundsException("Invalid byte range [" + offset + ", " + (offset + length)
+                        + ") of " + originalLength);
+            }
+            long end = offset + length;
+            if (!isPacked()) {
+                for (int i = (int) (offset / RAW_BLOCK_BYTES); i < blockOffsets.length && (long) i * RAW_BLOCK_BYTES < end; i++) {
+                    ByteBuffer block = readBlock(i);
+                    writeClipped(out, block.array(), block.arrayOffset() + block.position(), block.remaining(),
+                            (long) i * RAW_BLOCK_BYTES, offset, end);
+                }
+                return;
+            }
+
+            long totalLines = 0;
+            for (long[] run : lineRuns) {
+                totalLines += run[1];
+            }
+
+            long line = 0;
+            long position = 0; // first base of the line
+            long textPosition = 0; // first byte of the line in the original text
+            int nextPatch = 0;
+            byte[] bases = new byte[0];
+            byte[] terminatorBytes = {'\r', '\n'};
+            int eolLength = eol == EOL_CRLF ? 2 : 1;
+            for (long[] run : lineRuns) {
+                int lineBases = (int) run[0];
+                for (long i = 0; i < run[1]; i++, line++) {
+                    if (textPosition >= end) {
+                        return;
+                    }
+                    // Skip the plain lines that end before the range: no patch, default terminator
+                    long nextPatchLine = nextPatch < patches.length ? patches[nextPatch].line : Long.MAX_VALUE;
+                    long plainLines = Math.min(Math.min(run[1] - i, nextPatchLine - line), totalLines - 1 - line);
+                    long plainLength = lineBases + eolLength;
+                    if (plainLines > 0 && textPosition + plainLength <= offset) {
+                        long skipped = Math.min(plainLines, (offset - textPosition) / plainLength);
+                        position += skipped * lineBases;
+                        textPosition += skipped * plainLength;
+                        line += skipped - 1;
+                        i += skipped - 1;
+                        continue;
+                    }
+                    Patch patch = nextPatch < patches.length && patches[nextPatch].line == line
+                            ? patches[nextPatch++] : null;
+                    int terminatorLength = 0;
+                    if (line < totalLines - 1 || finalEol) {
+                        byte terminator = patch != null && patch.terminator != EOL_DEFAULT ? patch.terminator : eol;
+                        terminatorLength = terminator == EOL_CRLF ? 2 : 1;
+                    }
+                    int prefixLength = patch != null ? patch.prefix.length : 0;
+                    int suffixLength = patch != null ? patch.suffix.length : 0;
+                    long lineLength = prefixLength + lineBases + suffixLength + terminatorLength;
+
+                    if (textPosition + lineLength > offset) {
+                        long at = textPosition;
+                        if (patch != null) {
+                            writeClipped(out, patch.prefix, 0, prefixLength, at, offset, end);
+                        }
+                        at += prefixLength;
+                        // Only the slices of the bases that overlap the range are decoded
+                        for (int from = 0; from < lineBases; from += BLOCK_BASES) {
+                            int count = Math.min(BLOCK_BASES, lineBases - from);
+                            if (at + from + count > offset && at + from < end) {
+                                if (bases.length < count) {
+                                    bases = new byte[count];
+                                }
+                                decodeInto(position + from, position + from + count, bases);
+                                writeClipped(out, bases, 0, count, at + from, offset, end);
+                            }
+                        }
+                        at += lineBases;
+                        if (patch != null) {
+                            writeClipped(out, patch.suffix, 0, suffixLength, at, offset, end);
+                        }
+                        at += suffixLength;
+                        writeClipped(out, terminatorBytes, 2 - terminatorLength, terminatorLength, at, offset, end);
+                    }
+                    position += lineBases;
+                    textPosition += lineLength;
+                }
+            }
+        }
+
+        /**
+         * Decodes a region of the sequence, reading only the blocks that cover it
+         * @param start first base, zero-based inclusive
+         * @param end last base, exclusive
+         * @return the bases in the region
+         * @throws IOException if a block checksum fails
+         */
+        public String readBases(long start, long end) throws IOException {
+            if (start < 0 || end < start || end > getBaseCount()) {
+                throw new IndexOutOfBoundsException("Invalid base range [" + start + ", " + end + ")");
+            }
+            if (!isPacked()) {
+                return rawSequence().substring((int) start, (int) end);
+            }
+            byte[] bases = new byte[(int) (end - start)];
+            decodeInto(start, end, bases);
+            return new String(bases, StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        private void decodeInto(long start, long end, byte[] target) throws IOException {
+            long position = start;
+            int written = 0;
+            while (position < end) {
+                int blockIndex = (int) (position / blockBases);
+                ByteBuffer block = readBlock(blockIndex);
+                int offsetInBlock = (int) (position % blockBases);
+                int count = (int) Math.min(end - position, blockBases - offsetInBlock);
+                for (int i = 0; i < count; i++) {
+                    int baseIndex = offsetInBlock + i;
+                    int code = (block.get(block.position() + (baseIndex >> 2)) >> ((3 - (baseIndex & 3)) * 2)) & 3;
+                    target[written + i] = CODE_BASES[code];
+                }
+                position += count;
+                written += count;
+            }
+            applyNRuns(start, end, target);
+        }
+
+        private void applyNRuns(long start, long end, byte[] target) {
+            for (int i = firstNRunEndingAfter(start); i < nRuns.length && nRuns[i][0] < end; i++) {
+                long from = Math.max(start, nRuns[i][0]);
+                long to = Math.min(end, nRuns[i][0] + nRuns[i][1]);
+                Arrays.fill(target, (int) (from - start), (int) (to - start), (byte) 'N');
+            }
+        }
+
+        /**
+         * Binary search over the N runs, which are sorted and disjoint, so decoding a line
+         * does not cost a pass over every run of the file
+         * @return index of the first run that ends after the position, or nRuns.length
+         */
+        private int firstNRunEndingAfter(long position) {
+            int low = 0;
+            int high = nRuns.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (nRuns[mid][0] + nRuns[mid][1] <= position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private ByteBuffer readBlock(int index) throws IOException {
+            // Sequential decoding asks for the same block once per line, so the last one is kept
+            if (index == cachedBlockIndex) {
+                return cachedBlock;
+            }
+            ByteBuffer block = source.read(blockOffsets[index], blockLengths[index]);
+            CRC32 crc = new CRC32();
+            crc.update(block.duplicate());
+            if ((int) crc.getValue() != blockCrcs[index]) {
+                throw new IOException("Checksum mismatch in block " + index);
+            }
+            cachedBlockIndex = index;
+            cachedBlock = block;
+            return block;
+        }
+
+        /**
+         * Writes the part of a chunk that falls inside [offset, end) of the original text
+         * @param at position of the chunk in the original text
+         */
+        private static void writeClipped(OutputStream out, byte[] bytes, int start, int length,
+                                         long at, long offset, long end) throws IOException {
+            long from = Math.max(at, offset);
+            long to = Math.min(at + length, end);
+            if (from < to) {
+                out.write(bytes, start + (int) (from - at), (int) (to - from));
+            }
+        }
+
+        private String rawSequence() throws IOException {
+            if (rawSequence == null) {
+                parseRaw();
+            }
+            return rawSequence;
+        }
+
+        /**
+         * Parses the text of a raw container once, keeping its sequence and contig index
+         */
+        private void parseRaw() throws IOException {
+            StringBuilder sequence = new StringBuilder();
+            List<Contig> records = new ArrayList<>();
+            try (FastaReader reader = FastaReader.open(new ByteArrayInputStream(readFasta()))) {
+                for (FastaReader.Record record : reader) {
+                    long start = sequence.length();
+                    sequence.append(record.sequence());
+                    records.add(new Contig(record.identifier(), start, sequence.length()));
+                }
+            }
+            rawSequence = sequence.toString();
+            contigs = List.copyOf(records);
+        }
+
+        private static long[][] readRuns(DataInputStream in) throws IOException {
+            long[][] runs = new long[in.readInt()][];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = new long[]{in.readLong(), in.readLong()};
+            }
+            return runs;
+        }
+    }
+
+    /**
+     * Contig - Base range of one FASTA record, as used by Reader.readBases
+     * @param identifier first word of the record header, without the '>'
+     * @param start first base, zero-based inclusive
+     * @param end last base, exclusive
+     */
+    public record Contig(String identifier, long start, long end) {
+        public long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Patch - Bytes around the bases of one line and its terminator override
+     */
+    private record Patch(long line, byte[] prefix, byte[] suffix, byte terminator) {
+    }
+
+    /**
+     * Source - Positional reads over a container held in a file or in memory
+     */
+    private interface Source extends Closeable {
+        long size() throws IOException;
+
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    private record FileSource(FileChannel channel) implements Source {
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Truncated packed FASTA container");
+                }
+            }
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private record ByteArraySource(byte[] bytes) implements Source {
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            if (position < 0 || position + length > bytes.length) {
+                throw new EOFException("Truncated packed FASTA container");
+            }
+            return ByteBuffer.wrap(bytes, (int) position, length).slice();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Thrown by the encoder when the text cannot be rebuilt exactly from packed form
+     */
+    static final class UnpackableException extends RuntimeException {
+        UnpackableException() {
+            super(null, null, false, false);
+        }
+    }
+}
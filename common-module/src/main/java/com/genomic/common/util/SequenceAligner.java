@@ -1,11 +1,25 @@
 package com.genomic.common.util;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * SequenceAligner - Provides genomic sequence alignment and similarity calculation
  * Implements the Needleman-Wunsch algorithm for global sequence alignment
  * Used for comparing patient genomic sequences against disease reference sequences
+ * Sequences too long for an n x m matrix are aligned window by window with a Window, whose
+ * memory only grows with the reference
+ * Counts the alignments it runs, their matrix cells and the time spent, for throughput statistics
+ * Slow alignments are recorded as genomic.Alignment Flight Recorder events
  */
 public class SequenceAligner {
+    private static final String KERNEL = "needleman-wunsch";
+    private static final String WINDOW_KERNEL = "window";
+    private static final int GAP_PENALTY = -2;
+    private static final int MATCH_SCORE = 1;
+    private static final int MISMATCH_SCORE = -1;
+    private static final LongAdder ALIGNMENTS = new LongAdder();
+    private static final LongAdder ALIGNED_CELLS = new LongAdder();
+    private static final LongAdder ALIGNMENT_NANOS = new LongAdder();
 
     /**
      * Calculates similarity between two genomic sequences using Needleman-Wunsch algorithm
@@ -28,6 +42,9 @@ public class SequenceAligner {
 
         if (n == 0 || m == 0) return 0.0;
 
+        AlignmentEvent event = new AlignmentEvent();
+        event.begin();
+        long started = System.nanoTime();
         int[][] dp = new int[n + 1][m + 1];
 
         // Initialize DP matrix
@@ -50,11 +67,26 @@ public class SequenceAligner {
             }
         }
 
+        ALIGNMENT_NANOS.add(System.nanoTime() - started);
+        ALIGNED_CELLS.add((long) n * m);
+        ALIGNMENTS.increment();
+
         // Calculate similarity score (normalized between 0 and 1)
         int maxPossibleScore = Math.min(n, m) * matchScore;
         double similarity = (double) (dp[n][m] - (Math.max(n, m) - Math.min(n, m)) * gapPenalty) / maxPossibleScore;
+        similarity = Math.max(0, Math.min(1, similarity)); // Clamp between 0 and 1
 
-        return Math.max(0, Math.min(1, similarity)); // Clamp between 0 and 1
+        event.end();
+        if (event.shouldCommit()) {
+            event.kernel = KERNEL;
+            event.patientLength = n;
+            event.referenceLength = m;
+            event.cells = (long) n * m;
+            event.similarity = similarity;
+            event.matrixBytes = (long) (n + 1) * (m + 1) * Integer.BYTES;
+            event.commit();
+        }
+        return similarity;
     }
 
     /**
@@ -68,7 +100,7 @@ public class SequenceAligner {
      */
     public static boolean isPotentialMatch(String patientSeq, String diseaseSeq, double threshold) {
         // Quick check for obvious non-matches first
-        if (patientSeq.length() < diseaseSeq.length() * 0.5) {
+        if (!passesLengthFilter(patientSeq, diseaseSeq)) {
             return false;
         }
 
@@ -76,4 +108,141 @@ public class SequenceAligner {
         double similarity = calculateSimilarity(patientSeq, diseaseSeq);
         return similarity >= threshold;
     }
-}
\ No newline at end of file
+
+    /**
+     * Length pre-filter of isPotentialMatch: a patient sequence shorter than half the disease
+     * sequence is never aligned. Callers that need the score check this and then align once
+     * with calculateSimilarity, instead of calling isPotentialMatch and aligning again
+     * @param patientSeq patient genomic sequence
+     * @param diseaseSeq disease reference sequence
+     * @return true if the pair is worth aligning
+     */
+    public static boolean passesLengthFilter(String patientSeq, String diseaseSeq) {
+        return passesLengthFilter(patientSeq.length(), diseaseSeq.length());
+    }
+
+    /**
+     * Length pre-filter for a patient sequence that is not held in memory
+     * @param patientLength bases of the patient sequence
+     * @param diseaseLength bases of the disease sequence
+     * @return true if the pair is worth aligning
+     */
+    public static boolean passesLengthFilter(long patientLength, long diseaseLength) {
+        return patientLength >= diseaseLength * 0.5;
+    }
+
+    /**
+     * Window - Aligns a whole reference against its best matching window of a long sequence
+     * The sequence is appended in chunks and its bases before and after the window are free,
+     * so only one row of reference length is kept however long the sequence grows
+     * The similarity is the best window score over the reference length: unrelated flanking
+     * bases neither lower nor raise it, unlike the length correction of calculateSimilarity
+     * Not thread safe, each thread screening a sequence uses its own
+     */
+    public static final class Window {
+        private final char[] reference;
+        private final int[] row;
+        private int best;
+        private long length;
+
+        /**
+         * Starts an alignment against the reference, before any base of the sequence
+         * @param reference the reference sequence, typically a disease sequence
+         */
+        public Window(String reference) {
+            this.reference = reference.replaceAll("[^ACGTN]", "").toUpperCase().toCharArray();
+            this.row = new int[this.reference.length + 1];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = j * GAP_PENALTY;
+            }
+            this.best = row[this.reference.length];
+            ALIGNMENTS.increment();
+        }
+
+        /**
+         * Aligns the next bases of the sequence, characters other than ACGTN are ignored
+         * @param bases the next chunk of the sequence
+         */
+        public void append(CharSequence bases) {
+            int m = reference.length;
+            if (m == 0) {
+                return;
+            }
+            AlignmentEvent event = new AlignmentEvent();
+            event.begin();
+            long started = System.nanoTime();
+            int[] row = this.row;
+            int best = this.best;
+            int aligned = 0;
+            for (int i = 0; i < bases.length(); i++) {
+                char base = Character.toUpperCase(bases.charAt(i));
+                if (base != 'A' && base != 'C' && base != 'G' && base != 'T' && base != 'N') {
+                    continue;
+                }
+                // row[0] stays 0: the window may start at any base
+                int diagonal = row[0];
+                int left = 0;
+                for (int j = 1; j <= m; j++) {
+                    int up = row[j];
+                    int score = Math.max(diagonal + (base == reference[j - 1] ? MATCH_SCORE : MISMATCH_SCORE),
+                            Math.max(up, left) + GAP_PENALTY);
+                    row[j] = score;
+                    diagonal = up;
+                    left = score;
+                }
+                // the window may end at any base
+                best = Math.max(best, row[m]);
+                aligned++;
+            }
+            this.best = best;
+            length += aligned;
+
+            long cells = (long) aligned * m;
+            ALIGNMENT_NANOS.add(System.nanoTime() - started);
+            ALIGNED_CELLS.add(cells);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.kernel = WINDOW_KERNEL;
+                event.patientLength = aligned;
+                event.referenceLength = m;
+                event.cells = cells;
+                event.similarity = getSimilarity();
+                event.matrixBytes = (long) row.length * Integer.BYTES;
+                event.commit();
+            }
+        }
+
+        /**
+         * Similarity of the best window over the bases appended so far
+         * @return similarity score between 0.0 (no similarity) and 1.0 (perfect match)
+         */
+        public double getSimilarity() {
+            if (reference.length == 0 || length == 0) {
+                return 0.0;
+            }
+            return Math.max(0, Math.min(1, (double) best / (reference.length * MATCH_SCORE)));
+        }
+    }
+
+    /**
+     * Number of alignments computed since startup
+     */
+    public static long getAlignmentCount() {
+        return ALIGNMENTS.sum();
+    }
+
+    /**
+     * Number of dynamic programming cells filled since startup, the work alignments cost
+     */
+    public static long getAlignedCells() {
+        return ALIGNED_CELLS.sum();
+    }
+
+    /**
+     * Time spent filling alignment matrices since startup, summed over all threads
+     */
+    public static long getAlignmentNanos() {
+        return ALIGNMENT_NANOS.sum();
+    }
+}
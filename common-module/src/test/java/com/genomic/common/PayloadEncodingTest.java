@@ -0,0 +1,109 @@
+package com.genomic.common;
+
+import com.genomic.common.model.Patient;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PayloadEncodingTest - Both encodings carry the same responses, typed payloads decode to the
+ * JSON the text encoding sends, and error frames keep their retry-after hint
+ */
+class PayloadEncodingTest {
+    private static final Patient PATIENT = Patient.builder()
+            .patientId("PAT000001")
+            .fullName("José Pérez, Jr.")
+            .documentId("DOC-1")
+            .age(42)
+            .sex("M")
+            .email("jose@example.org")
+            .registrationDate(Instant.ofEpochMilli(1_700_000_000_123L))
+            .clinicalNotes(null)
+            .checksumFasta("ab".repeat(32))
+            .fileSizeBytes(123_456_789_012L)
+            .fastaFilename("PAT000001.fasta")
+            .build();
+
+    @Test
+    void responsesRoundTripInBothEncodings() throws IOException {
+        JSONObject other = new JSONObject().put("count", 3).put("nested", new JSONObject().put("a", "b"));
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            assertSameJson(ProtocolResponse.success("saved").data(),
+                    roundTrip(encoding, ProtocolResponse.success("saved")).data());
+            JSONObject created = new JSONObject().put("patientId", "PAT000002").put("message", "created");
+            assertSameJson(created, roundTrip(encoding, ProtocolResponse.success(created)).data());
+            assertSameJson(other, roundTrip(encoding, ProtocolResponse.success(other)).data());
+        }
+        assertSame(PayloadSchema.MESSAGE, PayloadSchema.match(ProtocolResponse.success("saved").data()));
+        assertSame(PayloadSchema.JSON, PayloadSchema.match(other));
+    }
+
+    @Test
+    void patientsDecodeToTheJsonTheTextEncodingSends() throws IOException {
+        JSONObject expected = PayloadSchema.PATIENT.toJson(PATIENT);
+        assertEquals(1_700_000_000_123L, expected.getLong("registrationDate"));
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            byte[] frame = encoding.encodeSuccess(PayloadSchema.PATIENT, PATIENT);
+            ProtocolResponse response = encoding.readResponse(new DataInputStream(new ByteArrayInputStream(frame)));
+            assertTrue(response.isSuccess());
+            assertSameJson(expected, response.data());
+        }
+        assertTrue(PayloadEncoding.BINARY.encodeSuccess(PayloadSchema.PATIENT, PATIENT).length
+                < PayloadEncoding.JSON.encodeSuccess(PayloadSchema.PATIENT, PATIENT).length);
+    }
+
+    @Test
+    void errorFramesKeepTheirRetryAfterHint() throws IOException {
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            ProtocolResponse busy = roundTrip(encoding,
+                    ProtocolResponse.error(ProtocolConstants.ERR_SERVER_BUSY, "try later", 250));
+            assertFalse(busy.isSuccess());
+            assertEquals(ProtocolConstants.ERR_SERVER_BUSY, busy.errorCode());
+            assertEquals("try later", busy.errorMessage());
+            assertEquals(250, busy.retryAfterMillis());
+
+            ProtocolResponse missing = roundTrip(encoding,
+                    ProtocolResponse.error(ProtocolConstants.ERR_PATIENT_NOT_FOUND, "no such patient"));
+            assertEquals(ProtocolConstants.ERR_PATIENT_NOT_FOUND, missing.errorCode());
+            assertEquals(0, missing.retryAfterMillis());
+        }
+    }
+
+    @Test
+    void malformedBinaryFramesAreRejected() {
+        assertThrows(IOException.class, () -> read(new byte[]{0, 0, 0, 0}));
+        assertThrows(IOException.class, () -> read(new byte[]{0, 0, 0, 2, 0, 99}));
+        assertThrows(IOException.class, () -> read(new byte[]{0, 0, 0, 10, 0}));
+        assertEquals(PayloadEncoding.BINARY, PayloadEncoding.fromWireName("BINARY"));
+        assertEquals(PayloadEncoding.JSON, PayloadEncoding.fromWireName("msgpack"));
+    }
+
+    private static ProtocolResponse roundTrip(PayloadEncoding encoding, ProtocolResponse response) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        encoding.writeResponse(response, new DataOutputStream(buffer));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        ProtocolResponse decoded = encoding.readResponse(in);
+        assertEquals(0, in.available());
+        return decoded;
+    }
+
+    private static ProtocolResponse read(byte[] frame) throws IOException {
+        return PayloadEncoding.BINARY.readResponse(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+
+    private static void assertSameJson(JSONObject expected, JSONObject actual) {
+        assertTrue(expected.similar(actual), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,94 @@
+package com.genomic.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ProtocolRequestTest - Field slicing, END markers, optional fields and checksum validation of
+ * request frames
+ */
+class ProtocolRequestTest {
+    private static final String CHECKSUM = "0123456789abcdef".repeat(4);
+
+    @Test
+    void fieldsAreSlicedBetweenDelimiters() throws ProtocolException {
+        ProtocolRequest create = new ProtocolRequest(
+                "CREATE_PATIENT|{\"fullName\":\"Doe|Jane\",\"age\":40}|>id\nACGT\nEND\n");
+        assertEquals(ProtocolConstants.CMD_CREATE_PATIENT, create.getCommand());
+        assertEquals("Doe|Jane", create.getMetadata().getString("fullName"));
+        assertEquals(">id\nACGT", create.getFastaContent());
+
+        ProtocolRequest update = new ProtocolRequest("UPDATE_PATIENT|PAT000001|{\"age\":41}");
+        assertEquals("PAT000001", update.getPatientId());
+        assertNull(update.getFastaContent());
+
+        ProtocolRequest chunk = new ProtocolRequest("UPLOAD_CHUNK|up-1|4096|1024\nEND");
+        assertEquals("up-1", chunk.getUploadId());
+        assertEquals(4096, chunk.getUploadOffset());
+        assertEquals(1024, chunk.getFastaLength());
+        assertTrue(chunk.hasFastaStream());
+
+        ProtocolRequest hello = new ProtocolRequest("HELLO|BINARY|" + ProtocolConstants.KEEP_ALIVE);
+        assertEquals("BINARY", hello.getEncoding());
+        assertTrue(hello.isKeepAlive());
+        assertFalse(new ProtocolRequest("HELLO|JSON").isKeepAlive());
+    }
+
+    @Test
+    void fastaRangesAreOptional() throws ProtocolException {
+        ProtocolRequest whole = new ProtocolRequest("GET_PATIENT_FASTA|PAT000001");
+        assertEquals(0, whole.getRangeOffset());
+        assertEquals(-1, whole.getRangeLength());
+
+        ProtocolRequest tail = new ProtocolRequest("GET_PATIENT_FASTA|PAT000001|100");
+        assertEquals(100, tail.getRangeOffset());
+        assertEquals(-1, tail.getRangeLength());
+
+        ProtocolRequest range = new ProtocolRequest("GET_PATIENT_FASTA|PAT000001|100|50\nEND");
+        assertEquals(100, range.getRangeOffset());
+        assertEquals(50, range.getRangeLength());
+
+        assertInvalid("GET_PATIENT_FASTA|PAT000001|-1");
+    }
+
+    @Test
+    void checksumsAreAsciiHexInEitherCase() throws ProtocolException {
+        assertEquals(CHECKSUM, new ProtocolRequest("HAS_SEQUENCE|" + CHECKSUM).getChecksum());
+        assertEquals(CHECKSUM, new ProtocolRequest("HAS_SEQUENCE| " + CHECKSUM.toUpperCase() + " ").getChecksum());
+
+        ProtocolRequest open = new ProtocolRequest("UPLOAD_OPEN|{\"age\":40}|1000|" + CHECKSUM);
+        assertEquals(1000, open.getFastaLength());
+        assertEquals(CHECKSUM, open.getChecksum());
+        assertFalse(open.hasFastaStream());
+
+        assertInvalid("HAS_SEQUENCE|" + CHECKSUM.substring(1));
+        assertInvalid("HAS_SEQUENCE|" + CHECKSUM.substring(1) + "g");
+        // Digits and letters outside ASCII that Character.digit would take as hex
+        assertInvalid("HAS_SEQUENCE|" + CHECKSUM.substring(1) + "٣");
+        assertInvalid("HAS_SEQUENCE|" + CHECKSUM.substring(1) + "Ａ");
+        assertInvalid("UPLOAD_OPEN|{\"age\":40}|1000|" + CHECKSUM + "|extra");
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        assertInvalid("");
+        assertInvalid("  \nEND\n");
+        assertInvalid("NO_SUCH_COMMAND|x");
+        assertInvalid("GET_PATIENT|");
+        assertInvalid("CREATE_PATIENT|{\"age\":40}");
+        assertInvalid("CREATE_PATIENT|{\"age\":40");
+        assertInvalid("UPDATE_PATIENT|PAT000001|{} trailing");
+        assertInvalid("CREATE_PATIENT_STREAM|{}|-5");
+        assertInvalid("UPLOAD_CHUNK|up-1|4096");
+    }
+
+    private static void assertInvalid(String frame) {
+        ProtocolException e = assertThrows(ProtocolException.class, () -> new ProtocolRequest(frame), frame);
+        assertEquals(ProtocolConstants.ERR_INVALID_FORMAT, e.getErrorCode());
+    }
+}
@@ -0,0 +1,94 @@
+package com.genomic.common.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * FastaReaderTest - Records, headers and byte offsets of multi-record FASTA, read from streams
+ * and mapped files alike
+ */
+class FastaReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsCarryTheirHeadersOffsetsAndBases() throws IOException {
+        String fasta = "\n>chr1 first record\nACGT\r\n  GG  \n\n>chr2\nTTTT\n>chr3   spaced   header  \r\nNNA";
+        List<FastaReader.Record> records = readAll(FastaReader.open(stream(fasta)));
+
+        assertEquals(3, records.size());
+        assertRecord(fasta, records.get(0), "chr1", "first record", "ACGTGG");
+        assertRecord(fasta, records.get(1), "chr2", "", "TTTT");
+        assertRecord(fasta, records.get(2), "chr3", "spaced   header", "NNA");
+        assertEquals(fasta.length(), records.get(2).offset() + records.get(2).length());
+    }
+
+    @Test
+    void mappedFilesAndStreamsAgree() throws IOException {
+        byte[] fasta = PackedFastaTest.randomFasta(new Random(8), 5, 30_000, 0.01);
+        Path file = directory.resolve("genome.fasta");
+        Files.write(file, fasta);
+
+        List<FastaReader.Record> fromStream = readAll(FastaReader.open(new ByteArrayInputStream(fasta)));
+        List<FastaReader.Record> fromFile = readAll(FastaReader.open(file));
+        assertEquals(fromStream, fromFile);
+        assertEquals(5, fromFile.size());
+
+        StringBuilder bases = new StringBuilder();
+        for (FastaReader.Record record : fromFile) {
+            bases.append(record.sequence());
+        }
+        assertEquals(PackedFastaTest.sequenceOf(fasta), bases.toString());
+    }
+
+    @Test
+    void emptyInputHasNoRecordsAndLeadingDataIsRejected() throws IOException {
+        try (FastaReader reader = FastaReader.open(stream(" \n\n"))) {
+            assertNull(reader.next());
+        }
+        try (FastaReader reader = FastaReader.open(stream("ACGT\n>chr1\nACGT\n"))) {
+            assertThrows(IOException.class, reader::next);
+        }
+        try (FastaReader reader = FastaReader.open(stream(">chr1\nACGT\n"))) {
+            reader.iterator();
+            assertThrows(IllegalStateException.class, reader::iterator);
+        }
+    }
+
+    private static void assertRecord(String fasta, FastaReader.Record record, String identifier, String description,
+                                     String sequence) {
+        assertEquals(identifier, record.identifier());
+        assertEquals(description, record.description());
+        assertEquals(sequence, record.sequence());
+        assertEquals('>', fasta.charAt((int) record.offset()));
+        assertEquals('\n', fasta.charAt((int) record.sequenceOffset() - 1));
+    }
+
+    private static List<FastaReader.Record> readAll(FastaReader reader) throws IOException {
+        List<FastaReader.Record> records = new ArrayList<>();
+        try (reader) {
+            for (FastaReader.Record record : reader) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static ByteArrayInputStream stream(String fasta) {
+        return new ByteArrayInputStream(fasta.getBytes(StandardCharsets.US_ASCII));
+    }
+}
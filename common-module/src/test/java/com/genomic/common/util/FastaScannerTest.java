@@ -0,0 +1,86 @@
+package com.genomic.common.util;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FastaScannerTest - Validation errors, checksum and counts, and the packed container, fed in
+ * chunks of any size
+ */
+class FastaScannerTest {
+
+    @Test
+    void validContentIsChecksummedCountedAndPacked() throws Exception {
+        String fasta = ">chr1 first\nACGTN\n  ACGT  \r\n>chr2\nGG\n\n";
+        byte[] bytes = fasta.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+
+        FastaScanner.Result result = FastaScanner.scan(bytes, packed);
+        assertEquals(FastaValidator.calculateChecksum(fasta), result.checksum());
+        assertEquals(bytes.length, result.sizeBytes());
+        assertEquals(11, result.baseCount());
+        assertEquals(2, result.recordCount());
+        assertArrayEquals(bytes, PackedFasta.decode(packed.toByteArray()));
+    }
+
+    @Test
+    void chunkBoundariesDoNotChangeTheResult() throws Exception {
+        byte[] bytes = PackedFastaTest.randomFasta(new Random(4), 3, 20_000, 0.01);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        FastaScanner.Result expected = FastaScanner.scan(bytes, whole);
+
+        Random random = new Random(5);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+            FastaScanner scanner = new FastaScanner(chunked);
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(bytes.length - offset, attempt == 0 ? 1 : 1 + random.nextInt(5000));
+                scanner.update(bytes, offset, length);
+                offset += length;
+            }
+            assertEquals(expected, scanner.finish());
+            assertArrayEquals(whole.toByteArray(), chunked.toByteArray());
+        }
+    }
+
+    @Test
+    void invalidContentIsRejectedWithItsPosition() {
+        assertInvalid("", "empty");
+        assertInvalid(" \n\n ", "empty");
+        assertInvalid(">only a header\n", "2 lines");
+        assertInvalid("ACGT\nACGT\n", "must start with '>'");
+        assertInvalid(">\nACGT\n", "identifier");
+        assertInvalid(">id\nACXT\n", "'X' at line 2, column 3");
+        assertInvalid(">id\nacgt\n", "'a' at line 2, column 1");
+        assertInvalid(">id\nAC GT\n", "line 2, column 3");
+        assertInvalid(">id\nACGT\n\nACGT\n", "line 3 is empty");
+        assertInvalid(">id\nACGT\n>\nACGT\n", "header at line 3");
+        assertInvalid(">id\nACGT\n>next\n", "record at line 3 has no sequence");
+        assertInvalid(">id\n>next\nACGT\n", "record at line 1 has no sequence");
+    }
+
+    @Test
+    void validatorAgreesWithTheScanner() throws ProtocolException {
+        FastaValidator.validateFasta(">id\nACGT\n");
+        assertThrows(ProtocolException.class, () -> FastaValidator.validateFasta(null));
+        assertThrows(ProtocolException.class, () -> FastaValidator.validateFasta(">id\nACGU\n"));
+    }
+
+    private static void assertInvalid(String fasta, String expectedMessage) {
+        ProtocolException e = assertThrows(ProtocolException.class,
+                () -> FastaScanner.scan(fasta.getBytes(StandardCharsets.US_ASCII), new ByteArrayOutputStream()),
+                fasta);
+        assertEquals(ProtocolConstants.ERR_INVALID_FASTA, e.getErrorCode());
+        assertTrue(e.getMessage().contains(expectedMessage), e.getMessage());
+    }
+}
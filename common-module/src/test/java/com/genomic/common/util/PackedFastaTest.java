@@ -0,0 +1,208 @@
+package com.genomic.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PackedFastaTest - Byte-exact round trips in packed and raw mode, byte ranges, contig indexes
+ * and base ranges with N runs
+ */
+class PackedFastaTest {
+
+    @Test
+    void oddTextRoundTripsByteForByte() throws IOException {
+        String[] samples = {
+                "",
+                ">only a header",
+                ">id\nACGT",
+                ">id\nACGT\n",
+                ">id\r\nACGT\r\nGG\r\n",
+                ">id\nACGT\r\nGG\n\n  AC  \nNNNN\r\r\n",
+                "\n\n>late header\nACGT\n>second\n\nTTTT\n",
+                ">lowercase goes raw\nacgtRYKM\n",
+                ">text in a sequence line\nACGT hello\n",
+        };
+        for (String sample : samples) {
+            byte[] fasta = sample.getBytes(StandardCharsets.UTF_8);
+            byte[] container = PackedFasta.encode(fasta);
+            assertArrayEquals(fasta, PackedFasta.decode(container), sample);
+            try (PackedFasta.Reader reader = PackedFasta.open(container)) {
+                assertEquals(fasta.length, reader.getOriginalLength());
+            }
+        }
+    }
+
+    @Test
+    void packedModeIsAQuarterOfTheText() throws IOException {
+        byte[] fasta = randomFasta(new Random(1), 3, 200_000, 0.0);
+        byte[] container = PackedFasta.encode(fasta);
+        assertTrue(container.length < fasta.length / 3, "container " + container.length + " bytes");
+        try (PackedFasta.Reader reader = PackedFasta.open(container)) {
+            assertTrue(reader.isPacked());
+        }
+        assertArrayEquals(fasta, PackedFasta.decode(container));
+    }
+
+    @Test
+    void baseRangesMatchTheSequenceAcrossBlocksAndNRuns() throws IOException {
+        Random random = new Random(2);
+        // Many short N runs, spanning several blocks
+        byte[] fasta = randomFasta(random, 2, 3 * PackedFasta.BLOCK_BASES, 0.02);
+        String sequence = sequenceOf(fasta);
+        try (PackedFasta.Reader reader = PackedFasta.open(PackedFasta.encode(fasta))) {
+            assertTrue(reader.isPacked());
+            assertEquals(sequence.length(), reader.getBaseCount());
+            assertEquals(sequence, reader.readBases(0, sequence.length()));
+            for (int i = 0; i < 500; i++) {
+                int start = random.nextInt(sequence.length());
+                int end = start + random.nextInt(Math.min(5000, sequence.length() - start) + 1);
+                assertEquals(sequence.substring(start, end), reader.readBases(start, end));
+            }
+            assertEquals("", reader.readBases(10, 10));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.readBases(0, sequence.length() + 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.readBases(5, 4));
+        }
+    }
+
+    @Test
+    void byteRangesMatchTheOriginalText() throws IOException {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(new String(randomFasta(random, 3, 50_000, 0.01), StandardCharsets.US_ASCII));
+        // Patched lines between the plain ones: CRLF, surrounding whitespace, a line without bases
+        text.insert(text.indexOf("\n", 20_000), '\r');
+        text.insert(text.indexOf("\n", 40_000) + 1, "  ACGT \n");
+        text.insert(text.indexOf("\n", 60_000) + 1, "\n");
+        text.setLength(text.length() - 1); // no final line terminator
+        for (String fasta : new String[]{text.toString(), text.toString().replace("\n", "\r\n"), ">id\nACGT"}) {
+            byte[] original = fasta.getBytes(StandardCharsets.US_ASCII);
+            try (PackedFasta.Reader reader = PackedFasta.open(PackedFasta.encode(original))) {
+                assertTrue(reader.isPacked());
+                for (int i = 0; i < 300; i++) {
+                    int offset = random.nextInt(original.length + 1);
+                    int length = random.nextInt(Math.min(10_000, original.length - offset) + 1);
+                    assertArrayEquals(Arrays.copyOfRange(original, offset, offset + length), range(reader, offset, length));
+                }
+                // A chunked download puts the whole file back together
+                ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+                for (int offset = 0; offset < original.length; offset += 4096) {
+                    reader.writeFasta(chunks, offset, Math.min(4096, original.length - offset));
+                }
+                assertArrayEquals(original, chunks.toByteArray());
+                assertThrows(IndexOutOfBoundsException.class, () -> range(reader, original.length, 1));
+                assertThrows(IndexOutOfBoundsException.class, () -> range(reader, -1, 1));
+            }
+        }
+    }
+
+    @Test
+    void rawContainersIndexTheirContigsOnce() throws IOException {
+        byte[] fasta = ">chr1 lower case\nacgtacgt\nAC\n>chr2\nRYKMSW\n>chr3 empty\n>chr4\nttt\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        try (PackedFasta.Reader reader = PackedFasta.open(PackedFasta.encode(fasta))) {
+            assertFalse(reader.isPacked());
+            List<PackedFasta.Contig> contigs = reader.getContigs();
+            assertEquals(List.of(
+                    new PackedFasta.Contig("chr1", 0, 10),
+                    new PackedFasta.Contig("chr2", 10, 16),
+                    new PackedFasta.Contig("chr3", 16, 16),
+                    new PackedFasta.Contig("chr4", 16, 19)), contigs);
+            assertSame(contigs, reader.getContigs());
+            assertEquals(19, reader.getBaseCount());
+            assertEquals("acgtacgtAC", reader.readBases(0, 10));
+            assertEquals("RYKMSW", reader.readBases(10, 16));
+            assertEquals("ttt", reader.readBases(16, 19));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.readBases(0, 20));
+        }
+    }
+
+    @Test
+    void packedContainersFindContigsFromTheirHeaders() throws IOException {
+        byte[] fasta = PackedFastaTest.randomFasta(new Random(6), 4, 1000, 0.01);
+        try (PackedFasta.Reader reader = PackedFasta.open(PackedFasta.encode(fasta))) {
+            List<PackedFasta.Contig> contigs = reader.getContigs();
+            assertEquals(4, contigs.size());
+            for (int i = 0; i < contigs.size(); i++) {
+                assertEquals(new PackedFasta.Contig("chr" + (i + 1), i * 1000L, (i + 1) * 1000L), contigs.get(i));
+            }
+            assertSame(contigs, reader.getContigs());
+        }
+    }
+
+    @Test
+    void corruptedBlockIsDetected() throws IOException {
+        byte[] container = PackedFasta.encode(randomFasta(new Random(3), 1, 10_000, 0.0));
+        container[20] ^= 0x55; // inside the first data block
+        try (PackedFasta.Reader reader = PackedFasta.open(container)) {
+            assertThrows(IOException.class, () -> reader.readBases(0, 100));
+        }
+        assertThrows(IOException.class, () -> PackedFasta.open(">id\nACGT\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static byte[] range(PackedFasta.Reader reader, long offset, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.writeFasta(out, offset, length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Random multi-record FASTA with 60-base lines
+     * @param nRate chance that a base starts a short run of N
+     */
+    static byte[] randomFasta(Random random, int records, int basesPerRecord, double nRate) {
+        StringBuilder fasta = new StringBuilder();
+        for (int r = 0; r < records; r++) {
+            fasta.append(">chr").append(r + 1).append(" synthetic record\n");
+            int column = 0;
+            for (int i = 0; i < basesPerRecord; i++) {
+                if (random.nextDouble() < nRate) {
+                    int run = 1 + random.nextInt(20);
+                    for (int n = 0; n < run && i < basesPerRecord; n++, i++) {
+                        column = appendBase(fasta, 'N', column);
+                    }
+                    i--;
+                    continue;
+                }
+                column = appendBase(fasta, "ACGT".charAt(random.nextInt(4)), column);
+            }
+            if (column > 0) {
+                fasta.append('\n');
+            }
+        }
+        return fasta.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int appendBase(StringBuilder fasta, char base, int column) {
+        fasta.append(base);
+        if (++column == 60) {
+            fasta.append('\n');
+            return 0;
+        }
+        return column;
+    }
+
+    /**
+     * Bases of every record concatenated, the coordinates used by Reader.readBases
+     */
+    static String sequenceOf(byte[] fasta) {
+        StringBuilder sequence = new StringBuilder();
+        for (String line : new String(fasta, StandardCharsets.US_ASCII).split("\r?\n")) {
+            if (!line.startsWith(">")) {
+                sequence.append(line.strip());
+            }
+        }
+        return sequence.toString();
+    }
+}
@@ -0,0 +1,260 @@
+package com.genomic.server;
+
+import com.genomic.common.ProtocolConstants;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdmissionController - Bounds the requests the server works on at once, so overload is shed
+ * with a fast SERVER_BUSY instead of queueing without limit
+ * Commands go through one of two lanes: heavy ones that screen a genome (creates, updates and
+ * UPLOAD_FINALIZE) and light ones (lookups, counts, deletes, downloads, upload chunks). Each lane
+ * admits up to its in-flight limit; further requests wait in a bounded queue, in arrival order, for
+ * at most the queue timeout. A request beyond the queue, or still waiting at the timeout, is
+ * rejected with a retry-after hint: the time the lane needs to work off its backlog at its recent
+ * mean service time. Screening therefore cannot starve lookups, and the other way round
+ * HELLO, PING and GET_SERVER_STATS are never limited, so liveness checks and monitoring keep
+ * working under overload
+ */
+public class AdmissionController {
+    private static final long MIN_RETRY_AFTER_MS = 100;
+    private static final long MAX_RETRY_AFTER_MS = 30_000;
+
+    private final Limits limits;
+    private final Lane heavy;
+    private final Lane light;
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * Limits - Capacity of the connection executor and of both request lanes
+     * @param maxConnections connections served at once, each by its own thread
+     * @param connectionQueue accepted connections waiting for a thread; beyond it they are closed
+     * @param maxHeavyRequests screening requests processed at once
+     * @param heavyQueue screening requests waiting for a slot
+     * @param maxLightRequests other requests processed at once
+     * @param lightQueue other requests waiting for a slot
+     * @param queueTimeoutMillis longest wait for a slot before a request is rejected
+     */
+    public record Limits(int maxConnections, int connectionQueue, int maxHeavyRequests, int heavyQueue,
+                         int maxLightRequests, int lightQueue, long queueTimeoutMillis) {
+
+        /**
+         * Screening is CPU bound, so one heavy request per core; light requests mostly wait on
+         * disk and the network
+         */
+        public static Limits defaults() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new Limits(512, 128, cores, 4 * cores, 64, 256, 2_000);
+        }
+
+        /**
+         * Reads the limits from the server configuration, each falling back to its default
+         * MAX_CONNECTIONS, CONNECTION_QUEUE, MAX_HEAVY_REQUESTS, HEAVY_QUEUE, MAX_LIGHT_REQUESTS,
+         * LIGHT_QUEUE and QUEUE_TIMEOUT_MS
+         */
+        public static Limits fromProperties(Properties p) {
+            Limits d = defaults();
+            return new Limits(
+                    Integer.parseInt(p.getProperty("MAX_CONNECTIONS", String.valueOf(d.maxConnections))),
+                    Integer.parseInt(p.getProperty("CONNECTION_QUEUE", String.valueOf(d.connectionQueue))),
+                    Integer.parseInt(p.getProperty("MAX_HEAVY_REQUESTS", String.valueOf(d.maxHeavyRequests))),
+                    Integer.parseInt(p.getProperty("HEAVY_QUEUE", String.valueOf(d.heavyQueue))),
+                    Integer.parseInt(p.getProperty("MAX_LIGHT_REQUESTS", String.valueOf(d.maxLightRequests))),
+                    Integer.parseInt(p.getProperty("LIGHT_QUEUE", String.valueOf(d.lightQueue))),
+                    Long.parseLong(p.getProperty("QUEUE_TIMEOUT_MS", String.valueOf(d.queueTimeoutMillis))));
+        }
+    }
+
+    public AdmissionController(Limits limits) {
+        this.limits = limits;
+        this.heavy = new Lane("heavy", limits.maxHeavyRequests(), limits.heavyQueue(), limits.queueTimeoutMillis());
+        this.light = new Lane("light", limits.maxLightRequests(), limits.lightQueue(), limits.queueTimeoutMillis());
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    public Lane getHeavyLane() {
+        return heavy;
+    }
+
+    public Lane getLightLane() {
+        return light;
+    }
+
+    /**
+     * Admits a request, waiting in its lane's queue if the lane is at its limit
+     * @param command the request command
+     * @return the permit, to be closed once the response is written
+     * @throws ServerBusyException if the lane's queue is full or the wait times out
+     */
+    public Permit admit(String command) throws ServerBusyException {
+        Lane lane = laneOf(command);
+        return lane == null ? Permit.UNLIMITED : lane.admit();
+    }
+
+    /**
+     * Counts a connection closed at accept because the connection executor was full
+     */
+    public void connectionRejected() {
+        rejectedConnections.increment();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    private Lane laneOf(String command) {
+        switch (command) {
+            case ProtocolConstants.CMD_HELLO:
+            case ProtocolConstants.CMD_PING:
+            case ProtocolConstants.CMD_GET_SERVER_STATS:
+                return null;
+            case ProtocolConstants.CMD_CREATE_PATIENT:
+            case ProtocolConstants.CMD_CREATE_PATIENT_STREAM:
+            case ProtocolConstants.CMD_CREATE_PATIENT_BY_CHECKSUM:
+            case ProtocolConstants.CMD_UPDATE_PATIENT:
+            case ProtocolConstants.CMD_UPDATE_PATIENT_STREAM:
+            case ProtocolConstants.CMD_UPLOAD_FINALIZE:
+                return heavy;
+            default:
+                return light;
+        }
+    }
+
+    /**
+     * Lane - In-flight limit and bounded wait queue of one class of commands
+     */
+    public static final class Lane {
+        private static final double SERVICE_TIME_WEIGHT = 0.1;
+
+        private final String name;
+        private final int maxInFlight;
+        private final int maxQueued;
+        private final long queueTimeoutNanos;
+        private final Semaphore slots;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        // Moving average of the time a request holds its slot; updates may race, it is a hint
+        private volatile double meanServiceMillis;
+
+        private Lane(String name, int maxInFlight, int maxQueued, long queueTimeoutMillis) {
+            this.name = name;
+            this.maxInFlight = maxInFlight;
+            this.maxQueued = maxQueued;
+            this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+            this.slots = new Semaphore(maxInFlight, true);
+        }
+
+        private Permit admit() throws ServerBusyException {
+            // A zero timeout still honours the queue order, unlike tryAcquire()
+            boolean acquired = tryAcquire(0);
+            if (!acquired) {
+                if (queued.incrementAndGet() > maxQueued) {
+                    queued.decrementAndGet();
+                    throw reject("queue is full");
+                }
+                try {
+                    acquired = tryAcquire(queueTimeoutNanos);
+                } finally {
+                    queued.decrementAndGet();
+                }
+                if (!acquired) {
+                    throw reject("request timed out in the queue");
+                }
+            }
+            admitted.increment();
+            return new Permit(this, System.nanoTime());
+        }
+
+        private boolean tryAcquire(long timeoutNanos) {
+            try {
+                return slots.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private ServerBusyException reject(String reason) {
+            rejected.increment();
+            return new ServerBusyException("Server busy, " + name + " " + reason, getRetryAfterMillis());
+        }
+
+        private void release(long startNanos) {
+            double serviceMillis = (System.nanoTime() - startNanos) / 1e6;
+            double mean = meanServiceMillis;
+            meanServiceMillis = mean == 0 ? serviceMillis : mean + SERVICE_TIME_WEIGHT * (serviceMillis - mean);
+            slots.release();
+        }
+
+        /**
+         * Time to work off the current backlog of the lane, at its mean service time
+         */
+        public long getRetryAfterMillis() {
+            double backlog = (double) (getInFlight() + queued.get() + 1) / maxInFlight;
+            long estimate = Math.round(backlog * meanServiceMillis);
+            return Math.max(MIN_RETRY_AFTER_MS, Math.min(MAX_RETRY_AFTER_MS, estimate));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public int getInFlight() {
+            return maxInFlight - slots.availablePermits();
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        public long getAdmitted() {
+            return admitted.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public double getMeanServiceMillis() {
+            return meanServiceMillis;
+        }
+    }
+
+    /**
+     * Permit - A slot held by an admitted request, released when closed
+     */
+    public static final class Permit implements AutoCloseable {
+        private static final Permit UNLIMITED = new Permit(null, 0);
+
+        private final Lane lane;
+        private final long startNanos;
+
+        private Permit(Lane lane, long startNanos) {
+            this.lane = lane;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (lane != null) {
+                lane.release(startNanos);
+            }
+        }
+    }
+}
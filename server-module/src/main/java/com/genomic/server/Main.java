@@ -1,16 +1,20 @@
 package com.genomic.server;
 
+import com.genomic.common.util.Logger;
 import com.genomic.server.service.*;
+import com.genomic.server.trace.RequestTrace;
+import com.genomic.server.trace.RingBufferExporter;
+import com.genomic.server.trace.SlowRequestLog;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.security.KeyStore;
+import java.util.Locale;
 import java.util.Properties;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Main - Entry point for the Genomic Server application
@@ -30,15 +34,20 @@ public class Main {
         //@throws IOException if configuration file cannot be loaded
         try (InputStream input = Main.class.getClassLoader().getResourceAsStream("configuration.properties")) {
             p.load(input);
-            System.out.println("Properties loaded successfully!");
-        } catch (IOException ex) {
-            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.setMinimumLogLevel(Logger.LogLevel.valueOf(
+                    p.getProperty("LOG_LEVEL", Logger.LogLevel.INFO.name()).trim().toUpperCase(Locale.ROOT)));
+            String logFile = p.getProperty("LOG_FILE", "server-module/src/main/resources/logs/server.log");
+            Logger.setLogFile(logFile.isBlank() ? null : Paths.get(logFile));
+            Logger.info("Properties loaded successfully!");
+        } catch (IOException | RuntimeException ex) {
+            Logger.error("Error loading configuration", ex);
+            Logger.flush(1000);
             return;
         }
         // Creates and configures SSL context for secure communication
         String certificateRoute = p.getProperty("SSL_CERTIFICATE_ROUTE");
         String certificatePassword = p.getProperty("SSL_PASSWORD");
-        System.out.println("Certificate route: " + certificateRoute + " and password: " + certificatePassword);
+        Logger.info("Loading SSL certificate: " + certificateRoute);
 
         try {
             // Load the keystore from classpath
@@ -59,19 +68,42 @@ public class Main {
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
 
-            System.out.println("SSL Context created successfully with protocol: " + sslContext.getProtocol());
+            Logger.info("SSL Context created successfully with protocol: " + sslContext.getProtocol());
+
+            // Keep the latest request traces, and log the stage breakdown of slow requests
+            RequestTrace.addExporter(new RingBufferExporter(Integer.parseInt(
+                    p.getProperty("TRACE_BUFFER_SIZE", String.valueOf(RingBufferExporter.DEFAULT_CAPACITY)))));
+            SlowRequestLog slowRequestLog = new SlowRequestLog(Long.parseLong(
+                    p.getProperty("SLOW_REQUEST_MS", String.valueOf(SlowRequestLog.DEFAULT_THRESHOLD_MS))),
+                    SlowRequestLog.DEFAULT_CAPACITY);
+            RequestTrace.addExporter(slowRequestLog);
+            PerformanceMonitor.install();
+            PerformanceMonitor.monitor(slowRequestLog);
 
             // Initialize services
-            DiseaseService diseaseService = new DiseaseService();
+            String diseaseDbPath = p.getProperty("DISEASE_DB_PATH");
+            DiseaseService diseaseService = diseaseDbPath == null || diseaseDbPath.isBlank()
+                    ? new DiseaseService() : new DiseaseService(Paths.get(diseaseDbPath));
             PatientService patientService = new PatientService(diseaseService);
-            System.out.println("Services initialized successfully");
+            PerformanceMonitor.monitor(patientService);
+            Logger.info("Services initialized successfully");
+
+            // Flush the patient store when the JVM stops
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    patientService.close();
+                } catch (IOException e) {
+                    Logger.error("Error closing patient store: " + e.getMessage());
+                }
+            }));
 
-            // Pass the SSLContext to your TCPServer
-            TCPServer server = new TCPServer(2020, sslContext);
+            // Pass the SSLContext to your TCPServer, with the admission limits of the configuration
+            AdmissionController admission = new AdmissionController(AdmissionController.Limits.fromProperties(p));
+            TCPServer server = new TCPServer(2020, sslContext, patientService, admission);
             server.start();
 
         } catch (Exception e) {
-            System.err.println("Error setting up SSL: " + e.getMessage());
+            Logger.error("Error setting up SSL: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.genomic.server;
+
+import com.genomic.common.util.LatencyHistogram;
+import com.genomic.common.util.SequenceAligner;
+import com.genomic.server.service.PatientResponseCache;
+import com.genomic.server.service.PatientService;
+import com.genomic.server.storage.BlobStore;
+import com.genomic.server.storage.PatientStore;
+import com.genomic.server.trace.RequestTrace;
+import com.genomic.server.trace.SlowRequestLog;
+import com.genomic.server.trace.TraceExporter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PerformanceMonitor - Live server statistics, answered to GET_SERVER_STATS
+ * Request counts, error codes and latency histograms per command come from the finished
+ * request traces, so nothing is timed twice; the monitor is a TraceExporter registered by
+ * install. Connections are counted by TCPServer, alignment throughput comes from
+ * SequenceAligner, and executor, cache and slow request figures are read from the objects
+ * registered with monitor at the moment a snapshot is taken
+ * Recording is a few LongAdder and histogram increments, with no lock on the request path
+ */
+public final class PerformanceMonitor implements TraceExporter {
+    private static final long HISTOGRAM_MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SLOW_REQUESTS_REPORTED = 5;
+    private static final PerformanceMonitor INSTANCE = new PerformanceMonitor();
+
+    private final long startMillis = System.currentTimeMillis();
+    private final AtomicBoolean installed = new AtomicBoolean();
+    private final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder totalConnections = new LongAdder();
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile AdmissionController admission;
+    private volatile PatientService patientService;
+    private volatile SlowRequestLog slowRequestLog;
+
+    private PerformanceMonitor() {
+    }
+
+    /**
+     * Starts collecting request statistics, once per JVM
+     */
+    public static void install() {
+        if (INSTANCE.installed.compareAndSet(false, true)) {
+            RequestTrace.addExporter(INSTANCE);
+        }
+    }
+
+    /**
+     * Reports the thread and queue figures of the executor that serves connections
+     */
+    public static void monitor(ThreadPoolExecutor executor) {
+        INSTANCE.executor = executor;
+    }
+
+    /**
+     * Reports the in-flight, queued and rejected requests of admission control
+     */
+    public static void monitor(AdmissionController admission) {
+        INSTANCE.admission = admission;
+    }
+
+    /**
+     * Reports the cache and storage figures of the patient service
+     */
+    public static void monitor(PatientService patientService) {
+        INSTANCE.patientService = patientService;
+    }
+
+    /**
+     * Reports the latest slow requests of the slow request log
+     */
+    public static void monitor(SlowRequestLog slowRequestLog) {
+        INSTANCE.slowRequestLog = slowRequestLog;
+    }
+
+    public static void connectionOpened() {
+        INSTANCE.openConnections.incrementAndGet();
+        INSTANCE.totalConnections.increment();
+    }
+
+    public static void connectionClosed() {
+        INSTANCE.openConnections.decrementAndGet();
+    }
+
+    @Override
+    public void export(RequestTrace trace) {
+        String command = trace.getCommand() == null ? "UNPARSED" : trace.getCommand();
+        CommandStats stats = commands.computeIfAbsent(command, key -> new CommandStats());
+        stats.latencies.record(TimeUnit.NANOSECONDS.toMicros(trace.getDurationNanos()));
+        if (trace.getErrorCode() != null) {
+            stats.errors.computeIfAbsent(trace.getErrorCode(), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Current statistics, latencies in milliseconds
+     * @return uptime, connections, executor, admission, requests per command, alignment, caches and slow requests
+     */
+    public static JSONObject snapshot() {
+        return INSTANCE.toJson();
+    }
+
+    private JSONObject toJson() {
+        JSONObject stats = new JSONObject();
+        stats.put("uptimeSeconds", (System.currentTimeMillis() - startMillis) / 1000);
+
+        JSONObject connections = new JSONObject();
+        connections.put("open", openConnections.get());
+        connections.put("total", totalConnections.sum());
+        stats.put("connections", connections);
+
+        ThreadPoolExecutor pool = executor;
+        if (pool != null) {
+            JSONObject executorStats = new JSONObject();
+            executorStats.put("activeThreads", pool.getActiveCount());
+            executorStats.put("poolSize", pool.getPoolSize());
+            executorStats.put("largestPoolSize", pool.getLargestPoolSize());
+            executorStats.put("queueDepth", pool.getQueue().size());
+            executorStats.put("completedTasks", pool.getCompletedTaskCount());
+            stats.put("executor", executorStats);
+        }
+
+        AdmissionController limits = admission;
+        if (limits != null) {
+            JSONObject admissionStats = new JSONObject();
+            admissionStats.put("rejectedConnections", limits.getRejectedConnections());
+            admissionStats.put("heavy", lane(limits.getHeavyLane()));
+            admissionStats.put("light", lane(limits.getLightLane()));
+            stats.put("admission", admissionStats);
+        }
+
+        long totalRequests = 0;
+        long totalErrors = 0;
+        JSONObject commandStats = new JSONObject();
+        for (Map.Entry<String, CommandStats> entry : new TreeMap<>(commands).entrySet()) {
+            LatencyHistogram latencies = entry.getValue().latencies;
+            JSONObject errors = new JSONObject();
+            long errorCount = 0;
+            for (Map.Entry<String, LongAdder> error : entry.getValue().errors.entrySet()) {
+                errors.put(error.getKey(), error.getValue().sum());
+                errorCount += error.getValue().sum();
+            }
+            JSONObject command = new JSONObject();
+            command.put("count", latencies.getCount());
+            command.put("errorCount", errorCount);
+            command.put("errors", errors);
+            command.put("latencyMs", latency(latencies));
+            commandStats.put(entry.getKey(), command);
+            totalRequests += latencies.getCount();
+            totalErrors += errorCount;
+        }
+        JSONObject requests = new JSONObject();
+        requests.put("total", totalRequests);
+        requests.put("errors", totalErrors);
+        requests.put("commands", commandStats);
+        stats.put("requests", requests);
+
+        long alignmentNanos = SequenceAligner.getAlignmentNanos();
+        JSONObject alignment = new JSONObject();
+        alignment.put("alignments", SequenceAligner.getAlignmentCount());
+        alignment.put("cells", SequenceAligner.getAlignedCells());
+        alignment.put("seconds", alignmentNanos / 1e9);
+        alignment.put("cellsPerSecond", alignmentNanos == 0 ? 0 : SequenceAligner.getAlignedCells() * 1e9 / alignmentNanos);
+        stats.put("alignment", alignment);
+
+        PatientService service = patientService;
+        if (service != null) {
+            PatientResponseCache responseCache = service.getResponseCache();
+            JSONObject caches = new JSONObject();
+            JSONObject responses = cache(responseCache.getHits(), responseCache.getMisses(), responseCache.getEvictions());
+            responses.put("entries", responseCache.getEntryCount());
+            responses.put("sizeBytes", responseCache.getSizeBytes());
+            caches.put("patientResponses", responses);
+            PatientStore store = service.getPatientStore();
+            caches.put("storePages", cache(store.getCacheHits(), store.getCacheMisses(), store.getCacheEvictions()));
+            stats.put("caches", caches);
+
+            BlobStore blobs = service.getFastaStore();
+            JSONObject fasta = new JSONObject();
+            fasta.put("blobs", blobs.getBlobCount());
+            fasta.put("physicalBytes", blobs.getPhysicalBytes());
+            fasta.put("dedupRatio", blobs.getDedupRatio());
+            stats.put("fastaStore", fasta);
+        }
+
+        SlowRequestLog slowLog = slowRequestLog;
+        if (slowLog != null) {
+            JSONObject slow = new JSONObject();
+            slow.put("thresholdMs", slowLog.getThresholdMillis());
+            slow.put("count", slowLog.getSlowCount());
+            JSONArray recent = new JSONArray();
+            for (RequestTrace trace : slowLog.getRecent(SLOW_REQUESTS_REPORTED)) {
+                recent.put(trace.toString());
+            }
+            slow.put("recent", recent);
+            stats.put("slowRequests", slow);
+        }
+        return stats;
+    }
+
+    private static JSONObject latency(LatencyHistogram latencies) {
+        JSONObject latency = new JSONObject();
+        latency.put("mean", latencies.getMean() / 1000);
+        latency.put("p50", latencies.getValueAtPercentile(50) / 1000.0);
+        latency.put("p90", latencies.getValueAtPercentile(90) / 1000.0);
+        latency.put("p99", latencies.getValueAtPercentile(99) / 1000.0);
+        latency.put("p999", latencies.getValueAtPercentile(99.9) / 1000.0);
+        latency.put("max", latencies.getMax() / 1000.0);
+        return latency;
+    }
+
+    private static JSONObject lane(AdmissionController.Lane lane) {
+        JSONObject stats = new JSONObject();
+        stats.put("inFlight", lane.getInFlight());
+        stats.put("maxInFlight", lane.getMaxInFlight());
+        stats.put("queued", lane.getQueued());
+        stats.put("maxQueued", lane.getMaxQueued());
+        stats.put("admitted", lane.getAdmitted());
+        stats.put("rejected", lane.getRejected());
+        stats.put("meanServiceMs", lane.getMeanServiceMillis());
+        stats.put("retryAfterMs", lane.getRetryAfterMillis());
+        return stats;
+    }
+
+    private static JSONObject cache(long hits, long misses, long evictions) {
+        JSONObject cache = new JSONObject();
+        cache.put("hits", hits);
+        cache.put("misses", misses);
+        cache.put("evictions", evictions);
+        cache.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return cache;
+    }
+
+    /**
+     * CommandStats - Latencies and error counts of one command
+     */
+    private static final class CommandStats {
+        private final LatencyHistogram latencies = new LatencyHistogram(HISTOGRAM_MAX_MICROS);
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
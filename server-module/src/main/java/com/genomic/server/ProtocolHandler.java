@@ -1,96 +1,326 @@
 package com.genomic.server;
 
 import com.genomic.common.*;
+import com.genomic.common.model.Patient;
+import com.genomic.common.util.Logger;
+import com.genomic.common.util.PackedFasta;
 import org.json.JSONObject;
 import com.genomic.server.service.PatientService;
+import com.genomic.server.trace.RequestTrace;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * ProtocolHandler - Handles client requests and processes genomic protocol commands
- * Each instance handles a single client connection in a separate thread
+ * Each instance handles a single client connection in a separate thread, either a single
+ * request or a keep-alive session of consecutive requests
+ * Every request is admitted by the AdmissionController before it is processed
  */
-public record ProtocolHandler(Socket clientSocket, PatientService patientService) {
+public record ProtocolHandler(Socket clientSocket, PatientService patientService, AdmissionController admission) {
+    private static final int FASTA_CHUNK_SIZE = 64 * 1024;
+    // Longer than the client pool keeps idle connections, so clients close them first
+    private static final int SESSION_IDLE_TIMEOUT_MS = 60_000;
 
     /**
-     * Processes a client request from start to finish
+     * Processes the requests of a client connection from start to finish
      * Handles reading, parsing, processing, and response sending
+     * An optional HELLO frame first negotiates the payload encoding of the responses, and with
+     * keep-alive turns the connection into a session: requests are then served one after another
+     * until the client closes it or it stays idle for SESSION_IDLE_TIMEOUT_MS. Without it, the
+     * connection serves a single request as before
      */
     public void handleRequest() {
         try (DataInputStream dis = new DataInputStream(clientSocket.getInputStream());
              DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream())) {
+            PayloadEncoding encoding = PayloadEncoding.JSON;
+            boolean session = false;
+            boolean open = true;
+            while (open) {
+                boolean inSync = true;
+                try {
+                    String frame = readFrame(dis, session);
+                    if (frame == null) {
+                        break;
+                    }
+                    // A failed request may leave part of its FASTA body unread, or a download half sent
+                    inSync = !carriesPayload(frame);
 
-            System.out.println("[" + Thread.currentThread().getName() + "] Reading request from client...");
+                    ProtocolRequest request = parseRequest(frame);
+                    if (ProtocolConstants.CMD_HELLO.equals(request.getCommand())) {
+                        encoding = negotiate(request, dos);
+                        session = request.isKeepAlive();
+                        if (session) {
+                            clientSocket.setSoTimeout(SESSION_IDLE_TIMEOUT_MS);
+                        }
+                        continue;
+                    }
+                    AdmissionController.Permit permit;
+                    try (RequestTrace.Span span = RequestTrace.span("admit")) {
+                        permit = admission.admit(request.getCommand());
+                    } catch (ServerBusyException e) {
+                        // Shed before the body is read, so skip it to keep the session usable
+                        if (request.hasFastaStream()) {
+                            dis.skipNBytes(request.getFastaLength());
+                        }
+                        inSync = true;
+                        throw e;
+                    }
+                    try (permit) {
+                        inSync |= respond(request, dis, encoding, dos);
+                    }
 
-            // Read the complete request in one go
-            String rawRequest = dis.readUTF();
-            System.out.println("[" + Thread.currentThread().getName() + "] Complete request received: " + rawRequest);
+                } catch (ProtocolException e) {
+                    // Shed requests are expected under overload, logging each one would add to it
+                    Logger.log(e instanceof ServerBusyException ? Logger.LogLevel.DEBUG : Logger.LogLevel.INFO,
+                            "Sending error response: " + e.getErrorCode() + " - " + e.getMessage(), null);
+                    traceError(e.getErrorCode());
+                    try (RequestTrace.Span span = RequestTrace.span("write")) {
+                        encoding.writeResponse(e.toResponse(), dos);
+                    }
+                } catch (RuntimeException e) {
+                    Logger.error("Unexpected error", e);
+                    traceError(ProtocolConstants.ERR_SERVER_ERROR);
+                    encoding.writeResponse(ProtocolResponse.error(
+                            ProtocolConstants.ERR_SERVER_ERROR, "Internal server error"), dos);
+                } finally {
+                    dos.flush();
+                    RequestTrace.finish();
+                }
+                open = session && inSync;
+            }
+        } catch (IOException e) {
+            Logger.warning("I/O error handling request: " + e.getMessage());
+        } finally {
+            // A connection dropped mid-request still reports how far it got
+            RequestTrace.finish();
+        }
+    }
 
-            // Remove the END marker if present
-            if (rawRequest.endsWith("\nEND\n") || rawRequest.endsWith("END\n")) {
-                rawRequest = rawRequest.substring(0, rawRequest.lastIndexOf("END")).trim();
+    /**
+     * Reads one request frame and begins its trace
+     * A single-request connection is traced from the start of the read, so the read stage includes
+     * the TLS handshake; in a session the trace begins once the next frame's length has arrived,
+     * leaving out the idle time between requests
+     * @param session whether the connection is a keep-alive session
+     * @return the frame, or null when a session is closed by the client or times out between requests
+     */
+    private String readFrame(DataInputStream dis, boolean session) throws IOException {
+        Logger.debug("Reading request from client...");
+        if (!session) {
+            RequestTrace.begin();
+            try (RequestTrace.Span span = RequestTrace.span("read")) {
+                return dis.readUTF();
             }
+        }
+        int length;
+        try {
+            length = dis.readUnsignedShort();
+        } catch (EOFException | SocketTimeoutException e) {
+            Logger.debug("Session ended: " + (e instanceof EOFException ? "closed by client" : "idle timeout"));
+            return null;
+        }
+        RequestTrace.begin();
+        try (RequestTrace.Span span = RequestTrace.span("read")) {
+            // readUTF decodes from a stream that starts with the length, so put it back in front
+            byte[] frame = new byte[length + 2];
+            frame[0] = (byte) (length >>> 8);
+            frame[1] = (byte) length;
+            dis.readFully(frame, 2, length);
+            return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(frame)));
+        }
+    }
 
-            System.out.println("[" + Thread.currentThread().getName() + "] Processing request: " + rawRequest);
+    /**
+     * Parses one request frame; the parser drops a trailing END marker
+     */
+    private ProtocolRequest parseRequest(String rawRequest) throws ProtocolException {
+        ProtocolRequest request;
+        try (RequestTrace.Span span = RequestTrace.span("parse")) {
+            request = new ProtocolRequest(rawRequest);
+        }
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.setCommand(request.getCommand());
+            trace.setPayloadBytes(rawRequest.length()
+                    + (carriesPayload(rawRequest) ? Math.max(request.getFastaLength(), 0) : 0));
+            trace.setPatientId(request.getPatientId());
+        }
+        // The frame may hold a whole genome, so only its command and size are logged
+        Logger.debug("Processing " + request.getCommand() + " request (" + rawRequest.length() + " chars)");
+        return request;
+    }
 
-            ProtocolRequest request = new ProtocolRequest(rawRequest);
-            ProtocolResponse response = processRequest(request);
+    private static void traceError(String errorCode) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.setErrorCode(errorCode);
+        }
+    }
 
-            // Send response
-            String responseStr = response.toProtocolString();
-            System.out.println("[" + Thread.currentThread().getName() + "] Sending response: " + responseStr);
-            dos.writeUTF(responseStr);
+    /**
+     * Whether raw bytes follow the frame on the connection, either way
+     */
+    private static boolean carriesPayload(String frame) {
+        String command = frame.stripLeading();
+        return command.startsWith(ProtocolConstants.CMD_CREATE_PATIENT_STREAM)
+                || command.startsWith(ProtocolConstants.CMD_UPDATE_PATIENT_STREAM)
+                || command.startsWith(ProtocolConstants.CMD_UPLOAD_CHUNK)
+                || command.startsWith(ProtocolConstants.CMD_GET_PATIENT_FASTA);
+    }
 
-        } catch (ProtocolException e) {
-            try {
-                DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream());
-                String errorResponse = e.toResponse().toProtocolString();
-                System.out.println("[" + Thread.currentThread().getName() + "] Sending error response: " + errorResponse);
-                dos.writeUTF(errorResponse);
-            } catch (IOException ioException) {
-                System.err.println("Failed to send error response: " + ioException.getMessage());
+    /**
+     * Answers a HELLO frame, always in JSON, with the encoding used for the rest of the connection
+     * and whether it is kept open as a session
+     * @return the requested encoding, or JSON if it is not supported
+     */
+    private PayloadEncoding negotiate(ProtocolRequest hello, DataOutputStream dos) throws IOException {
+        PayloadEncoding encoding = PayloadEncoding.fromWireName(hello.getEncoding());
+        JSONObject accepted = new JSONObject();
+        accepted.put("encoding", encoding.getWireName());
+        accepted.put("keepAlive", hello.isKeepAlive());
+        PayloadEncoding.JSON.writeResponse(ProtocolResponse.success(accepted), dos);
+        dos.flush();
+        return encoding;
+    }
+
+    /**
+     * Processes a request and writes its response in the negotiated encoding
+     * Patient lookups write the frame cached for the current snapshot, encoding it on a miss
+     * @return whether the request succeeded
+     */
+    private boolean respond(ProtocolRequest request, DataInputStream body, PayloadEncoding encoding,
+                         DataOutputStream dos) throws IOException, ProtocolException {
+        boolean success = true;
+        if (ProtocolConstants.CMD_GET_PATIENT.equals(request.getCommand())) {
+            byte[] response = patientService.getPatientResponse(request.getPatientId(), encoding);
+            try (RequestTrace.Span span = RequestTrace.span("write")) {
+                dos.write(response);
             }
-        } catch (IOException e) {
-            System.err.println("I/O error handling request: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
-            try {
-                DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream());
-                ProtocolResponse error = ProtocolResponse.error(
-                        ProtocolConstants.ERR_SERVER_ERROR, "Internal server error");
-                dos.writeUTF(error.toProtocolString());
-            } catch (IOException ioException) {
-                System.err.println("Failed to send error response: " + ioException.getMessage());
+        } else if (ProtocolConstants.CMD_GET_PATIENT_FASTA.equals(request.getCommand())) {
+            streamFasta(request, encoding, dos);
+        } else {
+            ProtocolResponse response = processRequest(request, body);
+            RequestTrace trace = RequestTrace.current();
+            if (trace != null && response.isSuccess() && response.data() != null && response.data().has("patientId")) {
+                trace.setPatientId(response.data().getString("patientId"));
+            } else if (trace != null && !response.isSuccess()) {
+                trace.setErrorCode(response.errorCode());
+            }
+            try (RequestTrace.Span span = RequestTrace.span("write")) {
+                encoding.writeResponse(response, dos);
             }
+            success = response.isSuccess();
+        }
+        Logger.debug("Sent " + request.getCommand() + " response (" + encoding.getWireName() + ")");
+        return success;
+    }
+
+    /**
+     * Streams a stored genome: a header response with the checksum and the byte range, the raw
+     * bytes of the range in chunks, then a trailer response with the SHA-256 of the bytes sent
+     * The blob is decoded block by block from its file, so the genome is never held in memory
+     */
+    private void streamFasta(ProtocolRequest request, PayloadEncoding encoding, DataOutputStream dos)
+            throws IOException, ProtocolException {
+        Patient patient = patientService.getPatientRecord(request.getPatientId());
+        try (PackedFasta.Reader reader = patientService.openFasta(patient)) {
+            long totalLength = reader.getOriginalLength();
+            long offset = request.getRangeOffset();
+            if (offset > totalLength) {
+                throw new ProtocolException("Range offset " + offset + " is beyond the FASTA length " + totalLength,
+                        ProtocolConstants.ERR_INVALID_FORMAT);
+            }
+            long length = request.getRangeLength() < 0 ? totalLength - offset
+                    : Math.min(request.getRangeLength(), totalLength - offset);
+
+            JSONObject header = new JSONObject();
+            header.put("patientId", patient.getPatientId());
+            header.put("checksumFasta", patient.getChecksumFasta());
+            header.put("totalLength", totalLength);
+            header.put("offset", offset);
+            header.put("length", length);
+            encoding.writeResponse(ProtocolResponse.success(header), dos);
+
+            MessageDigest digest = sha256();
+            try (RequestTrace.Span span = RequestTrace.span("write")) {
+                BufferedOutputStream chunks = new BufferedOutputStream(dos, FASTA_CHUNK_SIZE);
+                reader.writeFasta(new DigestOutputStream(chunks, digest), offset, length);
+                chunks.flush();
+            }
+
+            JSONObject trailer = new JSONObject();
+            trailer.put("rangeChecksum", HexFormat.of().formatHex(digest.digest()));
+            encoding.writeResponse(ProtocolResponse.success(trailer), dos);
+            Logger.debug("Streamed " + length + " FASTA bytes of " + patient.getPatientId());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
     /**
      * Processes the protocol request and returns appropriate response
+     * @param request the parsed request
+     * @param body the connection input, positioned at the FASTA body of streamed commands
      */
-    private ProtocolResponse processRequest(ProtocolRequest request) {
+    private ProtocolResponse processRequest(ProtocolRequest request, DataInputStream body) {
         try {
             switch (request.getCommand()) {
                 case ProtocolConstants.CMD_CREATE_PATIENT:
-                    String patientId = patientService.createPatient(
-                            request.getMetadata(), request.getFastaContent());
-                    JSONObject createResponse = new JSONObject();
-                    createResponse.put("patientId", patientId);
-                    createResponse.put("message", "Patient created successfully");
-                    return ProtocolResponse.success(createResponse);
+                    return created(patientService.createPatient(
+                            request.getMetadata(), request.getFastaContent()));
+
+                case ProtocolConstants.CMD_CREATE_PATIENT_STREAM:
+                    return created(patientService.createPatient(
+                            request.getMetadata(), body, request.getFastaLength()));
+
+                case ProtocolConstants.CMD_CREATE_PATIENT_BY_CHECKSUM:
+                    return created(patientService.createPatientFromChecksum(
+                            request.getMetadata(), request.getChecksum()));
+
+                case ProtocolConstants.CMD_HAS_SEQUENCE:
+                    return ProtocolResponse.success(patientService.hasSequence(request.getChecksum()));
+
+                case ProtocolConstants.CMD_UPLOAD_OPEN:
+                    return ProtocolResponse.success(patientService.openUpload(
+                            request.getMetadata(), request.getFastaLength(), request.getChecksum()));
+
+                case ProtocolConstants.CMD_UPLOAD_CHUNK:
+                    return ProtocolResponse.success(patientService.appendUpload(
+                            request.getUploadId(), request.getUploadOffset(), body, request.getFastaLength()));
+
+                case ProtocolConstants.CMD_UPLOAD_STATUS:
+                    return ProtocolResponse.success(patientService.getUploadStatus(request.getUploadId()));
 
-                case ProtocolConstants.CMD_GET_PATIENT:
-                    JSONObject patientData = patientService.getPatient(request.getPatientId());
-                    return ProtocolResponse.success(patientData);
+                case ProtocolConstants.CMD_UPLOAD_FINALIZE:
+                    return created(patientService.finalizeUpload(request.getUploadId()));
 
                 case ProtocolConstants.CMD_UPDATE_PATIENT:
                     patientService.updatePatient(
                             request.getPatientId(), request.getMetadata(), request.getFastaContent());
                     return ProtocolResponse.success("Patient updated successfully");
 
+                case ProtocolConstants.CMD_UPDATE_PATIENT_STREAM:
+                    patientService.updatePatient(
+                            request.getPatientId(), request.getMetadata(), body, request.getFastaLength());
+                    return ProtocolResponse.success("Patient updated successfully");
+
                 case ProtocolConstants.CMD_DELETE_PATIENT:
                     patientService.deletePatient(request.getPatientId());
                     return ProtocolResponse.success("Patient deleted successfully");
@@ -98,6 +328,12 @@ public record ProtocolHandler(Socket clientSocket, PatientService patientService
                 case ProtocolConstants.CMD_GET_PATIENT_COUNT:
                     return ProtocolResponse.success("Patient count:" + patientService.getTotalPatientCount());
 
+                case ProtocolConstants.CMD_PING:
+                    return ProtocolResponse.success("pong");
+
+                case ProtocolConstants.CMD_GET_SERVER_STATS:
+                    return ProtocolResponse.success(PerformanceMonitor.snapshot());
+
                 default:
                     return ProtocolResponse.error(
                             ProtocolConstants.ERR_INVALID_FORMAT, "Unknown command: " + request.getCommand());
@@ -109,4 +345,11 @@ public record ProtocolHandler(Socket clientSocket, PatientService patientService
                     ProtocolConstants.ERR_SERVER_ERROR, "Internal server error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static ProtocolResponse created(String patientId) {
+        JSONObject createResponse = new JSONObject();
+        createResponse.put("patientId", patientId);
+        createResponse.put("message", "Patient created successfully");
+        return ProtocolResponse.success(createResponse);
+    }
+}
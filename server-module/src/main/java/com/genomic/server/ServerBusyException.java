@@ -0,0 +1,29 @@
+package com.genomic.server;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+import com.genomic.common.ProtocolResponse;
+import lombok.Getter;
+
+/**
+ * ServerBusyException - A request shed by admission control
+ * Answered with SERVER_BUSY and a hint of how long the client should wait before retrying
+ */
+@Getter
+public class ServerBusyException extends ProtocolException {
+    private final long retryAfterMillis;
+
+    /**
+     * @param message human-readable reason
+     * @param retryAfterMillis suggested delay before retrying
+     */
+    public ServerBusyException(String message, long retryAfterMillis) {
+        super(message, ProtocolConstants.ERR_SERVER_BUSY);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    @Override
+    public ProtocolResponse toResponse() {
+        return ProtocolResponse.error(getErrorCode(), getMessage(), retryAfterMillis);
+    }
+}
@@ -1,6 +1,7 @@
 package com.genomic.server;
 
-import com.genomic.server.service.*;
+import com.genomic.common.util.Logger;
+import com.genomic.server.service.PatientService;
 
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
@@ -10,37 +11,66 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TCPServer - Main server class that handles SSL/TLS connections and client requests
  * Manages thread pool, SSL configuration, and client connection handling
+ * All connections share a single PatientService so its indexes stay consistent
+ * Connections are served by a bounded thread pool with a bounded queue; one accepted while both
+ * are full is closed at once, before its TLS handshake, so overload never piles up threads
  */
-public record TCPServer(int serverPort, SSLContext sslContext) {
+public record TCPServer(int serverPort, SSLContext sslContext, PatientService patientService,
+                        AdmissionController admission) {
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    /**
+     * Creates a server with the default admission limits
+     */
+    public TCPServer(int serverPort, SSLContext sslContext, PatientService patientService) {
+        this(serverPort, sslContext, patientService, new AdmissionController(AdmissionController.Limits.defaults()));
+    }
 
     /**
      * Starts the SSL/TCP server and begins accepting client connections
      * Initializes thread pool, SSL socket, and enters main accept loop
      */
     public void start() {
-        // Create a thread pool to handle multiple clients
-        ExecutorService threadPool = Executors.newCachedThreadPool();
+        // Create a thread pool to handle multiple clients, its threads stop when idle
+        AdmissionController.Limits limits = admission.getLimits();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(limits.maxConnections(), limits.maxConnections(),
+                IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(limits.connectionQueue()));
+        threadPool.allowCoreThreadTimeOut(true);
+        PerformanceMonitor.monitor(threadPool);
+        PerformanceMonitor.monitor(admission);
         try {
             SSLServerSocket serverSocket = getSslServerSocket();
 
-            System.out.println("SSL Server started on port: " + serverPort);
-            System.out.println("Enabled protocols: " + Arrays.toString(serverSocket.getEnabledProtocols()));
-            System.out.println("Ready to handle multiple simultaneous connections...");
+            Logger.info("SSL Server started on port: " + serverPort);
+            Logger.info("Enabled protocols: " + Arrays.toString(serverSocket.getEnabledProtocols()));
+            Logger.info("Ready to handle multiple simultaneous connections...");
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("Client connected: " + clientSocket.getRemoteSocketAddress());
+                Logger.debug("Client connected: " + clientSocket.getRemoteSocketAddress());
 
-                threadPool.execute(new ClientHandler(clientSocket));
+                try {
+                    threadPool.execute(new ClientHandler(clientSocket, patientService, admission));
+                } catch (RejectedExecutionException e) {
+                    admission.connectionRejected();
+                    Logger.debug("Connection queue full, closing " + clientSocket.getRemoteSocketAddress());
+                    try {
+                        clientSocket.close();
+                    } catch (IOException closeError) {
+                        Logger.warning("Error closing client socket: " + closeError.getMessage());
+                    }
+                }
             }
         } catch (IOException e) {
-            System.out.println("Server error: " + e.getMessage());
+            Logger.error("Server error: " + e.getMessage());
         }
     }
 
@@ -64,27 +94,25 @@ public record TCPServer(int serverPort, SSLContext sslContext) {
     /**
      * ClientHandler - Handles individual client connections in separate threads
      */
-    private record ClientHandler(Socket clientSocket) implements Runnable {
+    private record ClientHandler(Socket clientSocket, PatientService patientService,
+                                 AdmissionController admission) implements Runnable {
         @Override
         public void run() {
+            PerformanceMonitor.connectionOpened();
             try {
-                // Initialize services (you'll need to create PatientService)
-                DiseaseService diseaseService = new DiseaseService();
-                PatientService patientService = new PatientService(diseaseService); // You'll implement this later
-
-                ProtocolHandler protocolHandler = new ProtocolHandler(clientSocket, patientService);
+                ProtocolHandler protocolHandler = new ProtocolHandler(clientSocket, patientService, admission);
                 protocolHandler.handleRequest();
 
             } catch (Exception e) {
-                System.out.println("Error handling client " + clientSocket.getRemoteSocketAddress() + ": " + e.getMessage());
+                Logger.error("Error handling client " + clientSocket.getRemoteSocketAddress() + ": " + e.getMessage());
             } finally {
                 try {
                     clientSocket.close();
-                    System.out.println("[" + Thread.currentThread().getName() + "] Client disconnected: " +
-                            clientSocket.getRemoteSocketAddress());
+                    Logger.debug("Client disconnected: " + clientSocket.getRemoteSocketAddress());
                 } catch (IOException e) {
-                    System.out.println("Error closing client socket: " + e.getMessage());
+                    Logger.warning("Error closing client socket: " + e.getMessage());
                 }
+                PerformanceMonitor.connectionClosed();
             }
         }
     }
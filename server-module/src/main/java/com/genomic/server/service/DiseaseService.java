@@ -4,13 +4,21 @@ import com.genomic.common.model.Disease;
 import com.genomic.common.model.DiseaseMatchResult;
 import com.genomic.common.ProtocolException;
 import com.genomic.common.ProtocolConstants;
+import com.genomic.common.util.CsvParser;
+import com.genomic.common.util.FastaReader;
+import com.genomic.common.util.Logger;
+import com.genomic.common.util.PackedFasta;
 import com.genomic.common.util.SequenceAligner;
+import com.genomic.server.trace.RequestTrace;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,7 +30,15 @@ import java.util.concurrent.ConcurrentMap;
  * and generates disease detection reports
  */
 public class DiseaseService {
+    private static final String REPORT_HEADER =
+            "patientId,diseaseId,diseaseName,severity,similarity,detectionDate,description,contig\n";
+    // A full alignment holds a score matrix of record x disease length, longer records are aligned by window
+    private static final long MAX_MATRIX_BASES = 64 * 1024;
+    // Bases decoded at a time when a record is aligned by window
+    private static final int WINDOW_CHUNK_BASES = 1024 * 1024;
+
     private final ConcurrentMap<String, Disease> diseases = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> diseaseBases = new ConcurrentHashMap<>();
     private final Path diseaseDbDirectory;
 
     /**
@@ -30,26 +46,29 @@ public class DiseaseService {
      * @throws ProtocolException if initialization fails
      */
     public DiseaseService() throws ProtocolException {
+        this(Paths.get("server-module/src/main/resources/disease_db"));
+    }
+
+    /**
+     * Initializes the DiseaseService from another disease database, e.g. a generated one
+     * @param diseaseDbDirectory directory holding catalog.csv and the disease FASTA files
+     * @throws ProtocolException if initialization fails
+     */
+    public DiseaseService(Path diseaseDbDirectory) throws ProtocolException {
+        this.diseaseDbDirectory = diseaseDbDirectory;
         try {
-            diseaseDbDirectory = Paths.get("server-module/src/main/resources/disease_db");
             loadDiseasesFromCatalog();
-            if(false){
-                System.out.println("=== DISEASE DATABASE LOADED ===");
-                System.out.println("Loaded " + diseases.size() + " diseases:");
+            Logger.info("Loaded " + diseases.size() + " diseases from " + diseaseDbDirectory);
+            if (Logger.isDebugEnabled()) {
                 for (Disease disease : diseases.values()) {
-                    System.out.println(" - " + disease.getDiseaseId() + ": " + disease.getName());
                     try {
-                        String sequence = getDiseaseSequence(disease.getDiseaseId());
-                        if (sequence != null) {
-                            String cleanSeq = sequence.replaceAll("^>.*\\n", "").replaceAll("\\n", "");
-                            System.out.println("   Sequence length: " + cleanSeq.length());
-                            System.out.println("   Sequence start: " + cleanSeq.substring(0, Math.min(50, cleanSeq.length())));
-                        }
+                        String bases = getDiseaseBases(disease);
+                        Logger.debug(" - " + disease.getDiseaseId() + ": " + disease.getName() + ", "
+                                + (bases == null ? "no sequence" : bases.length() + " bases"));
                     } catch (IOException e) {
-                        System.out.println("   Error reading sequence: " + e.getMessage());
+                        Logger.debug(" - " + disease.getDiseaseId() + ": error reading sequence: " + e.getMessage());
                     }
                 }
-                System.out.println("=== DISEASE DATABASE END ===");
             }
         } catch (IOException e) {
             throw new ProtocolException("Failed to initialize DiseaseService: " + e.getMessage(),
@@ -65,7 +84,7 @@ public class DiseaseService {
         Path catalogFile = diseaseDbDirectory.resolve("catalog.csv");
 
         if (!Files.exists(catalogFile)) {
-            System.out.println("Warning: Disease catalog file not found: " + catalogFile);
+            Logger.warning("Disease catalog file not found: " + catalogFile);
             return;
         }
 
@@ -113,6 +132,7 @@ public class DiseaseService {
 
     /**
      * Retrieves the genomic sequence for a disease
+     * Catalog entries may point at plain FASTA or at PackedFasta containers
      * @param diseaseId the disease identifier
      * @return FASTA sequence as string, or null if not found
      * @throws IOException if sequence file cannot be read
@@ -128,6 +148,11 @@ public class DiseaseService {
             return null;
         }
 
+        if (PackedFasta.isPacked(fastaFile)) {
+            try (PackedFasta.Reader reader = PackedFasta.open(fastaFile)) {
+                return new String(reader.readFasta(), StandardCharsets.UTF_8);
+            }
+        }
         return Files.readString(fastaFile);
     }
 
@@ -138,40 +163,150 @@ public class DiseaseService {
      * @return list of disease matches meeting the similarity threshold
      */
     public List<DiseaseMatchResult> checkForMatches(String patientGenome, double similarityThreshold) {
+        return checkForMatches(null, patientGenome.replaceAll("^>.*\\n", "").replaceAll("\\n", ""),
+                similarityThreshold);
+    }
+
+    /**
+     * Checks one record of a patient genome for matches against all diseases
+     * @param contig identifier of the record, reported with each match, or null
+     * @param sequence the bases of the record, without header or line breaks
+     * @param similarityThreshold minimum similarity score for a match (0.0 to 1.0)
+     * @return list of disease matches meeting the similarity threshold
+     */
+    public List<DiseaseMatchResult> checkForMatches(String contig, String sequence, double similarityThreshold) {
         List<DiseaseMatchResult> matches = new ArrayList<>();
 
-        System.out.println("Checking against " + diseases.size() + " diseases...");
+        // Per disease output is costly to build and only useful when debugging the screening
+        boolean debug = Logger.isDebugEnabled();
+        if (debug) {
+            Logger.debug("Checking " + (contig == null ? "sequence" : "contig " + contig)
+                    + " against " + diseases.size() + " diseases...");
+        }
 
         for (Disease disease : diseases.values()) {
             try {
-                String diseaseSequence = getDiseaseSequence(disease.getDiseaseId());
-                if (diseaseSequence != null) {
-                    String cleanDiseaseSeq = diseaseSequence.replaceAll("^>.*\\n", "").replaceAll("\\n", "");
-                    String cleanPatientSeq = patientGenome.replaceAll("^>.*\\n", "").replaceAll("\\n", "");
+                String cleanDiseaseSeq = getDiseaseBases(disease);
+                if (cleanDiseaseSeq != null) {
+                    String cleanPatientSeq = sequence;
 
-                    System.out.println("Comparing with " + disease.getDiseaseId() + " - " + disease.getName());
-                    System.out.println("Disease sequence length: " + cleanDiseaseSeq.length());
-                    System.out.println("Patient sequence length: " + cleanPatientSeq.length());
+                    if (debug) {
+                        Logger.debug("Comparing with " + disease.getDiseaseId() + " - " + disease.getName()
+                                + ", disease length " + cleanDiseaseSeq.length()
+                                + ", patient length " + cleanPatientSeq.length());
+                    }
 
-                    if (SequenceAligner.isPotentialMatch(cleanPatientSeq, cleanDiseaseSeq, similarityThreshold)) {
-                        double similarity = calculateSimilarity(cleanPatientSeq, cleanDiseaseSeq);
-                        System.out.println("Similarity with " + disease.getDiseaseId() + ": " + similarity);
+                    // One alignment per candidate: its score both decides and reports the match
+                    if (SequenceAligner.passesLengthFilter(cleanPatientSeq, cleanDiseaseSeq)) {
+                        double similarity;
+                        try (RequestTrace.Span span = RequestTrace.span("screen.align")) {
+                            similarity = calculateSimilarity(cleanPatientSeq, cleanDiseaseSeq);
+                        }
+                        if (debug) {
+                            Logger.debug("Similarity with " + disease.getDiseaseId() + ": " + similarity);
+                        }
 
                         if (similarity >= similarityThreshold) {
-                            matches.add(new DiseaseMatchResult(disease, similarity));
-                            System.out.println("✅ MATCH FOUND: " + disease.getName() + " - similarity: " + similarity);
+                            matches.add(new DiseaseMatchResult(disease, similarity, contig));
+                            if (debug) {
+                                Logger.debug("Match found: " + disease.getName() + " - similarity: " + similarity);
+                            }
                         }
-                    } else {
-                        System.out.println("No potential match with " + disease.getDiseaseId());
+                    } else if (debug) {
+                        Logger.debug("No potential match with " + disease.getDiseaseId());
                     }
                 }
             } catch (IOException e) {
-                System.err.println("Error reading disease sequence for " + disease.getDiseaseId() + ": " + e.getMessage());
+                Logger.error("Error reading disease sequence for " + disease.getDiseaseId() + ": " + e.getMessage());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks one record of a stored patient genome for matches against all diseases
+     * Records up to 64 KB are aligned whole; longer ones are decoded in chunks and each disease
+     * is aligned against its best matching window, so memory stays bounded by the disease length
+     * @param reader the patient's stored sequence
+     * @param contig the record to check, reported with each match
+     * @param similarityThreshold minimum similarity score for a match (0.0 to 1.0)
+     * @return list of disease matches meeting the similarity threshold
+     * @throws IOException if the record cannot be decoded
+     */
+    public List<DiseaseMatchResult> checkForMatches(PackedFasta.Reader reader, PackedFasta.Contig contig,
+                                                    double similarityThreshold) throws IOException {
+        if (contig.length() <= MAX_MATRIX_BASES) {
+            String sequence;
+            try (RequestTrace.Span decode = RequestTrace.span("screen.decode")) {
+                sequence = reader.readBases(contig.start(), contig.end());
+            }
+            return checkForMatches(contig.identifier(), sequence, similarityThreshold);
+        }
+
+        List<Disease> candidates = new ArrayList<>();
+        List<SequenceAligner.Window> windows = new ArrayList<>();
+        for (Disease disease : diseases.values()) {
+            try {
+                String diseaseBases = getDiseaseBases(disease);
+                if (diseaseBases != null && SequenceAligner.passesLengthFilter(contig.length(), diseaseBases.length())) {
+                    candidates.add(disease);
+                    windows.add(new SequenceAligner.Window(diseaseBases));
+                }
+            } catch (IOException e) {
+                Logger.error("Error reading disease sequence for " + disease.getDiseaseId() + ": " + e.getMessage());
+            }
+        }
+        Logger.debug("Aligning contig " + contig.identifier() + " of " + contig.length()
+                + " bases by window against " + candidates.size() + " diseases");
+
+        // Each chunk is decoded once and fed to every disease alignment
+        for (long start = contig.start(); start < contig.end() && !windows.isEmpty(); start += WINDOW_CHUNK_BASES) {
+            String chunk;
+            try (RequestTrace.Span decode = RequestTrace.span("screen.decode")) {
+                chunk = reader.readBases(start, Math.min(contig.end(), start + WINDOW_CHUNK_BASES));
+            }
+            try (RequestTrace.Span span = RequestTrace.span("screen.align")) {
+                for (SequenceAligner.Window window : windows) {
+                    window.append(chunk);
+                }
+            }
+        }
+
+        List<DiseaseMatchResult> matches = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            double similarity = windows.get(i).getSimilarity();
+            if (similarity >= similarityThreshold) {
+                matches.add(new DiseaseMatchResult(candidates.get(i), similarity, contig.identifier()));
             }
         }
         return matches;
     }
 
+    /**
+     * Bases of a disease sequence, all records concatenated, parsed once and cached
+     * @param disease the disease
+     * @return the bases, or null if the disease has no sequence file
+     * @throws IOException if the sequence file cannot be read
+     */
+    private String getDiseaseBases(Disease disease) throws IOException {
+        String cached = diseaseBases.get(disease.getDiseaseId());
+        if (cached != null) {
+            return cached;
+        }
+        String fasta = getDiseaseSequence(disease.getDiseaseId());
+        if (fasta == null) {
+            return null;
+        }
+        StringBuilder bases = new StringBuilder();
+        try (FastaReader records = FastaReader.open(new ByteArrayInputStream(fasta.getBytes(StandardCharsets.UTF_8)))) {
+            for (FastaReader.Record record : records) {
+                bases.append(record.sequence());
+            }
+        }
+        diseaseBases.put(disease.getDiseaseId(), bases.toString());
+        return bases.toString();
+    }
+
     /**
      * Calculates the similarities between two genome sequences
      * @param sequence1 of the patient
@@ -184,46 +319,74 @@ public class DiseaseService {
 
     /**
      * Generates a disease detection report and appends to CSV file
+     * The report is expected in the current format, migrateReportHeader runs once at startup
+     * @param reportFile CSV file in the server's reports directory
      * @param patientId the patient identifier
      * @param matchResult the disease match result
      */
-    public void generateDiseaseReport(String patientId, DiseaseMatchResult matchResult) {
-        try {
-            Path reportFile = Paths.get("server-module/src/main/resources/data/reports/disease_detections.csv");
-
+    public synchronized void generateDiseaseReport(Path reportFile, String patientId, DiseaseMatchResult matchResult) {
+        try (RequestTrace.Span span = RequestTrace.span("screen.report")) {
             // Create header if file doesn't exist
             if (!Files.exists(reportFile)) {
                 Files.createDirectories(reportFile.getParent());
-                Files.writeString(reportFile, "patientId,diseaseId,diseaseName,severity,similarity,detectionDate,description\n");
+                Files.writeString(reportFile, REPORT_HEADER);
             }
 
-            String reportLine = String.format("%s,%s,%s,%d,%.4f,%s,%s\n",
+            String reportLine = String.format("%s,%s,%s,%d,%.4f,%s,%s,%s\n",
                     patientId,
                     matchResult.getDisease().getDiseaseId(),
-                    escapeCsv(matchResult.getDisease().getName()),
+                    CsvParser.escape(matchResult.getDisease().getName()),
                     matchResult.getDisease().getSeverity(),
                     matchResult.getSimilarity(),
                     java.time.LocalDateTime.now().toString(),
-                    escapeCsv(matchResult.getDescription()));
+                    CsvParser.escape(matchResult.getDescription()),
+                    CsvParser.escape(matchResult.getContig()));
 
             Files.writeString(reportFile, reportLine, java.nio.file.StandardOpenOption.APPEND);
 
         } catch (IOException e) {
-            System.err.println("Error writing disease report: " + e.getMessage());
+            Logger.error("Error writing disease report: " + e.getMessage());
         }
     }
 
     /**
-     * Escapes CSV special characters in a string
-     * @param value the string to escape
-     * @return CSV-safe string
+     * Rewrites a report whose header predates the current columns, giving the existing rows an
+     * empty value for each missing trailing column. Rows never span lines, no field is written
+     * with a line break. Called once before the first report is generated, not per detection
+     * @param reportFile report CSV, nothing is done if it does not exist yet
+     * @throws IOException if the report cannot be read or replaced, or has an unknown header
      */
-    private String escapeCsv(String value) {
-        if (value == null) return "";
-        // Escape quotes and wrap in quotes if contains comma
-        if (value.contains(",") || value.contains("\"")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
+    public synchronized void migrateReportHeader(Path reportFile) throws IOException {
+        if (!Files.exists(reportFile)) {
+            return;
+        }
+        String header = REPORT_HEADER.strip();
+        String firstLine;
+        try (BufferedReader reader = Files.newBufferedReader(reportFile, StandardCharsets.UTF_8)) {
+            firstLine = reader.readLine();
+        }
+        if (header.equals(firstLine)) {
+            return;
+        }
+        if (firstLine == null) {
+            Files.writeString(reportFile, REPORT_HEADER);
+            return;
+        }
+        List<String> lines = Files.readAllLines(reportFile, StandardCharsets.UTF_8);
+        int missing = CsvParser.parseLine(header).size() - CsvParser.parseLine(firstLine).size();
+        if (missing <= 0 || !header.startsWith(firstLine)) {
+            throw new IOException("Unknown report header in " + reportFile + ": " + firstLine);
+        }
+        StringBuilder migrated = new StringBuilder(REPORT_HEADER);
+        String padding = ",".repeat(missing);
+        for (String line : lines.subList(1, lines.size())) {
+            if (!line.isEmpty()) {
+                migrated.append(line).append(padding).append('\n');
+            }
         }
-        return value;
+        Path temporary = reportFile.resolveSibling(reportFile.getFileName() + ".tmp");
+        Files.writeString(temporary, migrated, StandardCharsets.UTF_8);
+        Files.move(temporary, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Logger.info("Migrated report header of " + reportFile + ", " + (lines.size() - 1) + " rows");
     }
-}
\ No newline at end of file
+}
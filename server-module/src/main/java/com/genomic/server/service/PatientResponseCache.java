@@ -0,0 +1,122 @@
+package com.genomic.server.service;
+
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.model.Patient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * PatientResponseCache - Byte-bounded LRU cache of encoded GET_PATIENT response frames
+ * Frames are kept per patient and payload encoding, together with the snapshot they were
+ * encoded from. Snapshots are immutable and every change stores a new one, so the snapshot
+ * is the version of the entry: a frame is only served while it equals the current snapshot,
+ * even if an encode of an older snapshot races with the invalidation of an update
+ */
+public class PatientResponseCache {
+    // Map entry, key and array headers, roughly, so tiny frames still count against the bound
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long capacityBytes;
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache holding at most capacityBytes of encoded frames
+     * @param capacityBytes bound on the cached frame bytes, including per-entry overhead
+     */
+    public PatientResponseCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Looks up the encoded frame of a patient snapshot
+     * @param patient the current snapshot of the patient
+     * @param encoding payload encoding of the connection
+     * @return the cached frame, or null if none was encoded from an equal snapshot
+     */
+    public synchronized byte[] get(Patient patient, PayloadEncoding encoding) {
+        Entry entry = entries.get(new Key(patient.getPatientId(), encoding));
+        if (entry == null || !entry.snapshot().equals(patient)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.frame();
+    }
+
+    /**
+     * Stores the frame encoded from a snapshot, evicting least recently used frames over the bound
+     * Frames larger than the whole cache are not stored
+     */
+    public synchronized void put(Patient patient, PayloadEncoding encoding, byte[] frame) {
+        long weight = weigh(frame);
+        if (weight > capacityBytes) {
+            return;
+        }
+        Entry previous = entries.put(new Key(patient.getPatientId(), encoding), new Entry(patient, frame));
+        if (previous != null) {
+            sizeBytes -= weigh(previous.frame());
+        }
+        sizeBytes += weight;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (sizeBytes > capacityBytes) {
+            sizeBytes -= weigh(eldest.next().frame());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every cached frame of a patient, called once a new snapshot is published
+     * @param patientId the patient identifier
+     */
+    public synchronized void invalidate(String patientId) {
+        for (PayloadEncoding encoding : PayloadEncoding.values()) {
+            Entry removed = entries.remove(new Key(patientId, encoding));
+            if (removed != null) {
+                sizeBytes -= weigh(removed.frame());
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    private static long weigh(byte[] frame) {
+        return frame.length + ENTRY_OVERHEAD;
+    }
+
+    private record Key(String patientId, PayloadEncoding encoding) {
+    }
+
+    private record Entry(Patient snapshot, byte[] frame) {
+    }
+}
@@ -5,27 +5,60 @@ import com.genomic.common.model.DiseaseMatchResult;
 import com.genomic.common.model.Patient;
 import com.genomic.common.ProtocolException;
 import com.genomic.common.ProtocolConstants;
+import com.genomic.common.PayloadEncoding;
+import com.genomic.common.PayloadSchema;
+import com.genomic.common.util.CsvParser;
+import com.genomic.common.util.FastaScanner;
 import com.genomic.common.util.FastaValidator;
+import com.genomic.common.util.Logger;
+import com.genomic.common.util.PackedFasta;
+import com.genomic.server.storage.BlobStore;
+import com.genomic.server.storage.PatientStore;
+import com.genomic.server.storage.UploadStore;
+import com.genomic.server.trace.RequestTrace;
+import com.genomic.server.trace.ScreeningEvent;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * PatientService - Manages patient records and genomic data operations
  * Handles patient CRUD operations, FASTA file storage, and disease detection
+ * Patient metadata is persisted in a PatientStore and every read goes through it, so heap use
+ * does not grow with the registry; the store keeps its own bounded cache of index pages
+ * Patients are immutable snapshots: writers serialize per patient through lock striping and
+ * publish a new snapshot to the store when done
  */
-public class PatientService {
-    private final Map<String, Patient> patients = new ConcurrentHashMap<>();
+public class PatientService implements AutoCloseable {
+    private static final int LOCK_STRIPES = 256;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long RESPONSE_CACHE_BYTES = 32L * 1024 * 1024;
+    // A chunk waits this long for another chunk or the finalization of the same upload
+    private static final long UPLOAD_LOCK_TIMEOUT_MS = 30_000;
+
+    private final ReentrantLock[] patientLocks = new ReentrantLock[LOCK_STRIPES];
+    // Document IDs claimed by creates and updates still in flight, documentId -> patientId
+    // Committed document IDs live in the PatientStore document index
+    private final ConcurrentMap<String, String> documentIndex = new ConcurrentHashMap<>();
     private final AtomicInteger patientCounter = new AtomicInteger(1);
-    private final Path patientsDirectory;
-    private final String patientCsvFile;
-    private DiseaseService diseaseService;
+    private final Path patientsDirectory; // legacy per-patient FASTA files, read during CSV import
+    private final Path reportFile;
+    private final PatientStore patientStore;
+    private final BlobStore fastaStore;
+    private final UploadStore uploadStore;
+    private final PatientResponseCache responseCache = new PatientResponseCache(RESPONSE_CACHE_BYTES);
+    private final DiseaseService diseaseService;
 
     /**
      * Initializes the PatientService with disease service dependency
@@ -33,28 +66,42 @@ public class PatientService {
      * @throws ProtocolException if initialization fails
      */
     public PatientService(DiseaseService diseaseService) throws ProtocolException {
+        this(diseaseService, Paths.get("server-module/src/main/resources/data"));
+    }
+
+    /**
+     * Initializes the PatientService on a specific data directory
+     * @param diseaseService the disease service for genomic matching
+     * @param dataDirectory directory holding the patient store, FASTA files and reports
+     * @throws ProtocolException if initialization fails
+     */
+    public PatientService(DiseaseService diseaseService, Path dataDirectory) throws ProtocolException {
         this.diseaseService = diseaseService;
+        for (int i = 0; i < patientLocks.length; i++) {
+            patientLocks[i] = new ReentrantLock();
+        }
         try {
             // Create data directories
-            Path dataDirectory = Paths.get("server-module/src/main/resources/data");
             patientsDirectory = dataDirectory.resolve("patients");
             Path reportsDirectory = dataDirectory.resolve("reports");
 
             Files.createDirectories(patientsDirectory);
             Files.createDirectories(reportsDirectory);
+            reportFile = reportsDirectory.resolve("disease_detections.csv");
+            diseaseService.migrateReportHeader(reportFile);
 
-            patientCsvFile = dataDirectory.resolve("patients.csv").toString();
+            patientStore = new PatientStore(dataDirectory.resolve("store"), PatientStore.DEFAULT_CACHE_PAGES);
+            fastaStore = new BlobStore(dataDirectory.resolve("blobs"));
+            uploadStore = new UploadStore(dataDirectory.resolve("uploads"), UploadStore.DEFAULT_EXPIRY_MS,
+                    UploadStore.DEFAULT_MAX_UPLOADS);
 
-            // Initialize CSV file with headers if it doesn't exist
-            if (!Files.exists(Paths.get(patientCsvFile))) {
-                try (PrintWriter writer = new PrintWriter(new FileWriter(patientCsvFile))) {
-                    writer.println("patientId,fullName,documentId,age,sex,email,registrationDate,clinicalNotes,checksumFasta,fileSizeBytes,active,fastaFilename");
-                }
+            // One-time migration of the legacy CSV registry into the store
+            if (patientStore.count() == 0) {
+                importPatientsFromCsv(dataDirectory.resolve("patients.csv"));
             }
-
-            // Load existing patients from CSV
-            loadPatientsFromCsv();
-            this.diseaseService = new DiseaseService();
+            patientCounter.set((int) Math.max(1, patientStore.getSequence()));
+            Logger.info(String.format(Locale.ROOT, "FASTA store: %d blobs, %d bytes saved, dedup ratio %.2f",
+                    fastaStore.getBlobCount(), fastaStore.getBytesSaved(), fastaStore.getDedupRatio()));
 
         } catch (IOException e) {
             throw new ProtocolException("Failed to initialize PatientService: " + e.getMessage(),
@@ -64,35 +111,44 @@ public class PatientService {
 
     /**
      * Check for the diseases of the patient
+     * The sequence is decoded from the patient's stored blob
      * @param patient the patient to check
-     * @param fastaContent the fasta content of the diseases
      */
-    private void checkForDiseases(Patient patient, String fastaContent) {
-        try {
-            System.out.println("=== DISEASE DETECTION START ===");
-            System.out.println("Checking diseases for patient: " + patient.getPatientId());
-
-            // Extract just the sequence part (remove header and newlines)
-            String sequence = fastaContent.replaceAll("^>.*\\n", "").replaceAll("\\n", "");
-            System.out.println("Patient sequence length: " + sequence.length());
-            System.out.println("Patient sequence start: " + sequence.substring(0, Math.min(50, sequence.length())));
-
-            // Check for matches with similarity threshold of 0.8 (80%)
-            List<DiseaseMatchResult> matches = diseaseService.checkForMatches(sequence, 0.8);
-            System.out.println("Found " + matches.size() + " potential matches");
+    private void checkForDiseases(Patient patient) {
+        ScreeningEvent event = new ScreeningEvent();
+        event.begin();
+        try (RequestTrace.Span span = RequestTrace.span("screen")) {
+            Logger.debug("Checking diseases for patient: " + patient.getPatientId());
+
+            // Screen each record (contig) on its own, decoding only its bases
+            List<DiseaseMatchResult> matches = new ArrayList<>();
+            try (PackedFasta.Reader reader = fastaStore.open(patient.getFastaFilename())) {
+                for (PackedFasta.Contig contig : reader.getContigs()) {
+                    Logger.debug("Contig " + contig.identifier() + " length: " + contig.length());
+
+                    // Check for matches with similarity threshold of 0.8 (80%)
+                    matches.addAll(diseaseService.checkForMatches(reader, contig, 0.8));
+                    event.contigs++;
+                    event.bases += contig.length();
+                }
+            }
+            Logger.debug("Found " + matches.size() + " potential matches");
+            event.matches = matches.size();
 
             for (DiseaseMatchResult match : matches) {
-                System.out.println("Match detected: " + match.getDescription());
-                diseaseService.generateDiseaseReport(patient.getPatientId(), match);
-
-                System.out.println("Disease detected for patient " + patient.getPatientId() +
+                diseaseService.generateDiseaseReport(reportFile, patient.getPatientId(), match);
+                Logger.info("Disease detected for patient " + patient.getPatientId() +
                         ": " + match.getDescription());
             }
 
-            System.out.println("=== DISEASE DETECTION END ===");
-
         } catch (Exception e) {
-            System.err.println("Error checking for diseases: " + e.getMessage());
+            Logger.error("Error checking for diseases of " + patient.getPatientId() + ": " + e.getMessage());
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.patientId = patient.getPatientId();
+                event.commit();
+            }
         }
     }
 
@@ -104,59 +160,327 @@ public class PatientService {
      * @throws ProtocolException if creation fails due to validation or duplication
      */
     public String createPatient(JSONObject metadata, String fastaContent) throws ProtocolException {
-        try {
-            // Validate FASTA format
-            FastaValidator.validateFasta(fastaContent);
+        byte[] fastaBytes = fastaContent == null ? new byte[0] : fastaContent.getBytes(StandardCharsets.UTF_8);
+        return createPatient(metadata, new ByteArrayInputStream(fastaBytes), fastaBytes.length);
+    }
 
-            // Extract metadata
-            String documentId = metadata.getString("documentId");
+    /**
+     * Creates a new patient with metadata and a FASTA body read from a stream
+     * The body is validated, hashed and packed on its way into a temporary file of the blob
+     * store, so heap use stays flat whatever the genome size
+     * @param metadata JSON object containing patient demographic information
+     * @param fastaStream stream positioned at the FASTA body
+     * @param fastaLength exact number of FASTA bytes to read from the stream
+     * @return generated patient ID
+     * @throws ProtocolException if creation fails due to validation or duplication
+     */
+    public String createPatient(JSONObject metadata, InputStream fastaStream, long fastaLength) throws ProtocolException {
+        return createPatient(metadata, fastaStream, fastaLength, null);
+    }
 
-            // Check for duplicate document ID
-            if (isDuplicateDocumentId(documentId)) {
-                throw new ProtocolException("Duplicate document ID: " + documentId,
-                        ProtocolConstants.ERR_DUPLICATE_DOCUMENT);
+    /**
+     * Creates a new patient from a FASTA stream whose checksum is known in advance
+     * @param expectedChecksum SHA-256 the content must have, or null to accept any
+     */
+    private String createPatient(JSONObject metadata, InputStream fastaStream, long fastaLength,
+                                 String expectedChecksum) throws ProtocolException {
+        StagedFasta staged = null;
+        try {
+            // Validate, checksum and pack the FASTA in one pass
+            staged = stageFasta(fastaStream, fastaLength);
+            FastaScanner.Result scan = staged.scan();
+            Path packed = staged.file();
+            if (expectedChecksum != null && !expectedChecksum.equals(scan.checksum())) {
+                throw new ProtocolException("FASTA checksum " + scan.checksum() + " does not match "
+                        + expectedChecksum, ProtocolConstants.ERR_CHECKSUM_MISMATCH);
             }
 
-            // Create patient object
-            Patient patient = new Patient(
-                    metadata.getString("fullName"),
-                    documentId,
-                    metadata.getInt("age"),
-                    metadata.getString("sex"),
-                    metadata.getString("email"),
-                    metadata.optString("clinicalNotes", ""),
-                    FastaValidator.calculateChecksum(fastaContent),
-                    fastaContent.getBytes().length
-            );
+            // Store the FASTA content once per distinct checksum
+            return registerPatient(metadata, scan.checksum(), scan.sizeBytes(),
+                    () -> fastaStore.acquirePacked(scan.checksum(), packed, scan.sizeBytes()));
 
-            // Generate patient ID
-            String patientId = "PAT" + String.format("%06d", patientCounter.getAndIncrement());
-            patient.setPatientId(patientId);
+        } catch (Exception e) {
+            if (e instanceof ProtocolException) {
+                throw (ProtocolException) e;
+            }
+            throw new ProtocolException("Failed to create patient: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        } finally {
+            discard(staged);
+        }
+    }
 
-            // Save FASTA file
-            String fastaFilename = saveFastaFile(patientId, fastaContent);
-            patient.setFastaFilename(fastaFilename);
+    /**
+     * Creates a new patient linked to FASTA content the server already stores
+     * The client sends only the checksum of its file, so resubmitting a known genome costs
+     * no upload; it falls back to a regular create on SEQUENCE_NOT_FOUND
+     * @param metadata JSON object containing patient demographic information
+     * @param checksum SHA-256 of the FASTA content, lowercase hex
+     * @return generated patient ID
+     * @throws ProtocolException if the content is not stored, or creation fails due to validation or duplication
+     */
+    public String createPatientFromChecksum(JSONObject metadata, String checksum) throws ProtocolException {
+        try {
+            long sizeBytes = fastaStore.getOriginalSize(checksum);
+            if (sizeBytes < 0) {
+                throw sequenceNotFound(checksum);
+            }
+            return registerPatient(metadata, checksum, sizeBytes, () -> {
+                // The last patient using the content may have been deleted meanwhile
+                String reference = fastaStore.acquireExisting(checksum, sizeBytes);
+                if (reference == null) {
+                    throw sequenceNotFound(checksum);
+                }
+                return reference;
+            });
 
-            // Store in memory and CSV
-            patients.put(patientId, patient);
-            savePatientToCsv(patient);
+        } catch (Exception e) {
+            if (e instanceof ProtocolException) {
+                throw (ProtocolException) e;
+            }
+            throw new ProtocolException("Failed to create patient: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        }
+    }
 
-            // === ADD THIS CRITICAL LINE ===
-            // Check for disease matches after saving patient
-            checkForDiseases(patient, fastaContent);
-            // ==============================
+    /**
+     * Looks up stored FASTA content by checksum, for clients deciding whether to upload
+     * @param checksum SHA-256 of the FASTA content, lowercase hex
+     * @return JSON object with the checksum, whether it is present and, if so, its size
+     * @throws ProtocolException if the blob store cannot be read
+     */
+    public JSONObject hasSequence(String checksum) throws ProtocolException {
+        try {
+            long sizeBytes = fastaStore.getOriginalSize(checksum);
+            JSONObject result = new JSONObject();
+            result.put("checksumFasta", checksum);
+            result.put("present", sizeBytes >= 0);
+            if (sizeBytes >= 0) {
+                result.put("fileSizeBytes", sizeBytes);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to look up sequence: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        }
+    }
 
-            return patientId;
+    /**
+     * Opens a resumable upload of a FASTA, or resumes the open upload of the same request
+     * The document ID is checked now, so a duplicate fails before any byte is sent
+     * @param metadata JSON object containing patient demographic information
+     * @param fastaLength size of the FASTA in bytes
+     * @param checksum SHA-256 of the FASTA, lowercase hex
+     * @return upload status, with the offset to resume from
+     * @throws ProtocolException if the document ID is taken or too many uploads are open
+     */
+    public JSONObject openUpload(JSONObject metadata, long fastaLength, String checksum) throws ProtocolException {
+        try {
+            String documentId = metadata.getString("documentId");
+            validateDocumentId(documentId);
+            if (documentIndex.containsKey(documentId) || patientStore.findPatientIdByDocumentId(documentId) != null) {
+                throw new ProtocolException("Duplicate document ID: " + documentId,
+                        ProtocolConstants.ERR_DUPLICATE_DOCUMENT);
+            }
+            return uploadStatus(uploadStore.open(metadata, fastaLength, checksum));
 
+        } catch (IllegalStateException e) {
+            throw new ProtocolException(e.getMessage(), ProtocolConstants.ERR_SERVER_ERROR);
         } catch (Exception e) {
             if (e instanceof ProtocolException) {
                 throw (ProtocolException) e;
             }
-            throw new ProtocolException("Failed to create patient: " + e.getMessage(),
+            throw new ProtocolException("Failed to open upload: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Appends a chunk of an upload read from a stream
+     * A chunk may start before the committed offset, when a retry resends bytes whose
+     * acknowledgement was lost; those bytes are skipped. Bytes that arrive before a failure are
+     * kept, the client asks for the status and resumes after them
+     * @param uploadId the upload
+     * @param offset position of the first byte of the chunk
+     * @param chunkStream stream positioned at the chunk
+     * @param chunkLength number of bytes in the chunk
+     * @return upload status after the chunk
+     * @throws ProtocolException if the upload is unknown or the chunk leaves a gap or overruns the FASTA
+     */
+    public JSONObject appendUpload(String uploadId, long offset, InputStream chunkStream, long chunkLength)
+            throws ProtocolException {
+        UploadStore.Upload upload = findUpload(uploadId);
+        lockUpload(upload);
+        try {
+            if (offset > upload.getCommittedOffset() || offset + chunkLength > upload.getTotalLength()) {
+                throw new ProtocolException("Chunk " + offset + "+" + chunkLength + " does not continue upload "
+                        + uploadId + " at " + upload.getCommittedOffset() + " of " + upload.getTotalLength(),
+                        ProtocolConstants.ERR_INVALID_FORMAT);
+            }
+            try (RequestTrace.Span span = RequestTrace.span("upload.append")) {
+                uploadStore.append(upload, offset, chunkStream, chunkLength);
+            }
+            return uploadStatus(upload);
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to store chunk: " + e.getMessage(),
                     ProtocolConstants.ERR_SERVER_ERROR);
+        } finally {
+            upload.getLock().unlock();
         }
     }
 
+    /**
+     * Reports the committed offset of an upload, where the client resumes
+     * @param uploadId the upload
+     * @return upload status
+     * @throws ProtocolException if the upload is unknown, finished or expired
+     */
+    public JSONObject getUploadStatus(String uploadId) throws ProtocolException {
+        return uploadStatus(findUpload(uploadId));
+    }
+
+    /**
+     * Creates the patient of a complete upload
+     * The content must match the checksum given at open. The upload is deleted once the patient
+     * exists, or when its content or metadata is rejected; after a server error it stays open
+     * @param uploadId the upload
+     * @return generated patient ID
+     * @throws ProtocolException if the upload is unknown or incomplete, or creation fails
+     */
+    public String finalizeUpload(String uploadId) throws ProtocolException {
+        UploadStore.Upload upload = findUpload(uploadId);
+        lockUpload(upload);
+        try {
+            if (uploadStore.get(uploadId) != upload) {
+                throw uploadNotFound(uploadId); // finalized by another connection meanwhile
+            }
+            if (upload.getCommittedOffset() != upload.getTotalLength()) {
+                throw new ProtocolException("Upload " + uploadId + " is incomplete: " + upload.getCommittedOffset()
+                        + " of " + upload.getTotalLength() + " bytes", ProtocolConstants.ERR_INVALID_FORMAT);
+            }
+            String patientId;
+            try (InputStream content = new BufferedInputStream(uploadStore.openContent(upload), STREAM_BUFFER_SIZE)) {
+                patientId = createPatient(upload.getMetadata(), content, upload.getTotalLength(), upload.getChecksum());
+            } catch (ProtocolException e) {
+                if (!ProtocolConstants.ERR_SERVER_ERROR.equals(e.getErrorCode())) {
+                    uploadStore.remove(upload);
+                }
+                throw e;
+            }
+            uploadStore.remove(upload);
+            return patientId;
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to finalize upload: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        } finally {
+            upload.getLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a patient whose FASTA content is known by checksum and size
+     * The document ID is reserved before the content is referenced, so a duplicate never
+     * takes a blob reference. The patient number is drawn last, so a rejected create does
+     * not use one up and numbers stay the same as those handed out after a restart
+     * @param metadata JSON object containing patient demographic information
+     * @param checksum SHA-256 of the FASTA content
+     * @param sizeBytes size of the original FASTA in bytes
+     * @param acquisition adds the blob reference of the patient
+     * @return generated patient ID
+     */
+    private String registerPatient(JSONObject metadata, String checksum, long sizeBytes,
+                                   BlobAcquisition acquisition) throws ProtocolException, IOException {
+        // Extract metadata
+        String documentId = metadata.getString("documentId");
+        validateDocumentId(documentId);
+
+        // Reserve the document ID atomically, so two parallel creates cannot both pass,
+        // under a claim of its own since the patient has no ID yet
+        String claim = "pending-" + UUID.randomUUID();
+        reserveDocumentId(documentId, claim);
+
+        Patient patient;
+        try {
+            // Read every metadata field before the blob is referenced, so a missing one leaks nothing
+            Patient.PatientBuilder builder = Patient.builder()
+                    .fullName(metadata.getString("fullName"))
+                    .documentId(documentId)
+                    .age(metadata.getInt("age"))
+                    .sex(metadata.getString("sex"))
+                    .email(metadata.getString("email"))
+                    .clinicalNotes(metadata.optString("clinicalNotes", ""))
+                    .checksumFasta(checksum)
+                    .fileSizeBytes(sizeBytes);
+
+            String fastaFilename;
+            try (RequestTrace.Span span = RequestTrace.span("blob.store")) {
+                fastaFilename = acquisition.acquire();
+            }
+
+            // Generate patient ID
+            int patientNumber = patientCounter.getAndIncrement();
+            String patientId = "PAT" + String.format("%06d", patientNumber);
+            patient = builder.patientId(patientId).fastaFilename(fastaFilename).build();
+
+            // Persisting publishes the snapshot
+            try (RequestTrace.Span span = RequestTrace.span("store.write")) {
+                patientStore.put(patient);
+                patientStore.advanceSequence(patientNumber + 1);
+            } catch (IOException | RuntimeException e) {
+                fastaStore.release(checksum);
+                // Hand the number back, unless a parallel create has drawn the next one
+                patientCounter.compareAndSet(patientNumber + 1, patientNumber);
+                throw e;
+            }
+        } finally {
+            // Committed or not, the store index is now the source of truth
+            releaseDocumentId(documentId, claim);
+        }
+
+        // Check for disease matches after saving patient
+        checkForDiseases(patient);
+
+        return patient.getPatientId();
+    }
+
+    private UploadStore.Upload findUpload(String uploadId) throws ProtocolException {
+        UploadStore.Upload upload = uploadStore.get(uploadId);
+        if (upload == null) {
+            throw uploadNotFound(uploadId);
+        }
+        return upload;
+    }
+
+    private static void lockUpload(UploadStore.Upload upload) throws ProtocolException {
+        try {
+            if (upload.getLock().tryLock(UPLOAD_LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ProtocolException("Upload " + upload.getUploadId() + " is busy with another request",
+                ProtocolConstants.ERR_SERVER_ERROR);
+    }
+
+    private static JSONObject uploadStatus(UploadStore.Upload upload) {
+        JSONObject status = new JSONObject();
+        status.put("uploadId", upload.getUploadId());
+        status.put("offset", upload.getCommittedOffset());
+        status.put("totalLength", upload.getTotalLength());
+        status.put("expiresAt", upload.getExpiresAt());
+        return status;
+    }
+
+    private static ProtocolException uploadNotFound(String uploadId) {
+        return new ProtocolException("No open upload " + uploadId, ProtocolConstants.ERR_UPLOAD_NOT_FOUND);
+    }
+
+    private static ProtocolException sequenceNotFound(String checksum) {
+        return new ProtocolException("No stored sequence with checksum " + checksum,
+                ProtocolConstants.ERR_SEQUENCE_NOT_FOUND);
+    }
+
     /**
      * Retrieves patient information by ID
      * @param patientId the patient identifier
@@ -164,13 +488,60 @@ public class PatientService {
      * @throws ProtocolException if patient not found or inactive
      */
     public JSONObject getPatient(String patientId) throws ProtocolException {
-        Patient patient = patients.get(patientId);
+        return convertPatientToJson(getPatientRecord(patientId));
+    }
+
+    /**
+     * Retrieves the encoded GET_PATIENT response frame of a patient
+     * Frames are cached per snapshot, so a repeated lookup is a map lookup and no encoding
+     * @param patientId the patient identifier
+     * @param encoding payload encoding of the connection
+     * @return the complete frame, to be written to the connection as is
+     * @throws ProtocolException if patient not found or inactive, or the frame cannot be encoded
+     */
+    public byte[] getPatientResponse(String patientId, PayloadEncoding encoding) throws ProtocolException {
+        Patient patient = getPatientRecord(patientId);
+        byte[] frame = responseCache.get(patient, encoding);
+        if (frame == null) {
+            try (RequestTrace.Span span = RequestTrace.span("encode")) {
+                frame = encoding.encodeSuccess(PayloadSchema.PATIENT, patient);
+            } catch (IOException e) {
+                throw new ProtocolException("Failed to encode patient: " + e.getMessage(),
+                        ProtocolConstants.ERR_SERVER_ERROR);
+            }
+            responseCache.put(patient, encoding, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Opens the stored FASTA of a patient for streaming
+     * @param patient snapshot returned by getPatientRecord
+     * @return reader over the blob, to be closed by the caller
+     * @throws ProtocolException if the blob cannot be opened
+     */
+    public PackedFasta.Reader openFasta(Patient patient) throws ProtocolException {
+        try {
+            return fastaStore.open(patient.getFastaFilename());
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to read FASTA of " + patient.getPatientId() + ": " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Retrieves the patient snapshot by ID, for callers that encode it themselves
+     * @param patientId the patient identifier
+     * @return the active patient
+     * @throws ProtocolException if patient not found or inactive
+     */
+    public Patient getPatientRecord(String patientId) throws ProtocolException {
+        Patient patient = findPatient(patientId);
         if (patient == null || !patient.isActive()) {
             throw new ProtocolException("Patient not found: " + patientId,
                     ProtocolConstants.ERR_PATIENT_NOT_FOUND);
         }
-
-        return convertPatientToJson(patient);
+        return patient;
     }
 
     /**
@@ -179,7 +550,7 @@ public class PatientService {
      * @return total number of patients
      */
     public int getTotalPatientCount() {
-        return patients.size();
+        return (int) patientStore.count();
     }
 
     /**
@@ -190,39 +561,109 @@ public class PatientService {
      * @throws ProtocolException if patient not found or update fails
      */
     public void updatePatient(String patientId, JSONObject metadata, String fastaContent) throws ProtocolException {
-        Patient patient = patients.get(patientId);
-        if (patient == null || !patient.isActive()) {
-            throw new ProtocolException("Patient not found: " + patientId,
-                    ProtocolConstants.ERR_PATIENT_NOT_FOUND);
+        if (fastaContent == null || fastaContent.trim().isEmpty()) {
+            updatePatient(patientId, metadata, null, 0);
+            return;
         }
+        byte[] fastaBytes = fastaContent.getBytes(StandardCharsets.UTF_8);
+        updatePatient(patientId, metadata, new ByteArrayInputStream(fastaBytes), fastaBytes.length);
+    }
 
+    /**
+     * Updates an existing patient's information, reading a new FASTA body from a stream
+     * @param patientId the patient identifier
+     * @param metadata updated patient metadata
+     * @param fastaStream stream positioned at the new FASTA body, or null to keep the current one
+     * @param fastaLength exact number of FASTA bytes to read from the stream
+     * @throws ProtocolException if patient not found or update fails
+     */
+    public void updatePatient(String patientId, JSONObject metadata, InputStream fastaStream, long fastaLength)
+            throws ProtocolException {
+        Patient updated;
+        boolean fastaUpdated = fastaStream != null;
+
+        // Validate, checksum and pack a new FASTA before taking the patient lock
+        StagedFasta staged = null;
+        if (fastaUpdated) {
+            try {
+                staged = stageFasta(fastaStream, fastaLength);
+            } catch (IOException e) {
+                throw new ProtocolException("Failed to update patient: " + e.getMessage(),
+                        ProtocolConstants.ERR_SERVER_ERROR);
+            }
+        }
+
+        ReentrantLock lock = lockFor(patientId);
+        lock.lock();
         try {
-            // Update metadata
-            if (metadata.has("fullName")) patient.setFullName(metadata.getString("fullName"));
-            if (metadata.has("age")) patient.setAge(metadata.getInt("age"));
-            if (metadata.has("sex")) patient.setSex(metadata.getString("sex"));
-            if (metadata.has("email")) patient.setEmail(metadata.getString("email"));
-            if (metadata.has("clinicalNotes")) patient.setClinicalNotes(metadata.getString("clinicalNotes"));
-
-            // Update FASTA only if provided
-            if (fastaContent != null && !fastaContent.trim().isEmpty()) {
-                FastaValidator.validateFasta(fastaContent);
-                patient.setChecksumFasta(FastaValidator.calculateChecksum(fastaContent));
-                patient.setFileSizeBytes(fastaContent.getBytes().length);
-
-                String fastaFilename = saveFastaFile(patientId, fastaContent);
-                patient.setFastaFilename(fastaFilename);
-
-                // Check for diseases only if FASTA was updated
-                checkForDiseases(patient, fastaContent);
+            Patient patient = findPatient(patientId);
+            if (patient == null || !patient.isActive()) {
+                throw new ProtocolException("Patient not found: " + patientId,
+                        ProtocolConstants.ERR_PATIENT_NOT_FOUND);
             }
 
-            // Update CSV
-            updatePatientInCsv(patient);
+            // Move the index entry first when the document ID changes, a taken ID fails the whole update
+            String oldDocumentId = patient.getDocumentId();
+            String newDocumentId = metadata.optString("documentId", oldDocumentId);
+            boolean documentChanged = !newDocumentId.equals(oldDocumentId);
+            if (documentChanged) {
+                validateDocumentId(newDocumentId);
+                reserveDocumentId(newDocumentId, patientId);
+            }
 
-        } catch (Exception e) {
-            throw new ProtocolException("Failed to update patient: " + e.getMessage(),
-                    ProtocolConstants.ERR_SERVER_ERROR);
+            try {
+                // Update metadata on a copy of the current snapshot
+                Patient.PatientBuilder builder = patient.toBuilder().documentId(newDocumentId);
+                if (metadata.has("fullName")) builder.fullName(metadata.getString("fullName"));
+                if (metadata.has("age")) builder.age(metadata.getInt("age"));
+                if (metadata.has("sex")) builder.sex(metadata.getString("sex"));
+                if (metadata.has("email")) builder.email(metadata.getString("email"));
+                if (metadata.has("clinicalNotes")) builder.clinicalNotes(metadata.getString("clinicalNotes"));
+
+                // Update FASTA only if provided
+                String newChecksum = null;
+                if (fastaUpdated) {
+                    newChecksum = staged.scan().checksum();
+                    try (RequestTrace.Span span = RequestTrace.span("blob.store")) {
+                        builder.checksumFasta(newChecksum)
+                                .fileSizeBytes(staged.scan().sizeBytes())
+                                .fastaFilename(fastaStore.acquirePacked(newChecksum, staged.file(), staged.scan().sizeBytes()));
+                    }
+                }
+                updated = builder.build();
+
+                // Persisting publishes the new snapshot
+                try (RequestTrace.Span span = RequestTrace.span("store.write")) {
+                    patientStore.put(updated);
+                } catch (IOException | RuntimeException e) {
+                    if (newChecksum != null) {
+                        fastaStore.release(newChecksum);
+                    }
+                    throw e;
+                }
+                responseCache.invalidate(patientId);
+
+                // The replaced genome loses one reference
+                if (newChecksum != null && isStoredBlob(patient)) {
+                    fastaStore.release(patient.getChecksumFasta());
+                }
+
+            } catch (Exception e) {
+                throw new ProtocolException("Failed to update patient: " + e.getMessage(),
+                        ProtocolConstants.ERR_SERVER_ERROR);
+            } finally {
+                if (documentChanged) {
+                    releaseDocumentId(newDocumentId, patientId);
+                }
+            }
+        } finally {
+            lock.unlock();
+            discard(staged);
+        }
+
+        // Check for diseases only if FASTA was updated, outside the patient lock
+        if (fastaUpdated) {
+            checkForDiseases(updated);
         }
     }
 
@@ -232,48 +673,226 @@ public class PatientService {
      * @throws ProtocolException if patient not found
      */
     public void deletePatient(String patientId) throws ProtocolException, IOException {
-        Patient patient = patients.get(patientId);
-        if (patient == null) {
-            throw new ProtocolException("Patient not found: " + patientId,
-                    ProtocolConstants.ERR_PATIENT_NOT_FOUND);
+        ReentrantLock lock = lockFor(patientId);
+        lock.lock();
+        try {
+            Patient patient = findPatient(patientId);
+            if (patient == null) {
+                throw new ProtocolException("Patient not found: " + patientId,
+                        ProtocolConstants.ERR_PATIENT_NOT_FOUND);
+            }
+
+            Patient deleted = patient.toBuilder().active(false).build();
+            try (RequestTrace.Span span = RequestTrace.span("store.write")) {
+                patientStore.put(deleted);
+            }
+            responseCache.invalidate(patientId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the patient store
+     * @throws IOException if the store cannot be synced
+     */
+    @Override
+    public void close() throws IOException {
+        patientStore.close();
+        fastaStore.close();
+    }
+
+    /**
+     * Gets the content-addressed FASTA store, for deduplication statistics
+     * @return the FASTA blob store
+     */
+    public BlobStore getFastaStore() {
+        return fastaStore;
+    }
+
+    /**
+     * Gets the cache of encoded GET_PATIENT responses, for hit rate statistics
+     * @return the response cache
+     */
+    public PatientResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Gets the patient store, for page cache statistics
+     * @return the patient store
+     */
+    public PatientStore getPatientStore() {
+        return patientStore;
+    }
+
+    /**
+     * Returns the current snapshot of a patient, read from the store
+     * @param patientId the patient identifier
+     * @return the patient snapshot, or null if unknown
+     * @throws ProtocolException if the store cannot be read
+     */
+    private Patient findPatient(String patientId) throws ProtocolException {
+        try {
+            return patientStore.get(patientId);
+        } catch (IOException e) {
+            throw new ProtocolException("Failed to read patient: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
         }
+    }
 
-        patient.setActive(false);
-        updatePatientInCsv(patient);
+    /**
+     * Returns the writer lock stripe for a patient
+     * Only mutations take it, reads go straight to the store
+     */
+    private ReentrantLock lockFor(String patientId) {
+        return patientLocks[Math.floorMod(patientId.hashCode(), patientLocks.length)];
     }
 
     /**
-     * Checks if a document ID already exists in active patients
+     * Rejects a document ID the store cannot index, before anything is reserved or written
+     * @param documentId the document ID from the request metadata
+     * @throws ProtocolException if it is longer than PatientStore.MAX_KEY_BYTES in UTF-8
      */
-    private boolean isDuplicateDocumentId(String documentId) {
-        return patients.values().stream()
-                .anyMatch(p -> p.isActive() && p.getDocumentId().equals(documentId));
+    private static void validateDocumentId(String documentId) throws ProtocolException {
+        if (documentId.getBytes(StandardCharsets.UTF_8).length > PatientStore.MAX_KEY_BYTES) {
+            throw new ProtocolException("Document ID longer than " + PatientStore.MAX_KEY_BYTES + " bytes",
+                    ProtocolConstants.ERR_INVALID_FORMAT);
+        }
     }
 
     /**
-     * Saves FASTA content to file
+     * Atomically claims a document ID for a patient until its record is committed
+     * The in-flight claim blocks parallel writers, the store index covers committed patients
+     * Succeeds if the ID is free or already owned by the same patient
+     * @param documentId the document ID to claim
+     * @param patientId the patient that will own the document ID, or the claim of a create
+     * @throws ProtocolException if another active patient already holds the document ID
      */
-    private String saveFastaFile(String patientId, String fastaContent) throws IOException {
-        String filename = patientId + ".fasta";
-        Path filePath = patientsDirectory.resolve(filename);
+    private void reserveDocumentId(String documentId, String patientId) throws ProtocolException {
+        String owner = documentIndex.putIfAbsent(documentId, patientId);
+        if (owner != null && !owner.equals(patientId)) {
+            throw new ProtocolException("Duplicate document ID: " + documentId,
+                    ProtocolConstants.ERR_DUPLICATE_DOCUMENT);
+        }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
-            writer.write(fastaContent);
+        String committedOwner;
+        try {
+            committedOwner = patientStore.findPatientIdByDocumentId(documentId);
+        } catch (IOException e) {
+            releaseDocumentId(documentId, patientId);
+            throw new ProtocolException("Failed to check document ID: " + e.getMessage(),
+                    ProtocolConstants.ERR_SERVER_ERROR);
+        }
+        if (committedOwner != null && !committedOwner.equals(patientId)) {
+            releaseDocumentId(documentId, patientId);
+            throw new ProtocolException("Duplicate document ID: " + documentId,
+                    ProtocolConstants.ERR_DUPLICATE_DOCUMENT);
+        }
+    }
+
+    /**
+     * Streams a FASTA body through a FastaScanner into a temporary container in the blob store
+     * On a format error the rest of the body is still consumed, so the error response can be
+     * sent on a connection that is in step with the client
+     * @param fastaStream stream positioned at the FASTA body
+     * @param fastaLength exact number of bytes in the body
+     * @return the scan result and the temporary container, to be acquired or discarded
+     * @throws ProtocolException if the body is not valid FASTA
+     * @throws IOException if the body cannot be read or the file written
+     */
+    private StagedFasta stageFasta(InputStream fastaStream, long fastaLength) throws ProtocolException, IOException {
+        if (fastaLength < 0) {
+            throw new ProtocolException("Invalid FASTA length: " + fastaLength, ProtocolConstants.ERR_INVALID_FORMAT);
         }
 
-        return filename;
+        Path file = fastaStore.createTempFile();
+        boolean staged = false;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            FastaScanner scanner = new FastaScanner(out);
+            byte[] buffer = new byte[(int) Math.min(STREAM_BUFFER_SIZE, Math.max(fastaLength, 1))];
+            long remaining = fastaLength;
+            // Reading the body and scanning it alternate, each is timed on its own
+            long readNanos = 0;
+            long scanNanos = 0;
+            FastaScanner.Result scan;
+            try {
+                while (remaining > 0) {
+                    long started = System.nanoTime();
+                    int read = fastaStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    long received = System.nanoTime();
+                    readNanos += received - started;
+                    if (read < 0) {
+                        throw new EOFException("FASTA body ended " + remaining + " bytes early");
+                    }
+                    remaining -= read;
+                    scanner.update(buffer, 0, read);
+                    scanNanos += System.nanoTime() - received;
+                }
+                long finishing = System.nanoTime();
+                scan = scanner.finish();
+                scanNanos += System.nanoTime() - finishing;
+            } catch (ProtocolException e) {
+                fastaStream.skipNBytes(remaining);
+                throw e;
+            } finally {
+                RequestTrace.record("fasta.read", readNanos);
+                RequestTrace.record("fasta.scan", scanNanos);
+            }
+            StagedFasta result = new StagedFasta(scan, file);
+            staged = true;
+            return result;
+        } finally {
+            if (!staged) {
+                Files.deleteIfExists(file);
+            }
+        }
     }
 
     /**
-     * Loads patients from CSV file into memory
+     * Deletes a staged container that was not moved into the blob store
      */
-    private void loadPatientsFromCsv() throws IOException {
-        Path path = Paths.get(patientCsvFile);
-        if (!Files.exists(path)) {
+    private static void discard(StagedFasta staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(staged.file());
+        } catch (IOException e) {
+            Logger.warning("Failed to delete staged FASTA " + staged.file() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Releases an in-flight document ID claim, only if it is still owned by the given patient
+     * @param documentId the document ID to release
+     * @param patientId the patient that currently owns it
+     */
+    private void releaseDocumentId(String documentId, String patientId) {
+        documentIndex.remove(documentId, patientId);
+    }
+
+    /**
+     * Checks whether a patient's FASTA lives in the blob store, legacy records may still
+     * point at a per-patient file that could not be imported
+     */
+    private boolean isStoredBlob(Patient patient) {
+        return patient.getChecksumFasta() != null
+                && BlobStore.reference(patient.getChecksumFasta()).equals(patient.getFastaFilename());
+    }
+
+    /**
+     * Imports the legacy patients.csv registry into the store
+     * Later rows for the same patient ID replace earlier ones, and each patient's FASTA
+     * file is moved into the blob store when its content still matches the checksum
+     */
+    private void importPatientsFromCsv(Path csvFile) throws IOException, ProtocolException {
+        if (!Files.exists(csvFile)) {
             return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
+        Map<String, Patient> imported = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(csvFile)) {
             String line;
             boolean firstLine = true;
 
@@ -283,104 +902,76 @@ public class PatientService {
                     continue; // Skip header
                 }
 
-                String[] values = line.split(",");
-                if (values.length >= 12) {
+                List<String> values = CsvParser.parseLine(line);
+                if (values.size() >= 12) {
                     Patient patient = getPatient(values);
-
-                    patients.put(patient.getPatientId(), patient);
-                    patientCounter.set(Math.max(patientCounter.get(),
-                            Integer.parseInt(patient.getPatientId().substring(3)) + 1));
+                    imported.put(patient.getPatientId(), patient);
                 }
             }
         }
+
+        for (Patient patient : imported.values()) {
+            patientStore.put(importLegacyFasta(patient));
+            patientStore.advanceSequence(Integer.parseInt(patient.getPatientId().substring(3)) + 1);
+        }
+        patientStore.flush();
     }
 
     /**
-     * Creates Patient object from CSV values
+     * Moves a legacy per-patient FASTA file into the blob store
+     * @return the patient pointing at its blob, or unchanged if the file is missing or altered
      */
-    private static Patient getPatient(String[] values) {
-        Patient patient = new Patient();
-        patient.setPatientId(values[0]);
-        patient.setFullName(values[1]);
-        patient.setDocumentId(values[2]);
-        patient.setAge(Integer.parseInt(values[3]));
-        patient.setSex(values[4]);
-        patient.setEmail(values[5]);
-        patient.setRegistrationDate(new Date(Long.parseLong(values[6])));
-        patient.setClinicalNotes(values[7]);
-        patient.setChecksumFasta(values[8]);
-        patient.setFileSizeBytes(Long.parseLong(values[9]));
-        patient.setActive(Boolean.parseBoolean(values[10]));
-        patient.setFastaFilename(values[11]);
-        return patient;
+    private Patient importLegacyFasta(Patient patient) throws IOException, ProtocolException {
+        Path legacyFile = patientsDirectory.resolve(patient.getFastaFilename());
+        if (!Files.isRegularFile(legacyFile)) {
+            return patient;
+        }
+        String content = Files.readString(legacyFile);
+        String checksum = FastaValidator.calculateChecksum(content);
+        if (!checksum.equals(patient.getChecksumFasta())) {
+            return patient;
+        }
+        return patient.toBuilder().fastaFilename(fastaStore.acquire(checksum, content.getBytes())).build();
     }
 
     /**
-     * Appends a patient record to CSV file
+     * Creates Patient object from CSV values
      */
-    private void savePatientToCsv(Patient patient) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(patientCsvFile, true))) {
-            writer.println(convertPatientToCsv(patient));
-        }
+    private static Patient getPatient(List<String> values) {
+        return Patient.builder()
+                .patientId(values.get(0))
+                .fullName(values.get(1))
+                .documentId(values.get(2))
+                .age(Integer.parseInt(values.get(3)))
+                .sex(values.get(4))
+                .email(values.get(5))
+                .registrationDate(Instant.ofEpochMilli(Long.parseLong(values.get(6))))
+                .clinicalNotes(values.get(7))
+                .checksumFasta(values.get(8))
+                .fileSizeBytes(Long.parseLong(values.get(9)))
+                .active(Boolean.parseBoolean(values.get(10)))
+                .fastaFilename(values.get(11))
+                .build();
     }
 
     /**
-     * Updates the patient counter based on loaded patient ID
+     * Converts Patient object to JSON for client response
      */
-    private void updatePatientInCsv(Patient patient) throws IOException {
-        // This is a simplified implementation - in production, you'd want a proper database
-        List<String> lines = Files.readAllLines(Paths.get(patientCsvFile));
-        try (PrintWriter writer = new PrintWriter(new FileWriter(patientCsvFile))) {
-            writer.println(lines.getFirst()); // Write header
-
-            for (int i = 1; i < lines.size(); i++) {
-                String line = lines.get(i);
-                if (line.startsWith(patient.getPatientId() + ",")) {
-                    writer.println(convertPatientToCsv(patient));
-                } else {
-                    writer.println(line);
-                }
-            }
-        }
+    private JSONObject convertPatientToJson(Patient patient) {
+        return PayloadSchema.PATIENT.toJson(patient);
     }
 
     /**
-     * Converts Patient object to CSV line
+     * BlobAcquisition - Adds the blob reference of a new patient, returning the reference
      */
-    private String convertPatientToCsv(Patient patient) {
-        return String.join(",",
-                patient.getPatientId(),
-                patient.getFullName(),
-                patient.getDocumentId(),
-                String.valueOf(patient.getAge()),
-                patient.getSex(),
-                patient.getEmail(),
-                String.valueOf(patient.getRegistrationDate().getTime()),
-                patient.getClinicalNotes(),
-                patient.getChecksumFasta(),
-                String.valueOf(patient.getFileSizeBytes()),
-                String.valueOf(patient.isActive()),
-                patient.getFastaFilename()
-        );
+    @FunctionalInterface
+    private interface BlobAcquisition {
+        String acquire() throws ProtocolException, IOException;
     }
 
     /**
-     * Converts Patient object to JSON for client response
+     * StagedFasta - A scanned FASTA body waiting in a temporary container file
      */
-    private JSONObject convertPatientToJson(Patient patient) {
-        JSONObject json = new JSONObject();
-        json.put("patientId", patient.getPatientId());
-        json.put("fullName", patient.getFullName());
-        json.put("documentId", patient.getDocumentId());
-        json.put("age", patient.getAge());
-        json.put("sex", patient.getSex());
-        json.put("email", patient.getEmail());
-        json.put("registrationDate", patient.getRegistrationDate().getTime());
-        json.put("clinicalNotes", patient.getClinicalNotes());
-        json.put("checksumFasta", patient.getChecksumFasta());
-        json.put("fileSizeBytes", patient.getFileSizeBytes());
-        json.put("active", patient.isActive());
-        json.put("fastaFilename", patient.getFastaFilename());
-        return json;
-    }
-}
\ No newline at end of file
+    private record StagedFasta(FastaScanner.Result scan, Path file) {
+    }
+}
@@ -0,0 +1,389 @@
+package com.genomic.server.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BPlusTree - Disk-resident B+tree mapping string keys to long values inside a PageFile
+ * Every node occupies one page; leaves are chained left to right for range scans
+ * The root page and entry count live in two consecutive PageFile metadata slots
+ * Deletes are lazy: entries are removed from their leaf without rebalancing
+ * An insert allocates the pages its splits need before it changes any node, so a failed
+ * allocation leaves the tree, cached and on disk, as it was
+ * Not thread-safe, callers must serialize writers against readers
+ */
+public class BPlusTree {
+    public static final long NOT_FOUND = -1L;
+    public static final int MAX_KEY_BYTES = 64;
+
+    private static final byte TYPE_LEAF = 0;
+    private static final byte TYPE_INTERNAL = 1;
+    private static final int NO_PAGE = 0; // page 0 is the file header, never a node
+
+    // Node layout: type(1) count(2) next(4) pad(1) then entries
+    private static final int HEADER_SIZE = 8;
+    private static final int KEY_SLOT_SIZE = 1 + MAX_KEY_BYTES;
+    private static final int LEAF_ENTRY_SIZE = KEY_SLOT_SIZE + Long.BYTES;
+    private static final int INTERNAL_ENTRY_SIZE = KEY_SLOT_SIZE + Integer.BYTES;
+    static final int LEAF_CAPACITY = (PageFile.PAGE_SIZE - HEADER_SIZE) / LEAF_ENTRY_SIZE;
+    static final int INTERNAL_CAPACITY = (PageFile.PAGE_SIZE - HEADER_SIZE - Integer.BYTES) / INTERNAL_ENTRY_SIZE;
+
+    private final PageFile pageFile;
+    private final PageCache<Node> cache;
+    private final int rootSlot;
+    private final int sizeSlot;
+
+    /**
+     * Opens the tree stored under the given metadata slots, creating an empty one if needed
+     * @param pageFile the backing page file
+     * @param cache decoded node cache shared by trees of the same file
+     * @param metaSlot first of the two metadata slots used (root page, entry count)
+     * @throws IOException if the root page cannot be allocated
+     */
+    public BPlusTree(PageFile pageFile, PageCache<Node> cache, int metaSlot) throws IOException {
+        this.pageFile = pageFile;
+        this.cache = cache;
+        this.rootSlot = metaSlot;
+        this.sizeSlot = metaSlot + 1;
+
+        if (pageFile.getMeta(rootSlot) == NO_PAGE) {
+            Node root = new Node(pageFile.allocatePage(), true);
+            write(root);
+            pageFile.setMeta(rootSlot, root.pageId);
+            pageFile.setMeta(sizeSlot, 0);
+        }
+    }
+
+    /**
+     * Point lookup
+     * @param key the key to look up
+     * @return the stored value, or NOT_FOUND
+     */
+    public long get(String key) {
+        Node leaf = findLeaf(key);
+        int index = Collections.binarySearch(leaf.keys, key);
+        return index >= 0 ? leaf.values.get(index) : NOT_FOUND;
+    }
+
+    /**
+     * Whether a key fits in a key slot
+     * @param key the key
+     * @return true if it takes at most MAX_KEY_BYTES in UTF-8
+     */
+    public static boolean fitsKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8).length <= MAX_KEY_BYTES;
+    }
+
+    /**
+     * Inserts or replaces a key
+     * @param key the key, at most MAX_KEY_BYTES in UTF-8
+     * @param value the value to store
+     * @return the previous value, or NOT_FOUND if the key was new
+     * @throws IOException if a new page cannot be allocated, the tree is then unchanged
+     */
+    public long put(String key, long value) throws IOException {
+        if (!fitsKey(key)) {
+            throw new IllegalArgumentException("Key longer than " + MAX_KEY_BYTES + " bytes: " + key);
+        }
+
+        Deque<Integer> newPages = allocateSplitPages(key);
+        long[] previous = {NOT_FOUND};
+        int rootId = rootPage();
+        Split split = insert(rootId, key, value, previous, newPages);
+        if (split != null) {
+            Node newRoot = new Node(newPages.pop(), false);
+            newRoot.keys.add(split.key);
+            newRoot.children.add(rootId);
+            newRoot.children.add(split.rightPage);
+            write(newRoot);
+            pageFile.setMeta(rootSlot, newRoot.pageId);
+        }
+        if (previous[0] == NOT_FOUND) {
+            pageFile.setMeta(sizeSlot, size() + 1);
+        }
+        return previous[0];
+    }
+
+    /**
+     * Removes a key from its leaf without rebalancing
+     * @param key the key to remove
+     * @return the removed value, or NOT_FOUND
+     */
+    public long remove(String key) {
+        Node leaf = findLeaf(key);
+        int index = Collections.binarySearch(leaf.keys, key);
+        if (index < 0) {
+            return NOT_FOUND;
+        }
+        leaf.keys.remove(index);
+        long removed = leaf.values.remove(index);
+        write(leaf);
+        pageFile.setMeta(sizeSlot, size() - 1);
+        return removed;
+    }
+
+    /**
+     * Range scan following the leaf chain
+     * @param fromKey inclusive lower bound, or null to start at the first key
+     * @param toKey exclusive upper bound, or null for no upper bound
+     * @param limit maximum number of entries returned
+     * @return entries in key order
+     */
+    public List<Map.Entry<String, Long>> scan(String fromKey, String toKey, int limit) {
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        Node leaf = fromKey != null ? findLeaf(fromKey) : leftmostLeaf();
+        int index = 0;
+        if (fromKey != null) {
+            int found = Collections.binarySearch(leaf.keys, fromKey);
+            index = found >= 0 ? found : -found - 1;
+        }
+
+        while (result.size() < limit) {
+            if (index >= leaf.keys.size()) {
+                if (leaf.next == NO_PAGE) {
+                    break;
+                }
+                leaf = load(leaf.next);
+                index = 0;
+                continue;
+            }
+            String key = leaf.keys.get(index);
+            if (toKey != null && key.compareTo(toKey) >= 0) {
+                break;
+            }
+            result.add(new AbstractMap.SimpleImmutableEntry<>(key, leaf.values.get(index)));
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * Number of entries, read from the metadata slot in constant time
+     */
+    public long size() {
+        return pageFile.getMeta(sizeSlot);
+    }
+
+    private int rootPage() {
+        return (int) pageFile.getMeta(rootSlot);
+    }
+
+    private Node findLeaf(String key) {
+        Node node = load(rootPage());
+        while (!node.leaf) {
+            node = load(node.children.get(childIndex(node, key)));
+        }
+        return node;
+    }
+
+    private Node leftmostLeaf() {
+        Node node = load(rootPage());
+        while (!node.leaf) {
+            node = load(node.children.getFirst());
+        }
+        return node;
+    }
+
+    /**
+     * Index of the child subtree that may hold the key: keys equal to a separator go right
+     */
+    private static int childIndex(Node node, String key) {
+        int index = Collections.binarySearch(node.keys, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Allocates one page for every node that inserting the key will split, plus a new root if
+     * the root splits: the full nodes at the bottom of the path to the key's leaf
+     * An allocation failure leaks at most a few zeroed pages that no node points at
+     */
+    private Deque<Integer> allocateSplitPages(String key) throws IOException {
+        List<Node> path = new ArrayList<>();
+        Node node = load(rootPage());
+        path.add(node);
+        while (!node.leaf) {
+            node = load(node.children.get(childIndex(node, key)));
+            path.add(node);
+        }
+
+        int splits = 0;
+        if (Collections.binarySearch(node.keys, key) < 0) {
+            while (splits < path.size() && isFull(path.get(path.size() - 1 - splits))) {
+                splits++;
+            }
+        }
+        int needed = splits == path.size() ? splits + 1 : splits;
+        Deque<Integer> pages = new ArrayDeque<>(needed);
+        for (int i = 0; i < needed; i++) {
+            pages.push(pageFile.allocatePage());
+        }
+        return pages;
+    }
+
+    private static boolean isFull(Node node) {
+        return node.keys.size() >= (node.leaf ? LEAF_CAPACITY : INTERNAL_CAPACITY);
+    }
+
+    private Split insert(int pageId, String key, long value, long[] previous, Deque<Integer> newPages) {
+        Node node = load(pageId);
+
+        if (node.leaf) {
+            int index = Collections.binarySearch(node.keys, key);
+            if (index >= 0) {
+                previous[0] = node.values.set(index, value);
+                write(node);
+                return null;
+            }
+            node.keys.add(-index - 1, key);
+            node.values.add(-index - 1, value);
+            if (node.keys.size() <= LEAF_CAPACITY) {
+                write(node);
+                return null;
+            }
+            return splitLeaf(node, newPages.pop());
+        }
+
+        int childIndex = childIndex(node, key);
+        Split childSplit = insert(node.children.get(childIndex), key, value, previous, newPages);
+        if (childSplit == null) {
+            return null;
+        }
+        node.keys.add(childIndex, childSplit.key);
+        node.children.add(childIndex + 1, childSplit.rightPage);
+        if (node.keys.size() <= INTERNAL_CAPACITY) {
+            write(node);
+            return null;
+        }
+        return splitInternal(node, newPages.pop());
+    }
+
+    private Split splitLeaf(Node node, int rightPage) {
+        int mid = node.keys.size() / 2;
+        Node right = new Node(rightPage, true);
+        right.keys.addAll(node.keys.subList(mid, node.keys.size()));
+        right.values.addAll(node.values.subList(mid, node.values.size()));
+        node.keys.subList(mid, node.keys.size()).clear();
+        node.values.subList(mid, node.values.size()).clear();
+
+        right.next = node.next;
+        node.next = right.pageId;
+        write(right);
+        write(node);
+        return new Split(right.keys.getFirst(), right.pageId);
+    }
+
+    private Split splitInternal(Node node, int rightPage) {
+        int mid = node.keys.size() / 2;
+        String promoted = node.keys.get(mid);
+        Node right = new Node(rightPage, false);
+        right.keys.addAll(node.keys.subList(mid + 1, node.keys.size()));
+        right.children.addAll(node.children.subList(mid + 1, node.children.size()));
+        node.keys.subList(mid, node.keys.size()).clear();
+        node.children.subList(mid + 1, node.children.size()).clear();
+
+        write(right);
+        write(node);
+        return new Split(promoted, right.pageId);
+    }
+
+    private Node load(int pageId) {
+        Node node = cache.get(pageId);
+        if (node == null) {
+            node = decode(pageId, pageFile.page(pageId));
+            cache.put(pageId, node);
+        }
+        return node;
+    }
+
+    private void write(Node node) {
+        ByteBuffer page = pageFile.page(node.pageId);
+        page.put(0, node.leaf ? TYPE_LEAF : TYPE_INTERNAL);
+        page.putShort(1, (short) node.keys.size());
+        page.putInt(3, node.next);
+
+        int position = HEADER_SIZE;
+        if (!node.leaf) {
+            page.putInt(position, node.children.getFirst());
+            position += Integer.BYTES;
+        }
+        for (int i = 0; i < node.keys.size(); i++) {
+            writeKey(page, position, node.keys.get(i));
+            position += KEY_SLOT_SIZE;
+            if (node.leaf) {
+                page.putLong(position, node.values.get(i));
+                position += Long.BYTES;
+            } else {
+                page.putInt(position, node.children.get(i + 1));
+                position += Integer.BYTES;
+            }
+        }
+        cache.put(node.pageId, node);
+    }
+
+    private static Node decode(int pageId, ByteBuffer page) {
+        Node node = new Node(pageId, page.get(0) == TYPE_LEAF);
+        int count = page.getShort(1);
+        node.next = page.getInt(3);
+
+        int position = HEADER_SIZE;
+        if (!node.leaf) {
+            node.children.add(page.getInt(position));
+            position += Integer.BYTES;
+        }
+        for (int i = 0; i < count; i++) {
+            node.keys.add(readKey(page, position));
+            position += KEY_SLOT_SIZE;
+            if (node.leaf) {
+                node.values.add(page.getLong(position));
+                position += Long.BYTES;
+            } else {
+                node.children.add(page.getInt(position));
+                position += Integer.BYTES;
+            }
+        }
+        return node;
+    }
+
+    private static void writeKey(ByteBuffer page, int position, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        page.put(position, (byte) bytes.length);
+        page.put(position + 1, bytes);
+    }
+
+    private static String readKey(ByteBuffer page, int position) {
+        byte[] bytes = new byte[page.get(position) & 0xff];
+        page.get(position + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Node - Decoded form of one tree page
+     */
+    public static final class Node {
+        private final int pageId;
+        private final boolean leaf;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Long> values = new ArrayList<>();
+        private final List<Integer> children = new ArrayList<>();
+        private int next = NO_PAGE;
+
+        private Node(int pageId, boolean leaf) {
+            this.pageId = pageId;
+            this.leaf = leaf;
+        }
+    }
+
+    /**
+     * Split - Separator key and new right sibling produced by a node split
+     */
+    private record Split(String key, int rightPage) {
+    }
+}
@@ -0,0 +1,267 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.util.PackedFasta;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * BlobStore - Content-addressed, reference-counted store for FASTA files
+ * Each distinct content is stored once under its SHA-256 checksum, sharded as ab/cd/abcd....fpk
+ * Blobs are PackedFasta containers, roughly a quarter of the text size, decoded on read
+ * Reference counts live in a B+tree keyed by checksum, so identical genomes share one file
+ * Logical bytes (original FASTA size of every reference) and physical bytes (stored size)
+ * are tracked to report the space ratio and the bytes saved
+ */
+public class BlobStore implements AutoCloseable {
+    public static final String BLOB_EXTENSION = PackedFasta.EXTENSION;
+
+    // PageFile metadata slots
+    private static final int SLOT_REFCOUNT_TREE = 0; // root, size
+    private static final int SLOT_PHYSICAL_BYTES = 2;
+    private static final int SLOT_LOGICAL_BYTES = 3;
+
+    private final Path directory;
+    private final PageFile pageFile;
+    private final BPlusTree refCounts;
+
+    /**
+     * Opens or creates a blob store
+     * @param directory root directory of the sharded blob layout
+     * @throws IOException if the directory or index cannot be opened
+     */
+    public BlobStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.pageFile = new PageFile(directory.resolve("blobs.idx"));
+        this.refCounts = new BPlusTree(pageFile, new PageCache<>(PatientStore.DEFAULT_CACHE_PAGES), SLOT_REFCOUNT_TREE);
+
+        // Temporary files left behind by an interrupted upload
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "blob*.tmp")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Adds a reference to the content with the given checksum, storing it if it is new
+     * @param checksum SHA-256 checksum of the content, as lowercase hex
+     * @param content the FASTA bytes
+     * @return blob reference (path relative to the store root) for the patient record
+     * @throws IOException if the blob cannot be written
+     */
+    public String acquire(String checksum, byte[] content) throws IOException {
+        synchronized (this) {
+            if (refCounts.get(checksum) != BPlusTree.NOT_FOUND) {
+                return addReference(checksum, content.length);
+            }
+        }
+        return acquirePacked(checksum, PackedFasta.encode(content), content.length);
+    }
+
+    /**
+     * Adds a reference to content that was already packed in memory
+     * @param checksum SHA-256 checksum of the original FASTA, as lowercase hex
+     * @param container the PackedFasta container
+     * @param originalSize size of the original FASTA in bytes
+     * @return blob reference (path relative to the store root) for the patient record
+     * @throws IOException if the blob cannot be written
+     */
+    public String acquirePacked(String checksum, byte[] container, long originalSize) throws IOException {
+        synchronized (this) {
+            if (refCounts.get(checksum) != BPlusTree.NOT_FOUND) {
+                return addReference(checksum, originalSize);
+            }
+        }
+
+        Path temp = createTempFile();
+        try {
+            Files.write(temp, container);
+            return acquirePacked(checksum, temp, originalSize);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds a reference to a container file written by the caller, e.g. from a FastaScanner
+     * The file must come from createTempFile, so that it can be moved into place atomically
+     * If the content is already stored the file is left for the caller to delete
+     * @param checksum SHA-256 checksum of the original FASTA, as lowercase hex
+     * @param containerFile the PackedFasta container, inside this store
+     * @param originalSize size of the original FASTA in bytes
+     * @return blob reference (path relative to the store root) for the patient record
+     * @throws IOException if the blob cannot be moved into place
+     */
+    public synchronized String acquirePacked(String checksum, Path containerFile, long originalSize) throws IOException {
+        // Another writer may have stored the same content meanwhile
+        if (refCounts.get(checksum) != BPlusTree.NOT_FOUND) {
+            return addReference(checksum, originalSize);
+        }
+        long storedSize = Files.size(containerFile);
+        Path target = directory.resolve(reference(checksum));
+        Files.createDirectories(target.getParent());
+        Files.move(containerFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        refCounts.put(checksum, 1);
+        addMeta(SLOT_PHYSICAL_BYTES, storedSize);
+        addMeta(SLOT_LOGICAL_BYTES, originalSize);
+        return reference(checksum);
+    }
+
+    /**
+     * Adds a reference to content that is already stored, without any upload
+     * @param checksum SHA-256 checksum of the original FASTA, as lowercase hex
+     * @param originalSize size of the original FASTA in bytes, see getOriginalSize
+     * @return blob reference (path relative to the store root), or null if the content is not stored
+     * @throws IOException if the index cannot be updated
+     */
+    public synchronized String acquireExisting(String checksum, long originalSize) throws IOException {
+        if (refCounts.get(checksum) == BPlusTree.NOT_FOUND) {
+            return null;
+        }
+        return addReference(checksum, originalSize);
+    }
+
+    /**
+     * Size of the original FASTA of stored content, read from the container header
+     * @param checksum SHA-256 checksum of the original FASTA, as lowercase hex
+     * @return size in bytes, or -1 if the content is not stored
+     * @throws IOException if the blob cannot be read
+     */
+    public synchronized long getOriginalSize(String checksum) throws IOException {
+        if (refCounts.get(checksum) == BPlusTree.NOT_FOUND) {
+            return -1;
+        }
+        try (PackedFasta.Reader reader = open(reference(checksum))) {
+            return reader.getOriginalLength();
+        }
+    }
+
+    /**
+     * Creates an empty temporary file on the same file system as the blobs
+     * @return the new file, to be passed to acquirePacked or deleted by the caller
+     * @throws IOException if the file cannot be created
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(directory, "blob", ".tmp");
+    }
+
+    /**
+     * Drops one reference, deleting the blob when no patient points at it anymore
+     * @param checksum checksum of the content
+     * @throws IOException if the blob cannot be deleted
+     */
+    public synchronized void release(String checksum) throws IOException {
+        long count = refCounts.get(checksum);
+        if (count == BPlusTree.NOT_FOUND) {
+            return;
+        }
+
+        Path blob = directory.resolve(reference(checksum));
+        boolean exists = Files.exists(blob);
+        long originalSize = 0;
+        if (exists) {
+            try (PackedFasta.Reader reader = PackedFasta.open(blob)) {
+                originalSize = reader.getOriginalLength();
+            }
+        }
+        addMeta(SLOT_LOGICAL_BYTES, -originalSize);
+        if (count > 1) {
+            refCounts.put(checksum, count - 1);
+            return;
+        }
+        refCounts.remove(checksum);
+        addMeta(SLOT_PHYSICAL_BYTES, exists ? -Files.size(blob) : 0);
+        Files.deleteIfExists(blob);
+    }
+
+    /**
+     * Checks whether content with this checksum is stored
+     */
+    public synchronized boolean contains(String checksum) {
+        return refCounts.get(checksum) != BPlusTree.NOT_FOUND;
+    }
+
+    /**
+     * Resolves a blob reference to its file
+     */
+    public Path resolve(String reference) {
+        return directory.resolve(reference);
+    }
+
+    /**
+     * Opens a blob for random access to its sequence
+     * @param reference blob reference stored on the patient record
+     * @return reader over the container, to be closed by the caller
+     * @throws IOException if the blob is missing or not a container
+     */
+    public PackedFasta.Reader open(String reference) throws IOException {
+        return PackedFasta.open(resolve(reference));
+    }
+
+    /**
+     * Reads the original FASTA text of a blob
+     * @param reference blob reference stored on the patient record
+     * @return the exact FASTA bytes that were acquired
+     * @throws IOException if the blob is missing or a block checksum fails
+     */
+    public byte[] read(String reference) throws IOException {
+        try (PackedFasta.Reader reader = open(reference)) {
+            return reader.readFasta();
+        }
+    }
+
+    /**
+     * Sharded relative path of a checksum: first two bytes of the hex form one directory level each
+     */
+    public static String reference(String checksum) {
+        return checksum.substring(0, 2) + "/" + checksum.substring(2, 4) + "/" + checksum + BLOB_EXTENSION;
+    }
+
+    public synchronized long getBlobCount() {
+        return refCounts.size();
+    }
+
+    public synchronized long getPhysicalBytes() {
+        return pageFile.getMeta(SLOT_PHYSICAL_BYTES);
+    }
+
+    public synchronized long getLogicalBytes() {
+        return pageFile.getMeta(SLOT_LOGICAL_BYTES);
+    }
+
+    /**
+     * Bytes that would be stored as plain per-patient files, minus the bytes actually stored
+     */
+    public synchronized long getBytesSaved() {
+        return getLogicalBytes() - getPhysicalBytes();
+    }
+
+    /**
+     * Logical bytes divided by physical bytes, combining packing and deduplication
+     */
+    public synchronized double getDedupRatio() {
+        long physical = getPhysicalBytes();
+        return physical == 0 ? 1.0 : (double) getLogicalBytes() / physical;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        pageFile.close();
+    }
+
+    private String addReference(String checksum, long size) throws IOException {
+        refCounts.put(checksum, refCounts.get(checksum) + 1);
+        addMeta(SLOT_LOGICAL_BYTES, size);
+        return reference(checksum);
+    }
+
+    private void addMeta(int slot, long delta) {
+        pageFile.setMeta(slot, pageFile.getMeta(slot) + delta);
+    }
+}
@@ -0,0 +1,31 @@
+package com.genomic.server.storage;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * FlushEvent - Flight Recorder event for forcing a store file to disk
+ * Only flushes slower than the threshold are recorded, override it with
+ * genomic.Flush#threshold in the recording settings
+ */
+@Name("genomic.Flush")
+@Label("Store Flush")
+@Category({"Genomic", "Storage"})
+@Description("Forcing of written data to disk")
+@Threshold("10 ms")
+class FlushEvent extends jdk.jfr.Event {
+
+    @Label("Store")
+    String store;
+
+    @Label("File")
+    String file;
+
+    @Label("File Size")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,68 @@
+package com.genomic.server.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PageCache - Bounded LRU cache of decoded pages
+ * Pages are written through to the mapped file on every change, so evicting
+ * an entry only drops the decoded copy and never loses data
+ * @param <T> decoded page type
+ */
+public class PageCache<T> {
+    private final LinkedHashMap<Integer, T> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache holding at most capacity decoded pages
+     * @param capacity maximum number of cached pages
+     */
+    public PageCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a decoded page
+     * @param pageId the page number
+     * @return the cached page, or null on a miss
+     */
+    public synchronized T get(int pageId) {
+        T page = entries.get(pageId);
+        if (page == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return page;
+    }
+
+    /**
+     * Stores a decoded page, possibly evicting the least recently used one
+     */
+    public synchronized void put(int pageId, T page) {
+        entries.put(pageId, page);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,139 @@
+package com.genomic.server.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * PageFile - Fixed-size pages stored in a memory-mapped file
+ * Page 0 is the header: magic, page size, page count and a small table of long
+ * metadata slots that structures built on top (tree roots, counters) use to persist state
+ * The file grows in segments, each segment is mapped once and never remapped
+ */
+public class PageFile implements AutoCloseable {
+    public static final int PAGE_SIZE = 4096;
+    public static final int META_SLOTS = 32;
+
+    private static final int MAGIC = 0x47504147; // "GPAG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int PAGES_PER_SEGMENT = 256; // 1 MiB segments
+    private static final long SEGMENT_SIZE = (long) PAGES_PER_SEGMENT * PAGE_SIZE;
+
+    // Header layout
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_PAGE_SIZE = 8;
+    private static final int OFFSET_PAGE_COUNT = 12;
+    private static final int OFFSET_META = 64;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private int pageCount;
+
+    /**
+     * Opens or creates a page file
+     * @param path location of the page file
+     * @throws IOException if the file cannot be mapped or has an unknown format
+     */
+    public PageFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size == 0) {
+            mapSegment(0);
+            ByteBuffer header = page(0);
+            header.putInt(OFFSET_MAGIC, MAGIC);
+            header.putInt(OFFSET_VERSION, FORMAT_VERSION);
+            header.putInt(OFFSET_PAGE_SIZE, PAGE_SIZE);
+            pageCount = 1;
+            header.putInt(OFFSET_PAGE_COUNT, pageCount);
+            return;
+        }
+
+        for (long position = 0; position < size; position += SEGMENT_SIZE) {
+            mapSegment(segments.size());
+        }
+        ByteBuffer header = page(0);
+        if (header.getInt(OFFSET_MAGIC) != MAGIC || header.getInt(OFFSET_PAGE_SIZE) != PAGE_SIZE) {
+            throw new IOException("Not a page file: " + path);
+        }
+        pageCount = header.getInt(OFFSET_PAGE_COUNT);
+    }
+
+    /**
+     * Returns a view over one page, reads and writes go straight to the mapping
+     * @param pageId the page number
+     * @return a PAGE_SIZE buffer positioned at the page start
+     */
+    public ByteBuffer page(int pageId) {
+        MappedByteBuffer segment = segments.get(pageId / PAGES_PER_SEGMENT);
+        return segment.slice((pageId % PAGES_PER_SEGMENT) * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    /**
+     * Allocates a new zeroed page at the end of the file
+     * @return the new page number
+     * @throws IOException if the file cannot be extended
+     */
+    public synchronized int allocatePage() throws IOException {
+        int pageId = pageCount;
+        if (pageId / PAGES_PER_SEGMENT >= segments.size()) {
+            mapSegment(segments.size());
+        }
+        pageCount++;
+        page(0).putInt(OFFSET_PAGE_COUNT, pageCount);
+        return pageId;
+    }
+
+    /**
+     * Reads a persistent metadata slot from the header page
+     */
+    public long getMeta(int slot) {
+        checkSlot(slot);
+        return page(0).getLong(OFFSET_META + slot * Long.BYTES);
+    }
+
+    /**
+     * Writes a persistent metadata slot in the header page
+     */
+    public void setMeta(int slot, long value) {
+        checkSlot(slot);
+        page(0).putLong(OFFSET_META + slot * Long.BYTES, value);
+    }
+
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Forces all mapped segments to disk
+     */
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        segments.clear();
+        channel.close();
+    }
+
+    private void mapSegment(int index) throws IOException {
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, index * SEGMENT_SIZE, SEGMENT_SIZE));
+    }
+
+    private static void checkSlot(int slot) {
+        if (slot < 0 || slot >= META_SLOTS) {
+            throw new IllegalArgumentException("Invalid metadata slot: " + slot);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.model.Patient;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * PatientCodec - Binary serialization of Patient records for the storage engine
+ * Fields are length-prefixed, so commas or newlines in clinical notes are stored verbatim
+ * Version 2 prefixes strings with an int byte length, so no field is limited to the 64 KB of
+ * writeUTF; version 1 records written that way are still read
+ */
+public class PatientCodec {
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte FORMAT_VERSION_UTF = 1;
+
+    /**
+     * Encodes a patient into a record payload
+     * @param patient the patient snapshot
+     * @return encoded bytes
+     */
+    public static byte[] encode(Patient patient) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, patient.getPatientId());
+            writeString(out, patient.getFullName());
+            writeString(out, patient.getDocumentId());
+            out.writeInt(patient.getAge());
+            writeString(out, patient.getSex());
+            writeString(out, patient.getEmail());
+            out.writeLong(patient.getRegistrationDate().toEpochMilli());
+            writeString(out, patient.getClinicalNotes());
+            writeString(out, patient.getChecksumFasta());
+            out.writeLong(patient.getFileSizeBytes());
+            out.writeBoolean(patient.isActive());
+            writeString(out, patient.getFastaFilename());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream never throws
+        }
+    }
+
+    /**
+     * Decodes a record payload into a patient
+     * @param payload encoded bytes
+     * @return the patient snapshot
+     * @throws IOException if the payload is malformed or of an unknown version
+     */
+    public static Patient decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_UTF) {
+            throw new IOException("Unsupported patient record version: " + version);
+        }
+        boolean utf = version == FORMAT_VERSION_UTF;
+        return Patient.builder()
+                .patientId(readString(in, utf))
+                .fullName(readString(in, utf))
+                .documentId(readString(in, utf))
+                .age(in.readInt())
+                .sex(readString(in, utf))
+                .email(readString(in, utf))
+                .registrationDate(Instant.ofEpochMilli(in.readLong()))
+                .clinicalNotes(readString(in, utf))
+                .checksumFasta(readString(in, utf))
+                .fileSizeBytes(in.readLong())
+                .active(in.readBoolean())
+                .fastaFilename(readString(in, utf))
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in, boolean utf) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        if (utf) {
+            return in.readUTF();
+        }
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length in patient record: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.model.Patient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PatientStore - Embedded storage engine for patient metadata
+ * Records are appended to a RecordLog; a B+tree on patientId and a B+tree on documentId
+ * (active patients only) map keys to record offsets inside one memory-mapped PageFile
+ * Opening the store only maps the files, so startup cost does not depend on registry size
+ * Slow flushes are recorded as genomic.Flush Flight Recorder events
+ */
+public class PatientStore implements AutoCloseable {
+    public static final int DEFAULT_CACHE_PAGES = 1024;
+    public static final int MAX_KEY_BYTES = BPlusTree.MAX_KEY_BYTES; // of patient and document IDs, in UTF-8
+
+    // PageFile metadata slots
+    private static final int SLOT_PATIENT_TREE = 0; // root, size
+    private static final int SLOT_DOCUMENT_TREE = 2; // root, size
+    private static final int SLOT_SEQUENCE = 4;
+
+    private final PageFile pageFile;
+    private final RecordLog recordLog;
+    private final PageCache<BPlusTree.Node> pageCache;
+    private final BPlusTree patientTree;
+    private final BPlusTree documentTree;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Opens or creates the store in a directory
+     * @param directory directory for patients.idx and patients.rec
+     * @param cachePages number of decoded index pages kept in memory
+     * @throws IOException if the files cannot be opened
+     */
+    public PatientStore(Path directory, int cachePages) throws IOException {
+        Files.createDirectories(directory);
+        this.pageFile = new PageFile(directory.resolve("patients.idx"));
+        this.recordLog = new RecordLog(directory.resolve("patients.rec"));
+        this.pageCache = new PageCache<>(cachePages);
+        this.patientTree = new BPlusTree(pageFile, pageCache, SLOT_PATIENT_TREE);
+        this.documentTree = new BPlusTree(pageFile, pageCache, SLOT_DOCUMENT_TREE);
+    }
+
+    /**
+     * Point lookup by patient ID
+     * @param patientId the patient identifier
+     * @return the stored patient, or null if unknown
+     * @throws IOException if the record cannot be read
+     */
+    public Patient get(String patientId) throws IOException {
+        lock.readLock().lock();
+        try {
+            long offset = patientTree.get(patientId);
+            return offset == BPlusTree.NOT_FOUND ? null : readRecord(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the active patient holding a document ID
+     * @param documentId the identification document number
+     * @return the owning patient ID, or null if no active patient holds it
+     * @throws IOException if the record cannot be read
+     */
+    public String findPatientIdByDocumentId(String documentId) throws IOException {
+        lock.readLock().lock();
+        try {
+            long offset = documentTree.get(documentId);
+            return offset == BPlusTree.NOT_FOUND ? null : readRecord(offset).getPatientId();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or replaces a patient record and keeps the documentId index in sync
+     * If the index cannot be updated, both trees are left pointing at the previous record
+     * @param patient the new patient snapshot
+     * @throws IOException if the record or index cannot be written
+     * @throws IllegalArgumentException if the patient or document ID is longer than MAX_KEY_BYTES,
+     * checked before anything is written
+     */
+    public void put(Patient patient) throws IOException {
+        String patientId = patient.getPatientId();
+        if (!BPlusTree.fitsKey(patientId) || (patient.isActive() && !BPlusTree.fitsKey(patient.getDocumentId()))) {
+            throw new IllegalArgumentException("Patient and document IDs are limited to " + MAX_KEY_BYTES
+                    + " bytes: " + patientId);
+        }
+        byte[] payload = PatientCodec.encode(patient);
+
+        lock.writeLock().lock();
+        try {
+            long previousOffset = patientTree.get(patientId);
+            Patient previous = previousOffset == BPlusTree.NOT_FOUND ? null : readRecord(previousOffset);
+            long offset = recordLog.append(payload);
+            patientTree.put(patientId, offset);
+
+            boolean previousIndexed = previous != null && previous.isActive()
+                    && documentTree.get(previous.getDocumentId()) == previousOffset;
+            if (previousIndexed) {
+                documentTree.remove(previous.getDocumentId());
+            }
+            if (patient.isActive()) {
+                try {
+                    documentTree.put(patient.getDocumentId(), offset);
+                } catch (IOException | RuntimeException e) {
+                    // Neither step needs a new page: the removal left room, the patient key exists
+                    if (previousIndexed) {
+                        documentTree.put(previous.getDocumentId(), previousOffset);
+                    }
+                    if (previous == null) {
+                        patientTree.remove(patientId);
+                    } else {
+                        patientTree.put(patientId, previousOffset);
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Range scan in patient ID order
+     * @param fromPatientId inclusive lower bound, or null for the first patient
+     * @param toPatientId exclusive upper bound, or null for no bound
+     * @param limit maximum number of patients returned
+     * @return patients in ID order
+     * @throws IOException if a record cannot be read
+     */
+    public List<Patient> scan(String fromPatientId, String toPatientId, int limit) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<Patient> result = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : patientTree.scan(fromPatientId, toPatientId, limit)) {
+                result.add(readRecord(entry.getValue()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of stored patients, active and inactive
+     */
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return patientTree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Persistent sequence, used to hand out patient numbers across restarts
+     */
+    public long getSequence() {
+        lock.readLock().lock();
+        try {
+            return pageFile.getMeta(SLOT_SEQUENCE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Raises the persistent sequence to at least the given value
+     */
+    public void advanceSequence(long value) {
+        lock.writeLock().lock();
+        try {
+            if (value > pageFile.getMeta(SLOT_SEQUENCE)) {
+                pageFile.setMeta(SLOT_SEQUENCE, value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getCacheHits() {
+        return pageCache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return pageCache.getMisses();
+    }
+
+    public long getCacheEvictions() {
+        return pageCache.getEvictions();
+    }
+
+    /**
+     * Forces index pages and records to disk
+     * @throws IOException if syncing fails
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            FlushEvent event = new FlushEvent();
+            event.begin();
+            recordLog.force();
+            pageFile.force();
+            event.end();
+            if (event.shouldCommit()) {
+                event.store = "patients";
+                event.file = "patients.rec";
+                event.bytes = recordLog.size();
+                event.commit();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            recordLog.close();
+            pageFile.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Patient readRecord(long offset) throws IOException {
+        return PatientCodec.decode(recordLog.read(offset));
+    }
+}
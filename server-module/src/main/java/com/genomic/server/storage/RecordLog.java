@@ -0,0 +1,101 @@
+package com.genomic.server.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * RecordLog - Append-only file of variable-length records addressed by byte offset
+ * Each record is stored as length(4) crc32(4) payload, so corruption is detected on read
+ * Updated records are appended again and the index is pointed at the new offset
+ */
+public class RecordLog implements AutoCloseable {
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private long end;
+
+    /**
+     * Opens or creates a record log
+     * @param path location of the log file
+     * @throws IOException if the file cannot be opened
+     */
+    public RecordLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.end = channel.size();
+    }
+
+    /**
+     * Appends a record
+     * @param payload the record bytes
+     * @return offset of the new record
+     * @throws IOException if the write fails
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+
+        long offset = end;
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        end = position;
+        return offset;
+    }
+
+    /**
+     * Reads the record at an offset, safe to call from many threads
+     * @param offset offset returned by append
+     * @return the record bytes
+     * @throws IOException if the read fails or the checksum does not match
+     */
+    public byte[] read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        int expectedCrc = header.getInt(4);
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_HEADER_SIZE);
+        byte[] bytes = payload.array();
+        if (crc(bytes) != expectedCrc) {
+            throw new IOException("Corrupted record at offset " + offset);
+        }
+        return bytes;
+    }
+
+    public synchronized long size() {
+        return end;
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of record log at offset " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,287 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.util.Logger;
+import lombok.Getter;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * UploadStore - On-disk state of resumable FASTA uploads
+ * Each upload is a <id>.upload descriptor (metadata, total length, checksum) and a <id>.part
+ * file holding the bytes received so far; the committed offset is the size of the part file,
+ * so it survives dropped connections and server restarts
+ * Bytes only arrive in order, hence every byte in the part file is at its final position
+ * Uploads untouched for longer than the expiry are deleted, on open and at startup
+ * Slow syncs of a chunk are recorded as genomic.Flush Flight Recorder events
+ */
+public class UploadStore {
+    public static final long DEFAULT_EXPIRY_MS = 24L * 60 * 60 * 1000;
+    public static final int DEFAULT_MAX_UPLOADS = 256;
+
+    private static final String DESCRIPTOR_EXTENSION = ".upload";
+    private static final String PART_EXTENSION = ".part";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long expiryMillis;
+    private final int maxUploads;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Opens or creates an upload store, reloading the uploads that have not expired
+     * @param directory directory of the descriptor and part files
+     * @param expiryMillis time after the last chunk before an upload is deleted
+     * @param maxUploads maximum number of uploads open at once
+     * @throws IOException if the directory cannot be read
+     */
+    public UploadStore(Path directory, long expiryMillis, int maxUploads) throws IOException {
+        this.directory = directory;
+        this.expiryMillis = expiryMillis;
+        this.maxUploads = maxUploads;
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> descriptors = Files.newDirectoryStream(directory, "*" + DESCRIPTOR_EXTENSION)) {
+            for (Path descriptor : descriptors) {
+                try {
+                    Upload upload = load(descriptor);
+                    uploads.put(upload.getUploadId(), upload);
+                } catch (IOException | RuntimeException e) {
+                    Logger.warning("Discarding unreadable upload " + descriptor + ": " + e.getMessage());
+                    Files.deleteIfExists(descriptor);
+                }
+            }
+        }
+        // Part files without a descriptor, e.g. from a crash during open
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(directory, "*" + PART_EXTENSION)) {
+            for (Path part : parts) {
+                String name = part.getFileName().toString();
+                if (!uploads.containsKey(name.substring(0, name.length() - PART_EXTENSION.length()))) {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+        expire();
+    }
+
+    /**
+     * Opens an upload, or returns the open upload of the same metadata and content
+     * so that a client restarting from scratch resumes where it stopped
+     * @param metadata patient metadata, including documentId
+     * @param totalLength size of the FASTA in bytes
+     * @param checksum SHA-256 of the FASTA, lowercase hex
+     * @return the upload
+     * @throws IOException if the files cannot be created
+     * @throws IllegalStateException if maxUploads uploads are already open
+     */
+    public synchronized Upload open(JSONObject metadata, long totalLength, String checksum) throws IOException {
+        expire();
+        for (Upload upload : uploads.values()) {
+            if (upload.totalLength == totalLength && upload.checksum.equals(checksum)
+                    && upload.metadata.similar(metadata) && !upload.isExpired()) {
+                upload.touch();
+                return upload;
+            }
+        }
+        if (uploads.size() >= maxUploads) {
+            throw new IllegalStateException("Too many open uploads (" + maxUploads + ")");
+        }
+
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        Upload upload = new Upload(HexFormat.of().formatHex(id), metadata, totalLength, checksum, 0);
+        Files.createFile(partFile(upload.uploadId));
+
+        JSONObject descriptor = new JSONObject();
+        descriptor.put("uploadId", upload.uploadId);
+        descriptor.put("metadata", metadata);
+        descriptor.put("totalLength", totalLength);
+        descriptor.put("checksumFasta", checksum);
+        Path temp = Files.createTempFile(directory, "upload", ".tmp");
+        Files.writeString(temp, descriptor.toString());
+        Files.move(temp, descriptorFile(upload.uploadId), StandardCopyOption.ATOMIC_MOVE);
+
+        uploads.put(upload.uploadId, upload);
+        return upload;
+    }
+
+    /**
+     * Looks up an open upload
+     * @return the upload, or null if it is unknown, finished or expired
+     */
+    public Upload get(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        return upload == null || upload.isExpired() ? null : upload;
+    }
+
+    /**
+     * Appends a chunk to the part file; the caller holds the upload lock
+     * Bytes before the committed offset were received already and are skipped
+     * @param upload the upload
+     * @param offset position of the first byte of the chunk, at most the committed offset
+     * @param body stream positioned at the chunk
+     * @param length number of bytes in the chunk
+     * @return the new committed offset
+     * @throws IOException if the body ends early or the part file cannot be written
+     */
+    public long append(Upload upload, long offset, InputStream body, long length) throws IOException {
+        long overlap = Math.min(upload.committed - offset, length);
+        body.skipNBytes(overlap);
+        long remaining = length - overlap;
+
+        try (FileChannel part = FileChannel.open(partFile(upload.uploadId), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            try {
+                while (remaining > 0) {
+                    int read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("Chunk ended " + remaining + " bytes early");
+                    }
+                    part.write(ByteBuffer.wrap(buffer, 0, read));
+                    upload.committed += read;
+                    remaining -= read;
+                }
+            } finally {
+                // Whatever arrived is kept, a retry resumes after it
+                FlushEvent event = new FlushEvent();
+                event.begin();
+                part.force(false);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.store = "uploads";
+                    event.file = upload.uploadId + PART_EXTENSION;
+                    event.bytes = upload.committed;
+                    event.commit();
+                }
+                upload.touch();
+            }
+        }
+        return upload.committed;
+    }
+
+    /**
+     * Opens the complete part file for reading
+     */
+    public InputStream openContent(Upload upload) throws IOException {
+        return Files.newInputStream(partFile(upload.uploadId));
+    }
+
+    /**
+     * Deletes an upload, once it is finalized or abandoned
+     */
+    public void remove(Upload upload) throws IOException {
+        uploads.remove(upload.uploadId, upload);
+        Files.deleteIfExists(descriptorFile(upload.uploadId));
+        Files.deleteIfExists(partFile(upload.uploadId));
+    }
+
+    /**
+     * Deletes the uploads idle for longer than the expiry
+     * @return number of uploads deleted
+     */
+    public int expire() throws IOException {
+        int expired = 0;
+        for (Upload upload : uploads.values()) {
+            // An upload receiving a chunk is not idle, whatever its timestamp says
+            if (upload.isExpired() && upload.lock.tryLock()) {
+                try {
+                    remove(upload);
+                    expired++;
+                } finally {
+                    upload.lock.unlock();
+                }
+            }
+        }
+        return expired;
+    }
+
+    public int getOpenCount() {
+        return uploads.size();
+    }
+
+    private Upload load(Path descriptorFile) throws IOException {
+        JSONObject descriptor = new JSONObject(Files.readString(descriptorFile, StandardCharsets.UTF_8));
+        String uploadId = descriptor.getString("uploadId");
+        Path part = partFile(uploadId);
+        Upload upload = new Upload(uploadId, descriptor.getJSONObject("metadata"),
+                descriptor.getLong("totalLength"), descriptor.getString("checksumFasta"),
+                Files.exists(part) ? Files.size(part) : 0);
+        if (!Files.exists(part)) {
+            Files.createFile(part);
+        }
+        upload.lastActivity = Files.getLastModifiedTime(part).toMillis();
+        return upload;
+    }
+
+    private Path descriptorFile(String uploadId) {
+        return directory.resolve(uploadId + DESCRIPTOR_EXTENSION);
+    }
+
+    private Path partFile(String uploadId) {
+        return directory.resolve(uploadId + PART_EXTENSION);
+    }
+
+    /**
+     * Upload - One resumable upload; chunks and finalization run under its lock
+     */
+    public final class Upload {
+        @Getter
+        private final String uploadId;
+        @Getter
+        private final JSONObject metadata;
+        @Getter
+        private final long totalLength;
+        @Getter
+        private final String checksum;
+        @Getter
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long committed;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private Upload(String uploadId, JSONObject metadata, long totalLength, String checksum, long committed) {
+            this.uploadId = uploadId;
+            this.metadata = metadata;
+            this.totalLength = totalLength;
+            this.checksum = checksum;
+            this.committed = committed;
+        }
+
+        /**
+         * Number of bytes received and stored so far
+         */
+        public long getCommittedOffset() {
+            return committed;
+        }
+
+        /**
+         * Wall-clock time in milliseconds after which the idle upload is deleted
+         */
+        public long getExpiresAt() {
+            return lastActivity + expiryMillis;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > getExpiresAt();
+        }
+
+        private void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.genomic.server.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * RequestEvent - Flight Recorder event spanning one request, from its frame to its response
+ * Begun and committed by RequestTrace, so it carries the same tags and stage breakdown
+ * Only requests slower than the threshold are recorded, override it with
+ * genomic.Request#threshold in the recording settings
+ */
+@Name("genomic.Request")
+@Label("Request")
+@Category({"Genomic", "Requests"})
+@Description("Request from its frame arriving to its response being written")
+@Threshold("100 ms")
+class RequestEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Patient ID")
+    String patientId;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadBytes;
+
+    @Label("Error Code")
+    String errorCode;
+
+    @Label("Stages")
+    @Description("Time per stage in milliseconds, as printed by the slow request log")
+    String stages;
+}
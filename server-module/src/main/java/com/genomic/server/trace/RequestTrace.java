@@ -0,0 +1,283 @@
+package com.genomic.server.trace;
+
+import com.genomic.common.util.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * RequestTrace - Stage timings of one request, tagged with its command, payload size and patient
+ * ProtocolHandler begins a trace when a request frame arrives and finishes it once the response
+ * is written; in between, the handler and the services it calls time their stages with span or
+ * record, which find the trace of the current thread. Time spent in a stage is summed over
+ * every span of that name, so a loop over diseases adds up to one entry with a count. Names
+ * with a dot are sub-stages of the part before the dot, e.g. screen.align inside screen
+ * Finished traces go to the registered exporters, and those slower than its threshold are
+ * recorded as genomic.Request Flight Recorder events; with no exporter registered and the event
+ * disabled, begin returns null and span and record do nothing, so tracing costs a thread-local
+ * lookup per call
+ */
+public final class RequestTrace {
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final List<TraceExporter> EXPORTERS = new CopyOnWriteArrayList<>();
+    private static final Span NO_SPAN = new Span(null, null, 0);
+    private static final int INITIAL_STAGES = 8;
+
+    private final long startNanos;
+    private final long startMillis;
+    private final String threadName;
+    private final RequestEvent event;
+    private long durationNanos = -1;
+    private String command;
+    private long payloadBytes;
+    private String patientId;
+    private String errorCode;
+
+    private String[] stageNames = new String[INITIAL_STAGES];
+    private long[] stageNanos = new long[INITIAL_STAGES];
+    private int[] stageCounts = new int[INITIAL_STAGES];
+    private int stageCount;
+
+    private RequestTrace(RequestEvent event) {
+        this.startNanos = System.nanoTime();
+        this.startMillis = System.currentTimeMillis();
+        this.threadName = Thread.currentThread().getName();
+        this.event = event;
+    }
+
+    /**
+     * Registers an exporter for every trace finished from now on
+     */
+    public static void addExporter(TraceExporter exporter) {
+        EXPORTERS.add(exporter);
+    }
+
+    public static void removeExporter(TraceExporter exporter) {
+        EXPORTERS.remove(exporter);
+    }
+
+    /**
+     * Starts a trace on the current thread, replacing one left unfinished
+     * @return the trace, or null when no exporter is registered and the request event is disabled
+     */
+    public static RequestTrace begin() {
+        RequestEvent event = new RequestEvent();
+        if (EXPORTERS.isEmpty() && !event.isEnabled()) {
+            CURRENT.remove();
+            return null;
+        }
+        RequestTrace trace = new RequestTrace(event);
+        event.begin();
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Trace of the current thread
+     * @return the trace, or null outside a traced request
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Times a stage of the current request until the span is closed
+     * @param stage name of the stage
+     * @return the span, to be closed with try-with-resources
+     */
+    public static Span span(String stage) {
+        RequestTrace trace = CURRENT.get();
+        return trace == null ? NO_SPAN : new Span(trace, stage, System.nanoTime());
+    }
+
+    /**
+     * Adds time measured by the caller to a stage of the current request
+     * @param stage name of the stage
+     * @param nanos time spent in it
+     */
+    public static void record(String stage, long nanos) {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.add(stage, nanos);
+        }
+    }
+
+    /**
+     * Ends the trace of the current thread and hands it to the exporters
+     */
+    public static void finish() {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return;
+        }
+        CURRENT.remove();
+        trace.durationNanos = System.nanoTime() - trace.startNanos;
+        trace.commitEvent();
+        for (TraceExporter exporter : EXPORTERS) {
+            try {
+                exporter.export(trace);
+            } catch (RuntimeException e) {
+                Logger.error("Trace exporter failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void commitEvent() {
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.patientId = patientId;
+            event.payloadBytes = payloadBytes;
+            event.errorCode = errorCode;
+            StringBuilder stages = new StringBuilder();
+            appendStages(stages);
+            event.stages = stages.toString();
+            event.commit();
+        }
+    }
+
+    private void add(String stage, long nanos) {
+        for (int i = 0; i < stageCount; i++) {
+            if (stageNames[i].equals(stage)) {
+                stageNanos[i] += nanos;
+                stageCounts[i]++;
+                return;
+            }
+        }
+        if (stageCount == stageNames.length) {
+            stageNames = Arrays.copyOf(stageNames, stageCount * 2);
+            stageNanos = Arrays.copyOf(stageNanos, stageCount * 2);
+            stageCounts = Arrays.copyOf(stageCounts, stageCount * 2);
+        }
+        stageNames[stageCount] = stage;
+        stageNanos[stageCount] = nanos;
+        stageCounts[stageCount] = 1;
+        stageCount++;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public void setPayloadBytes(long payloadBytes) {
+        this.payloadBytes = payloadBytes;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Wall-clock time the request frame arrived, in epoch milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Time from the request frame to the end of the response, -1 while unfinished
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getStageCount() {
+        return stageCount;
+    }
+
+    public String getStageName(int index) {
+        return stageNames[index];
+    }
+
+    public long getStageNanos(int index) {
+        return stageNanos[index];
+    }
+
+    public int getStageSpans(int index) {
+        return stageCounts[index];
+    }
+
+    /**
+     * One line with the tags and the stage breakdown, in milliseconds
+     * e.g. CREATE_PATIENT_STREAM PAT000012 4194304 B 1532.10 ms: read 0.20, parse 0.05, fasta.read 310.00, ...
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(command == null ? "?" : command);
+        if (patientId != null) {
+            line.append(' ').append(patientId);
+        }
+        line.append(' ').append(payloadBytes).append(" B ")
+                .append(millis(durationNanos < 0 ? System.nanoTime() - startNanos : durationNanos)).append(" ms");
+        if (errorCode != null) {
+            line.append(" error ").append(errorCode);
+        }
+        if (stageCount > 0) {
+            line.append(": ");
+            appendStages(line);
+        }
+        return line.toString();
+    }
+
+    private void appendStages(StringBuilder line) {
+        for (int i = 0; i < stageCount; i++) {
+            line.append(i == 0 ? "" : ", ").append(stageNames[i]).append(' ').append(millis(stageNanos[i]));
+            if (stageCounts[i] > 1) {
+                line.append(" x").append(stageCounts[i]);
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    /**
+     * Span - A timed stage, added to its trace when closed
+     */
+    public static final class Span implements AutoCloseable {
+        private final RequestTrace trace;
+        private final String stage;
+        private final long startNanos;
+
+        private Span(RequestTrace trace, String stage, long startNanos) {
+            this.trace = trace;
+            this.stage = stage;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (trace != null) {
+                trace.add(stage, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
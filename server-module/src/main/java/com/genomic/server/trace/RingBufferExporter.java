@@ -0,0 +1,64 @@
+package com.genomic.server.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * RingBufferExporter - Keeps the most recent traces in a fixed-size ring
+ * Exporting claims a slot with one atomic increment and overwrites the oldest trace, so
+ * memory stays bounded and request threads never wait for each other
+ */
+public class RingBufferExporter implements TraceExporter {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final AtomicReferenceArray<RequestTrace> ring;
+    private final AtomicLong exported = new AtomicLong();
+
+    /**
+     * Creates an empty ring
+     * @param capacity number of traces kept
+     */
+    public RingBufferExporter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void export(RequestTrace trace) {
+        long sequence = exported.getAndIncrement();
+        ring.set((int) (sequence % ring.length()), trace);
+    }
+
+    /**
+     * The traces in the ring, newest first
+     * @param limit maximum number of traces returned
+     * @return the traces, a copy
+     */
+    public List<RequestTrace> getRecent(int limit) {
+        long newest = exported.get() - 1;
+        int count = (int) Math.min(Math.min(limit, ring.length()), newest + 1);
+        List<RequestTrace> traces = new ArrayList<>(Math.max(count, 0));
+        for (long sequence = newest; sequence > newest - count; sequence--) {
+            RequestTrace trace = ring.get((int) (sequence % ring.length()));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * Number of traces exported since creation, including those overwritten
+     */
+    public long getExportedCount() {
+        return exported.get();
+    }
+
+    public int getCapacity() {
+        return ring.length();
+    }
+}
@@ -0,0 +1,34 @@
+package com.genomic.server.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * ScreeningEvent - Flight Recorder event for the disease screening of one patient
+ * Only screenings slower than the threshold are recorded, override it with
+ * genomic.Screening#threshold in the recording settings
+ */
+@Name("genomic.Screening")
+@Label("Disease Screening")
+@Category({"Genomic", "Screening"})
+@Description("Screening of all contigs of a patient against the disease database")
+@Threshold("100 ms")
+public class ScreeningEvent extends jdk.jfr.Event {
+
+    @Label("Patient ID")
+    public String patientId;
+
+    @Label("Contigs")
+    @Description("Contigs screened")
+    public int contigs;
+
+    @Label("Bases")
+    @Description("Bases screened")
+    public long bases;
+
+    @Label("Matches")
+    public int matches;
+}
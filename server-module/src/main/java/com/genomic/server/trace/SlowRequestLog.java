@@ -0,0 +1,53 @@
+package com.genomic.server.trace;
+
+import com.genomic.common.util.Logger;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SlowRequestLog - Logs the stage breakdown of every request slower than a threshold
+ * Each slow request is logged as a warning on one line prefixed with [SLOW], and kept in a ring of its own
+ * so the latest ones can be inspected after they scroll out of the log
+ */
+public class SlowRequestLog implements TraceExporter {
+    public static final long DEFAULT_THRESHOLD_MS = 1_000;
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private final long thresholdNanos;
+    private final RingBufferExporter slowest;
+
+    /**
+     * Creates a slow request log
+     * @param thresholdMillis requests taking at least this long are logged
+     * @param capacity number of slow requests kept
+     */
+    public SlowRequestLog(long thresholdMillis, int capacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.slowest = new RingBufferExporter(capacity);
+    }
+
+    @Override
+    public void export(RequestTrace trace) {
+        if (trace.getDurationNanos() < thresholdNanos) {
+            return;
+        }
+        slowest.export(trace);
+        Logger.warning("[SLOW] " + trace);
+    }
+
+    /**
+     * The latest slow requests, newest first
+     */
+    public List<RequestTrace> getRecent(int limit) {
+        return slowest.getRecent(limit);
+    }
+
+    public long getSlowCount() {
+        return slowest.getExportedCount();
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+}
@@ -0,0 +1,15 @@
+package com.genomic.server.trace;
+
+/**
+ * TraceExporter - Receives every finished RequestTrace
+ * Called on the request thread right after the response is written, so implementations
+ * must be quick and thread-safe; a trace is not modified once exported
+ */
+public interface TraceExporter {
+
+    /**
+     * Takes a finished trace
+     * @param trace the trace, with its duration and stages final
+     */
+    void export(RequestTrace trace);
+}
@@ -0,0 +1,149 @@
+package com.genomic.server.service;
+
+import com.genomic.common.ProtocolException;
+import com.genomic.common.model.Disease;
+import com.genomic.common.model.DiseaseMatchResult;
+import com.genomic.common.util.CsvParser;
+import com.genomic.common.util.PackedFasta;
+import com.genomic.common.util.SequenceAligner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DiseaseServiceTest - Per contig matching, one alignment per candidate, window alignment of
+ * contigs too long for a score matrix, and the report CSV, including reports written before the
+ * contig column existed
+ */
+class DiseaseServiceTest {
+    private static final String HEADER =
+            "patientId,diseaseId,diseaseName,severity,similarity,detectionDate,description,contig";
+    private static final String DISEASE_BASES = "ACGTTGCAACGTTGCAGGCCAATT".repeat(5);
+
+    @TempDir
+    Path directory;
+
+    private DiseaseService service;
+
+    @BeforeEach
+    void createDiseaseDatabase() throws IOException, ProtocolException {
+        Path database = Files.createDirectories(directory.resolve("disease_db"));
+        Files.writeString(database.resolve("catalog.csv"),
+                "diseaseId,name,severity,fastaFile\nD001,Test Disease,8,d001.fasta\n");
+        Files.writeString(database.resolve("d001.fasta"),
+                ">d001 part one\n" + DISEASE_BASES.substring(0, 60) + "\n>d001 part two\n"
+                        + DISEASE_BASES.substring(60) + "\n");
+        service = new DiseaseService(database);
+    }
+
+    @Test
+    void matchesNameTheContigTheyWereFoundIn() {
+        List<DiseaseMatchResult> matches = service.checkForMatches("chr7", DISEASE_BASES, 0.8);
+        assertEquals(1, matches.size());
+        assertEquals("D001", matches.get(0).getDisease().getDiseaseId());
+        assertEquals("chr7", matches.get(0).getContig());
+        assertEquals(1.0, matches.get(0).getSimilarity(), 1e-9);
+
+        assertTrue(service.checkForMatches("chr8", "T".repeat(DISEASE_BASES.length()), 0.8).isEmpty());
+    }
+
+    @Test
+    void eachCandidateIsAlignedOnce() {
+        long before = SequenceAligner.getAlignmentCount();
+        assertEquals(1, service.checkForMatches("chr1", DISEASE_BASES, 0.8).size());
+        assertEquals(before + 1, SequenceAligner.getAlignmentCount());
+
+        // Under half the disease length, the length filter skips the alignment
+        assertTrue(service.checkForMatches("chr2", DISEASE_BASES.substring(0, 59), 0.8).isEmpty());
+        assertEquals(before + 1, SequenceAligner.getAlignmentCount());
+    }
+
+    @Test
+    void contigsTooLongForAMatrixAreAlignedByWindow() throws IOException {
+        // The disease straddles the first decoded chunk, with two substitutions
+        StringBuilder carrier = new StringBuilder(randomBases(1, 1_100_000));
+        int at = 1024 * 1024 - 50;
+        carrier.replace(at, at + DISEASE_BASES.length(), DISEASE_BASES);
+        carrier.setCharAt(at + 10, carrier.charAt(at + 10) == 'A' ? 'C' : 'A');
+        carrier.setCharAt(at + 90, carrier.charAt(at + 90) == 'A' ? 'C' : 'A');
+        String fasta = ">carrier\n" + carrier + "\n>background\n" + randomBases(2, 200_000) + "\n";
+
+        try (PackedFasta.Reader reader = PackedFasta.open(PackedFasta.encode(fasta.getBytes(StandardCharsets.US_ASCII)))) {
+            List<PackedFasta.Contig> contigs = reader.getContigs();
+            List<DiseaseMatchResult> matches = service.checkForMatches(reader, contigs.get(0), 0.8);
+            assertEquals(1, matches.size());
+            assertEquals("carrier", matches.get(0).getContig());
+            assertEquals((DISEASE_BASES.length() - 4) / (double) DISEASE_BASES.length(),
+                    matches.get(0).getSimilarity(), 1e-9);
+
+            assertTrue(service.checkForMatches(reader, contigs.get(1), 0.8).isEmpty());
+        }
+    }
+
+    @Test
+    void reportIsCreatedInTheGivenFile() throws IOException {
+        Path report = directory.resolve("data/reports/disease_detections.csv");
+        service.migrateReportHeader(report);
+        assertTrue(Files.notExists(report));
+        service.generateDiseaseReport(report, "PAT000001", match("chr1"));
+        service.generateDiseaseReport(report, "PAT000002", match(null));
+
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(HEADER, lines.get(0));
+        assertRow(lines.get(1), "PAT000001", "chr1");
+        assertRow(lines.get(2), "PAT000002", "");
+    }
+
+    @Test
+    void reportWithoutTheContigColumnIsMigrated() throws IOException {
+        Path report = directory.resolve("disease_detections.csv");
+        Files.writeString(report, "patientId,diseaseId,diseaseName,severity,similarity,detectionDate,description\n"
+                + "PAT000012,D003,Sickle Cell Anemia,7,1.0000,2025-09-06T22:05:05.014543300,"
+                + "Genomic similarity (100.00%) detected with Sickle Cell Anemia (Severity: 7/10)\n");
+
+        service.migrateReportHeader(report);
+        service.migrateReportHeader(report);
+        service.generateDiseaseReport(report, "PAT000013", match("chr2"));
+        service.generateDiseaseReport(report, "PAT000014", match("chr3"));
+
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        assertEquals(HEADER, lines.get(0));
+        assertRow(lines.get(1), "PAT000012", "");
+        assertEquals("Sickle Cell Anemia", CsvParser.parseLine(lines.get(1)).get(2));
+        assertRow(lines.get(2), "PAT000013", "chr2");
+        assertRow(lines.get(3), "PAT000014", "chr3");
+        assertTrue(Files.notExists(directory.resolve("disease_detections.csv.tmp")));
+    }
+
+    private static String randomBases(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder bases = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            bases.append("ACGT".charAt(random.nextInt(4)));
+        }
+        return bases.toString();
+    }
+
+    private static DiseaseMatchResult match(String contig) {
+        return new DiseaseMatchResult(new Disease("D001", "Test Disease, inherited", 8, "d001.fasta"), 0.95, contig);
+    }
+
+    private static void assertRow(String line, String patientId, String contig) {
+        List<String> values = CsvParser.parseLine(line);
+        assertEquals(8, values.size(), line);
+        assertEquals(patientId, values.get(0));
+        assertEquals(contig, values.get(7));
+    }
+}
@@ -0,0 +1,194 @@
+package com.genomic.server.service;
+
+import com.genomic.common.ProtocolConstants;
+import com.genomic.common.ProtocolException;
+import com.genomic.common.util.FastaValidator;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PatientServiceTest - Registration against a fresh data directory: blob references, document
+ * IDs, failed creates, patient numbering, report migration and resumable uploads
+ */
+class PatientServiceTest {
+    private static final String FASTA = ">chr1 test\nACGTACGTAC\nGGTTAACC\n";
+
+    @TempDir
+    Path directory;
+
+    private PatientService service;
+
+    @BeforeEach
+    void createService() throws Exception {
+        service = new PatientService(new DiseaseService(Files.createDirectories(directory.resolve("disease_db"))),
+                directory.resolve("data"));
+    }
+
+    @AfterEach
+    void closeService() throws Exception {
+        service.close();
+    }
+
+    @Test
+    void invalidMetadataLeavesNoBlobReference() throws Exception {
+        String checksum = FastaValidator.calculateChecksum(FASTA);
+        JSONObject noEmail = metadata("DOC-1");
+        noEmail.remove("email");
+        assertThrows(ProtocolException.class, () -> service.createPatient(noEmail, FASTA));
+        JSONObject badAge = metadata("DOC-1").put("age", "forty");
+        assertThrows(ProtocolException.class, () -> service.createPatient(badAge, FASTA));
+        assertFalse(service.getFastaStore().contains(checksum));
+        assertEquals(0, service.getFastaStore().getBlobCount());
+
+        // The document ID was not kept either, and the content is stored once it succeeds
+        String patientId = service.createPatient(metadata("DOC-1"), FASTA);
+        assertTrue(service.getFastaStore().contains(checksum));
+        assertEquals("DOC-1", service.getPatient(patientId).getString("documentId"));
+
+        // Known content linked by checksum gets the same treatment
+        long logicalBytes = service.getFastaStore().getLogicalBytes();
+        assertThrows(ProtocolException.class, () -> service.createPatientFromChecksum(noEmail, checksum));
+        assertEquals(logicalBytes, service.getFastaStore().getLogicalBytes());
+    }
+
+    @Test
+    void documentIdsTheStoreCannotIndexAreRejected() throws Exception {
+        String tooLong = "D".repeat(65);
+        for (ProtocolException e : List.of(
+                assertThrows(ProtocolException.class, () -> service.createPatient(metadata(tooLong), FASTA)),
+                assertThrows(ProtocolException.class, () -> service.openUpload(metadata(tooLong), FASTA.length(),
+                        FastaValidator.calculateChecksum(FASTA))))) {
+            assertEquals(ProtocolConstants.ERR_INVALID_FORMAT, e.getErrorCode());
+        }
+        assertEquals(0, service.getTotalPatientCount());
+        assertEquals(0, service.getFastaStore().getBlobCount());
+
+        String patientId = service.createPatient(metadata("DOC-6"), FASTA);
+        ProtocolException update = assertThrows(ProtocolException.class,
+                () -> service.updatePatient(patientId, new JSONObject().put("documentId", tooLong), (String) null));
+        assertEquals(ProtocolConstants.ERR_INVALID_FORMAT, update.getErrorCode());
+        assertEquals("DOC-6", service.getPatient(patientId).getString("documentId"));
+        assertEquals(FASTA.length(), service.getFastaStore().getLogicalBytes());
+    }
+
+    @Test
+    void rejectedCreatesDoNotUsePatientNumbers() throws Exception {
+        assertEquals("PAT000001", service.createPatient(metadata("DOC-7"), FASTA));
+        JSONObject noEmail = metadata("DOC-8");
+        noEmail.remove("email");
+        assertThrows(ProtocolException.class, () -> service.createPatient(noEmail, FASTA));
+        assertThrows(ProtocolException.class, () -> service.createPatient(metadata("DOC-7"), FASTA));
+        assertThrows(ProtocolException.class, () -> service.createPatientFromChecksum(metadata("DOC-8"), "0".repeat(64)));
+        assertEquals("PAT000002", service.createPatient(metadata("DOC-8"), FASTA));
+
+        // A restart hands out the same next number
+        service.close();
+        service = new PatientService(new DiseaseService(directory.resolve("disease_db")), directory.resolve("data"));
+        assertEquals("PAT000003", service.createPatient(metadata("DOC-9"), FASTA));
+    }
+
+    @Test
+    void reportsInTheOldFormatAreMigratedAtStartup() throws Exception {
+        service.close();
+        Path report = directory.resolve("data/reports/disease_detections.csv");
+        Files.writeString(report, "patientId,diseaseId,diseaseName,severity,similarity,detectionDate,description\n"
+                + "PAT000012,D003,Sickle Cell Anemia,7,1.0000,2025-09-06T22:05:05,Detected\n");
+
+        service = new PatientService(new DiseaseService(directory.resolve("disease_db")), directory.resolve("data"));
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).endsWith(",contig"), lines.get(0));
+        assertEquals("PAT000012,D003,Sickle Cell Anemia,7,1.0000,2025-09-06T22:05:05,Detected,", lines.get(1));
+    }
+
+    @Test
+    void clinicalNotesLargerThan64KbAreStored() throws Exception {
+        String notes = "Follow-up visit, no change.\n".repeat(5000);
+        String patientId = service.createPatient(metadata("DOC-7").put("clinicalNotes", notes), FASTA);
+        assertEquals(notes, service.getPatient(patientId).getString("clinicalNotes"));
+    }
+
+    @Test
+    void duplicateDocumentIdsAreRejected() throws Exception {
+        String first = service.createPatient(metadata("DOC-2"), FASTA);
+        ProtocolException e = assertThrows(ProtocolException.class,
+                () -> service.createPatient(metadata("DOC-2"), FASTA));
+        assertEquals(ProtocolConstants.ERR_DUPLICATE_DOCUMENT, e.getErrorCode());
+        assertEquals(1, service.getTotalPatientCount());
+
+        // The rejected create took no reference, a second patient shares the stored content
+        assertEquals(FASTA.length(), service.getFastaStore().getLogicalBytes());
+        String second = service.createPatientFromChecksum(metadata("DOC-3"), FastaValidator.calculateChecksum(FASTA));
+        assertEquals(2L * FASTA.length(), service.getFastaStore().getLogicalBytes());
+        assertEquals(1, service.getFastaStore().getBlobCount());
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    void uploadsBecomePatientsOnceCompleteAndVerified() throws Exception {
+        byte[] content = FASTA.getBytes(StandardCharsets.US_ASCII);
+        String checksum = FastaValidator.calculateChecksum(FASTA);
+        JSONObject status = service.openUpload(metadata("DOC-4"), content.length, checksum);
+        String uploadId = status.getString("uploadId");
+        assertEquals(0, status.getLong("offset"));
+
+        service.appendUpload(uploadId, 0, chunk(content, 0, 12), 12);
+        ProtocolException gap = assertThrows(ProtocolException.class,
+                () -> service.appendUpload(uploadId, 20, chunk(content, 20, 25), 5));
+        assertEquals(ProtocolConstants.ERR_INVALID_FORMAT, gap.getErrorCode());
+        assertThrows(ProtocolException.class, () -> service.finalizeUpload(uploadId));
+
+        // A client restarting from scratch resumes at the committed offset
+        assertEquals(12, service.openUpload(metadata("DOC-4"), content.length, checksum).getLong("offset"));
+        assertEquals(content.length, service.appendUpload(uploadId, 6, chunk(content, 6, content.length),
+                content.length - 6).getLong("offset"));
+        String patientId = service.finalizeUpload(uploadId);
+        assertEquals(checksum, service.getPatient(patientId).getString("checksumFasta"));
+
+        ProtocolException finished = assertThrows(ProtocolException.class, () -> service.getUploadStatus(uploadId));
+        assertEquals(ProtocolConstants.ERR_UPLOAD_NOT_FOUND, finished.getErrorCode());
+        ProtocolException duplicate = assertThrows(ProtocolException.class,
+                () -> service.openUpload(metadata("DOC-4"), content.length, checksum));
+        assertEquals(ProtocolConstants.ERR_DUPLICATE_DOCUMENT, duplicate.getErrorCode());
+    }
+
+    @Test
+    void uploadsWithTheWrongContentAreRejectedAndDeleted() throws Exception {
+        byte[] content = FASTA.getBytes(StandardCharsets.US_ASCII);
+        String uploadId = service.openUpload(metadata("DOC-5"), content.length, "00".repeat(32)).getString("uploadId");
+        service.appendUpload(uploadId, 0, chunk(content, 0, content.length), content.length);
+
+        ProtocolException mismatch = assertThrows(ProtocolException.class, () -> service.finalizeUpload(uploadId));
+        assertEquals(ProtocolConstants.ERR_CHECKSUM_MISMATCH, mismatch.getErrorCode());
+        assertThrows(ProtocolException.class, () -> service.getUploadStatus(uploadId));
+        assertEquals(0, service.getTotalPatientCount());
+        assertEquals(0, service.getFastaStore().getBlobCount());
+    }
+
+    private static ByteArrayInputStream chunk(byte[] content, int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, from, to));
+    }
+
+    private static JSONObject metadata(String documentId) {
+        return new JSONObject()
+                .put("fullName", "Ada Lovelace")
+                .put("documentId", documentId)
+                .put("age", 36)
+                .put("sex", "F")
+                .put("email", "ada@example.org");
+    }
+}
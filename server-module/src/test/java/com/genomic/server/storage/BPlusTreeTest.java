@@ -0,0 +1,199 @@
+package com.genomic.server.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BPlusTreeTest - Splits, lazy removes, range scans, reopening and failed page allocations,
+ * checked against a TreeMap holding the same entries
+ */
+class BPlusTreeTest {
+    // Enough keys for leaf and internal splits, three levels deep
+    private static final int KEYS = 5000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void randomInsertsSplitNodesAndKeepOrder() throws IOException {
+        TreeMap<String, Long> expected = new TreeMap<>();
+        try (PageFile file = new PageFile(directory.resolve("tree.idx"))) {
+            BPlusTree tree = new BPlusTree(file, new PageCache<>(64), 0);
+            for (String key : shuffledKeys(KEYS, 1)) {
+                long value = key.hashCode();
+                assertEquals(BPlusTree.NOT_FOUND, tree.put(key, value));
+                expected.put(key, value);
+            }
+            assertEquals(KEYS, tree.size());
+            assertMatches(expected, tree);
+
+            // Replacing a value keeps the size and returns the old value
+            assertEquals(expected.get(key(10)).longValue(), tree.put(key(10), -10));
+            expected.put(key(10), -10L);
+            assertEquals(KEYS, tree.size());
+            assertMatches(expected, tree);
+        }
+    }
+
+    @Test
+    void removeEmptiesLeavesWithoutBreakingLookupsOrScans() throws IOException {
+        TreeMap<String, Long> expected = new TreeMap<>();
+        try (PageFile file = new PageFile(directory.resolve("tree.idx"))) {
+            BPlusTree tree = new BPlusTree(file, new PageCache<>(64), 0);
+            for (int i = 0; i < KEYS; i++) {
+                tree.put(key(i), i);
+                expected.put(key(i), (long) i);
+            }
+
+            // Whole leaves run empty, including the leftmost one
+            for (int i = 0; i < KEYS; i++) {
+                if (i < 500 || (i >= 2000 && i < 2600) || i % 7 == 0) {
+                    assertEquals(i, tree.remove(key(i)));
+                    expected.remove(key(i));
+                }
+            }
+            assertEquals(BPlusTree.NOT_FOUND, tree.remove(key(0)));
+            assertEquals(BPlusTree.NOT_FOUND, tree.remove("missing"));
+            assertEquals(expected.size(), tree.size());
+            assertMatches(expected, tree);
+
+            // Removed keys can come back
+            for (int i = 2000; i < 2100; i++) {
+                assertEquals(BPlusTree.NOT_FOUND, tree.put(key(i), i));
+                expected.put(key(i), (long) i);
+            }
+            assertMatches(expected, tree);
+        }
+    }
+
+    @Test
+    void treesSurviveReopenWithAColdCache() throws IOException {
+        Path path = directory.resolve("tree.idx");
+        TreeMap<String, Long> first = new TreeMap<>();
+        TreeMap<String, Long> second = new TreeMap<>();
+        try (PageFile file = new PageFile(path)) {
+            // Two trees in one file, the way PatientStore keeps its indexes
+            PageCache<BPlusTree.Node> cache = new PageCache<>(16);
+            BPlusTree a = new BPlusTree(file, cache, 0);
+            BPlusTree b = new BPlusTree(file, cache, 2);
+            for (String key : shuffledKeys(KEYS, 2)) {
+                a.put(key, 1);
+                first.put(key, 1L);
+                if (key.hashCode() % 3 == 0) {
+                    b.put(key, 2);
+                    second.put(key, 2L);
+                }
+            }
+            a.remove(key(42));
+            first.remove(key(42));
+        }
+
+        try (PageFile file = new PageFile(path)) {
+            PageCache<BPlusTree.Node> cache = new PageCache<>(16);
+            assertMatches(first, new BPlusTree(file, cache, 0));
+            assertMatches(second, new BPlusTree(file, cache, 2));
+        }
+    }
+
+    @Test
+    void failedAllocationLeavesTreeUnchanged() throws IOException {
+        TreeMap<String, Long> expected = new TreeMap<>();
+        try (FailingPageFile file = new FailingPageFile(directory.resolve("tree.idx"))) {
+            PageCache<BPlusTree.Node> cache = new PageCache<>(1024);
+            BPlusTree tree = new BPlusTree(file, cache, 0);
+            int failures = 0;
+            for (String key : shuffledKeys(KEYS, 3)) {
+                // Fail the first, second... allocation of an insert until it gets through
+                for (int allowed = 0; ; allowed++) {
+                    file.allowedAllocations = allowed;
+                    try {
+                        tree.put(key, 7);
+                        break;
+                    } catch (IOException e) {
+                        failures++;
+                        assertEquals(BPlusTree.NOT_FOUND, tree.get(key));
+                        assertEquals(expected.size(), tree.size());
+                    }
+                }
+                expected.put(key, 7L);
+            }
+            file.allowedAllocations = Integer.MAX_VALUE;
+
+            // Nodes cached during the failures agree with the pages on disk
+            assertTrue(failures > KEYS / BPlusTree.LEAF_CAPACITY);
+            assertMatches(expected, tree);
+            assertMatches(expected, new BPlusTree(file, new PageCache<>(1024), 0));
+        }
+    }
+
+    @Test
+    void rejectsKeysLongerThanASlot() throws IOException {
+        try (PageFile file = new PageFile(directory.resolve("tree.idx"))) {
+            BPlusTree tree = new BPlusTree(file, new PageCache<>(16), 0);
+            assertThrows(IllegalArgumentException.class, () -> tree.put("k".repeat(BPlusTree.MAX_KEY_BYTES + 1), 1));
+            assertEquals(BPlusTree.NOT_FOUND, tree.put("k".repeat(BPlusTree.MAX_KEY_BYTES), 1));
+        }
+    }
+
+    private static void assertMatches(TreeMap<String, Long> expected, BPlusTree tree) {
+        assertEquals(expected.size(), tree.size());
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().longValue(), tree.get(entry.getKey()), entry.getKey());
+        }
+        assertEquals(new ArrayList<>(expected.entrySet()), tree.scan(null, null, Integer.MAX_VALUE));
+
+        // Bounds that fall on and between stored keys
+        String from = key(1234);
+        String to = key(3456) + "x";
+        assertEquals(new ArrayList<>(expected.subMap(from, true, to, false).entrySet()),
+                tree.scan(from, to, Integer.MAX_VALUE));
+        List<Map.Entry<String, Long>> limited = tree.scan(from, null, 10);
+        assertEquals(new ArrayList<>(expected.tailMap(from, true).entrySet()).subList(0, limited.size()), limited);
+        assertEquals(Math.min(10, expected.tailMap(from, true).size()), limited.size());
+    }
+
+    private static List<String> shuffledKeys(int count, long seed) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(key(i));
+        }
+        Collections.shuffle(keys, new Random(seed));
+        return keys;
+    }
+
+    private static String key(int i) {
+        return String.format("PAT%06d", i);
+    }
+
+    /**
+     * FailingPageFile - Page file whose allocations fail once a budget is used up
+     */
+    private static final class FailingPageFile extends PageFile {
+        private int allowedAllocations = Integer.MAX_VALUE;
+
+        private FailingPageFile(Path path) throws IOException {
+            super(path);
+        }
+
+        @Override
+        public synchronized int allocatePage() throws IOException {
+            if (allowedAllocations-- <= 0) {
+                throw new IOException("No space left on device");
+            }
+            return super.allocatePage();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.ProtocolException;
+import com.genomic.common.util.FastaValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BlobStoreTest - Deduplication, reference counting, space accounting and reopening
+ */
+class BlobStoreTest {
+    private static final byte[] GENOME = ">chr1 test\nACGTACGTNNNNACGT\nGGCCTTAA\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OTHER = ">chr2\nTTTTGGGGCCCCAAAA\n".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void identicalContentIsStoredOnceAndDeletedWithItsLastReference() throws IOException, ProtocolException {
+        String checksum = checksum(GENOME);
+        try (BlobStore store = new BlobStore(directory)) {
+            String reference = store.acquire(checksum, GENOME);
+            assertEquals(BlobStore.reference(checksum), reference);
+            assertEquals(reference, store.acquire(checksum, GENOME));
+            assertEquals(reference, store.acquireExisting(checksum, GENOME.length));
+            assertEquals(1, store.getBlobCount());
+            assertEquals(3L * GENOME.length, store.getLogicalBytes());
+            assertEquals(Files.size(store.resolve(reference)), store.getPhysicalBytes());
+            assertArrayEquals(GENOME, store.read(reference));
+            assertEquals(GENOME.length, store.getOriginalSize(checksum));
+
+            store.release(checksum);
+            store.release(checksum);
+            assertTrue(Files.exists(store.resolve(reference)));
+            assertEquals(GENOME.length, store.getLogicalBytes());
+
+            store.release(checksum);
+            assertFalse(store.contains(checksum));
+            assertFalse(Files.exists(store.resolve(reference)));
+            assertEquals(0, store.getLogicalBytes());
+            assertEquals(0, store.getPhysicalBytes());
+            assertEquals(-1, store.getOriginalSize(checksum));
+            assertNull(store.acquireExisting(checksum, GENOME.length));
+
+            // Releasing unknown content is a no-op
+            store.release(checksum);
+            assertEquals(0, store.getBlobCount());
+        }
+    }
+
+    @Test
+    void referenceCountsSurviveReopen() throws IOException, ProtocolException {
+        String genome = checksum(GENOME);
+        String other = checksum(OTHER);
+        try (BlobStore store = new BlobStore(directory)) {
+            store.acquire(genome, GENOME);
+            store.acquire(genome, GENOME);
+            store.acquire(other, OTHER);
+            // A temporary file left by an interrupted upload
+            store.createTempFile();
+        }
+
+        try (BlobStore store = new BlobStore(directory)) {
+            try (var leftovers = Files.list(directory)) {
+                assertEquals(0, leftovers.filter(file -> file.toString().endsWith(".tmp")).count());
+            }
+            assertEquals(2, store.getBlobCount());
+            store.release(genome);
+            assertTrue(store.contains(genome));
+            store.release(genome);
+            assertFalse(store.contains(genome));
+            assertArrayEquals(OTHER, store.read(BlobStore.reference(other)));
+            assertEquals(OTHER.length, store.getLogicalBytes());
+        }
+    }
+
+    private static String checksum(byte[] content) throws ProtocolException {
+        return FastaValidator.calculateChecksum(new String(content, StandardCharsets.US_ASCII));
+    }
+}
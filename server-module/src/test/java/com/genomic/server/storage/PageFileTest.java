@@ -0,0 +1,57 @@
+package com.genomic.server.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * PageFileTest - Page allocation across segments, metadata slots and reopening
+ */
+class PageFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void pagesAndMetadataSurviveReopen() throws IOException {
+        Path path = directory.resolve("test.idx");
+        int lastPage;
+        try (PageFile file = new PageFile(path)) {
+            assertEquals(1, file.getPageCount());
+            // More than one 256-page segment
+            for (int i = 0; i < 600; i++) {
+                lastPage = file.allocatePage();
+                file.page(lastPage).putInt(0, i);
+            }
+            file.setMeta(0, 42);
+            file.setMeta(PageFile.META_SLOTS - 1, -7);
+        }
+
+        try (PageFile file = new PageFile(path)) {
+            assertEquals(601, file.getPageCount());
+            for (int pageId = 1; pageId <= 600; pageId++) {
+                assertEquals(pageId - 1, file.page(pageId).getInt(0));
+            }
+            assertEquals(42, file.getMeta(0));
+            assertEquals(-7, file.getMeta(PageFile.META_SLOTS - 1));
+            assertEquals(601, file.allocatePage());
+        }
+    }
+
+    @Test
+    void rejectsInvalidSlotsAndForeignFiles() throws IOException {
+        try (PageFile file = new PageFile(directory.resolve("test.idx"))) {
+            assertThrows(IllegalArgumentException.class, () -> file.getMeta(PageFile.META_SLOTS));
+            assertThrows(IllegalArgumentException.class, () -> file.setMeta(-1, 0));
+        }
+
+        Path foreign = directory.resolve("foreign.idx");
+        Files.write(foreign, new byte[PageFile.PAGE_SIZE]);
+        assertThrows(IOException.class, () -> new PageFile(foreign));
+    }
+}
@@ -0,0 +1,74 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * PatientCodecTest - Fields beyond the 64 KB of writeUTF, null fields, and records written in
+ * the earlier format
+ */
+class PatientCodecTest {
+    private static final Patient PATIENT = Patient.builder()
+            .patientId("PAT000001")
+            .fullName("José Pérez")
+            .documentId("DOC1")
+            .age(42)
+            .sex("M")
+            .email("jose@example.org")
+            .registrationDate(Instant.ofEpochMilli(1_700_000_000_123L))
+            .clinicalNotes("notes")
+            .checksumFasta(null)
+            .fileSizeBytes(1234)
+            .fastaFilename("PAT000001.fasta")
+            .build();
+
+    @Test
+    void longFieldsRoundTrip() throws IOException {
+        // 3 bytes per character in UTF-8, well past the 65535 bytes writeUTF allows
+        Patient patient = PATIENT.toBuilder().clinicalNotes("检查结果, line\n".repeat(20_000)).build();
+        assertEquals(patient, PatientCodec.decode(PatientCodec.encode(patient)));
+        assertEquals(PATIENT, PatientCodec.decode(PatientCodec.encode(PATIENT)));
+    }
+
+    @Test
+    void earlierRecordsAreStillRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        writeUtf(out, PATIENT.getPatientId());
+        writeUtf(out, PATIENT.getFullName());
+        writeUtf(out, PATIENT.getDocumentId());
+        out.writeInt(PATIENT.getAge());
+        writeUtf(out, PATIENT.getSex());
+        writeUtf(out, PATIENT.getEmail());
+        out.writeLong(PATIENT.getRegistrationDate().toEpochMilli());
+        writeUtf(out, PATIENT.getClinicalNotes());
+        writeUtf(out, PATIENT.getChecksumFasta());
+        out.writeLong(PATIENT.getFileSizeBytes());
+        out.writeBoolean(PATIENT.isActive());
+        writeUtf(out, PATIENT.getFastaFilename());
+        assertEquals(PATIENT, PatientCodec.decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void malformedRecordsAreRejected() {
+        assertThrows(IOException.class, () -> PatientCodec.decode(new byte[]{9}));
+        // A string length pointing past the end of the record
+        assertThrows(IOException.class, () -> PatientCodec.decode(new byte[]{2, 1, 0x7f, 0, 0, 0, 'P'}));
+    }
+
+    private static void writeUtf(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.genomic.server.storage;
+
+import com.genomic.common.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PatientStoreTest - Records, the patient and documentId indexes and their agreement across
+ * updates, deletes and reopening
+ */
+class PatientStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void patientsRoundTripThroughTheRecordLog() throws IOException {
+        Patient patient = patient(1, "DOC1").toBuilder()
+                .clinicalNotes("line one\nline two, with a comma")
+                .checksumFasta(null)
+                .build();
+        try (PatientStore store = new PatientStore(directory, 16)) {
+            store.put(patient);
+            assertEquals(patient, store.get("PAT000001"));
+            assertNull(store.get("PAT000002"));
+            assertEquals(1, store.count());
+        }
+    }
+
+    @Test
+    void documentIndexFollowsUpdatesAndDeletes() throws IOException {
+        try (PatientStore store = new PatientStore(directory, 16)) {
+            store.put(patient(1, "DOC1"));
+            store.put(patient(2, "DOC2"));
+            assertEquals("PAT000001", store.findPatientIdByDocumentId("DOC1"));
+
+            // A changed document ID moves the index entry
+            store.put(patient(1, "DOC1B"));
+            assertNull(store.findPatientIdByDocumentId("DOC1"));
+            assertEquals("PAT000001", store.findPatientIdByDocumentId("DOC1B"));
+            assertEquals("DOC1B", store.get("PAT000001").getDocumentId());
+
+            // A deleted patient keeps its record but frees its document ID for someone else
+            store.put(patient(2, "DOC2").toBuilder().active(false).build());
+            assertNull(store.findPatientIdByDocumentId("DOC2"));
+            assertFalse(store.get("PAT000002").isActive());
+            store.put(patient(3, "DOC2"));
+            assertEquals("PAT000003", store.findPatientIdByDocumentId("DOC2"));
+
+            // Deleting the earlier holder again must not drop the new holder's entry
+            store.put(patient(2, "DOC2").toBuilder().active(false).fullName("Renamed").build());
+            assertEquals("PAT000003", store.findPatientIdByDocumentId("DOC2"));
+            assertEquals(3, store.count());
+        }
+    }
+
+    @Test
+    void oversizedIdsAreRejectedBeforeAnythingIsWritten() throws IOException {
+        String longDocumentId = "D".repeat(PatientStore.MAX_KEY_BYTES + 1);
+        try (PatientStore store = new PatientStore(directory, 16)) {
+            store.put(patient(1, "DOC1"));
+            assertThrows(IllegalArgumentException.class, () -> store.put(patient(2, longDocumentId)));
+            assertThrows(IllegalArgumentException.class, () -> store.put(patient(1, longDocumentId)));
+            // Multi-byte characters count by their UTF-8 length
+            assertThrows(IllegalArgumentException.class, () -> store.put(patient(2, "é".repeat(33))));
+
+            assertNull(store.get("PAT000002"));
+            assertEquals(patient(1, "DOC1"), store.get("PAT000001"));
+            assertEquals("PAT000001", store.findPatientIdByDocumentId("DOC1"));
+            assertEquals(1, store.count());
+
+            // A deleted patient is not indexed by document ID, so its ID length does not matter
+            store.put(patient(1, longDocumentId).toBuilder().active(false).build());
+            assertNull(store.findPatientIdByDocumentId("DOC1"));
+        }
+    }
+
+    @Test
+    void indexesAndSequenceSurviveReopen() throws IOException {
+        int patients = 3000; // several index pages, with a cache smaller than the index
+        try (PatientStore store = new PatientStore(directory, 8)) {
+            for (int i = 1; i <= patients; i++) {
+                store.put(patient(i, "DOC" + i));
+            }
+            store.put(patient(7, "DOC7").toBuilder().active(false).build());
+            store.advanceSequence(patients + 1);
+            store.advanceSequence(5); // never goes back
+            store.flush();
+        }
+
+        try (PatientStore store = new PatientStore(directory, 8)) {
+            assertEquals(patients, store.count());
+            assertEquals(patients + 1, store.getSequence());
+            for (int i = 1; i <= patients; i++) {
+                String patientId = String.format("PAT%06d", i);
+                assertEquals(patient(i, "DOC" + i).getEmail(), store.get(patientId).getEmail());
+                assertEquals(i == 7 ? null : patientId, store.findPatientIdByDocumentId("DOC" + i));
+            }
+            assertFalse(store.get("PAT000007").isActive());
+
+            List<Patient> range = store.scan("PAT000100", "PAT000110", 100);
+            assertEquals(10, range.size());
+            assertEquals("PAT000100", range.getFirst().getPatientId());
+            assertEquals(3, store.scan(null, null, 3).size());
+            assertTrue(store.getCacheEvictions() > 0);
+        }
+    }
+
+    private static Patient patient(int number, String documentId) {
+        return Patient.builder()
+                .patientId(String.format("PAT%06d", number))
+                .fullName("Patient " + number)
+                .documentId(documentId)
+                .age(20 + number % 60)
+                .sex(number % 2 == 0 ? "F" : "M")
+                .email("patient" + number + "@example.com")
+                .registrationDate(Instant.ofEpochMilli(1_700_000_000_000L + number))
+                .clinicalNotes("")
+                .checksumFasta("ab".repeat(32))
+                .fileSizeBytes(number * 100L)
+                .fastaFilename("ab/ab/" + "ab".repeat(32) + ".fpk")
+                .build();
+    }
+}
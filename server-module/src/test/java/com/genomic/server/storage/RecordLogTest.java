@@ -0,0 +1,68 @@
+package com.genomic.server.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * RecordLogTest - Appending, reading back after reopen and detecting corruption
+ */
+class RecordLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReadBackAfterReopen() throws IOException {
+        Path path = directory.resolve("test.rec");
+        long[] offsets = new long[100];
+        try (RecordLog log = new RecordLog(path)) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = log.append(payload(i));
+            }
+            assertEquals(0, offsets[0]);
+            assertArrayEquals(payload(17), log.read(offsets[17]));
+        }
+
+        try (RecordLog log = new RecordLog(path)) {
+            for (int i = 0; i < offsets.length; i++) {
+                assertArrayEquals(payload(i), log.read(offsets[i]));
+            }
+            long size = log.size();
+            assertEquals(size, log.append(new byte[0]));
+            assertArrayEquals(new byte[0], log.read(size));
+        }
+    }
+
+    @Test
+    void corruptedRecordIsDetected() throws IOException {
+        Path path = directory.resolve("test.rec");
+        long offset;
+        try (RecordLog log = new RecordLog(path)) {
+            log.append(payload(1));
+            offset = log.append(payload(2));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'#'}), offset + 8);
+        }
+
+        try (RecordLog log = new RecordLog(path)) {
+            assertArrayEquals(payload(1), log.read(0));
+            assertThrows(IOException.class, () -> log.read(offset));
+            assertThrows(IOException.class, () -> log.read(log.size()));
+        }
+    }
+
+    private static byte[] payload(int i) {
+        return ("record " + i + " " + "x".repeat(i)).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package com.genomic.server.storage;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * UploadStoreTest - Resuming uploads, overlapping and truncated chunks, reloading after a
+ * restart and expiry
+ */
+class UploadStoreTest {
+    private static final byte[] CONTENT = ">chr1 upload\nACGTACGTACGTACGTACGT\nGGCCAATT\n".getBytes(StandardCharsets.US_ASCII);
+    private static final String CHECKSUM = "ab".repeat(32);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopeningTheSameRequestResumesTheUpload() throws IOException {
+        UploadStore store = new UploadStore(directory, UploadStore.DEFAULT_EXPIRY_MS, 2);
+        UploadStore.Upload upload = store.open(metadata("DOC-1"), CONTENT.length, CHECKSUM);
+        assertSame(upload, store.open(metadata("DOC-1"), CONTENT.length, CHECKSUM));
+        UploadStore.Upload other = store.open(metadata("DOC-2"), CONTENT.length, CHECKSUM);
+        assertNotEquals(upload.getUploadId(), other.getUploadId());
+        assertThrows(IllegalStateException.class, () -> store.open(metadata("DOC-3"), CONTENT.length, CHECKSUM));
+
+        store.remove(other);
+        assertNull(store.get(other.getUploadId()));
+        assertEquals(1, store.getOpenCount());
+    }
+
+    @Test
+    void retriedChunksSkipTheBytesAlreadyStored() throws IOException {
+        UploadStore store = new UploadStore(directory, UploadStore.DEFAULT_EXPIRY_MS, UploadStore.DEFAULT_MAX_UPLOADS);
+        UploadStore.Upload upload = store.open(metadata("DOC-1"), CONTENT.length, CHECKSUM);
+        assertEquals(20, store.append(upload, 0, chunk(0, 20), 20));
+        // The acknowledgement of the last chunk was lost, the client resends from 10
+        assertEquals(30, store.append(upload, 10, chunk(10, 30), 20));
+        // A connection drops mid-chunk, what arrived is kept
+        assertThrows(IOException.class, () -> store.append(upload, 30, chunk(30, 35), 10));
+        assertEquals(35, upload.getCommittedOffset());
+        assertEquals(CONTENT.length, store.append(upload, 35, chunk(35, CONTENT.length), CONTENT.length - 35));
+
+        try (InputStream content = store.openContent(upload)) {
+            assertArrayEquals(CONTENT, content.readAllBytes());
+        }
+    }
+
+    @Test
+    void openUploadsSurviveARestartUntilTheyExpire() throws IOException {
+        UploadStore store = new UploadStore(directory, UploadStore.DEFAULT_EXPIRY_MS, UploadStore.DEFAULT_MAX_UPLOADS);
+        UploadStore.Upload upload = store.open(metadata("DOC-1"), CONTENT.length, CHECKSUM);
+        store.append(upload, 0, chunk(0, 25), 25);
+        String uploadId = upload.getUploadId();
+
+        UploadStore reloaded = new UploadStore(directory, UploadStore.DEFAULT_EXPIRY_MS, UploadStore.DEFAULT_MAX_UPLOADS);
+        UploadStore.Upload resumed = reloaded.get(uploadId);
+        assertEquals(25, resumed.getCommittedOffset());
+        assertEquals(CHECKSUM, resumed.getChecksum());
+        assertEquals("DOC-1", resumed.getMetadata().getString("documentId"));
+        assertSame(resumed, reloaded.open(metadata("DOC-1"), CONTENT.length, CHECKSUM));
+
+        // Every upload is past its expiry at once, opening the store deletes them
+        assertEquals(0, new UploadStore(directory, -1, UploadStore.DEFAULT_MAX_UPLOADS).getOpenCount());
+        assertEquals(0, new UploadStore(directory, UploadStore.DEFAULT_EXPIRY_MS, 1).getOpenCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static InputStream chunk(int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, from, to));
+    }
+
+    private static JSONObject metadata(String documentId) {
+        return new JSONObject().put("documentId", documentId).put("fullName", "Ada Lovelace");
+    }
+}